@@ -0,0 +1,43 @@
+#include <cstddef>
+#include <cstdint>
+/* Plain C entry points for the java.lang.foreign (FFM) binding of the data plane */
+
+#ifndef _Included_e2sar_foreign
+#define _Included_e2sar_foreign
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// Handles are the same native pointers held by the JNI wrappers (Segmenter.nativeSegmenter, etc.).
+// Functions returning int return 0 on success and -1 on error, the error message can then be read with e2sar_last_error.
+
+// Message of the last error raised on the calling thread
+const char* e2sar_last_error();
+
+int e2sar_segmenter_send_event(void* segmenter, uint8_t* event, size_t length, uint64_t eventNum, uint16_t dataId, uint16_t entropy);
+
+// done(event) is called on the send thread once the event has been segmented and may be null.
+// Returns 1 instead of 0 if the event was not queued because the bounded send queue is full
+int e2sar_segmenter_add_to_send_queue(void* segmenter, void* sendContext, uint8_t* event, size_t length, uint64_t eventNum, 
+  uint16_t dataId, uint16_t entropy, void (*done)(uint8_t*));
+
+// stats must have room for 3 values: eventDatagramCount, eventDatagramErrCount, lastErrorNo
+void e2sar_segmenter_get_send_stats(void* segmenter, int64_t* stats);
+
+// stats must have room for 3 values: syncMsgCount, syncErrCount, lastErrorNo
+void e2sar_segmenter_get_sync_stats(void* segmenter, int64_t* stats);
+
+// Returns the event length, -1 if there is no event or -2 on error. The event must be released with e2sar_free_event
+int64_t e2sar_reassembler_get_event(void* reassembler, uint8_t** event, uint64_t* eventNum, uint16_t* dataId);
+
+int64_t e2sar_reassembler_recv_event(void* reassembler, uint8_t** event, uint64_t* eventNum, uint16_t* dataId, uint64_t waitMs);
+
+// stats must have room for 6 values in the order of the RecvStats constructor
+void e2sar_reassembler_get_stats(void* reassembler, int64_t* stats);
+
+void e2sar_free_event(uint8_t* event);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
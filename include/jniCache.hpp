@@ -0,0 +1,90 @@
+#include <jni.h>
+
+#ifndef _Jni_e2sar_cache
+#define _Jni_e2sar_cache
+
+/*
+ * Global class references and member IDs used by the native methods, looked up once in JNI_OnLoad instead of on every call.
+ * Member IDs stay valid as long as their class is not unloaded, which the global class references guarantee until JNI_OnUnload.
+ */
+struct JniCache {
+    jclass optionalClass;
+    jmethodID optionalOf;
+    jmethodID optionalEmpty;
+
+    jclass exceptionClass;
+
+    jclass reassembledEventClass;
+    jmethodID reassembledEventInit;
+    jclass lostEventClass;
+    jmethodID lostEventInit;
+    jclass recvStatsClass;
+    jmethodID recvStatsInit;
+    jfieldID eventMetadataEventNum;
+    jfieldID eventMetadataDataId;
+    jfieldID eventMetadataLength;
+    jmethodID reassemblerKeepPending;
+    jmethodID eventHandlerOnEvent;
+    jmethodID eventBatchHandlerOnEvents;
+
+    jclass sendStatsClass;
+    jmethodID sendStatsInit;
+    jclass syncStatsClass;
+    jmethodID syncStatsInit;
+    jfieldID bufferPosition;
+    jfieldID bufferLimit;
+
+    jfieldID ejfatUriNative;
+    jfieldID lbManagerNative;
+    jclass workerStatusClass;
+    jmethodID workerStatusInit;
+    jclass lbStatusClass;
+    jmethodID lbStatusInit;
+    jclass lbOverviewClass;
+    jmethodID lbOverviewInit;
+
+    jclass arrayListClass;
+    jmethodID arrayListInit;
+    jmethodID arrayListAdd;
+    jmethodID listIterator;
+    jmethodID iteratorHasNext;
+    jmethodID iteratorNext;
+    jclass integerClass;
+    jmethodID integerInit;
+    jmethodID integerIntValue;
+    jclass instantClass;
+    jmethodID instantOfEpochSecond;
+    jmethodID instantGetEpochSecond;
+    jmethodID instantGetNano;
+    jclass inetAddressClass;
+    jmethodID inetAddressGetByName;
+    jmethodID inetAddressGetHostAddress;
+    jmethodID inetAddressGetAddress;
+    jclass inetSocketAddressClass;
+    jmethodID inetSocketAddressInit;
+    jmethodID inetSocketAddressGetAddress;
+    jmethodID inetSocketAddressGetPort;
+};
+
+extern JniCache jniCache;
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Fills jniCache, fails loading the library if any class or member is missing
+ */
+JNIEXPORT jint JNICALL JNI_OnLoad
+  (JavaVM *, void *);
+
+/*
+ * Releases the global class references held by jniCache
+ */
+JNIEXPORT void JNICALL JNI_OnUnload
+  (JavaVM *, void *);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -2,6 +2,8 @@
 #include "jnie2sarHelper.hpp"
 #include "jnie2sarEjfatUri.hpp"
 #include "e2sar.hpp"
+#include <atomic>
+#include <thread>
 
 /* Header for class org_jlab_hpdf_Reassembler */
 
@@ -15,6 +17,27 @@ const std::string javaReassemblerFlagsClass = "org/jlab/hpdf/config/ReassemblerF
 const std::string javaReassembledEventClass = "org/jlab/hpdf/messages/ReassembledEvent";
 const std::string javaLostEventClass = "org/jlab/hpdf/messages/LostEvent";
 const std::string javaRecvStatsClass = "org/jlab/hpdf/messages/RecvStats";
+// EventReassembler.RECV_NO_EVENT and RECV_BUFFER_TOO_SMALL
+const jint recvNoEvent = -1;
+const jint recvBufferTooSmall = -2;
+// how long the dispatch thread blocks in recvEvent before checking whether it was stopped
+const u_int64_t eventDispatchPollMs = 100;
+
+// JNI side state of the thread pushing events to a Java EventHandler or EventBatchHandler, one per Java Reassembler
+struct ReassemblerEventDispatch {
+  JavaVM* jvm;
+  e2sar::Reassembler* reassembler;
+  // global references, the batch arrays are only set for an EventBatchHandler and reused for every batch
+  jobject jHandler;
+  jobjectArray jEvents{nullptr};
+  jlongArray jEventNums{nullptr};
+  jintArray jDataIds{nullptr};
+  jint maxBatch{1};
+  std::atomic<bool> running{true};
+  // set when the dispatch thread is stopped from inside the handler, the thread then frees this state itself
+  std::atomic<bool> selfRelease{false};
+  std::thread thread;
+};
 
 /*
  * Class:     org_jlab_hpdf_Reassembler
@@ -91,18 +114,34 @@ JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_openAndStart
 /*
  * Class:     org_jlab_hpdf_Reassembler
  * Method:    getEvent
- * Signature: (J)Ljava/util/Optional;
+ * Signature: (J[J)Ljava/util/Optional;
  */
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getEvent
-  (JNIEnv *, jobject, jlong);
+  (JNIEnv *, jobject, jlong, jlongArray);
 
 /*
  * Class:     org_jlab_hpdf_Reassembler
  * Method:    recvEvent
- * Signature: (JJ)Ljava/util/Optional;
+ * Signature: (JJ[J)Ljava/util/Optional;
  */
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_recvEvent
-  (JNIEnv *, jobject, jlong, jlong);
+  (JNIEnv *, jobject, jlong, jlong, jlongArray);
+
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    recvEvents
+ * Signature: (J[J[I[Ljava/nio/ByteBuffer;[JIJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_recvEvents
+  (JNIEnv *, jobject, jlong, jlongArray, jintArray, jobjectArray, jlongArray, jint, jlong);
+
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    recvInto
+ * Signature: (JLjava/nio/ByteBuffer;IIJLorg/jlab/hpdf/messages/EventMetadata;)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_recvInto
+  (JNIEnv *, jobject, jlong, jobject, jint, jint, jlong, jobject);
 
 /*
  * Class:     org_jlab_hpdf_Reassembler
@@ -120,6 +159,14 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getStats
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getLostEvent
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    drainLostEvents
+ * Signature: (J[J[II)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_drainLostEvents
+  (JNIEnv *, jobject, jlong, jlongArray, jintArray, jint);
+
 /*
  * Class:     org_jlab_hpdf_Reassembler
  * Method:    getNumRecvThreads
@@ -144,6 +191,22 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getRecvPorts
 JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_getPortRange
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    freeNativeBuffer
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeNativeBuffer
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    freeDirectBytebBuffer
+ * Signature: (JLjava/nio/ByteBuffer;)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeDirectBytebBuffer
+  (JNIEnv *, jobject, jlong, jobject);
+
 /*
  * Class:     org_jlab_hpdf_Reassembler
  * Method:    freeNativePointer
@@ -152,6 +215,30 @@ JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_getPortRange
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeNativePointer
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    startEventDispatch
+ * Signature: (JLorg/jlab/hpdf/EventHandler;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Reassembler_startEventDispatch
+  (JNIEnv *, jobject, jlong, jobject);
+
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    startBatchEventDispatch
+ * Signature: (JLorg/jlab/hpdf/EventBatchHandler;[Ljava/nio/ByteBuffer;[J[I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Reassembler_startBatchEventDispatch
+  (JNIEnv *, jobject, jlong, jobject, jobjectArray, jlongArray, jintArray);
+
+/*
+ * Class:     org_jlab_hpdf_Reassembler
+ * Method:    stopEventDispatch
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_stopEventDispatch
+  (JNIEnv *, jobject, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -3,6 +3,10 @@
 #include "jnie2sarHelper.hpp"
 #include "jnie2sarEjfatUri.hpp"
 #include "e2sar.hpp"
+#include <atomic>
+#include <mutex>
+#include <condition_variable>
+#include <boost/lockfree/queue.hpp>
 /* Header for class org_jlab_hpdf_Segmenter */
 
 #ifndef _Included_org_jlab_hpdf_Segmenter
@@ -14,6 +18,40 @@ extern "C" {
 const std::string javaSegmenterFlagsClass = "org/jlab/hpdf/config/SegmenterFlags";
 const std::string javaSyncStatsClass = "org/jlab/hpdf/messages/SyncStats";
 const std::string javaSendStatsClass = "org/jlab/hpdf/messages/SendStats";
+const std::string javaBufferClass = "java/nio/Buffer";
+const std::string sendQueueFullMessage = "Send queue is full";
+
+// Ring of global references to sent ByteBuffers waiting to be polled back by Java
+using CompletionRing = boost::lockfree::queue<jobject, boost::lockfree::fixed_sized<true>>;
+
+// JNI side state shared with the e2sar::Segmenter send thread, one per Java Segmenter
+struct SegmenterSendContext {
+  JavaVM* jvm;
+  std::atomic<CompletionRing*> completions{nullptr};
+  // bounded send queue accounting, occupancy counts events queued but not yet segmented
+  int capacity;
+  std::atomic<int> occupancy{0};
+  std::atomic<int> waiters{0};
+  std::mutex notFullMutex;
+  std::condition_variable notFull;
+};
+
+// Callback argument for queued Direct ByteBuffers
+struct QueuedByteBuffer {
+  SegmenterSendContext* context;
+  jobject jGlobalByteBuffer;
+};
+
+// Callback argument for queued events gathered from several Direct ByteBuffers
+struct QueuedGatherBuffer {
+  SegmenterSendContext* context;
+  u_int8_t* event;
+};
+
+// Bounded send queue accounting, also used by the foreign function entry points in e2sarForeign.cpp
+bool reserveSendQueueSlot(SegmenterSendContext* context, jlong waitMs);
+
+void releaseSendQueueSlot(SegmenterSendContext* context);
 /*
  * Class:     org_jlab_hpdf_Segmenter
  * Method:    initSegmentor
@@ -38,6 +76,14 @@ JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Segmenter_initSegmentor__Lorg_jlab_hp
 JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Segmenter_initSegmentor__Lorg_jlab_hpdf_EjfatURI_2IJ
   (JNIEnv *, jobject, jobject, jint, jlong);
 
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    initSendContext
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Segmenter_initSendContext
+  (JNIEnv *, jobject, jint);
+
 /*
  * Class:     org_jlab_hpdf_Segmenter
  * Method:    openAndStart
@@ -49,18 +95,98 @@ JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_openAndStart
 /*
  * Class:     org_jlab_hpdf_Segmenter
  * Method:    sendEventDirect
- * Signature: (JLjava/nio/ByteBuffer;IJII)V
+ * Signature: (JLjava/nio/ByteBuffer;IIJII)V
  */
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEventDirect
-  (JNIEnv *, jobject, jlong, jobject, jint, jlong, jint, jint);
+  (JNIEnv *, jobject, jlong, jobject, jint, jint, jlong, jint, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    sendEvent
+ * Signature: (J[BIIJII)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEvent
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint, jlong, jint, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    sendEventDirectGather
+ * Signature: (J[Ljava/nio/ByteBuffer;JII)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEventDirectGather
+  (JNIEnv *, jobject, jlong, jobjectArray, jlong, jint, jint);
 
 /*
  * Class:     org_jlab_hpdf_Segmenter
  * Method:    addToSendQueueDirect
- * Signature: (JLjava/nio/ByteBuffer;IJII)V
+ * Signature: (JJLjava/nio/ByteBuffer;IIJII)V
  */
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirect
-  (JNIEnv *, jobject, jlong, jobject, jint, jlong, jint, jint);
+  (JNIEnv *, jobject, jlong, jlong, jobject, jint, jint, jlong, jint, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    offerToSendQueueDirect
+ * Signature: (JJLjava/nio/ByteBuffer;IIJIIJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_jlab_hpdf_Segmenter_offerToSendQueueDirect
+  (JNIEnv *, jobject, jlong, jlong, jobject, jint, jint, jlong, jint, jint, jlong);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    addToSendQueueDirectGather
+ * Signature: (JJ[Ljava/nio/ByteBuffer;JII)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirectGather
+  (JNIEnv *, jobject, jlong, jlong, jobjectArray, jlong, jint, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    addToSendQueueDirectBatch
+ * Signature: (JJ[Ljava/nio/ByteBuffer;[I[I[J[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirectBatch
+  (JNIEnv *, jobject, jlong, jlong, jobjectArray, jintArray, jintArray, jlongArray, jintArray, jintArray, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    enableSendCompletions
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_enableSendCompletions
+  (JNIEnv *, jobject, jlong, jint);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    pollCompletedBuffer
+ * Signature: (J)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Segmenter_pollCompletedBuffer
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    drainCompletedBuffers
+ * Signature: (J[Ljava/nio/ByteBuffer;)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_drainCompletedBuffers
+  (JNIEnv *, jobject, jlong, jobjectArray);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    getSendQueueCapacity
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_getSendQueueCapacity
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    getSendQueueOccupancy
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_getSendQueueOccupancy
+  (JNIEnv *, jobject, jlong);
 
 /*
  * Class:     org_jlab_hpdf_Segmenter
@@ -102,6 +228,14 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Segmenter_getSendStats
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_freeNativePointer
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     org_jlab_hpdf_Segmenter
+ * Method:    freeSendContext
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_freeSendContext
+  (JNIEnv *, jobject, jlong);
+
 #ifdef __cplusplus
 }
 #endif
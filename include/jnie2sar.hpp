@@ -15,6 +15,22 @@ extern "C" {
  */
 JNIEXPORT jstring JNICALL Java_org_jlab_hpdf_E2sarUtil_getE2sarVersion
   (JNIEnv *, jclass);
+
+/*
+ * Class:     org_jlab_hpdf_E2sarUtil
+ * Method:    setCurrentThreadAffinity
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_E2sarUtil_setCurrentThreadAffinity
+  (JNIEnv *, jclass, jintArray);
+
+/*
+ * Class:     org_jlab_hpdf_E2sarUtil
+ * Method:    getCurrentThreadAffinity
+ * Signature: ()[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_jlab_hpdf_E2sarUtil_getCurrentThreadAffinity
+  (JNIEnv *, jclass);
 #ifdef __cplusplus
 }
 #endif  
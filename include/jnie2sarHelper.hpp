@@ -5,6 +5,7 @@
 #include <google/protobuf/util/time_util.h>
 #include <boost/asio.hpp>
 #include <optional>
+#include "jniCache.hpp"
 
 #ifndef _Jni_e2sar_helper
 #define _Jni_e2sar_helper
@@ -53,5 +54,7 @@ std::pair<boost::asio::ip::address, u_int16_t> convertInetSocketAddress(JNIEnv*
 
 u_int8_t* getDirectByteBufferPointer(JNIEnv* env, jobject jByteBuffer);
 
+JNIEnv* getJNIEnvForCurrentThread(JavaVM* jvm);
+
 std::optional<boost::asio::ip::address> convertInetAddressToBoostIp(JNIEnv* env, jobject inetAddressObj);
 #endif
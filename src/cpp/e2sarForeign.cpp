@@ -0,0 +1,103 @@
+#include "e2sarForeign.hpp"
+#include "jniDpSegmenter.hpp"
+
+thread_local std::string lastError;
+
+// Callback argument for events queued through the foreign binding
+struct ForeignQueuedEvent {
+  SegmenterSendContext* context;
+  void (*done)(uint8_t*);
+  uint8_t* event;
+};
+
+void releaseForeignQueuedEvent(boost::any a){
+  ForeignQueuedEvent queued = boost::any_cast<ForeignQueuedEvent>(a);
+  releaseSendQueueSlot(queued.context);
+  if(queued.done != nullptr){
+    queued.done(queued.event);
+  }
+}
+
+const char* e2sar_last_error(){
+  return lastError.c_str();
+}
+
+int e2sar_segmenter_send_event(void* segmenter, uint8_t* event, size_t length, uint64_t eventNum, uint16_t dataId, uint16_t entropy){
+  auto res = static_cast<e2sar::Segmenter*>(segmenter)->sendEvent(event, length, eventNum, dataId, entropy);
+  if(res.has_error()){
+    lastError = res.error().message();
+    return -1;
+  }
+  return 0;
+}
+
+int e2sar_segmenter_add_to_send_queue(void* segmenter, void* sendContext, uint8_t* event, size_t length, uint64_t eventNum, 
+  uint16_t dataId, uint16_t entropy, void (*done)(uint8_t*)){
+    SegmenterSendContext* context = static_cast<SegmenterSendContext*>(sendContext);
+    if(!reserveSendQueueSlot(context, 0)){
+      return 1;
+    }
+    auto res = static_cast<e2sar::Segmenter*>(segmenter)->addToSendQueue(event, length, eventNum, dataId, entropy, 
+      &releaseForeignQueuedEvent, ForeignQueuedEvent{context, done, event});
+    if(res.has_error()){
+      releaseSendQueueSlot(context);
+      lastError = res.error().message();
+      return -1;
+    }
+    return 0;
+}
+
+void e2sar_segmenter_get_send_stats(void* segmenter, int64_t* stats){
+  auto sendStats = static_cast<e2sar::Segmenter*>(segmenter)->getSendStats();
+  stats[0] = static_cast<int64_t>(boost::get<0>(sendStats));
+  stats[1] = static_cast<int64_t>(boost::get<1>(sendStats));
+  stats[2] = static_cast<int64_t>(boost::get<2>(sendStats));
+}
+
+void e2sar_segmenter_get_sync_stats(void* segmenter, int64_t* stats){
+  auto syncStats = static_cast<e2sar::Segmenter*>(segmenter)->getSyncStats();
+  stats[0] = static_cast<int64_t>(boost::get<0>(syncStats));
+  stats[1] = static_cast<int64_t>(boost::get<1>(syncStats));
+  stats[2] = static_cast<int64_t>(boost::get<2>(syncStats));
+}
+
+int64_t e2sar_reassembler_get_event(void* reassembler, uint8_t** event, uint64_t* eventNum, uint16_t* dataId){
+  size_t eventLen;
+  e2sar::EventNum_t recEventNum;
+  auto res = static_cast<e2sar::Reassembler*>(reassembler)->getEvent(event, &eventLen, &recEventNum, dataId);
+  if(res.has_error()){
+    // getEvent reports an empty queue as an error
+    return -1;
+  }
+  *eventNum = recEventNum;
+  return static_cast<int64_t>(eventLen);
+}
+
+int64_t e2sar_reassembler_recv_event(void* reassembler, uint8_t** event, uint64_t* eventNum, uint16_t* dataId, uint64_t waitMs){
+  size_t eventLen;
+  e2sar::EventNum_t recEventNum;
+  auto res = static_cast<e2sar::Reassembler*>(reassembler)->recvEvent(event, &eventLen, &recEventNum, dataId, waitMs);
+  if(res.has_error()){
+    lastError = res.error().message();
+    return -2;
+  }
+  if(res.value() == -1){
+    return -1;
+  }
+  *eventNum = recEventNum;
+  return static_cast<int64_t>(eventLen);
+}
+
+void e2sar_reassembler_get_stats(void* reassembler, int64_t* stats){
+  auto recvStats = static_cast<e2sar::Reassembler*>(reassembler)->getStats();
+  stats[0] = static_cast<int64_t>(boost::get<0>(recvStats));
+  stats[1] = static_cast<int64_t>(boost::get<1>(recvStats));
+  stats[2] = static_cast<int64_t>(boost::get<2>(recvStats));
+  stats[3] = static_cast<int64_t>(boost::get<3>(recvStats));
+  stats[4] = static_cast<int64_t>(boost::get<4>(recvStats));
+  stats[5] = static_cast<int64_t>(boost::get<5>(recvStats));
+}
+
+void e2sar_free_event(uint8_t* event){
+  delete[] event;
+}
@@ -0,0 +1,162 @@
+#include "jniCache.hpp"
+#include "jnie2sarHelper.hpp"
+#include "jniDpReassembler.hpp"
+#include "jniDpSegmenter.hpp"
+#include "jniLbManager.hpp"
+#include "jnie2sarEjfatUri.hpp"
+
+JniCache jniCache{};
+
+namespace {
+
+// turns the local reference returned by FindClass into a global one, nullptr if the class is missing
+jclass findGlobalClass(JNIEnv *env, const std::string &name){
+    jclass localClass = env->FindClass(name.data());
+    if(localClass == nullptr){
+        return nullptr;
+    }
+    jclass globalClass = static_cast<jclass>(env->NewGlobalRef(localClass));
+    env->DeleteLocalRef(localClass);
+    return globalClass;
+}
+
+bool initCache(JNIEnv *env){
+    JniCache &c = jniCache;
+
+    if((c.optionalClass = findGlobalClass(env, "java/util/Optional")) == nullptr) return false;
+    c.optionalOf = env->GetStaticMethodID(c.optionalClass, "of", "(Ljava/lang/Object;)Ljava/util/Optional;");
+    c.optionalEmpty = env->GetStaticMethodID(c.optionalClass, "empty", "()Ljava/util/Optional;");
+
+    if((c.exceptionClass = findGlobalClass(env, javaExceptionClass)) == nullptr) return false;
+
+    if((c.reassembledEventClass = findGlobalClass(env, javaReassembledEventClass)) == nullptr) return false;
+    c.reassembledEventInit = env->GetMethodID(c.reassembledEventClass, "<init>", "(Ljava/nio/ByteBuffer;JI)V");
+    if((c.lostEventClass = findGlobalClass(env, javaLostEventClass)) == nullptr) return false;
+    c.lostEventInit = env->GetMethodID(c.lostEventClass, "<init>", "(JI)V");
+    if((c.recvStatsClass = findGlobalClass(env, javaRecvStatsClass)) == nullptr) return false;
+    c.recvStatsInit = env->GetMethodID(c.recvStatsClass, "<init>", "(JJIIII)V");
+
+    jclass eventMetadataClass = env->FindClass("org/jlab/hpdf/messages/EventMetadata");
+    if(eventMetadataClass == nullptr) return false;
+    c.eventMetadataEventNum = env->GetFieldID(eventMetadataClass, "eventNum", "J");
+    c.eventMetadataDataId = env->GetFieldID(eventMetadataClass, "dataId", "I");
+    c.eventMetadataLength = env->GetFieldID(eventMetadataClass, "length", "I");
+    env->DeleteLocalRef(eventMetadataClass);
+
+    jclass reassemblerClass = env->FindClass("org/jlab/hpdf/Reassembler");
+    if(reassemblerClass == nullptr) return false;
+    c.reassemblerKeepPending = env->GetMethodID(reassemblerClass, "keepPending", "(Ljava/nio/ByteBuffer;JI)V");
+    env->DeleteLocalRef(reassemblerClass);
+
+    jclass eventHandlerClass = env->FindClass("org/jlab/hpdf/EventHandler");
+    if(eventHandlerClass == nullptr) return false;
+    c.eventHandlerOnEvent = env->GetMethodID(eventHandlerClass, "onEvent", "(Ljava/nio/ByteBuffer;JI)V");
+    env->DeleteLocalRef(eventHandlerClass);
+
+    jclass eventBatchHandlerClass = env->FindClass("org/jlab/hpdf/EventBatchHandler");
+    if(eventBatchHandlerClass == nullptr) return false;
+    c.eventBatchHandlerOnEvents = env->GetMethodID(eventBatchHandlerClass, "onEvents", "([Ljava/nio/ByteBuffer;[J[II)V");
+    env->DeleteLocalRef(eventBatchHandlerClass);
+
+    if((c.sendStatsClass = findGlobalClass(env, javaSendStatsClass)) == nullptr) return false;
+    c.sendStatsInit = env->GetMethodID(c.sendStatsClass, "<init>", "(JJI)V");
+    if((c.syncStatsClass = findGlobalClass(env, javaSyncStatsClass)) == nullptr) return false;
+    c.syncStatsInit = env->GetMethodID(c.syncStatsClass, "<init>", "(JJI)V");
+
+    jclass bufferClass = env->FindClass(javaBufferClass.data());
+    if(bufferClass == nullptr) return false;
+    c.bufferPosition = env->GetFieldID(bufferClass, "position", "I");
+    c.bufferLimit = env->GetFieldID(bufferClass, "limit", "I");
+    env->DeleteLocalRef(bufferClass);
+
+    jclass ejfatUriClass = env->FindClass("org/jlab/hpdf/EjfatURI");
+    if(ejfatUriClass == nullptr) return false;
+    c.ejfatUriNative = env->GetFieldID(ejfatUriClass, nativeEjfatUri.data(), "J");
+    env->DeleteLocalRef(ejfatUriClass);
+
+    jclass lbManagerClass = env->FindClass("org/jlab/hpdf/LbManager");
+    if(lbManagerClass == nullptr) return false;
+    c.lbManagerNative = env->GetFieldID(lbManagerClass, nativeLbField.data(), "J");
+    env->DeleteLocalRef(lbManagerClass);
+
+    if((c.workerStatusClass = findGlobalClass(env, javaWorkerStatusClass)) == nullptr) return false;
+    c.workerStatusInit = env->GetMethodID(c.workerStatusClass, "<init>", "(Ljava/lang/String;FFILjava/time/Instant;)V");
+    if((c.lbStatusClass = findGlobalClass(env, javaLBStatusClass)) == nullptr) return false;
+    c.lbStatusInit = env->GetMethodID(c.lbStatusClass, "<init>", "(Ljava/time/Instant;Ljava/time/Instant;JJLjava/util/List;Ljava/util/List;)V");
+    if((c.lbOverviewClass = findGlobalClass(env, javaLBOverviewClass)) == nullptr) return false;
+    c.lbOverviewInit = env->GetMethodID(c.lbOverviewClass, "<init>", "(Ljava/lang/String;Ljava/lang/String;Ljava/net/InetSocketAddress;Ljava/net/InetAddress;Ljava/net/InetAddress;ILorg/jlab/hpdf/messages/LBStatus;)V");
+
+    if((c.arrayListClass = findGlobalClass(env, javaArrayListClass)) == nullptr) return false;
+    c.arrayListInit = env->GetMethodID(c.arrayListClass, "<init>", "()V");
+    c.arrayListAdd = env->GetMethodID(c.arrayListClass, "add", "(Ljava/lang/Object;)Z");
+
+    jclass listClass = env->FindClass("java/util/List");
+    if(listClass == nullptr) return false;
+    c.listIterator = env->GetMethodID(listClass, "iterator", "()Ljava/util/Iterator;");
+    env->DeleteLocalRef(listClass);
+
+    jclass iteratorClass = env->FindClass("java/util/Iterator");
+    if(iteratorClass == nullptr) return false;
+    c.iteratorHasNext = env->GetMethodID(iteratorClass, "hasNext", "()Z");
+    c.iteratorNext = env->GetMethodID(iteratorClass, "next", "()Ljava/lang/Object;");
+    env->DeleteLocalRef(iteratorClass);
+
+    if((c.integerClass = findGlobalClass(env, "java/lang/Integer")) == nullptr) return false;
+    c.integerInit = env->GetMethodID(c.integerClass, "<init>", "(I)V");
+    c.integerIntValue = env->GetMethodID(c.integerClass, "intValue", "()I");
+
+    if((c.instantClass = findGlobalClass(env, javaInstantClass)) == nullptr) return false;
+    c.instantOfEpochSecond = env->GetStaticMethodID(c.instantClass, "ofEpochSecond", "(JJ)Ljava/time/Instant;");
+    c.instantGetEpochSecond = env->GetMethodID(c.instantClass, "getEpochSecond", "()J");
+    c.instantGetNano = env->GetMethodID(c.instantClass, "getNano", "()I");
+
+    if((c.inetAddressClass = findGlobalClass(env, javaInetAddressClass)) == nullptr) return false;
+    c.inetAddressGetByName = env->GetStaticMethodID(c.inetAddressClass, "getByName", "(Ljava/lang/String;)Ljava/net/InetAddress;");
+    c.inetAddressGetHostAddress = env->GetMethodID(c.inetAddressClass, "getHostAddress", "()Ljava/lang/String;");
+    c.inetAddressGetAddress = env->GetMethodID(c.inetAddressClass, "getAddress", "()[B");
+
+    if((c.inetSocketAddressClass = findGlobalClass(env, javaInetSocketAddressClass)) == nullptr) return false;
+    c.inetSocketAddressInit = env->GetMethodID(c.inetSocketAddressClass, "<init>", "(Ljava/lang/String;I)V");
+    c.inetSocketAddressGetAddress = env->GetMethodID(c.inetSocketAddressClass, "getAddress", "()Ljava/net/InetAddress;");
+    c.inetSocketAddressGetPort = env->GetMethodID(c.inetSocketAddressClass, "getPort", "()I");
+
+    // a missing member leaves NoSuchMethodError or NoSuchFieldError pending
+    return !env->ExceptionCheck();
+}
+
+void releaseCache(JNIEnv *env){
+    jclass* classes[] = {&jniCache.optionalClass, &jniCache.exceptionClass, &jniCache.reassembledEventClass, &jniCache.lostEventClass,
+        &jniCache.recvStatsClass, &jniCache.sendStatsClass, &jniCache.syncStatsClass, &jniCache.workerStatusClass, &jniCache.lbStatusClass,
+        &jniCache.lbOverviewClass, &jniCache.arrayListClass, &jniCache.integerClass, &jniCache.instantClass, &jniCache.inetAddressClass,
+        &jniCache.inetSocketAddressClass};
+    for(jclass* cls : classes){
+        if(*cls != nullptr){
+            env->DeleteGlobalRef(*cls);
+        }
+    }
+    jniCache = JniCache{};
+}
+
+}
+
+JNIEXPORT jint JNICALL JNI_OnLoad
+  (JavaVM *jvm, void *reserved){
+    JNIEnv* env = nullptr;
+    if(jvm->GetEnv((void**) &env, JNI_VERSION_1_8) != JNI_OK){
+        return JNI_ERR;
+    }
+    if(!initCache(env)){
+        // leave the pending NoClassDefFoundError or NoSuchMethodError for System.loadLibrary to report
+        releaseCache(env);
+        return JNI_ERR;
+    }
+    return JNI_VERSION_1_8;
+  }
+
+JNIEXPORT void JNICALL JNI_OnUnload
+  (JavaVM *jvm, void *reserved){
+    JNIEnv* env = nullptr;
+    if(jvm->GetEnv((void**) &env, JNI_VERSION_1_8) == JNI_OK){
+        releaseCache(env);
+    }
+  }
@@ -1,4 +1,5 @@
 #include "jniDpReassembler.hpp"
+#include <cstring>
 
 e2sar::Reassembler::ReassemblerFlags parseReassemblerFlags(JNIEnv *env, jobject jReassemblerFlags){
   e2sar::Reassembler::ReassemblerFlags rFlags;
@@ -217,29 +218,19 @@ jobject createDirectByteBuffer(JNIEnv* env, void* data, size_t size) {
     return jDirectBuffer;   
 }
 
-jobject createOptionalJavaReassembledEvent(JNIEnv *env, jobject jDirectBuff, e2sar::EventNum_t eventNum, u_int16_t recDataId){
-    // Get Optional class
-    jclass optionalClass = env->FindClass("java/util/Optional");
-    jclass jEventClass = env->FindClass(javaReassembledEventClass.data());
-
-    if(jEventClass == nullptr){
-        throwJavaException(env, "Could not find class: " + javaReassembledEventClass);
-        return nullptr;
-    }
-    jmethodID constructor = env->GetMethodID(jEventClass, "<init>", "(Ljava/nio/ByteBuffer;JI)V");
-
-    if (constructor == nullptr) {
-        throwJavaException(env, "Could not find the constructor of class: " + javaReassembledEventClass);
-        return nullptr;
-    }
+// Returns the address of a native event buffer to Java with the event, so tracking it does not need a JNI call of its own
+void setBufferAddress(JNIEnv *env, jlongArray jAddresses, jint index, u_int8_t* eventBuf){
+    jlong address = reinterpret_cast<jlong>(eventBuf);
+    env->SetLongArrayRegion(jAddresses, index, 1, &address);
+}
 
-    jobject eventObj = env->NewObject(jEventClass, constructor, jDirectBuff, (jlong) eventNum, (jint) recDataId);
-    jmethodID ofMethod = env->GetStaticMethodID(optionalClass, "of", "(Ljava/lang/Object;)Ljava/util/Optional;");
-    return env->CallStaticObjectMethod(optionalClass, ofMethod, eventObj);
+jobject createOptionalJavaReassembledEvent(JNIEnv *env, jobject jDirectBuff, e2sar::EventNum_t eventNum, u_int16_t recDataId){
+    jobject eventObj = env->NewObject(jniCache.reassembledEventClass, jniCache.reassembledEventInit, jDirectBuff, (jlong) eventNum, (jint) recDataId);
+    return env->CallStaticObjectMethod(jniCache.optionalClass, jniCache.optionalOf, eventObj);
 }
 
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getEvent
-  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler){
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jlongArray jAddress){
     e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
 
     u_int8_t *eventBuf{nullptr};
@@ -249,17 +240,16 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getEvent
 
     auto res = reassembler->getEvent(&eventBuf, &eventLen, &eventNum, &recDataId);
     if(res.has_error()){
-        jclass optionalClass = env->FindClass("java/util/Optional");
-        jmethodID emptyMethod = env->GetStaticMethodID(optionalClass, "empty", "()Ljava/util/Optional;");
-        return env->CallStaticObjectMethod(optionalClass, emptyMethod);
+        return env->CallStaticObjectMethod(jniCache.optionalClass, jniCache.optionalEmpty);
     }
 
+    setBufferAddress(env, jAddress, 0, eventBuf);
     jobject jDirectBuffer = createDirectByteBuffer(env, eventBuf, eventLen);
     return createOptionalJavaReassembledEvent(env, jDirectBuffer, eventNum, recDataId);
   }
 
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_recvEvent
-  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jlong jWaitTime){
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jlong jWaitTime, jlongArray jAddress){
     e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
 
     u_int8_t *eventBuf{nullptr};
@@ -269,15 +259,104 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_recvEvent
 
     auto res = reassembler->recvEvent(&eventBuf, &eventLen, &eventNum, &recDataId, jWaitTime);
     if(res.has_error() || res.value() == -1){
-        jclass optionalClass = env->FindClass("java/util/Optional");
-        jmethodID emptyMethod = env->GetStaticMethodID(optionalClass, "empty", "()Ljava/util/Optional;");
-        return env->CallStaticObjectMethod(optionalClass, emptyMethod);
+        return env->CallStaticObjectMethod(jniCache.optionalClass, jniCache.optionalEmpty);
     }
     
+    setBufferAddress(env, jAddress, 0, eventBuf);
     jobject jDirectBuffer = createDirectByteBuffer(env, eventBuf, eventLen);
     return createOptionalJavaReassembledEvent(env, jDirectBuffer, eventNum, recDataId);
   }
 
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_recvEvents
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jlongArray jEventNums, jintArray jDataIds, jobjectArray jBuffers, jlongArray jAddresses, jint jMaxEvents, jlong jWaitTime){
+    e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
+
+    std::vector<jlong> eventNums(jMaxEvents);
+    std::vector<jint> dataIds(jMaxEvents);
+    std::vector<jlong> addresses(jMaxEvents);
+    jint count = 0;
+    while(count < jMaxEvents){
+        u_int8_t *eventBuf{nullptr};
+        size_t eventLen;
+        e2sar::EventNum_t eventNum;
+        u_int16_t recDataId;
+
+        // only the first event is waited for, the rest are taken if already queued
+        if(count == 0){
+            auto res = reassembler->recvEvent(&eventBuf, &eventLen, &eventNum, &recDataId, jWaitTime);
+            if(res.has_error() || res.value() == -1){
+                break;
+            }
+        }
+        else{
+            // getEvent reports an empty queue as an error
+            auto res = reassembler->getEvent(&eventBuf, &eventLen, &eventNum, &recDataId);
+            if(res.has_error()){
+                break;
+            }
+        }
+
+        jobject jDirectBuffer = env->NewDirectByteBuffer(eventBuf, eventLen);
+        if(jDirectBuffer == nullptr){
+            delete[] eventBuf;
+            break;
+        }
+        env->SetObjectArrayElement(jBuffers, count, jDirectBuffer);
+        env->DeleteLocalRef(jDirectBuffer);
+        eventNums[count] = static_cast<jlong>(eventNum);
+        dataIds[count] = static_cast<jint>(recDataId);
+        addresses[count] = reinterpret_cast<jlong>(eventBuf);
+        count++;
+    }
+
+    if(count > 0){
+        env->SetLongArrayRegion(jEventNums, 0, count, eventNums.data());
+        env->SetIntArrayRegion(jDataIds, 0, count, dataIds.data());
+        env->SetLongArrayRegion(jAddresses, 0, count, addresses.data());
+    }
+    return count;
+  }
+
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_recvInto
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jobject jDst, jint jPosition, jint jRemaining, jlong jWaitTime, jobject jMetadata){
+    e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
+
+    u_int8_t* dst = (u_int8_t*)env->GetDirectBufferAddress(jDst);
+    if(dst == nullptr){
+        throwJavaException(env, "Could not get the address of the destination buffer");
+        return recvNoEvent;
+    }
+
+    u_int8_t *eventBuf{nullptr};
+    size_t eventLen;
+    e2sar::EventNum_t eventNum;
+    u_int16_t recDataId;
+
+    auto res = reassembler->recvEvent(&eventBuf, &eventLen, &eventNum, &recDataId, jWaitTime);
+    if(res.has_error() || res.value() == -1){
+        return recvNoEvent;
+    }
+
+    env->SetLongField(jMetadata, jniCache.eventMetadataEventNum, static_cast<jlong>(eventNum));
+    env->SetIntField(jMetadata, jniCache.eventMetadataDataId, static_cast<jint>(recDataId));
+    env->SetIntField(jMetadata, jniCache.eventMetadataLength, static_cast<jint>(eventLen));
+
+    if(eventLen > static_cast<size_t>(jRemaining)){
+        // hand the event back to Java so the next call can return it into a larger buffer
+        jobject jDirectBuffer = env->NewDirectByteBuffer(eventBuf, eventLen);
+        if(jDirectBuffer == nullptr){
+            delete[] eventBuf;
+            return recvNoEvent;
+        }
+        env->CallVoidMethod(jReassembler, jniCache.reassemblerKeepPending, jDirectBuffer, static_cast<jlong>(eventNum), static_cast<jint>(recDataId));
+        return recvBufferTooSmall;
+    }
+
+    std::memcpy(dst + jPosition, eventBuf, eventLen);
+    delete[] eventBuf;
+    return static_cast<jint>(eventLen);
+  }
+
 jobject convertToJRecvStats(JNIEnv *env, boost::tuple<e2sar::EventNum_t, e2sar::EventNum_t, int, int, int, e2sar::E2SARErrorc> stats){
     // Extract values from tuple
     jlong enqueueLoss = static_cast<jlong>(boost::get<0>(stats));
@@ -287,20 +366,8 @@ jobject convertToJRecvStats(JNIEnv *env, boost::tuple<e2sar::EventNum_t, e2sar::
     jint dataErrCount = static_cast<jint>(boost::get<4>(stats));
     jint lastE2sarError = static_cast<jint>(boost::get<5>(stats));
 
-    // Get RecvStats Java class
-    jclass recvStatsClass = env->FindClass(javaRecvStatsClass.data());
-    if (!recvStatsClass) {
-        throw std::runtime_error("Failed to find RecvStats class");
-    }
-
-    // Get constructor (RecvStats(long, long, int, int, int, int))
-    jmethodID constructor = env->GetMethodID(recvStatsClass, "<init>", "(JJIIII)V");
-    if (!constructor) {
-        throw std::runtime_error("Failed to find RecvStats constructor");
-    }
-
-    // Create Java RecvStats object
-    jobject recvStatsObj = env->NewObject(recvStatsClass, constructor, enqueueLoss, eventSuccess, lastErrorNo, grpcErrCount, dataErrCount, lastE2sarError);
+    // Create Java RecvStats object with RecvStats(long, long, int, int, int, int)
+    jobject recvStatsObj = env->NewObject(jniCache.recvStatsClass, jniCache.recvStatsInit, enqueueLoss, eventSuccess, lastErrorNo, grpcErrCount, dataErrCount, lastE2sarError);
 
     return recvStatsObj;
 }
@@ -317,24 +384,9 @@ jobject convertLostEventToOptionalJLostEvent(JNIEnv *env, std::pair<e2sar::Event
     jlong eventNum = static_cast<jlong>(lostEvent.first);
     jint dataId = static_cast<jint>(lostEvent.second);
 
-    // Find the Java class LostEvent
-    jclass lostEventClass = env->FindClass(javaLostEventClass.data());
-    if (!lostEventClass) {
-        throw std::runtime_error("Failed to find LostEvent class");
-    }
-
-    // Find the constructor (LostEvent(long, int))
-    jmethodID constructor = env->GetMethodID(lostEventClass, "<init>", "(JI)V");
-    if (!constructor) {
-        throw std::runtime_error("Failed to find LostEvent constructor");
-    }
-
-    // Create a new LostEvent object
-    jobject lostEventObj = env->NewObject(lostEventClass, constructor, eventNum, dataId);
-
-    jclass optionalClass = env->FindClass("java/util/Optional");
-    jmethodID ofMethod = env->GetStaticMethodID(optionalClass, "of", "(Ljava/lang/Object;)Ljava/util/Optional;");
-    return env->CallStaticObjectMethod(optionalClass, ofMethod, lostEventObj);
+    // Create a new LostEvent object with LostEvent(long, int)
+    jobject lostEventObj = env->NewObject(jniCache.lostEventClass, jniCache.lostEventInit, eventNum, dataId);
+    return env->CallStaticObjectMethod(jniCache.optionalClass, jniCache.optionalOf, lostEventObj);
 }   
 
 JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getLostEvent
@@ -343,14 +395,37 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Reassembler_getLostEvent
 
     auto res = reassembler->get_LostEvent();
     if(res.has_error()){
-        jclass optionalClass = env->FindClass("java/util/Optional");
-        jmethodID emptyMethod = env->GetStaticMethodID(optionalClass, "empty", "()Ljava/util/Optional;");
-        return env->CallStaticObjectMethod(optionalClass, emptyMethod);
+        return env->CallStaticObjectMethod(jniCache.optionalClass, jniCache.optionalEmpty);
     }
 
     return convertLostEventToOptionalJLostEvent(env, res.value());
   }
 
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_drainLostEvents
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jlongArray jEventNums, jintArray jDataIds, jint jMaxEvents){
+    e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
+
+    std::vector<jlong> eventNums(jMaxEvents);
+    std::vector<jint> dataIds(jMaxEvents);
+    jint count = 0;
+    while(count < jMaxEvents){
+        // get_LostEvent reports an empty queue as an error
+        auto res = reassembler->get_LostEvent();
+        if(res.has_error()){
+            break;
+        }
+        eventNums[count] = static_cast<jlong>(res.value().first);
+        dataIds[count] = static_cast<jint>(res.value().second);
+        count++;
+    }
+
+    if(count > 0){
+        env->SetLongArrayRegion(jEventNums, 0, count, eventNums.data());
+        env->SetIntArrayRegion(jDataIds, 0, count, dataIds.data());
+    }
+    return count;
+  }
+
 JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Reassembler_getNumRecvThreads
   (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler){
     e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
@@ -376,6 +451,12 @@ JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Reassembler_getPortRange
     return reassembler->get_portRange();
   }
 
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeNativeBuffer
+  (JNIEnv *env, jclass jReassemblerClass, jlong jAddress){
+    // called from the Cleaner thread as well, the buffer was allocated with new[] by e2sar::Reassembler
+    delete[] reinterpret_cast<u_int8_t*>(jAddress);
+  }
+
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeDirectBytebBuffer
   (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jobject jDirectByteBuffer){
     if (jDirectByteBuffer != nullptr) {
@@ -390,4 +471,173 @@ JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_freeNativePointer
   (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler){
     e2sar::Reassembler* reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
     delete reassembler;
-  }
\ No newline at end of file
+  }
+
+// Releases the global references held by dispatch, called once its thread is done with them
+void freeEventDispatch(JNIEnv *env, ReassemblerEventDispatch* dispatch){
+    if(env != nullptr){
+        env->DeleteGlobalRef(dispatch->jHandler);
+        if(dispatch->jEvents != nullptr){
+            env->DeleteGlobalRef(dispatch->jEvents);
+            env->DeleteGlobalRef(dispatch->jEventNums);
+            env->DeleteGlobalRef(dispatch->jDataIds);
+        }
+    }
+    delete dispatch;
+}
+
+// A handler that throws must not stop the dispatch thread, report the exception the way an uncaught one would be and go on
+void reportHandlerException(JNIEnv *env){
+    if(env->ExceptionCheck()){
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
+// Hands one batch of up to maxBatch events, the first one waited for at most eventDispatchPollMs, to the EventBatchHandler
+void dispatchEventBatch(JNIEnv *env, ReassemblerEventDispatch* dispatch, std::vector<u_int8_t*> &events, std::vector<jlong> &eventNums, std::vector<jint> &dataIds){
+    e2sar::Reassembler* reassembler = dispatch->reassembler;
+    jint count = 0;
+    while(count < dispatch->maxBatch){
+        size_t eventLen;
+        e2sar::EventNum_t eventNum;
+        u_int16_t recDataId;
+
+        // only the first event is waited for, the rest are taken if already queued
+        if(count == 0){
+            auto res = reassembler->recvEvent(&events[count], &eventLen, &eventNum, &recDataId, eventDispatchPollMs);
+            if(res.has_error() || res.value() == -1){
+                return;
+            }
+        }
+        else{
+            // getEvent reports an empty queue as an error
+            auto res = reassembler->getEvent(&events[count], &eventLen, &eventNum, &recDataId);
+            if(res.has_error()){
+                break;
+            }
+        }
+
+        jobject jDirectBuffer = env->NewDirectByteBuffer(events[count], eventLen);
+        if(jDirectBuffer == nullptr){
+            delete[] events[count];
+            env->ExceptionClear();
+            break;
+        }
+        env->SetObjectArrayElement(dispatch->jEvents, count, jDirectBuffer);
+        env->DeleteLocalRef(jDirectBuffer);
+        eventNums[count] = static_cast<jlong>(eventNum);
+        dataIds[count] = static_cast<jint>(recDataId);
+        count++;
+    }
+    if(count == 0){
+        return;
+    }
+
+    env->SetLongArrayRegion(dispatch->jEventNums, 0, count, eventNums.data());
+    env->SetIntArrayRegion(dispatch->jDataIds, 0, count, dataIds.data());
+    env->CallVoidMethod(dispatch->jHandler, jniCache.eventBatchHandlerOnEvents, dispatch->jEvents, dispatch->jEventNums, dispatch->jDataIds, count);
+    reportHandlerException(env);
+
+    // the handler is done with the batch, drop the buffers before freeing what they point to
+    for(jint i = 0; i < count; i++){
+        env->SetObjectArrayElement(dispatch->jEvents, i, nullptr);
+        delete[] events[i];
+    }
+    return;
+}
+
+// Hands one event, waited for at most eventDispatchPollMs, to the EventHandler
+void dispatchEvent(JNIEnv *env, ReassemblerEventDispatch* dispatch){
+    u_int8_t *eventBuf{nullptr};
+    size_t eventLen;
+    e2sar::EventNum_t eventNum;
+    u_int16_t recDataId;
+
+    auto res = dispatch->reassembler->recvEvent(&eventBuf, &eventLen, &eventNum, &recDataId, eventDispatchPollMs);
+    if(res.has_error() || res.value() == -1){
+        return;
+    }
+
+    jobject jDirectBuffer = env->NewDirectByteBuffer(eventBuf, eventLen);
+    if(jDirectBuffer == nullptr){
+        delete[] eventBuf;
+        env->ExceptionClear();
+        return;
+    }
+    env->CallVoidMethod(dispatch->jHandler, jniCache.eventHandlerOnEvent, jDirectBuffer, static_cast<jlong>(eventNum), static_cast<jint>(recDataId));
+    reportHandlerException(env);
+    env->DeleteLocalRef(jDirectBuffer);
+    delete[] eventBuf;
+    return;
+}
+
+// Body of the dispatch thread, it is attached to the JVM once as a daemon thread and detached when it exits
+void runEventDispatch(ReassemblerEventDispatch* dispatch){
+    JNIEnv *env = getJNIEnvForCurrentThread(dispatch->jvm);
+    if(env != nullptr){
+        std::vector<u_int8_t*> events(dispatch->maxBatch);
+        std::vector<jlong> eventNums(dispatch->maxBatch);
+        std::vector<jint> dataIds(dispatch->maxBatch);
+        while(dispatch->running.load(std::memory_order_acquire)){
+            if(dispatch->jEvents != nullptr){
+                dispatchEventBatch(env, dispatch, events, eventNums, dataIds);
+            }
+            else{
+                dispatchEvent(env, dispatch);
+            }
+        }
+    }
+    if(dispatch->selfRelease.load(std::memory_order_acquire)){
+        freeEventDispatch(env, dispatch);
+    }
+}
+
+jlong startEventDispatch(JNIEnv *env, ReassemblerEventDispatch* dispatch){
+    env->GetJavaVM(&dispatch->jvm);
+    try{
+        dispatch->thread = std::thread(runEventDispatch, dispatch);
+    }
+    catch(const std::system_error &e){
+        freeEventDispatch(env, dispatch);
+        throwJavaException(env, std::string("Could not start the event dispatch thread: ") + e.what());
+        return 0;
+    }
+    return reinterpret_cast<jlong>(dispatch);
+}
+
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Reassembler_startEventDispatch
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jobject jHandler){
+    ReassemblerEventDispatch* dispatch = new ReassemblerEventDispatch();
+    dispatch->reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
+    dispatch->jHandler = env->NewGlobalRef(jHandler);
+    return startEventDispatch(env, dispatch);
+  }
+
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Reassembler_startBatchEventDispatch
+  (JNIEnv *env, jobject jReassembler, jlong jNativeReassembler, jobject jHandler, jobjectArray jEvents, jlongArray jEventNums, jintArray jDataIds){
+    ReassemblerEventDispatch* dispatch = new ReassemblerEventDispatch();
+    dispatch->reassembler = reinterpret_cast<e2sar::Reassembler*>(jNativeReassembler);
+    dispatch->jHandler = env->NewGlobalRef(jHandler);
+    dispatch->jEvents = static_cast<jobjectArray>(env->NewGlobalRef(jEvents));
+    dispatch->jEventNums = static_cast<jlongArray>(env->NewGlobalRef(jEventNums));
+    dispatch->jDataIds = static_cast<jintArray>(env->NewGlobalRef(jDataIds));
+    dispatch->maxBatch = env->GetArrayLength(jEvents);
+    return startEventDispatch(env, dispatch);
+  }
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Reassembler_stopEventDispatch
+  (JNIEnv *env, jobject jReassembler, jlong jNativeDispatch){
+    ReassemblerEventDispatch* dispatch = reinterpret_cast<ReassemblerEventDispatch*>(jNativeDispatch);
+    if(dispatch->thread.get_id() == std::this_thread::get_id()){
+        // called from inside the handler, the thread exits once the handler returns and cleans up after itself
+        dispatch->thread.detach();
+        dispatch->selfRelease.store(true, std::memory_order_release);
+        dispatch->running.store(false, std::memory_order_release);
+        return;
+    }
+    dispatch->running.store(false, std::memory_order_release);
+    // at most eventDispatchPollMs plus the time the handler takes for the current event
+    dispatch->thread.join();
+    freeEventDispatch(env, dispatch);
+  }
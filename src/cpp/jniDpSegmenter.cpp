@@ -1,4 +1,5 @@
 #include "jniDpSegmenter.hpp"
+#include <cstring>
 
 e2sar::Segmenter::SegmenterFlags parseSegmenterFlags(JNIEnv *env, jobject jSegmenterFlags){
   e2sar::Segmenter::SegmenterFlags sFlags;
@@ -83,6 +84,48 @@ JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Segmenter_initSegmentor__Lorg_jlab_hp
     return (jlong) segmenter;
   }
 
+JNIEXPORT jlong JNICALL Java_org_jlab_hpdf_Segmenter_initSendContext
+  (JNIEnv *env, jobject jSegmenter, jint jSendQueueCapacity){
+    SegmenterSendContext* context = new SegmenterSendContext();
+    env->GetJavaVM(&context->jvm);
+    context->capacity = jSendQueueCapacity;
+    return (jlong) context;
+  }
+
+// Reserves room for one event in the bounded send queue, waiting up to waitMs for a queued event to be segmented
+bool reserveSendQueueSlot(SegmenterSendContext* context, jlong waitMs){
+  auto deadline = std::chrono::steady_clock::now() + std::chrono::milliseconds(waitMs);
+  int occupied = context->occupancy.load();
+  while(true){
+    while(occupied < context->capacity){
+      if(context->occupancy.compare_exchange_weak(occupied, occupied + 1)){
+        return true;
+      }
+    }
+    if(waitMs <= 0){
+      return false;
+    }
+    std::unique_lock<std::mutex> lock(context->notFullMutex);
+    context->waiters++;
+    bool hasRoom = context->notFull.wait_until(lock, deadline, [context]{ return context->occupancy.load() < context->capacity; });
+    context->waiters--;
+    if(!hasRoom){
+      return false;
+    }
+    occupied = context->occupancy.load();
+  }
+}
+
+// Gives back room in the bounded send queue, called once an event has been segmented or was not accepted
+void releaseSendQueueSlot(SegmenterSendContext* context){
+  context->occupancy--;
+  // only take the lock when a producer is actually blocked waiting for room
+  if(context->waiters.load() > 0){
+    std::lock_guard<std::mutex> lock(context->notFullMutex);
+    context->notFull.notify_one();
+  }
+}
+
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_openAndStart
   (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter){
     e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
@@ -93,34 +136,320 @@ JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_openAndStart
   }
 
 JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEventDirect
-  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jobject jByteBuffer, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy){
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jobject jByteBuffer, jint jOffset, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy){
     e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
     u_int8_t* event = getDirectByteBufferPointer(env, jByteBuffer);
+    if(event == nullptr){
+      return;
+    }
+
+    auto res = segmenter->sendEvent(event + jOffset, jSize, jEventNumber, jDataId, jEntropy);
+    if(res.has_error()){
+      throwJavaException(env, res.error().message());
+    }
+  }
 
-    auto res = segmenter->sendEvent(event, jSize, jEventNumber, jDataId, jEntropy);
+// sendEvent(byte[]) pins events up to this size for the send and copies larger ones, see Segmenter.sendEvent(byte[], ...)
+const jint maxPinnedEventSize = 64 * 1024;
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEvent
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jbyteArray jData, jint jOffset, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy){
+    e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
+    if(jSize > maxPinnedEventSize){
+      // the send of a large event takes long enough to stall the GC of every other thread if the array stays pinned for it,
+      // copy it into a staging buffer that is reused by every send from this thread instead
+      static thread_local std::vector<u_int8_t> stagingBuffer;
+      if(stagingBuffer.size() < (size_t) jSize){
+        stagingBuffer.resize(jSize);
+      }
+      env->GetByteArrayRegion(jData, jOffset, jSize, reinterpret_cast<jbyte*>(stagingBuffer.data()));
+      if(env->ExceptionCheck()){
+        return;
+      }
+      auto res = segmenter->sendEvent(stagingBuffer.data(), jSize, jEventNumber, jDataId, jEntropy);
+      if(res.has_error()){
+        throwJavaException(env, res.error().message());
+      }
+      return;
+    }
+    // pins the array instead of copying it, no other JNI calls may be made until it is released
+    u_int8_t* data = static_cast<u_int8_t*>(env->GetPrimitiveArrayCritical(jData, nullptr));
+    if(data == nullptr){
+      throwJavaException(env, "Could not pin event array");
+      return;
+    }
+
+    auto res = segmenter->sendEvent(data + jOffset, jSize, jEventNumber, jDataId, jEntropy);
+    // nothing was written, JNI_ABORT skips copying back if the JVM handed out a copy
+    env->ReleasePrimitiveArrayCritical(jData, data, JNI_ABORT);
     if(res.has_error()){
       throwJavaException(env, res.error().message());
     }
   }
 
-void freeGlobalByteBuffer(boost::any a){
-  std::pair<JNIEnv *, jobject> globalByteBuffer = boost::any_cast<std::pair<JNIEnv *, jobject>>(a);
-  JNIEnv *env = globalByteBuffer.first;
-  jobject jGlobalByteBuffer = globalByteBuffer.second;
-  env->DeleteGlobalRef(jGlobalByteBuffer);
+// Copies the position()..limit() bytes of every ByteBuffer in jParts back to back into dst.
+// If dst is nullptr only the total length is computed. Returns -1 if a Java exception was raised.
+jlong gatherByteBufferParts(JNIEnv *env, jobjectArray jParts, u_int8_t* dst){
+  jfieldID positionID = jniCache.bufferPosition;
+  jfieldID limitID = jniCache.bufferLimit;
+
+  jlong total = 0;
+  jsize numParts = env->GetArrayLength(jParts);
+  for(jsize i = 0; i < numParts; i++){
+    jobject jPart = env->GetObjectArrayElement(jParts, i);
+    jint position = env->GetIntField(jPart, positionID);
+    jint limit = env->GetIntField(jPart, limitID);
+    if(dst != nullptr){
+      u_int8_t* part = getDirectByteBufferPointer(env, jPart);
+      if(part == nullptr){
+        env->DeleteLocalRef(jPart);
+        return -1;
+      }
+      std::memcpy(dst + total, part + position, limit - position);
+    }
+    total += limit - position;
+    env->DeleteLocalRef(jPart);
+  }
+  return total;
 }
 
-JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirect
-  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jobject jByteBuffer, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy){
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_sendEventDirectGather
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jobjectArray jParts, jlong jEventNumber, jint jDataId, jint jEntropy){
     e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
-    u_int8_t* event = getDirectByteBufferPointer(env, jByteBuffer);
+
+    // e2sar::Segmenter segments from a contiguous buffer, so parts are gathered into a
+    // staging buffer that is reused by every send from this thread
+    static thread_local std::vector<u_int8_t> gatherBuffer;
+    jlong total = gatherByteBufferParts(env, jParts, nullptr);
+    if(total < 0){
+      return;
+    }
+    if(gatherBuffer.size() < (size_t) total){
+      gatherBuffer.resize(total);
+    }
+    if(gatherByteBufferParts(env, jParts, gatherBuffer.data()) < 0){
+      return;
+    }
+
+    auto res = segmenter->sendEvent(gatherBuffer.data(), total, jEventNumber, jDataId, jEntropy);
+    if(res.has_error()){
+      throwJavaException(env, res.error().message());
+    }
+  }
+
+void freeGatherBuffer(boost::any a){
+  QueuedGatherBuffer queued = boost::any_cast<QueuedGatherBuffer>(a);
+  delete[] queued.event;
+  releaseSendQueueSlot(queued.context);
+}
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirectGather
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jlong jNativeSendContext, jobjectArray jParts, jlong jEventNumber, jint jDataId, jint jEntropy){
+    e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+
+    jlong total = gatherByteBufferParts(env, jParts, nullptr);
+    if(total < 0){
+      return;
+    }
+    if(!reserveSendQueueSlot(context, 0)){
+      throwJavaException(env, sendQueueFullMessage);
+      return;
+    }
+    // the gathered copy is owned by the send queue and released by freeGatherBuffer once segmented
+    u_int8_t* event = new u_int8_t[total > 0 ? total : 1];
+    if(gatherByteBufferParts(env, jParts, event) < 0){
+      delete[] event;
+      releaseSendQueueSlot(context);
+      return;
+    }
+
+    auto res = segmenter->addToSendQueue(event, total, jEventNumber, jDataId, jEntropy, &freeGatherBuffer, QueuedGatherBuffer{context, event});
+    if(res.has_error()){
+      delete[] event;
+      releaseSendQueueSlot(context);
+      throwJavaException(env, res.error().message());
+    }
+  }
+
+// Runs on the e2sar::Segmenter send thread once a queued Direct ByteBuffer has been segmented
+void releaseQueuedByteBuffer(boost::any a){
+  QueuedByteBuffer queued = boost::any_cast<QueuedByteBuffer>(a);
+  releaseSendQueueSlot(queued.context);
+
+  // hand the global reference over to Java if completions are enabled and the ring has room
+  CompletionRing* completions = queued.context->completions.load(std::memory_order_acquire);
+  if(completions != nullptr && completions->bounded_push(queued.jGlobalByteBuffer)){
+    return;
+  }
+
+  JNIEnv *env = getJNIEnvForCurrentThread(queued.context->jvm);
+  if(env != nullptr){
+    env->DeleteGlobalRef(queued.jGlobalByteBuffer);
+  }
+}
+
+// Queues size bytes at event, which point into jByteBuffer, once there is room in the bounded send queue.
+// Returns false and sets error if the event was not accepted
+bool queueDirectByteBuffer(JNIEnv *env, e2sar::Segmenter* segmenter, SegmenterSendContext* context, jobject jByteBuffer, 
+  u_int8_t* event, size_t size, jlong jEventNumber, jint jDataId, jint jEntropy, jlong waitMs, std::string &error){
+    if(!reserveSendQueueSlot(context, waitMs)){
+      error = sendQueueFullMessage;
+      return false;
+    }
 
     //Need a GlobalReference so that the JVM does not deallocate this object
     jobject jGlobalByteBufferRef = env->NewGlobalRef(jByteBuffer);
-    auto res = segmenter->addToSendQueue(event, jSize, jEventNumber, jDataId, jEntropy, &freeGlobalByteBuffer, std::make_pair(env, jGlobalByteBufferRef));
+    auto res = segmenter->addToSendQueue(event, size, jEventNumber, jDataId, jEntropy, &releaseQueuedByteBuffer, QueuedByteBuffer{context, jGlobalByteBufferRef});
     if(res.has_error()){
-      throwJavaException(env, res.error().message());
+      // the queue did not take ownership, so the callback will never release this reference or slot
+      env->DeleteGlobalRef(jGlobalByteBufferRef);
+      releaseSendQueueSlot(context);
+      error = res.error().message();
+      return false;
+    }
+    return true;
+}
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirect
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jlong jNativeSendContext, jobject jByteBuffer, jint jOffset, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy){
+    e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    u_int8_t* event = getDirectByteBufferPointer(env, jByteBuffer);
+    if(event == nullptr){
+      return;
+    }
+
+    std::string error;
+    if(!queueDirectByteBuffer(env, segmenter, context, jByteBuffer, event + jOffset, jSize, jEventNumber, jDataId, jEntropy, 0, error)){
+      throwJavaException(env, error);
+    }
+  }
+
+JNIEXPORT jboolean JNICALL Java_org_jlab_hpdf_Segmenter_offerToSendQueueDirect
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jlong jNativeSendContext, jobject jByteBuffer, jint jOffset, jint jSize, jlong jEventNumber, jint jDataId, jint jEntropy, jlong jTimeoutMs){
+    e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    u_int8_t* event = getDirectByteBufferPointer(env, jByteBuffer);
+    if(event == nullptr){
+      return JNI_FALSE;
+    }
+
+    std::string error;
+    if(queueDirectByteBuffer(env, segmenter, context, jByteBuffer, event + jOffset, jSize, jEventNumber, jDataId, jEntropy, jTimeoutMs, error)){
+      return JNI_TRUE;
+    }
+    // only a full queue is reported as false, anything addToSendQueue rejected is an error the caller must not retry
+    if(error != sendQueueFullMessage){
+      throwJavaException(env, error);
+    }
+    return JNI_FALSE;
+  }
+
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_addToSendQueueDirectBatch
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter, jlong jNativeSendContext, jobjectArray jByteBuffers, jintArray jOffsets, jintArray jLengths, jlongArray jEventNumbers, jintArray jDataIds, jintArray jEntropies, jint jCount){
+    e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+
+    // copy the primitive arrays out once rather than crossing back into the JVM per element
+    // null offsets/lengths mean each event is the whole buffer
+    bool useRegions = jOffsets != nullptr && jLengths != nullptr;
+    std::vector<jint> offsets(useRegions ? jCount : 0);
+    std::vector<jint> lengths(useRegions ? jCount : 0);
+    std::vector<jlong> eventNumbers(jCount);
+    std::vector<jint> dataIds(jCount);
+    std::vector<jint> entropies(jCount);
+    if(useRegions){
+      env->GetIntArrayRegion(jOffsets, 0, jCount, offsets.data());
+      env->GetIntArrayRegion(jLengths, 0, jCount, lengths.data());
+    }
+    env->GetLongArrayRegion(jEventNumbers, 0, jCount, eventNumbers.data());
+    env->GetIntArrayRegion(jDataIds, 0, jCount, dataIds.data());
+    env->GetIntArrayRegion(jEntropies, 0, jCount, entropies.data());
+
+    jint accepted = 0;
+    for(; accepted < jCount; accepted++){
+      jobject jByteBuffer = env->GetObjectArrayElement(jByteBuffers, accepted);
+      u_int8_t* event = getDirectByteBufferPointer(env, jByteBuffer);
+      if(event == nullptr){
+        env->DeleteLocalRef(jByteBuffer);
+        break;
+      }
+      size_t size = (size_t) env->GetDirectBufferCapacity(jByteBuffer);
+      if(useRegions){
+        event += offsets[accepted];
+        size = (size_t) lengths[accepted];
+      }
+
+      std::string error;
+      bool queued = queueDirectByteBuffer(env, segmenter, context, jByteBuffer, event, size, eventNumbers[accepted], dataIds[accepted], entropies[accepted], 0, error);
+      env->DeleteLocalRef(jByteBuffer);
+      if(!queued){
+        // a full queue ends the batch, anything addToSendQueue rejected is an error the caller must not retry
+        if(error != sendQueueFullMessage){
+          throwJavaException(env, "Event " + std::to_string(accepted) + " of the batch could not be queued, the events before it were: " + error);
+        }
+        break;
+      }
     }
+    return accepted;
+  }
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_enableSendCompletions
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext, jint jCapacity){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    // two concurrent calls must not both install a ring, the one losing the exchange frees its own
+    CompletionRing* ring = new CompletionRing(jCapacity);
+    CompletionRing* expected = nullptr;
+    if(!context->completions.compare_exchange_strong(expected, ring, std::memory_order_acq_rel)){
+      delete ring;
+      throwJavaException(env, "Send completions are already enabled");
+    }
+  }
+
+JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_Segmenter_pollCompletedBuffer
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    CompletionRing* completions = context->completions.load(std::memory_order_acquire);
+
+    jobject jGlobalByteBufferRef;
+    if(completions == nullptr || !completions->pop(jGlobalByteBufferRef)){
+      return nullptr;
+    }
+    jobject jByteBuffer = env->NewLocalRef(jGlobalByteBufferRef);
+    env->DeleteGlobalRef(jGlobalByteBufferRef);
+    return jByteBuffer;
+  }
+
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_drainCompletedBuffers
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext, jobjectArray jByteBuffers){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    CompletionRing* completions = context->completions.load(std::memory_order_acquire);
+    if(completions == nullptr){
+      return 0;
+    }
+
+    jsize maxBuffers = env->GetArrayLength(jByteBuffers);
+    jint drained = 0;
+    jobject jGlobalByteBufferRef;
+    while(drained < maxBuffers && completions->pop(jGlobalByteBufferRef)){
+      // the array now holds the buffer, the global reference is no longer needed
+      env->SetObjectArrayElement(jByteBuffers, drained++, jGlobalByteBufferRef);
+      env->DeleteGlobalRef(jGlobalByteBufferRef);
+    }
+    return drained;
+  }
+
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_getSendQueueCapacity
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    return context->capacity;
+  }
+
+JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_getSendQueueOccupancy
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    return context->occupancy.load(std::memory_order_relaxed);
   }
 
 JNIEXPORT jint JNICALL Java_org_jlab_hpdf_Segmenter_getMTU
@@ -143,18 +472,7 @@ jobject convertToJSyncStats(JNIEnv *env, boost::tuple<u_int64_t, u_int64_t, int>
   jlong syncErrCount = static_cast<jlong>(boost::get<1>(syncStats));
   jint lastErrorNo = static_cast<jint>(boost::get<2>(syncStats));
 
-  jclass jSyncStatsClass = env->FindClass(javaSyncStatsClass.data());
-  if (jSyncStatsClass == nullptr) {
-    throwJavaException(env, "Could not find class: " + javaSyncStatsClass);
-    return nullptr;
-  }
-
-  jmethodID constructor = env->GetMethodID(jSyncStatsClass, "<init>", "(JJI)V");
-  if (constructor == nullptr) {
-    throwJavaException(env, "Could not find the constructor of class: " + javaSyncStatsClass);
-    return nullptr;
-  }
-  jobject jSyncStatsObject = env->NewObject(jSyncStatsClass, constructor, jSyncMsgCount, syncErrCount, lastErrorNo);
+  jobject jSyncStatsObject = env->NewObject(jniCache.syncStatsClass, jniCache.syncStatsInit, jSyncMsgCount, syncErrCount, lastErrorNo);
 
   return jSyncStatsObject;
 }
@@ -171,18 +489,7 @@ jobject convertToJSendStats(JNIEnv *env, boost::tuple<u_int64_t, u_int64_t, int>
   jlong jEventDatagramErrCount = static_cast<jlong>(boost::get<1>(syncStats));
   jint jLastErrNo = static_cast<jint>(boost::get<2>(syncStats));
 
-  jclass jSendStatsClass = env->FindClass(javaSendStatsClass.data());
-  if (jSendStatsClass == nullptr) {
-    throwJavaException(env, "Could not find class: " + javaSendStatsClass);
-    return nullptr;
-  }
-
-  jmethodID constructor = env->GetMethodID(jSendStatsClass, "<init>", "(JJI)V");
-  if (constructor == nullptr) {
-    throwJavaException(env, "Could not find the constructor of class: " + javaSendStatsClass);
-    return nullptr;
-  }
-  jobject jSyncStatsObject = env->NewObject(jSendStatsClass, constructor, jEventDatagramCount, jEventDatagramErrCount, jLastErrNo);
+  jobject jSyncStatsObject = env->NewObject(jniCache.sendStatsClass, jniCache.sendStatsInit, jEventDatagramCount, jEventDatagramErrCount, jLastErrNo);
 
   return jSyncStatsObject;
 }
@@ -199,4 +506,18 @@ JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_freeNativePointer
   (JNIEnv *env, jobject jSegmenter, jlong jNativeSegmenter){
     e2sar::Segmenter* segmenter = reinterpret_cast<e2sar::Segmenter*>(jNativeSegmenter);
     delete segmenter;
-  }
\ No newline at end of file
+  }
+
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_Segmenter_freeSendContext
+  (JNIEnv *env, jobject jSegmenter, jlong jNativeSendContext){
+    SegmenterSendContext* context = reinterpret_cast<SegmenterSendContext*>(jNativeSendContext);
+    CompletionRing* completions = context->completions.load();
+    if(completions != nullptr){
+      jobject jGlobalByteBufferRef;
+      while(completions->pop(jGlobalByteBufferRef)){
+        env->DeleteGlobalRef(jGlobalByteBufferRef);
+      }
+      delete completions;
+    }
+    delete context;
+  }
@@ -25,7 +25,7 @@ grpc::SslCredentialsOptions parseSslCredemtialOptions(JNIEnv *env, jobjectArray
 }
 
 e2sar::LBManager* getLBManagerFromField(JNIEnv *env, jobject jLbManager){
-  e2sar::LBManager* lbman = reinterpret_cast<e2sar::LBManager*>(getLongField(env,jLbManager,nativeLbField.data()));
+  e2sar::LBManager* lbman = reinterpret_cast<e2sar::LBManager*>(env->GetLongField(jLbManager, jniCache.lbManagerNative));
   return lbman;
 }
 
@@ -111,17 +111,7 @@ jobject convertToJWorkerStatus(JNIEnv *env, WorkerStatus wstatus){
   jint jSlotsAssigned = static_cast<jint>(wstatus.slotsassigned());
   jobject jLastUpdated = convertTimestampToInstant(env, wstatus.lastupdated());
 
-  jclass jWorkerStatusClass = env->FindClass(javaWorkerStatusClass.data());
-    if (jWorkerStatusClass == nullptr) {
-        throwJavaException(env, "Could not find class: " + javaWorkerStatusClass);
-    }
-
-    jmethodID constructor = env->GetMethodID(jWorkerStatusClass, "<init>", "(Ljava/lang/String;FFILjava/time/Instant;)V");
-    if (constructor == nullptr) {
-      throwJavaException(env, "Could not find the constructor of class: " + javaWorkerStatusClass);
-        return nullptr;
-    }
-    jobject myObject = env->NewObject(jWorkerStatusClass, constructor, jName, jFillPercent, jControlSignal, jSlotsAssigned, jLastUpdated);
+    jobject myObject = env->NewObject(jniCache.workerStatusClass, jniCache.workerStatusInit, jName, jFillPercent, jControlSignal, jSlotsAssigned, jLastUpdated);
 
     env->DeleteLocalRef(jName);
     env->DeleteLocalRef(jLastUpdated);
@@ -143,18 +133,7 @@ jobject convertToJLBStatus(JNIEnv *env, e2sar::LBStatus lbstatus){
 
   jobject jWorkerArrayList = convertJobjectVectorToArrayList(env, jWorkerVec);
 
-  jclass jLBStatusClass = env->FindClass(javaLBStatusClass.data());
-  if (jLBStatusClass == nullptr) {
-      throwJavaException(env, "Could not find class: " + javaWorkerStatusClass);
-      return nullptr;
-  }
-
-  jmethodID constructor = env->GetMethodID(jLBStatusClass, "<init>", "(Ljava/time/Instant;Ljava/time/Instant;JJLjava/util/List;Ljava/util/List;)V");
-  if (constructor == nullptr) {
-      throwJavaException(env, "Could not find the constructor of class: " + javaWorkerStatusClass);
-      return nullptr;
-  }
-  jobject myObject = env->NewObject(jLBStatusClass, constructor, jInstantTimestamp, jExpiresAt, jCurrentEpoch, jCurrentPredictedEventNumber, jWorkerArrayList, jSenderAddresses);
+  jobject myObject = env->NewObject(jniCache.lbStatusClass, jniCache.lbStatusInit, jInstantTimestamp, jExpiresAt, jCurrentEpoch, jCurrentPredictedEventNumber, jWorkerArrayList, jSenderAddresses);
 
   env->DeleteLocalRef(jInstantTimestamp);
   env->DeleteLocalRef(jExpiresAt);
@@ -207,23 +186,10 @@ JNIEXPORT jobject JNICALL Java_org_jlab_hpdf_LbManager_getStatus__JLjava_lang_St
     jint jFpgaLbid = overviewEntry.fpgaLBId;
     jobject jLBStatus = convertToJLBStatus(env, overviewEntry.status);
 
-    jclass jOverviewClass = env->FindClass(javaLBOverviewClass.data());
-    if (jOverviewClass == nullptr) {
-        throwJavaException(env, "Could not find class: " + javaLBOverviewClass);
-        return nullptr;
-    }
-
-    // Step 2: Get the constructor ID with the specified signature
-    jmethodID constructor = env->GetMethodID(jOverviewClass, "<init>", "(Ljava/lang/String;Ljava/lang/String;Ljava/net/InetSocketAddress;Ljava/net/InetAddress;Ljava/net/InetAddress;ILorg/jlab/hpdf/messages/LBStatus;)V");
-    if (constructor == nullptr) {
-        throwJavaException(env, "Could not find the constructor of class: " + javaLBOverviewClass);
-        return nullptr;
-    }
-
-    // Step 4: Create the Java object using the constructor
+    // Create the Java object using the cached constructor
     jobject jLBOveriew = env->NewObject(
-        jOverviewClass,
-        constructor,
+        jniCache.lbOverviewClass,
+        jniCache.lbOverviewInit,
         jName,
         jLbid,
         jSyncAndPort,
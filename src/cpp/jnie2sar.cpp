@@ -1,4 +1,7 @@
 #include "jnie2sar.hpp"
+#include <sched.h>
+#include <cerrno>
+#include <cstring>
 
 
 /*
@@ -21,6 +24,49 @@ JNIEXPORT jstring JNICALL Java_org_jlab_hpdf_E2sarUtil_getE2sarVersion
       return env->NewStringUTF(e2sar::get_Version().data());
   }
 
+// sched_setaffinity with pid 0 applies to the calling thread only, which is the Java thread making the call
+JNIEXPORT void JNICALL Java_org_jlab_hpdf_E2sarUtil_setCurrentThreadAffinity
+  (JNIEnv *env, jclass jCallObj, jintArray jCpus){
+    jsize length = env->GetArrayLength(jCpus);
+    std::vector<jint> cpus(length);
+    env->GetIntArrayRegion(jCpus, 0, length, cpus.data());
+
+    cpu_set_t cpuSet;
+    CPU_ZERO(&cpuSet);
+    for(jint cpu : cpus){
+      if(cpu < 0 || cpu >= CPU_SETSIZE){
+        throwJavaException(env, "cpu " + std::to_string(cpu) + " is out of range");
+        return;
+      }
+      CPU_SET(cpu, &cpuSet);
+    }
+    if(sched_setaffinity(0, sizeof(cpuSet), &cpuSet) != 0){
+      throwJavaException(env, std::string("sched_setaffinity failed: ") + strerror(errno));
+    }
+  }
+
+JNIEXPORT jintArray JNICALL Java_org_jlab_hpdf_E2sarUtil_getCurrentThreadAffinity
+  (JNIEnv *env, jclass jCallObj){
+    cpu_set_t cpuSet;
+    CPU_ZERO(&cpuSet);
+    if(sched_getaffinity(0, sizeof(cpuSet), &cpuSet) != 0){
+      throwJavaException(env, std::string("sched_getaffinity failed: ") + strerror(errno));
+      return nullptr;
+    }
+    std::vector<jint> cpus;
+    for(int cpu = 0; cpu < CPU_SETSIZE; cpu++){
+      if(CPU_ISSET(cpu, &cpuSet)){
+        cpus.push_back(cpu);
+      }
+    }
+    jintArray jCpus = env->NewIntArray(cpus.size());
+    if(jCpus == nullptr){
+      return nullptr;
+    }
+    env->SetIntArrayRegion(jCpus, 0, cpus.size(), cpus.data());
+    return jCpus;
+  }
+
 
 
 
@@ -1,7 +1,7 @@
 #include "jnie2sarEjfatUri.hpp"
 
 e2sar::EjfatURI* getEjfatUriFromField(JNIEnv *env, jobject jEjfatUri){
-  e2sar::EjfatURI* ejfatUri = reinterpret_cast<e2sar::EjfatURI*>(getLongField(env, jEjfatUri, nativeEjfatUri.data()));
+  e2sar::EjfatURI* ejfatUri = reinterpret_cast<e2sar::EjfatURI*>(env->GetLongField(jEjfatUri, jniCache.ejfatUriNative));
   return ejfatUri;
 }
 
@@ -160,7 +160,7 @@ long getLongField(JNIEnv *env, jobject javaObject, const char* fieldName){
 }
 
 void throwJavaException(JNIEnv *env, std::string message){
-    jclass newExcCls = env->FindClass(javaExceptionClass.data());
+    jclass newExcCls = jniCache.exceptionClass;
     if (newExcCls != NULL)
         env->ThrowNew(newExcCls, message.data());
     else{
@@ -172,13 +172,9 @@ void throwJavaException(JNIEnv *env, std::string message){
 std::vector<std::string> jstringList2Vector(JNIEnv *env, jobject javaList){
     std::vector<std::string> stringVector;
 
-    // Get the List and Iterator classes and their methods
-    jclass listClass = env->FindClass("java/util/List");
-    jmethodID iteratorMethodID = env->GetMethodID(listClass, "iterator", "()Ljava/util/Iterator;");
-
-    jclass iteratorClass = env->FindClass("java/util/Iterator");
-    jmethodID hasNextMethodID = env->GetMethodID(iteratorClass, "hasNext", "()Z");
-    jmethodID nextMethodID = env->GetMethodID(iteratorClass, "next", "()Ljava/lang/Object;");
+    jmethodID iteratorMethodID = jniCache.listIterator;
+    jmethodID hasNextMethodID = jniCache.iteratorHasNext;
+    jmethodID nextMethodID = jniCache.iteratorNext;
 
     // Get the iterator for the Java list
     jobject iterator = env->CallObjectMethod(javaList, iteratorMethodID);
@@ -209,20 +205,14 @@ std::vector<std::string> jstringList2Vector(JNIEnv *env, jobject javaList){
 std::vector<int> jIntList2Vector(JNIEnv *env, jobject javaList){
     std::vector<int> intVector;
 
-    // Get the List and Iterator classes and their methods
-    jclass listClass = env->FindClass("java/util/List");
-    jmethodID iteratorMethodID = env->GetMethodID(listClass, "iterator", "()Ljava/util/Iterator;");
-
-    jclass iteratorClass = env->FindClass("java/util/Iterator");
-    jmethodID hasNextMethodID = env->GetMethodID(iteratorClass, "hasNext", "()Z");
-    jmethodID nextMethodID = env->GetMethodID(iteratorClass, "next", "()Ljava/lang/Object;");
+    jmethodID iteratorMethodID = jniCache.listIterator;
+    jmethodID hasNextMethodID = jniCache.iteratorHasNext;
+    jmethodID nextMethodID = jniCache.iteratorNext;
 
     // Get the iterator for the Java list
     jobject iterator = env->CallObjectMethod(javaList, iteratorMethodID);
 
-    // Get Integer class and intValue() method
-    jclass integerClass = env->FindClass("java/lang/Integer");
-    jmethodID intValueMethod = env->GetMethodID(integerClass, "intValue", "()I");
+    jmethodID intValueMethod = jniCache.integerIntValue;
 
     // Loop through the iterator
     while (env->CallBooleanMethod(iterator, hasNextMethodID)) {
@@ -246,36 +236,19 @@ jobject convertTimestampToInstant(JNIEnv *env, const google::protobuf::Timestamp
     int64_t seconds = timestamp.seconds();
     int32_t nanos = timestamp.nanos();
 
-    // Find the Instant class and method ID for ofEpochSecond
-    jclass instantClass = env->FindClass(javaInstantClass.data());
-    if (instantClass == nullptr) {
-        throwJavaException(env, "Could not find " +  javaInstantClass);
-        return nullptr;
-    }
-
-    jmethodID ofEpochSecondMethod = env->GetStaticMethodID(instantClass, "ofEpochSecond", "(JJ)Ljava/time/Instant;");
-    if (ofEpochSecondMethod == nullptr) {
-        throwJavaException(env, "Could not find ofEpochSecond method in java.time.Instant class" );
-        return nullptr;
-    }
-
     // Call Instant.ofEpochSecond with seconds and nanoseconds
-    jobject instantObject = env->CallStaticObjectMethod(instantClass, ofEpochSecondMethod, static_cast<jlong>(seconds), static_cast<jlong>(nanos));
+    jobject instantObject = env->CallStaticObjectMethod(jniCache.instantClass, jniCache.instantOfEpochSecond, static_cast<jlong>(seconds), static_cast<jlong>(nanos));
 
     // Return the Instant object
     return instantObject;
 }
 
 google::protobuf::Timestamp convertInstantToTimestamp(JNIEnv *env, jobject jInstant){
-    jclass instantClass = env->GetObjectClass(jInstant);
-
     // Get the seconds from Instant
-    jmethodID getEpochSecondMethod = env->GetMethodID(instantClass, "getEpochSecond", "()J");
-    jlong seconds = env->CallLongMethod(jInstant, getEpochSecondMethod);
+    jlong seconds = env->CallLongMethod(jInstant, jniCache.instantGetEpochSecond);
 
     // Get the nanoseconds from Instant
-    jmethodID getNanoMethod = env->GetMethodID(instantClass, "getNano", "()I");
-    jint nanos = env->CallIntMethod(jInstant, getNanoMethod);
+    jint nanos = env->CallIntMethod(jInstant, jniCache.instantGetNano);
 
     // Convert to google::protobuf::Timestamp
     google::protobuf::Timestamp timestamp;
@@ -286,36 +259,16 @@ google::protobuf::Timestamp convertInstantToTimestamp(JNIEnv *env, jobject jInst
 }
 
 jobject convertJobjectVectorToArrayList(JNIEnv *env, const std::vector<jobject> &jVec){
-    // Find the ArrayList class and its constructor
-    jclass arrayListClass = env->FindClass(javaArrayListClass.data());
-    if (arrayListClass == nullptr) {
-        throwJavaException(env, "Error: Could not find ArrayList class.");
-        return nullptr;
-    }
-
-    jmethodID arrayListConstructor = env->GetMethodID(arrayListClass, "<init>", "()V");
-    if (arrayListConstructor == nullptr) {
-        throwJavaException(env, "Error: Could not find ArrayList constructor.");
-        return nullptr;
-    }
-
     // Create a new ArrayList instance
-    jobject arrayList = env->NewObject(arrayListClass, arrayListConstructor);
+    jobject arrayList = env->NewObject(jniCache.arrayListClass, jniCache.arrayListInit);
     if (arrayList == nullptr) {
         throwJavaException(env, "Error: Could not find ArrayList instance.");
         return nullptr;
     }
 
-    // Get the add method ID for ArrayList
-    jmethodID arrayListAddMethod = env->GetMethodID(arrayListClass, "add", "(Ljava/lang/Object;)Z");
-    if (arrayListAddMethod == nullptr) {
-        throwJavaException(env, "Error: Could not find ArrayList add method.");
-        return nullptr;
-    }
-    
     // Add each jobject to the ArrayList
     for (const jobject &javaObject : jVec) {
-        env->CallBooleanMethod(arrayList, arrayListAddMethod, javaObject);
+        env->CallBooleanMethod(arrayList, jniCache.arrayListAdd, javaObject);
         env->DeleteLocalRef(javaObject);  // Release local reference after adding to ArrayList
     }
 
@@ -345,7 +298,7 @@ jobject convertIntVectorToArrayList(JNIEnv *env, const std::vector<int> &vec){
     std::vector<jobject> jObjectVec;
 
     for(const int& value : vec){
-        jobject integerObj = env->NewObject(env->FindClass("java/lang/Integer"), env->GetMethodID(env->FindClass("java/lang/Integer"), "<init>", "(I)V"), value);
+        jobject integerObj = env->NewObject(jniCache.integerClass, jniCache.integerInit, value);
         jObjectVec.push_back(integerObj);
     }
     jobject jArrayList = convertJobjectVectorToArrayList(env, jObjectVec);
@@ -363,24 +316,8 @@ jobject convertBoostIpToInetAddress(JNIEnv *env, const boost::asio::ip::address
 
     jstring jIpStr = env->NewStringUTF(ipStr.c_str());
 
-    // Step 3: Find the InetAddress class
-    jclass jInetAddressClass = env->FindClass(javaInetAddressClass.data());
-    if (jInetAddressClass == nullptr) {
-        throwJavaException(env, "Error: Could not find java.net.InetAddress class.");
-        env->DeleteLocalRef(jIpStr);
-        return nullptr;
-    }
-
-    // Step 4: Get the method ID for InetAddress.getByName(String)
-    jmethodID getByNameMethod = env->GetStaticMethodID(jInetAddressClass, "getByName", "(Ljava/lang/String;)Ljava/net/InetAddress;");
-    if (getByNameMethod == nullptr) {
-        throwJavaException(env, "Error: Could not find InetAddress.getByName method.");
-        env->DeleteLocalRef(jIpStr);
-        return nullptr;
-    }
-
-    // Step 5: Call InetAddress.getByName with the IP string to create the InetAddress object
-    jobject jInetAddress = env->CallStaticObjectMethod(jInetAddressClass, getByNameMethod, jIpStr);
+    // Step 3: Call InetAddress.getByName with the IP string to create the InetAddress object
+    jobject jInetAddress = env->CallStaticObjectMethod(jniCache.inetAddressClass, jniCache.inetAddressGetByName, jIpStr);
 
     // Clean up local references
     env->DeleteLocalRef(jIpStr);
@@ -395,24 +332,8 @@ jobject convertBoostIpAndPortToInetSocketAddress(JNIEnv *env, const boost::asio:
     // Step 2: Convert std::string to jstring
     jstring jIpStr = env->NewStringUTF(ipStr.c_str());
 
-    // Step 3: Find the InetSocketAddress class
-    jclass inetSocketAddressClass = env->FindClass(javaInetSocketAddressClass.data());
-    if (inetSocketAddressClass == nullptr) {
-        throwJavaException(env, "Error: Could not find java.net.InetSocketAddress class.");
-        env->DeleteLocalRef(jIpStr);
-        return nullptr;
-    }
-
-    // Step 4: Get the constructor ID for InetSocketAddress(String, int)
-    jmethodID inetSocketAddressConstructor = env->GetMethodID(inetSocketAddressClass, "<init>", "(Ljava/lang/String;I)V");
-    if (inetSocketAddressConstructor == nullptr) {
-        throwJavaException(env, "Error: Could not find InetSocketAddress constructor." );
-        env->DeleteLocalRef(jIpStr);
-        return nullptr;
-    }
-
-    // Step 5: Create the InetSocketAddress object using the constructor
-    jobject inetSocketAddress = env->NewObject(inetSocketAddressClass, inetSocketAddressConstructor, jIpStr, port);
+    // Step 3: Create the InetSocketAddress object using the InetSocketAddress(String, int) constructor
+    jobject inetSocketAddress = env->NewObject(jniCache.inetSocketAddressClass, jniCache.inetSocketAddressInit, jIpStr, port);
 
     // Clean up local references
     env->DeleteLocalRef(jIpStr);
@@ -427,37 +348,16 @@ jobject convertHostNameAndPortToInetSocketAddress(JNIEnv *env, std::pair<std::st
 
     int port = cpHost.second;
 
-    // Step 3: Find the InetSocketAddress class
-    jclass inetSocketAddressClass = env->FindClass(javaInetSocketAddressClass.data());
-    if (inetSocketAddressClass == nullptr) {
-        throwJavaException(env, "Error: Could not find java.net.InetSocketAddress class.");
-        env->DeleteLocalRef(jHostName);
-    }
-
-    jmethodID inetSocketAddressConstructor = env->GetMethodID(inetSocketAddressClass, "<init>", "(Ljava/lang/String;I)V");
-    if (inetSocketAddressConstructor == nullptr) {
-        throwJavaException(env, "Error: Could not find InetSocketAddress constructor." );
-        env->DeleteLocalRef(jHostName);
-        return nullptr;
-    }
-
-    jobject inetSocketAddress = env->NewObject(inetSocketAddressClass, inetSocketAddressConstructor, jHostName, port);
+    jobject inetSocketAddress = env->NewObject(jniCache.inetSocketAddressClass, jniCache.inetSocketAddressInit, jHostName, port);
     env->DeleteLocalRef(jHostName);
 
     return inetSocketAddress;
 }
 
 std::pair<boost::asio::ip::address, u_int16_t> convertInetSocketAddress(JNIEnv* env, jobject inetSocketAddress) {
-    // Step 1: Get the InetSocketAddress class and methods
-    jclass inetSocketAddressClass = env->GetObjectClass(inetSocketAddress);
-
-    // Get IP address as a string using getAddress().getHostAddress()
-    jmethodID getAddressMethod = env->GetMethodID(inetSocketAddressClass, "getAddress", "()Ljava/net/InetAddress;");
-    jobject inetAddress = env->CallObjectMethod(inetSocketAddress, getAddressMethod);
-
-    jclass inetAddressClass = env->GetObjectClass(inetAddress);
-    jmethodID getHostAddressMethod = env->GetMethodID(inetAddressClass, "getHostAddress", "()Ljava/lang/String;");
-    jstring ipAddressString = (jstring)env->CallObjectMethod(inetAddress, getHostAddressMethod);
+    // Step 1: Get IP address as a string using getAddress().getHostAddress()
+    jobject inetAddress = env->CallObjectMethod(inetSocketAddress, jniCache.inetSocketAddressGetAddress);
+    jstring ipAddressString = (jstring)env->CallObjectMethod(inetAddress, jniCache.inetAddressGetHostAddress);
 
     // Convert the Java IP address string to a C++ std::string
     const char* ipAddressChars = env->GetStringUTFChars(ipAddressString, nullptr);
@@ -465,8 +365,7 @@ std::pair<boost::asio::ip::address, u_int16_t> convertInetSocketAddress(JNIEnv*
     env->ReleaseStringUTFChars(ipAddressString, ipAddressChars);
 
     // Get the port number from InetSocketAddress
-    jmethodID getPortMethod = env->GetMethodID(inetSocketAddressClass, "getPort", "()I");
-    jint port = env->CallIntMethod(inetSocketAddress, getPortMethod);
+    jint port = env->CallIntMethod(inetSocketAddress, jniCache.inetSocketAddressGetPort);
 
     // Step 2: Convert IP address string to boost::asio::ip::address
     boost::asio::ip::address boostAddress = boost::asio::ip::make_address(ipAddress);
@@ -487,19 +386,34 @@ u_int8_t* getDirectByteBufferPointer(JNIEnv* env, jobject jByteBuffer){
     return (u_int8_t*) ptr;
 }
 
-std::optional<boost::asio::ip::address> convertInetAddressToBoostIp(JNIEnv* env, jobject inetAddressObj){
-    // Get the InetAddress class
-    jclass inetAddressClass = env->GetObjectClass(inetAddressObj);
-
-    // Get the method ID for getAddress()
-    jmethodID getAddressMethod = env->GetMethodID(inetAddressClass, "getAddress", "()[B");
-    if (!getAddressMethod) {
-        throwJavaException(env, "Failed to find InetAddress.getAddress() method");
-        return std::nullopt;
+// Detaches a native thread that was attached by getJNIEnvForCurrentThread when that thread exits
+struct JvmThreadDetacher {
+    JavaVM* jvm;
+    ~JvmThreadDetacher(){
+        jvm->DetachCurrentThread();
     }
+};
+
+JNIEnv* getJNIEnvForCurrentThread(JavaVM* jvm){
+    // A JNIEnv is only valid on the thread it belongs to, so threads created by e2sar
+    // (e.g. the Segmenter send thread) have to be attached before they can call into the JVM
+    JNIEnv* env = nullptr;
+    jint res = jvm->GetEnv((void**) &env, JNI_VERSION_1_8);
+    if(res == JNI_OK){
+        return env;
+    }
+    if(res != JNI_EDETACHED || jvm->AttachCurrentThreadAsDaemon((void**) &env, nullptr) != JNI_OK){
+        std::cout << "Could not attach native thread to the JVM" << std::endl;
+        return nullptr;
+    }
+    // attach once per thread and stay attached until the thread exits
+    thread_local JvmThreadDetacher detacher{jvm};
+    return env;
+}
 
+std::optional<boost::asio::ip::address> convertInetAddressToBoostIp(JNIEnv* env, jobject inetAddressObj){
     // Call getAddress() and get the byte array
-    jbyteArray addressBytes = (jbyteArray)env->CallObjectMethod(inetAddressObj, getAddressMethod);
+    jbyteArray addressBytes = (jbyteArray)env->CallObjectMethod(inetAddressObj, jniCache.inetAddressGetAddress);
     if (!addressBytes) {
         throwJavaException(env, "Failed to get address bytes from InetAddress");
         return std::nullopt;
@@ -0,0 +1,214 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.CorePlan;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CPU and NUMA layout of a Linux host read from sysfs: the cpus of each node in /sys/devices/system/node, the hyperthread siblings of
+ * each cpu in /sys/devices/system/cpu and the node of a NIC in /sys/class/net/&lt;interface&gt;/device/numa_node. plan() proposes
+ * the cpuCoreList for a Reassembler and cores for the consumer threads on the node of the receiving NIC, so packets, receive buffers and
+ * consumers stay on one socket. Consumer threads pin themselves to their core with E2sarUtil.pinCurrentThread().
+ * <p>
+ * Hosts without NUMA support in the kernel are read as a single node 0 holding all online cpus.
+ */
+public final class CpuTopology {
+
+    private static final Path SYSFS = Paths.get("/sys");
+
+    private final Path sysfs;
+    private final TreeMap<Integer, int[]> nodeCpus;
+    private final Map<Integer, int[]> siblings = new TreeMap<>();
+
+    private CpuTopology(Path sysfs, TreeMap<Integer, int[]> nodeCpus){
+        this.sysfs = sysfs;
+        this.nodeCpus = nodeCpus;
+    }
+
+    /**
+     * Read the topology of this host from /sys
+     * @return CpuTopology instance
+     * @throws E2sarNativeException - If neither the nodes nor the online cpus could be read
+     */
+    public static CpuTopology read() throws E2sarNativeException{
+        return read(SYSFS);
+    }
+
+    /**
+     * Read the topology from a copy of the sysfs tree
+     * @param sysfs - directory laid out like /sys
+     * @return CpuTopology instance
+     * @throws E2sarNativeException - If neither the nodes nor the online cpus could be read
+     */
+    public static CpuTopology read(Path sysfs) throws E2sarNativeException{
+        TreeMap<Integer, int[]> nodeCpus = new TreeMap<>();
+        Path nodes = sysfs.resolve("devices/system/node");
+        if(Files.isDirectory(nodes)){
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(nodes, "node[0-9]*")){
+                for(Path node : stream){
+                    int[] cpus = readCpuList(node.resolve("cpulist"));
+                    // memory only nodes have no cpus
+                    if(cpus != null && cpus.length > 0){
+                        nodeCpus.put(Integer.parseInt(node.getFileName().toString().substring(4)), cpus);
+                    }
+                }
+            }
+            catch(IOException | NumberFormatException e){
+                throw new E2sarNativeException("Could not read " + nodes + ": " + e.getMessage());
+            }
+        }
+        if(nodeCpus.isEmpty()){
+            int[] online = readCpuList(sysfs.resolve("devices/system/cpu/online"));
+            if(online == null || online.length == 0){
+                throw new E2sarNativeException("Could not read the NUMA nodes or online cpus from " + sysfs);
+            }
+            nodeCpus.put(0, online);
+        }
+        return new CpuTopology(sysfs, nodeCpus);
+    }
+
+    // "0-3,8,10-11" as written by the kernel for cpu masks, null if the file cannot be read
+    private static int[] readCpuList(Path path) throws E2sarNativeException{
+        String list;
+        try{
+            list = Files.readString(path, StandardCharsets.US_ASCII).trim();
+        }
+        catch(IOException e){
+            return null;
+        }
+        BitSet cpus = new BitSet();
+        try{
+            for(String range : list.split(",")){
+                if(range.isEmpty()){
+                    continue;
+                }
+                int dash = range.indexOf('-');
+                int first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+                int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1));
+                cpus.set(first, last + 1);
+            }
+        }
+        catch(NumberFormatException | IndexOutOfBoundsException e){
+            throw new E2sarNativeException("Malformed cpu list \"" + list + "\" in " + path);
+        }
+        return cpus.stream().toArray();
+    }
+
+    /**
+     * @return ids of the nodes that have cpus in ascending order
+     */
+    public int[] getNodes(){
+        return nodeCpus.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param node - node id
+     * @return cpus of node in ascending order, empty if there is no such node
+     */
+    public int[] getCpus(int node){
+        int[] cpus = nodeCpus.get(node);
+        return cpus == null ? new int[0] : cpus.clone();
+    }
+
+    /**
+     * @param cpu - cpu id
+     * @return hyperthreads sharing a physical core with cpu, cpu included, in ascending order. Only cpu if the siblings are unknown
+     * @throws E2sarNativeException - If the sibling list is malformed
+     */
+    public synchronized int[] getSiblings(int cpu) throws E2sarNativeException{
+        int[] cpus = siblings.get(cpu);
+        if(cpus == null){
+            cpus = readCpuList(sysfs.resolve("devices/system/cpu/cpu" + cpu + "/topology/thread_siblings_list"));
+            if(cpus == null || cpus.length == 0){
+                cpus = new int[]{cpu};
+            }
+            siblings.put(cpu, cpus);
+        }
+        return cpus.clone();
+    }
+
+    /**
+     * @param interfaceName - network interface name, e.g. ens1f0
+     * @return NUMA node the NIC is attached to, -1 for virtual interfaces, non-NUMA hosts and unknown interfaces
+     */
+    public int getNicNode(String interfaceName){
+        try{
+            return Integer.parseInt(Files.readString(sysfs.resolve("class/net").resolve(interfaceName).resolve("device/numa_node"),
+                StandardCharsets.US_ASCII).trim());
+        }
+        catch(IOException | NumberFormatException e){
+            return -1;
+        }
+    }
+
+    /**
+     * Propose one physical core per receive and consumer thread, taking the cores of the NIC's node first and the lowest numbered
+     * hyperthread of each core. The other hyperthreads of the chosen cores are reserved rather than handed out. Only if the NIC's
+     * node runs out of cores the plan continues on the other nodes in ascending order, which CorePlan.crossesNodes reports
+     * @param interfaceName - network interface the Reassembler receives on
+     * @param receiveThreads - number of receive threads, the length of the Reassembler cpuCoreList
+     * @param consumerThreads - number of consumer threads, may be 0
+     * @return CorePlan instance
+     * @throws E2sarNativeException - If receiveThreads is not positive, consumerThreads is negative or the host has fewer physical cores
+     */
+    public CorePlan plan(String interfaceName, int receiveThreads, int consumerThreads) throws E2sarNativeException{
+        if(receiveThreads <= 0 || consumerThreads < 0){
+            throw new E2sarNativeException("receiveThreads must be positive and consumerThreads not negative");
+        }
+        int nicNode = getNicNode(interfaceName);
+        int firstNode = nodeCpus.containsKey(nicNode) ? nicNode : nodeCpus.firstKey();
+        List<Integer> order = new ArrayList<>();
+        order.add(firstNode);
+        for(int node : nodeCpus.keySet()){
+            if(node != firstNode){
+                order.add(node);
+            }
+        }
+
+        int wanted = receiveThreads + consumerThreads;
+        int[] cores = new int[wanted];
+        int found = 0;
+        boolean crossesNodes = false;
+        BitSet claimed = new BitSet();
+        BitSet reserved = new BitSet();
+        for(int node : order){
+            for(int cpu : nodeCpus.get(node)){
+                if(found == wanted){
+                    break;
+                }
+                if(claimed.get(cpu)){
+                    continue;
+                }
+                for(int sibling : getSiblings(cpu)){
+                    claimed.set(sibling);
+                    if(sibling != cpu){
+                        reserved.set(sibling);
+                    }
+                }
+                crossesNodes |= node != firstNode;
+                cores[found++] = cpu;
+            }
+        }
+        if(found < wanted){
+            throw new E2sarNativeException("Host has " + found + " physical cores, " + wanted + " threads requested");
+        }
+
+        List<Integer> receiveCores = new ArrayList<>();
+        for(int i=0;i<receiveThreads;i++){
+            receiveCores.add(cores[i]);
+        }
+        return new CorePlan(nicNode, receiveCores, Arrays.copyOfRange(cores, receiveThreads, wanted), reserved.stream().toArray(), crossesNodes);
+    }
+}
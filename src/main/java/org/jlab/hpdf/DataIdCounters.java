@@ -0,0 +1,109 @@
+package org.jlab.hpdf;
+
+import java.util.Arrays;
+
+/**
+ * Running counts keyed on data id, kept in an open addressing table of primitive keys and counts so counting does not box or
+ * allocate once a data id has been seen. Data ids are 16 bit on the wire, negative ids are not supported.
+ */
+public final class DataIdCounters {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys = newKeys(16);
+    private long[] counts = new long[16];
+    private int size;
+
+    private static int[] newKeys(int capacity){
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    // Fibonacci hashing, consecutive data ids land on distant slots
+    private static int slot(int dataId, int mask){
+        return (dataId * 0x9E3779B9 >>> 16) & mask;
+    }
+
+    /**
+     * Add delta to the count of dataId
+     * @param dataId - data id to count, not negative
+     * @param delta - amount to add
+     */
+    public synchronized void add(int dataId, long delta){
+        int mask = keys.length - 1;
+        int index = slot(dataId, mask);
+        while(keys[index] != EMPTY && keys[index] != dataId){
+            index = (index + 1) & mask;
+        }
+        if(keys[index] == EMPTY){
+            if((size + 1) * 4 > keys.length * 3){
+                grow();
+                add(dataId, delta);
+                return;
+            }
+            keys[index] = dataId;
+            size++;
+        }
+        counts[index] += delta;
+    }
+
+    private void grow(){
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = newKeys(oldKeys.length * 2);
+        counts = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for(int i=0;i<oldKeys.length;i++){
+            if(oldKeys[i] != EMPTY){
+                int index = slot(oldKeys[i], mask);
+                while(keys[index] != EMPTY){
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * @param dataId - data id to look up
+     * @return count of dataId, 0 if it was never counted
+     */
+    public synchronized long get(int dataId){
+        int mask = keys.length - 1;
+        for(int index = slot(dataId, mask); keys[index] != EMPTY; index = (index + 1) & mask){
+            if(keys[index] == dataId){
+                return counts[index];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the data ids counted so far in ascending order
+     */
+    public synchronized int[] getDataIds(){
+        int[] dataIds = new int[size];
+        int n = 0;
+        for(int key : keys){
+            if(key != EMPTY){
+                dataIds[n++] = key;
+            }
+        }
+        Arrays.sort(dataIds);
+        return dataIds;
+    }
+
+    /**
+     * @param dataIds - data ids to look up
+     * @return count of each of dataIds, 0 for those never counted
+     */
+    public synchronized long[] get(int[] dataIds){
+        long[] values = new long[dataIds.length];
+        for(int i=0;i<dataIds.length;i++){
+            values[i] = get(dataIds[i]);
+        }
+        return values;
+    }
+}
@@ -1,5 +1,7 @@
 package org.jlab.hpdf;
 
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+
 /**
  * This class has some util functions for the native E2SAR library
  */
@@ -14,5 +16,26 @@ public class E2sarUtil{
      * @return String - E2sarVersion
      */
     public static native String getE2sarVersion();
-    
+
+    private static native void setCurrentThreadAffinity(int[] cpus) throws E2sarNativeException;
+
+    /**
+     * Restrict the calling thread to cpus with sched_setaffinity, e.g. a consumer thread pinning itself to its core of
+     * CorePlan.consumerCores. Only affects the calling thread, threads it starts afterwards inherit the affinity
+     * @param cpus - cpu ids the thread may run on
+     * @throws E2sarNativeException - If cpus is empty or contains an invalid or offline cpu
+     */
+    public static void pinCurrentThread(int... cpus) throws E2sarNativeException{
+        if(cpus.length == 0){
+            throw new E2sarNativeException("At least one cpu is needed");
+        }
+        setCurrentThreadAffinity(cpus);
+    }
+
+    /**
+     * Get the cpus the calling thread may run on with sched_getaffinity
+     * @return cpu ids in ascending order
+     * @throws E2sarNativeException - If the affinity could not be read
+     */
+    public static native int[] getCurrentThreadAffinity() throws E2sarNativeException;
 }
\ No newline at end of file
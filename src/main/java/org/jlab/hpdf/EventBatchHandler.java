@@ -0,0 +1,22 @@
+package org.jlab.hpdf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer of reassembled events pushed in batches by EventReassembler.setEventHandler(EventBatchHandler, int). A batch holds the events
+ * that were ready when the first one arrived, up to the requested batch size, so a single call replaces a thread wake-up per event.
+ */
+@FunctionalInterface
+public interface EventBatchHandler {
+
+    /**
+     * Called once per batch of reassembled events, event i is given by events[i], eventNums[i] and dataIds[i] for i &lt; count.
+     * The arrays are reused for the next batch and the buffers are released as soon as this returns, copy out whatever is needed later
+     * and do not keep a reference to them
+     * @param events - event data between position and limit, only valid during the call
+     * @param eventNums - Event numbers associated with the Events
+     * @param dataIds - Data IDs associated with the Events
+     * @param count - number of events in this batch, at least 1
+     */
+    void onEvents(ByteBuffer[] events, long[] eventNums, int[] dataIds, int count);
+}
@@ -0,0 +1,235 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.messages.ReassembledEvent;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the event buffers a reassembler has handed to the application and not yet released, shared by Reassembler and
+ * org.jlab.hpdf.nio.NioReassembler. Each buffer is released exactly once, by ReassembledEvent.close(), freeDirectBytebBuffer(),
+ * releaseAll() or, as a safety net, by a Cleaner once the application drops every reference to the buffer.
+ * The release actions must not reference the buffer, otherwise it never becomes unreachable.
+ *
+ * The Cleaner only sees the tracked buffer itself. Views the application made of it with duplicate(), slice() or asReadOnlyBuffer()
+ * keep the memory the buffer was created from alive, not the tracked buffer, so when that is a slice of a larger buffer the Cleaner can
+ * run while a view is still in use. Such buffers are tracked with a separate action for the Cleaner that must not recycle the memory.
+ *
+ * The bytes held by outstanding buffers are counted, and with a non zero budget awaitBudget(long) holds back delivery of further events
+ * until the application releases enough of them.
+ */
+public class EventBufferTracker {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Identity key of a tracked buffer that does not keep it reachable
+     */
+    private static final class BufferKey extends WeakReference<ByteBuffer> {
+        private final int hash;
+
+        BufferKey(ByteBuffer buffer){
+            super(buffer);
+            this.hash = System.identityHashCode(buffer);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o){
+                return true;
+            }
+            Object referent = get();
+            return o instanceof BufferKey && referent != null && referent == ((BufferKey) o).get();
+        }
+
+        @Override
+        public int hashCode(){ return hash;}
+    }
+
+    /**
+     * Runs once per buffer: release when released explicitly through clean(), collected when run by the Cleaner thread
+     */
+    private static final class ReleaseAction implements Runnable, Cleaner.Cleanable {
+        private final EventBufferTracker tracker;
+        private final BufferKey key;
+        private final long bytes;
+        private final Runnable release;
+        private final Runnable collected;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private Cleaner.Cleanable registration;
+
+        ReleaseAction(EventBufferTracker tracker, BufferKey key, long bytes, Runnable release, Runnable collected){
+            this.tracker = tracker;
+            this.key = key;
+            this.bytes = bytes;
+            this.release = release;
+            this.collected = collected;
+        }
+
+        private void finish(Runnable action){
+            if(done.compareAndSet(false, true)){
+                tracker.outstanding.remove(key);
+                action.run();
+                tracker.released(bytes);
+            }
+        }
+
+        // Cleaner thread, the buffer is unreachable
+        @Override
+        public void run(){
+            finish(collected);
+        }
+
+        @Override
+        public void clean(){
+            finish(release);
+            // unregisters from the Cleaner, run() is then a noop
+            registration.clean();
+        }
+    }
+
+    private final ConcurrentHashMap<BufferKey, ReleaseAction> outstanding = new ConcurrentHashMap<>();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private final long budgetBytes;
+    private final Object budgetLock = new Object();
+
+    /**
+     * @param budgetBytes - outstanding bytes above which awaitBudget(long) blocks, 0 for no budget
+     */
+    public EventBufferTracker(long budgetBytes){
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Start tracking a buffer handed to the application that owns its memory, so no view of it outlives it
+     * @param buffer - event buffer
+     * @param release - frees the memory of the buffer, run on explicit release and by the Cleaner, must not reference it
+     * @return the Cleanable running release at most once
+     */
+    public Cleaner.Cleanable track(ByteBuffer buffer, Runnable release){
+        return track(buffer, release, release);
+    }
+
+    /**
+     * Start tracking a buffer handed to the application
+     * @param buffer - event buffer
+     * @param release - frees or recycles the memory of the buffer on explicit release, must not reference it
+     * @param collected - run instead of release by the Cleaner once the buffer is unreachable, views of it may still be in use
+     * @return the Cleanable running release or collected at most once
+     */
+    public Cleaner.Cleanable track(ByteBuffer buffer, Runnable release, Runnable collected){
+        long bytes = buffer.capacity();
+        outstandingBytes.addAndGet(bytes);
+        BufferKey key = new BufferKey(buffer);
+        ReleaseAction action = new ReleaseAction(this, key, bytes, release, collected);
+        // registered before it is published, so clean() always finds the registration
+        action.registration = CLEANER.register(buffer, action);
+        outstanding.put(key, action);
+        return action;
+    }
+
+    /**
+     * Start tracking the buffer of an event and attach the release to it so that ReassembledEvent.close() runs it
+     * @param event - event handed to the application
+     * @param release - frees or recycles the memory of the event buffer, must not reference it
+     * @return event
+     */
+    public ReassembledEvent track(ReassembledEvent event, Runnable release){
+        return track(event, release, release);
+    }
+
+    /**
+     * Start tracking the buffer of an event and attach the release to it so that ReassembledEvent.close() runs it
+     * @param event - event handed to the application
+     * @param release - frees or recycles the memory of the event buffer on explicit release, must not reference it
+     * @param collected - run instead of release by the Cleaner once the event buffer is unreachable, views of it may still be in use
+     * @return event
+     */
+    public ReassembledEvent track(ReassembledEvent event, Runnable release, Runnable collected){
+        event.attachRelease(track(event.byteBuffer, release, collected));
+        return event;
+    }
+
+    /**
+     * Release a tracked buffer. It will be a noop if the buffer is not tracked or was already released
+     * @param buffer - event buffer
+     */
+    public void release(ByteBuffer buffer){
+        ReleaseAction action = outstanding.get(new BufferKey(buffer));
+        if(action != null){
+            action.clean();
+        }
+    }
+
+    /**
+     * Release every tracked buffer, used when the reassembler is freed
+     */
+    public void releaseAll(){
+        for(ReleaseAction action : outstanding.values()){
+            action.clean();
+        }
+    }
+
+    private void released(long bytes){
+        outstandingBytes.addAndGet(-bytes);
+        if(budgetBytes > 0){
+            synchronized(budgetLock){
+                budgetLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return true if there is no budget or the outstanding bytes are under it
+     */
+    public boolean underBudget(){
+        return budgetBytes <= 0 || outstandingBytes.get() < budgetBytes;
+    }
+
+    /**
+     * Wait until the outstanding bytes are under the budget
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @return what is left of waitMs for receiving the event (0 if waitMs is 0), or -1 if the budget was not met in waitMs or the wait was interrupted
+     */
+    public long awaitBudget(long waitMs){
+        if(underBudget()){
+            return waitMs;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        synchronized(budgetLock){
+            while(!underBudget()){
+                long remainingMs = waitMs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if(waitMs != 0 && remainingMs <= 0){
+                    return -1;
+                }
+                try{
+                    budgetLock.wait(remainingMs);
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+        }
+        if(waitMs == 0){
+            return 0;
+        }
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return remainingMs > 0 ? remainingMs : -1;
+    }
+
+    /**
+     * @return bytes held by buffers handed to the application and not yet released
+     */
+    public long getOutstandingBytes(){ return outstandingBytes.get();}
+
+    /**
+     * @return number of buffers handed to the application and not yet released
+     */
+    public int getOutstandingBuffers(){ return outstanding.size();}
+}
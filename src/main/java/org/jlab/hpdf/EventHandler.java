@@ -0,0 +1,20 @@
+package org.jlab.hpdf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer of reassembled events pushed by EventReassembler.setEventHandler(EventHandler). It is called on the thread that reassembled
+ * or dequeued the event, so it should hand off or finish quickly, every event behind it waits until it returns.
+ */
+@FunctionalInterface
+public interface EventHandler {
+
+    /**
+     * Called once per reassembled event. The buffer is released as soon as this returns, copy out whatever is needed later
+     * and do not keep a reference to it
+     * @param event - event data between position and limit, only valid during the call
+     * @param eventNum - Event number associated with the Event
+     * @param dataId - Data ID associated with the Event
+     */
+    void onEvent(ByteBuffer event, long eventNum, int dataId);
+}
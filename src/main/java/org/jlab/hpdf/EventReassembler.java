@@ -0,0 +1,223 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.EventMetadata;
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvLatencyStats;
+import org.jlab.hpdf.messages.RecvPortStats;
+import org.jlab.hpdf.messages.RecvStats;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Receiving side of the data plane shared by the JNI Reassembler and the pure Java org.jlab.hpdf.nio.NioReassembler,
+ * so consumers can switch between them without code changes. See Reassembler for the full description of each method.
+ */
+public interface EventReassembler {
+
+    /**
+     * returned by recvInto() when no event was available in waitMs
+     */
+    int RECV_NO_EVENT = -1;
+    /**
+     * returned by recvInto() when the event does not fit in the destination buffer, the event is kept for the next call
+     */
+    int RECV_BUFFER_TOO_SMALL = -2;
+
+    /**
+     * Open sockets and start the threads - this marks the moment from which we are listening for incoming packets,
+     * assembling them into event buffers and putting them into the queue.
+     * @throws E2sarNativeException - If there is an error open sockets or starting the internal threads
+     */
+    void openAndStart() throws E2sarNativeException;
+
+    /**
+     * A non-blocking call to get an assembled event off a reassembled event queue
+     * @return if an error occurs or if there's no event available Optional.empty() is returned otherwise the ReassembledEvent
+     * Need to call freeDirectBytebBuffer(ReassembledEvent) to release the buffer
+     */
+    Optional<ReassembledEvent> getEvent();
+
+    /**
+     * Blocking variant of getEvent()
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @return if an error occurs or if there's no event available Optional.empty() is returned otherwise the ReassembledEvent
+     * Need to call freeDirectBytebBuffer(ReassembledEvent) to release the buffer
+     */
+    Optional<ReassembledEvent> recvEvent(long waitMs);
+
+    /**
+     * Batch variant of recvEvent(long), blocks at most waitMs for the first event only and takes further events only if already queued.
+     * Event i is returned in eventNums[i], dataIds[i] and buffers[i]
+     * @param eventNums - filled with the event numbers
+     * @param dataIds - filled with the data ids
+     * @param buffers - filled with the event buffers, need to call freeDirectBytebBuffer(ByteBuffer) on each to release it
+     * @param maxEvents - maximum number of events to return, capped to the length of the shortest array
+     * @param waitMs - how long to block for the first event before giving up, 0 - forever
+     * @return number of events returned, 0 if there was no event available in waitMs
+     */
+    int recvEvents(long[] eventNums, int[] dataIds, ByteBuffer[] buffers, int maxEvents, long waitMs);
+
+    /**
+     * Copy the next event into a caller owned Direct ByteBuffer at its position, blocking at most waitMs for it. On success the
+     * position of dst is advanced by the event length. If the event does not fit in dst.remaining() nothing is copied, metadata.length
+     * holds the size needed and the event is returned again by the next call, so the caller can retry with a larger buffer
+     * @param dst - Direct ByteBuffer receiving the event
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @param metadata - filled with the event number, data id and length of the event
+     * @return event length, RECV_NO_EVENT if there was no event available in waitMs or RECV_BUFFER_TOO_SMALL
+     * @throws E2sarNativeException - If dst is not a Direct ByteBuffer
+     */
+    int recvInto(ByteBuffer dst, long waitMs, EventMetadata metadata) throws E2sarNativeException;
+
+    /**
+     * Push reassembled events to handler instead of waiting for them to be polled, replacing any handler set before.
+     * Events queued before the handler was set may still be returned by polling, polling at the same time splits the events between
+     * handler and the caller
+     * @param handler - called for every event and the event released afterwards, null to stop pushing events
+     * @throws E2sarNativeException - If the delivery thread could not be started
+     */
+    void setEventHandler(EventHandler handler) throws E2sarNativeException;
+
+    /**
+     * Batch variant of setEventHandler(EventHandler) handing over up to maxBatch events per call
+     * @param handler - called for every batch and the events released afterwards, null to stop pushing events
+     * @param maxBatch - maximum number of events per call
+     * @throws E2sarNativeException - If maxBatch is not positive or the delivery thread could not be started
+     */
+    void setEventHandler(EventBatchHandler handler, int maxBatch) throws E2sarNativeException;
+
+    /**
+     * Get an Instance of RecvStats containing - enqueueLoss, eventSuccess, lastErrno, grpcErrCnt, dataErrCnt, lastE2SARError
+     * @return RecvStats instance
+     */
+    RecvStats getStats();
+
+    /**
+     * Get the first segment to completion and completion to dequeue latency histograms since the reassembler was created
+     * @return RecvLatencyStats instance
+     */
+    RecvLatencyStats getLatencyStats();
+
+    /**
+     * Get the per port breakdown of packets, bytes, completed events, timeouts and socket drops
+     * @return new RecvPortStats instance
+     */
+    RecvPortStats getPortStats();
+
+    /**
+     * Variant of getPortStats() that refills stats instead of allocating a new snapshot, for frequent polling
+     * @param stats - instance filled, usually the one from the previous poll
+     * @return stats
+     */
+    RecvPortStats getPortStats(RecvPortStats stats);
+
+    /**
+     * Try to pop an event number of a lost event from the queue that stores them
+     * @return if there's no lost event available Optional.empty() is returned otherwise the LostEvent
+     */
+    Optional<LostEvent> getLostEvent();
+
+    /**
+     * Batch variant of getLostEvent(), pops lost events until the queue is empty or the arrays are full.
+     * Lost event i is returned in eventNums[i] and dataIds[i]
+     * @param eventNums - filled with the lost event numbers
+     * @param dataIds - filled with the data ids of the lost events
+     * @return number of lost events returned
+     */
+    int drainLostEvents(long[] eventNums, int[] dataIds);
+
+    /**
+     * Range compressed variant of drainLostEvents(long[], int[]). Lost events of the same data id with consecutive event numbers are
+     * collapsed into a run whatever order they are popped in, run i covers event numbers runStarts[i] to runEnds[i] inclusive of data id
+     * dataIds[i]. Runs are not sorted. Lost events are popped until the queue is empty or one would need a new run when the arrays are
+     * full, that one stays queued
+     * @param runStarts - filled with the first event number of each run
+     * @param runEnds - filled with the last event number of each run
+     * @param dataIds - filled with the data id of each run
+     * @return number of runs returned
+     */
+    default int drainLostEventRanges(long[] runStarts, long[] runEnds, int[] dataIds){
+        int maxRuns = Math.min(runStarts.length, Math.min(runEnds.length, dataIds.length));
+        int runs = 0;
+        long[] eventNums = new long[maxRuns];
+        int[] eventDataIds = new int[maxRuns];
+        // every lost event adds at most one run, so draining one per free run never pops an event that does not fit
+        while(runs < maxRuns){
+            int free = maxRuns - runs;
+            int drained = drainLostEvents(eventNums.length == free ? eventNums : (eventNums = new long[free]),
+                eventDataIds.length == free ? eventDataIds : (eventDataIds = new int[free]));
+            for(int i=0;i<drained;i++){
+                long eventNum = eventNums[i];
+                int dataId = eventDataIds[i];
+                int run = 0;
+                while(run < runs && (dataIds[run] != dataId || eventNum < runStarts[run] - 1 || eventNum > runEnds[run] + 1)){
+                    run++;
+                }
+                if(run == runs){
+                    runStarts[runs] = eventNum;
+                    runEnds[runs] = eventNum;
+                    dataIds[runs] = dataId;
+                    runs++;
+                    continue;
+                }
+                runStarts[run] = Math.min(runStarts[run], eventNum);
+                runEnds[run] = Math.max(runEnds[run], eventNum);
+                // the event may have closed the gap to another run of the same data id, merge it and move the last run into its place
+                for(int other=0;other<runs;other++){
+                    if(other != run && dataIds[other] == dataId && (runStarts[other] == runEnds[run] + 1 || runEnds[other] == runStarts[run] - 1)){
+                        runStarts[run] = Math.min(runStarts[run], runStarts[other]);
+                        runEnds[run] = Math.max(runEnds[run], runEnds[other]);
+                        runs--;
+                        runStarts[other] = runStarts[runs];
+                        runEnds[other] = runEnds[runs];
+                        dataIds[other] = dataIds[runs];
+                        break;
+                    }
+                }
+            }
+            if(drained < free){
+                break;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Get the number of threads this Reassembler is using
+     * @return number of receiver threads
+     */
+    long getNumRecvThreads();
+
+    /**
+     * Get the ports this reassembler is listening on, returned as a List with two items [start port, end port]
+     * @return List[Integer] of size 2 containing {start port, end port}
+     */
+    List<Integer> getRecvPorts();
+
+    /**
+     * Get the port range, 2^portRange ports are listened on starting from the starting port
+     * @return port range as integer
+     */
+    int getPortRange();
+
+    /**
+     * Release the ByteBuffer associated with a ReassembledEvent. It will be a noop if called twice
+     * @param event - ReassembledEvent obtained from getEvent() or recvEvent()
+     */
+    void freeDirectBytebBuffer(ReassembledEvent event);
+
+    /**
+     * Release a ByteBuffer obtained from recvEvents(). It will be a noop if called twice
+     * @param buffer - ByteBuffer obtained from recvEvents()
+     */
+    void freeDirectBytebBuffer(ByteBuffer buffer);
+
+    /**
+     * Stop the threads and release sockets and native resources. If called multiple time it will be a noop
+     */
+    void free();
+}
@@ -0,0 +1,153 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.SendStats;
+import org.jlab.hpdf.messages.SyncStats;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sending side of the data plane shared by the JNI Segmenter and the pure Java org.jlab.hpdf.nio.NioSegmenter,
+ * so producers can switch between them without code changes. See Segmenter for the full description of each method.
+ */
+public interface EventSegmenter {
+
+    /**
+     * Open sockets and start the threads - this marks the moment from which sync packets start being sent.
+     * @throws E2sarNativeException - If there is an error open sockets or starting the internal threads
+     */
+    void openAndStart() throws E2sarNativeException;
+
+    /**
+     * Send immediately overriding event number.
+     * @param buffer - event buffer
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If there is an error sending this event to LB
+     */
+    void sendEventDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Send a region of a buffer immediately overriding event number.
+     * @param buffer - event buffer
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error sending this event to LB
+     */
+    void sendEventDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add to send queue in a nonblocking fashion, overriding internal event number
+     * @param buffer - event buffer, it must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the send queue is full or there is an error adding this event to the queue
+     */
+    void addToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add a region of a buffer to the send queue in a nonblocking fashion, overriding internal event number
+     * @param buffer - event buffer, the region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer, the send queue is full or there is an error adding this event to the queue
+     */
+    void addToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add to send queue without blocking, returning false instead of throwing when the send queue is full
+     * @param buffer - event buffer, it must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If there is an error adding this event to the queue
+     */
+    boolean tryAddToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add a region of a buffer to the send queue without blocking, returning false instead of throwing when the send queue is full
+     * @param buffer - event buffer, the region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error adding this event to the queue
+     */
+    boolean tryAddToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add to send queue, waiting up to timeoutMs for room if the send queue is full
+     * @param buffer - event buffer, it must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - maximum time to wait for room in milliseconds
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs
+     * @throws E2sarNativeException - If there is an error adding this event to the queue
+     */
+    boolean offerToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException;
+
+    /**
+     * Add a region of a buffer to the send queue, waiting up to timeoutMs for room if the send queue is full
+     * @param buffer - event buffer, the region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - maximum time to wait for room in milliseconds
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error adding this event to the queue
+     */
+    boolean offerToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException;
+
+    /**
+     * @return maximum number of events that can wait in the send queue
+     */
+    int getSendQueueCapacity();
+
+    /**
+     * @return number of events currently waiting in the send queue
+     */
+    int getSendQueueOccupancy();
+
+    /**
+     * Get the MTU currently in use by segmenter
+     * @return the MTU as int
+     */
+    int getMTU();
+
+    /**
+     * get the maximum payload length used by the segmenter
+     * @return maximum payload length
+     */
+    long getMaxPayloadLength();
+
+    /**
+     * Get the SyncStats - sync msg cnt, sync err cnt, last errno
+     * @return SyncStats instance
+     */
+    SyncStats getSyncStats();
+
+    /**
+     * Get the SendStats - event datagrams cnt, event datagrams err cnt, last errno
+     * @return SendStats instance
+     */
+    SendStats getSendStats();
+
+    /**
+     * Stop the threads and release sockets and native resources. If called multiple time it will be a noop
+     */
+    void free();
+}
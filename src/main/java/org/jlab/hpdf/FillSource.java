@@ -0,0 +1,29 @@
+package org.jlab.hpdf;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Occupancy sampled by WorkerStateReporter and reported to the load balancer as the fill percent of this worker. Usually the queue
+ * between recvEvent() and the application's analysis threads, since that is where a slow worker backs up.
+ */
+@FunctionalInterface
+public interface FillSource {
+
+    /**
+     * Called once per period on the reporter thread, must not block
+     * @return fill between 0 and 1, values outside are clamped
+     */
+    float getFill();
+
+    /**
+     * @param queue - bounded queue, an unbounded one always reports almost 0
+     * @return FillSource reporting size / (size + remainingCapacity) of queue
+     */
+    static FillSource of(BlockingQueue<?> queue){
+        return () -> {
+            int size = queue.size();
+            long capacity = (long) size + queue.remainingCapacity();
+            return capacity == 0 ? 1.0f : (float) size / capacity;
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.messages.LatencySnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-bucketed histogram of nanosecond latencies in the style of HdrHistogram. Every power of two range is split into 32 linear
+ * sub-buckets, so a recorded value is kept within about 3% of its true value across the whole long range with a fixed 1920 buckets.
+ * record() only increments two atomic counters, it never locks or allocates and may be called from any number of threads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    // values below SUB_BUCKETS have a bucket of their own, above that the exponent picks the range and the next bits the sub-bucket
+    private static int bucketOf(long nanos){
+        if(nanos < SUB_BUCKETS){
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBoundOf(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static long upperBoundOf(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return lowerBoundOf(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Record one latency, negative values are recorded as 0
+     * @param nanos - latency in nanoseconds
+     */
+    public void record(long nanos){
+        counts.getAndIncrement(bucketOf(nanos));
+        sumNanos.getAndAdd(Math.max(0, nanos));
+    }
+
+    /**
+     * Copy the non-empty buckets. Values recorded while the copy is taken may or may not be included
+     * @return LatencySnapshot of everything recorded so far
+     */
+    public LatencySnapshot snapshot(){
+        long[] copy = new long[NUM_BUCKETS];
+        int nonEmpty = 0;
+        for(int i=0;i<NUM_BUCKETS;i++){
+            copy[i] = counts.get(i);
+            if(copy[i] != 0){
+                nonEmpty++;
+            }
+        }
+        LatencySnapshot snapshot = new LatencySnapshot(nonEmpty);
+        int n = 0;
+        for(int i=0;i<NUM_BUCKETS;i++){
+            if(copy[i] != 0){
+                snapshot.lowerBoundNanos[n] = lowerBoundOf(i);
+                snapshot.upperBoundNanos[n] = upperBoundOf(i);
+                snapshot.counts[n] = copy[i];
+                snapshot.count += copy[i];
+                n++;
+            }
+        }
+        snapshot.sumNanos = sumNanos.get();
+        return snapshot;
+    }
+}
@@ -0,0 +1,59 @@
+package org.jlab.hpdf;
+
+/**
+ * PID controller driving a worker's fill towards a set point, computed the way the e2sar::Reassembler send state thread does it:
+ * the error is setPoint - fill, the integral term sums error * dt over the samples of the last epoch only and the derivative term
+ * is the change of the error since the previous sample divided by dt. Not thread safe, WorkerStateReporter calls it from its own thread.
+ */
+public class PidController {
+
+    private final float kp;
+    private final float ki;
+    private final float kd;
+    private final float setPoint;
+
+    // error * dt of the samples in the current epoch, oldest overwritten first
+    private final double[] integralSamples;
+    private int next;
+    private boolean havePrevious;
+    private double previousError;
+
+    /**
+     * @param kp - proportional gain
+     * @param ki - integral gain
+     * @param kd - derivative gain
+     * @param setPoint - fill to drive towards, between 0 and 1
+     * @param samplesPerEpoch - number of samples the integral term covers, epoch_ms / period_ms
+     */
+    public PidController(float kp, float ki, float kd, float setPoint, int samplesPerEpoch){
+        if(samplesPerEpoch <= 0){
+            throw new IllegalArgumentException("samplesPerEpoch must be positive, got " + samplesPerEpoch);
+        }
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+        this.setPoint = setPoint;
+        this.integralSamples = new double[samplesPerEpoch];
+    }
+
+    /**
+     * Add a sample and compute the control signal
+     * @param fill - fill measured for this sample
+     * @param dtSeconds - time since the previous sample, the period for the first one
+     * @return control signal, positive when the worker can take more data
+     */
+    public float update(float fill, double dtSeconds){
+        double error = setPoint - fill;
+        double sample = error * dtSeconds;
+        integralSamples[next] = sample;
+        next = (next + 1) % integralSamples.length;
+        double integral = 0;
+        for(double s : integralSamples){
+            integral += s;
+        }
+        double derivative = havePrevious && dtSeconds > 0 ? (error - previousError) / dtSeconds : 0;
+        previousError = error;
+        havePrevious = true;
+        return (float) (kp * error + ki * integral + kd * derivative);
+    }
+}
@@ -2,20 +2,28 @@ package org.jlab.hpdf;
 
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.jlab.hpdf.config.ReassemblerFlags;
 import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.EventMetadata;
+import org.jlab.hpdf.messages.LatencySnapshot;
 import org.jlab.hpdf.messages.LostEvent;
 import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvLatencyStats;
+import org.jlab.hpdf.messages.RecvPortStats;
 import org.jlab.hpdf.messages.RecvStats;
 
 /**
  * This is a JNI wrapper class for e2sar::Reassembler in cpp. It creates an instance of e2sar::Reassembler and the pointer to this object 
  * is stored in nativeReassembler field. Events that are reassembled are dynamically allocated in native code and DirectByteBuffers are used
- * to move it to Java. You have to call freeDirectBytebBuffer(ReassembledEvent) to free this memory or leaks will happen.
+ * to move it to Java. Close the event or call freeDirectBytebBuffer(ReassembledEvent) to free this memory, events that are dropped without
+ * it are only freed once their buffer is garbage collected. With ReassemblerFlags.maxOutstandingBytes set, delivery stops while the
+ * events not yet freed hold more than that many bytes, so new events back up in the native queue instead of growing the heap.
+ * Instead of polling, setEventHandler() has a native thread push every event to a handler and free it once the handler returns.
  * 
  * The Reassembler class knows how to reassemble the events back. It relies
  * on the RE header structure to reassemble the event, because the LB portion
@@ -24,7 +32,7 @@ import org.jlab.hpdf.messages.RecvStats;
  * 
  * REMEMBER TO CALL FREE() ONCE DONE WITH THIS CLASS TO FREE THE NATIVE INSTANCE CREATED. MEMORY LEAKS WILL HAPPEN IF FREE IS NOT CALLED
  */
-public class Reassembler {
+public class Reassembler implements EventReassembler {
     
     static{
         System.loadLibrary("jnie2sar");
@@ -35,9 +43,21 @@ public class Reassembler {
      */
     private long nativeReassembler;
     /**
-     *  stores the DirectByteBuffers created by the native code that have not yet been freed.
+     *  tracks the DirectByteBuffers created by the native code that have not yet been freed, and enforces maxOutstandingBytes.
      */
-    private HashSet<ByteBuffer> allocatedBuffers;
+    private EventBufferTracker tracker;
+    /**
+     *  stores the events recvInto() received that did not fit in the destination buffer, in the order they are to be returned.
+     */
+    private final ConcurrentLinkedDeque<ReassembledEvent> pendingEvents = new ConcurrentLinkedDeque<>();
+    /**
+     *  stores the pointer of the native thread pushing events to the handler set with setEventHandler(), 0 if there is none.
+     */
+    private long nativeEventDispatch;
+    /**
+     *  counts the lost events taken from the native queue per data id, libe2sar does not count them itself.
+     */
+    private final DataIdCounters lostCounters = new DataIdCounters();
 
     private native long initReassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort,  List<Integer> cpuCoreList, ReassemblerFlags rFlags) throws E2sarNativeException;
 
@@ -67,7 +87,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort,  List<Integer> cpuCoreList, ReassemblerFlags rFlags) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, cpuCoreList, rFlags);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(rFlags.maxOutstandingBytes);
     }
 
     /**
@@ -87,7 +107,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort,  List<Integer> cpuCoreList, String iniFile) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, cpuCoreList, iniFile);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(0);
     }
 
     /**
@@ -106,7 +126,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort,  List<Integer> cpuCoreList) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, cpuCoreList);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(0);
     }
 
     /**
@@ -122,7 +142,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort, int numReceiveThreads, ReassemblerFlags rFlags) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, numReceiveThreads, rFlags);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(rFlags.maxOutstandingBytes);
     }
 
     /**
@@ -139,7 +159,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort, int numReceiveThreads, String iniFile) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, numReceiveThreads, iniFile);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(0);
     }
 
     /**
@@ -155,7 +175,7 @@ public class Reassembler {
      */
     public Reassembler(EjfatURI dpUri, InetAddress ipAddress, int startingPort, int numReceiveThreads) throws E2sarNativeException{
         nativeReassembler = initReassembler(dpUri, ipAddress, startingPort, numReceiveThreads);
-        allocatedBuffers = new HashSet<>();
+        tracker = new EventBufferTracker(0);
     }
 
     /**
@@ -184,35 +204,254 @@ public class Reassembler {
 
     /**
      * A non-blocking call to get an assembled event off a reassembled event queue
-     * @return if an error occurs or if there's no event available Optional.empty() is returned otherwise the ReassembledEvent
-     * Need to call freeDirectBytebBuffer(ReassembledEvent) to free the buffer created 
+     * @return if an error occurs, if there's no event available or if maxOutstandingBytes is reached Optional.empty() is returned
+     * otherwise the ReassembledEvent. Need to close it or call freeDirectBytebBuffer(ReassembledEvent) to free the buffer created
      */
-    public Optional<ReassembledEvent> getEvent(){ return getEvent(nativeReassembler);}
-    private native Optional<ReassembledEvent> getEvent(long nativeReassembler);
+    public Optional<ReassembledEvent> getEvent(){
+        if(!tracker.underBudget()){
+            return Optional.empty();
+        }
+        long[] address = new long[1];
+        Optional<ReassembledEvent> event = getEvent(nativeReassembler, address);
+        event.ifPresent(received -> track(received, address[0]));
+        return event;
+    }
+    private native Optional<ReassembledEvent> getEvent(long nativeReassembler, long[] address);
 
     /**
-     * Blocking variant of getEvent() 
+     * Blocking variant of getEvent(). While maxOutstandingBytes is reached it first waits for events to be freed
      * @param waitMs - how long to block before giving up, defaults to 0 - forever
      * @return if an error occurs or if there's no event available Optional.empty() is returned otherwise the ReassembledEvent
-     * Need to call freeDirectBytebBuffer(ReassembledEvent) to free the buffer created 
+     * Need to close it or call freeDirectBytebBuffer(ReassembledEvent) to free the buffer created
+     */
+    public Optional<ReassembledEvent> recvEvent(long waitMs) {
+        long remainingMs = tracker.awaitBudget(waitMs);
+        if(remainingMs < 0){
+            return Optional.empty();
+        }
+        long[] address = new long[1];
+        Optional<ReassembledEvent> event = recvEvent(nativeReassembler, remainingMs, address);
+        event.ifPresent(received -> track(received, address[0]));
+        return event;
+    }
+    private native Optional<ReassembledEvent> recvEvent(long nativeReassembler, long waitMs, long[] address);
+
+    // address of the native event buffer, returned by the call that received the event so tracking it takes no extra JNI call
+    private void track(ReassembledEvent event, long address){
+        tracker.track(event, () -> freeNativeBuffer(address));
+    }
+    private static native void freeNativeBuffer(long address);
+
+    /**
+     * Batch variant of recvEvent(long) that drains up to maxEvents events in a single native call. It blocks at most waitMs
+     * for the first event only, further events are taken only if they are already queued. While maxOutstandingBytes is reached
+     * it first waits for events to be freed. Event i is returned in
+     * eventNums[i], dataIds[i] and buffers[i]
+     * @param eventNums - filled with the event numbers
+     * @param dataIds - filled with the data ids
+     * @param buffers - filled with the event buffers, need to call freeDirectBytebBuffer(ByteBuffer) on each to free it
+     * @param maxEvents - maximum number of events to return, capped to the length of the shortest array
+     * @param waitMs - how long to block for the first event before giving up, 0 - forever
+     * @return number of events returned, 0 if there was no event available in waitMs
+     */
+    public int recvEvents(long[] eventNums, int[] dataIds, ByteBuffer[] buffers, int maxEvents, long waitMs){
+        int max = Math.min(maxEvents, Math.min(eventNums.length, Math.min(dataIds.length, buffers.length)));
+        if(max <= 0){
+            return 0;
+        }
+        long remainingMs = tracker.awaitBudget(waitMs);
+        if(remainingMs < 0){
+            return 0;
+        }
+        long[] addresses = new long[max];
+        int count = recvEvents(nativeReassembler, eventNums, dataIds, buffers, addresses, max, remainingMs);
+        for(int i = 0; i < count; i++){
+            long address = addresses[i];
+            tracker.track(buffers[i], () -> freeNativeBuffer(address));
+        }
+        return count;
+    }
+    private native int recvEvents(long nativeReassembler, long[] eventNums, int[] dataIds, ByteBuffer[] buffers, long[] addresses, int maxEvents, long waitMs);
+
+    /**
+     * Copy the next event into a caller owned Direct ByteBuffer at its position, blocking at most waitMs for it. There is no native buffer
+     * to free afterwards and nothing is allocated per event. On success the position of dst is advanced by the event length.
+     * If the event does not fit in dst.remaining() nothing is copied, metadata.length holds the size needed and the event is returned
+     * again by the next call, so the caller can retry with a larger buffer
+     * @param dst - Direct ByteBuffer receiving the event
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @param metadata - filled with the event number, data id and length of the event
+     * @return event length, RECV_NO_EVENT if there was no event available in waitMs or RECV_BUFFER_TOO_SMALL
+     * @throws E2sarNativeException - If dst is not a Direct ByteBuffer
      */
-    public Optional<ReassembledEvent> recvEvent(long waitMs) { return recvEvent(nativeReassembler, waitMs);}
-    private native Optional<ReassembledEvent> recvEvent(long nativeReassembler, long waitMs);
+    public int recvInto(ByteBuffer dst, long waitMs, EventMetadata metadata) throws E2sarNativeException{
+        if(!dst.isDirect()){
+            throw new E2sarNativeException("This method only supports direct ByteBuffers");
+        }
+        ReassembledEvent pending = pendingEvents.pollFirst();
+        if(pending != null){
+            return copyPending(pending, dst, metadata);
+        }
+        int length = recvInto(nativeReassembler, dst, dst.position(), dst.remaining(), waitMs, metadata);
+        if(length >= 0){
+            dst.position(dst.position() + length);
+        }
+        return length;
+    }
+    private native int recvInto(long nativeReassembler, ByteBuffer dst, int position, int remaining, long waitMs, EventMetadata metadata);
+
+    /**
+     * Push every reassembled event to handler from a native thread, attached to the JVM once as a daemon thread, instead of waiting for
+     * it to be polled. This saves the wake-up of a polling thread per event. The buffer passed to the handler is freed as soon as
+     * it returns, so maxOutstandingBytes does not apply. Exceptions thrown by handler are printed and the next event is delivered.
+     * Replaces any handler set before, events queued before may still be returned by polling and polling at the same time splits
+     * the events between handler and the caller
+     * @param handler - called on the dispatch thread for every event, null to stop the dispatch thread
+     * @throws E2sarNativeException - If the dispatch thread could not be started or this reassembler has been freed
+     */
+    public synchronized void setEventHandler(EventHandler handler) throws E2sarNativeException{
+        stopEventDispatch();
+        if(handler != null){
+            checkNotFreed();
+            nativeEventDispatch = startEventDispatch(nativeReassembler, handler);
+        }
+    }
+    private native long startEventDispatch(long nativeReassembler, EventHandler handler) throws E2sarNativeException;
+
+    /**
+     * Batch variant of setEventHandler(EventHandler). The dispatch thread waits for an event, takes up to maxBatch - 1 more if
+     * already queued and hands them to handler in a single call. The arrays passed to the handler are reused for every batch
+     * @param handler - called on the dispatch thread for every batch, null to stop the dispatch thread
+     * @param maxBatch - maximum number of events per call
+     * @throws E2sarNativeException - If maxBatch is not positive, the dispatch thread could not be started or this reassembler has been freed
+     */
+    public synchronized void setEventHandler(EventBatchHandler handler, int maxBatch) throws E2sarNativeException{
+        if(handler != null && maxBatch <= 0){
+            throw new E2sarNativeException("maxBatch must be positive, got " + maxBatch);
+        }
+        stopEventDispatch();
+        if(handler != null){
+            checkNotFreed();
+            nativeEventDispatch = startBatchEventDispatch(nativeReassembler, handler, new ByteBuffer[maxBatch], new long[maxBatch], new int[maxBatch]);
+        }
+    }
+    private native long startBatchEventDispatch(long nativeReassembler, EventBatchHandler handler, ByteBuffer[] events, long[] eventNums, int[] dataIds) throws E2sarNativeException;
+
+    private void checkNotFreed() throws E2sarNativeException{
+        if(nativeReassembler == 0){
+            throw new E2sarNativeException("Reassembler has already been freed");
+        }
+    }
+
+    // waits for the handler to return from the current event unless called from the handler itself
+    private void stopEventDispatch(){
+        if(nativeEventDispatch != 0){
+            stopEventDispatch(nativeEventDispatch);
+            nativeEventDispatch = 0;
+        }
+    }
+    private native void stopEventDispatch(long nativeEventDispatch);
+
+    // called from native recvInto() with an event that did not fit in the destination buffer
+    private void keepPending(ByteBuffer buffer, long eventNum, int dataId){
+        pendingEvents.offerLast(new ReassembledEvent(buffer, eventNum, dataId));
+    }
+
+    private int copyPending(ReassembledEvent pending, ByteBuffer dst, EventMetadata metadata){
+        int length = pending.byteBuffer.remaining();
+        metadata.eventNum = pending.eventNum;
+        metadata.dataId = pending.dataId;
+        metadata.length = length;
+        if(length > dst.remaining()){
+            pendingEvents.offerFirst(pending);
+            return RECV_BUFFER_TOO_SMALL;
+        }
+        dst.put(pending.byteBuffer);
+        freeDirectBytebBuffer(nativeReassembler, pending.byteBuffer);
+        return length;
+    }
 
     /**
-     * Get an Instance of RecvStats containing - enqueueLoss, eventSuccess, lastErrno, grpcErrCnt, dataErrCnt, lastE2SARError
+     * Get an Instance of RecvStats containing - enqueueLoss, eventSuccess, lastErrno, grpcErrCnt, dataErrCnt, lastE2SARError,
+     * outstandingBytes and the lost events per data id taken so far with getLostEvent() or drainLostEvents()
      * @return RecvStats instance
      */
-    public RecvStats getStats() { return getStats(nativeReassembler);}
+    public RecvStats getStats() {
+        RecvStats stats = getStats(nativeReassembler);
+        stats.outstandingBytes = tracker.getOutstandingBytes();
+        stats.lostDataIds = lostCounters.getDataIds();
+        stats.lostEventsPerDataId = lostCounters.get(stats.lostDataIds);
+        return stats;
+    }
     private native RecvStats getStats(long nativeReassembler);
 
+    /**
+     * libe2sar assembles events on its own threads and does not timestamp segments or completed events, so no latency is recorded
+     * for the native Reassembler. Use NioReassembler to measure the assembly and queueing latencies of a stream
+     * @return RecvLatencyStats with empty snapshots
+     */
+    public RecvLatencyStats getLatencyStats() { return new RecvLatencyStats(new LatencySnapshot(0), new LatencySnapshot(0));}
+
+    /**
+     * Get the per port socket drops and receive queue bytes. libe2sar does not expose its per thread counters, so packets, bytes,
+     * events and timeouts are RecvPortStats.NOT_AVAILABLE
+     * @return new RecvPortStats instance
+     */
+    public RecvPortStats getPortStats() { return getPortStats(new RecvPortStats());}
+
+    /**
+     * Fill a RecvPortStats with the per port socket drops and receive queue bytes, reusing its arrays
+     * @param stats - instance filled, usually the one from the previous poll
+     * @return stats
+     */
+    public RecvPortStats getPortStats(RecvPortStats stats) {
+        List<Integer> recvPorts = getRecvPorts();
+        int startPort = recvPorts.get(0);
+        int numPorts = recvPorts.get(1) - startPort + 1;
+        stats.resize(numPorts);
+        stats.timestampNanos = System.nanoTime();
+        for(int i = 0; i < numPorts; i++){
+            stats.ports[i] = startPort + i;
+        }
+        Arrays.fill(stats.packets, RecvPortStats.NOT_AVAILABLE);
+        Arrays.fill(stats.bytes, RecvPortStats.NOT_AVAILABLE);
+        Arrays.fill(stats.events, RecvPortStats.NOT_AVAILABLE);
+        Arrays.fill(stats.timeouts, RecvPortStats.NOT_AVAILABLE);
+        UdpSocketStats.read(stats);
+        return stats;
+    }
+
     /**
      * Try to pop an event number of a lost event from the queue that stores them
      * @return if an error occurs or if there's no event available Optional.empty() is returned otherwise the LostEvent
      */
-    public Optional<LostEvent> getLostEvent() { return getLostEvent(nativeReassembler);}
+    public Optional<LostEvent> getLostEvent() {
+        Optional<LostEvent> lostEvent = getLostEvent(nativeReassembler);
+        lostEvent.ifPresent(lost -> lostCounters.add(lost.dataId, 1));
+        return lostEvent;
+    }
     private native Optional<LostEvent> getLostEvent(long nativeReassembler);
 
+    /**
+     * Batch variant of getLostEvent(), pops lost events in a single native call until the queue is empty or the arrays are full.
+     * Lost event i is returned in eventNums[i] and dataIds[i]
+     * @param eventNums - filled with the lost event numbers
+     * @param dataIds - filled with the data ids of the lost events
+     * @return number of lost events returned
+     */
+    public int drainLostEvents(long[] eventNums, int[] dataIds){
+        int max = Math.min(eventNums.length, dataIds.length);
+        if(max <= 0){
+            return 0;
+        }
+        int count = drainLostEvents(nativeReassembler, eventNums, dataIds, max);
+        for(int i = 0; i < count; i++){
+            lostCounters.add(dataIds[i], 1);
+        }
+        return count;
+    }
+    private native int drainLostEvents(long nativeReassembler, long[] eventNums, int[] dataIds, int maxEvents);
+
     /**
      * Get the number of threads this Reassembler is using
      * @return number of receiver threads
@@ -239,22 +478,30 @@ public class Reassembler {
      * This will free the ByteBuffer associated with a ReassembledEvent. It will be a noop if called twice
      * @param event - ReassembledEvent obtained from getEvent() or recvEvent()
      */
-    public void freeDirectBytebBuffer(ReassembledEvent event){
-        if(allocatedBuffers.contains(event.byteBuffer)){
-            freeDirectBytebBuffer(nativeReassembler, event.byteBuffer);
-            allocatedBuffers.remove(event.byteBuffer);
-        }
-    }
+    public void freeDirectBytebBuffer(ReassembledEvent event){ freeDirectBytebBuffer(event.byteBuffer);}
+
+    /**
+     * This will free a ByteBuffer obtained from recvEvents(). It will be a noop if called twice
+     * @param buffer - ByteBuffer obtained from recvEvents()
+     */
+    public void freeDirectBytebBuffer(ByteBuffer buffer){ tracker.release(buffer);}
     private native void freeDirectBytebBuffer(long nativeReassembler, ByteBuffer buffer);
+
+    /**
+     * Native pointer of the e2sar::Reassembler, used by the foreign function binding on JDK 22+
+     */
+    long getNativeReassembler() { return nativeReassembler;}
     
     /**
      * Method to free the native instance. If called multiple time it will be a noop
-     * This method also frees all Buffers that have yet to be freed
+     * This method also stops the event handler and frees all Buffers that have yet to be freed
      */
-    public void free(){
+    public synchronized void free(){
         if(nativeReassembler != 0){
-            for(ByteBuffer buffer : allocatedBuffers){
-                freeDirectBytebBuffer(nativeReassembler, buffer);
+            stopEventDispatch();
+            tracker.releaseAll();
+            for(ReassembledEvent pending = pendingEvents.poll(); pending != null; pending = pendingEvents.poll()){
+                freeDirectBytebBuffer(nativeReassembler, pending.byteBuffer);
             }
             freeNativePointer(nativeReassembler);
             nativeReassembler = 0;
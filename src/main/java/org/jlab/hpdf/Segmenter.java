@@ -12,6 +12,7 @@ import java.nio.ByteBuffer;
  * is stored in nativeSegmenter field. This class takes in events only as DirectByteBuffers to reduce copying between native code.
  * A globalReference is created in the native code and freed after the segmentation proces is done. 
  * No explicit memory management of events is needed, the DirectByteBuffer will eventually go out of scope in native code.
+ * Producers that recycle a fixed set of buffers can call enableSendCompletions(int) and poll the buffers back once they have been sent.
  * 
  * The Segmenter class knows how to break up the provided
  * events into segments consumable by the hardware loadbalancer.
@@ -21,7 +22,7 @@ import java.nio.ByteBuffer;
  * 
  * REMEMBER TO CALL FREE() ONCE DONE WITH THIS CLASS TO FREE THE NATIVE INSTANCE CREATED. MEMORY LEAKS WILL HAPPEN IF FREE IS NOT CALLED
  */
-public class Segmenter{
+public class Segmenter implements EventSegmenter{
 
     static{
         System.loadLibrary("jnie2sar");
@@ -31,6 +32,10 @@ public class Segmenter{
      *  stores the pointer of the native Segmenter created.
      */
     private long nativeSegmenter;
+    /**
+     *  stores the pointer of the native state shared with the send thread for queued events (JavaVM, completion ring).
+     */
+    private long nativeSendContext;
 
     private native long initSegmentor(EjfatURI dpUri, int dataId, long eventSrcId, SegmenterFlags sFlags) throws E2sarNativeException;
 
@@ -38,6 +43,8 @@ public class Segmenter{
 
     private native long initSegmentor(EjfatURI dpUri, int dataId, long eventSrcId) throws E2sarNativeException;
 
+    private native long initSendContext(int sendQueueCapacity);
+
     /**
      * Constructor to create segmenter with SegmenterFlags
      * @param dpUri - Should be an instance URI. Java object which will be converted to CPP EjfatURI in native method.
@@ -50,6 +57,7 @@ public class Segmenter{
      */
     public Segmenter(EjfatURI dpUri, int dataId, long eventSrcId, SegmenterFlags sFlags) throws E2sarNativeException{
         nativeSegmenter = initSegmentor(dpUri, dataId, eventSrcId, sFlags);
+        nativeSendContext = initSendContext(sFlags.sendQueueCapacity);
     }
 
     /**
@@ -64,6 +72,7 @@ public class Segmenter{
      */
     public Segmenter(EjfatURI dpUri, int dataId, long eventSrcId, String iniFile) throws E2sarNativeException{
         nativeSegmenter = initSegmentor(dpUri, dataId, eventSrcId, iniFile);
+        nativeSendContext = initSendContext(new SegmenterFlags().sendQueueCapacity);
     }
 
     /**
@@ -77,6 +86,7 @@ public class Segmenter{
      */
     public Segmenter(EjfatURI dpUri, int dataId, long eventSrcId) throws E2sarNativeException{
         nativeSegmenter = initSegmentor(dpUri, dataId, eventSrcId);
+        nativeSendContext = initSendContext(new SegmenterFlags().sendQueueCapacity);
     }
 
     /**
@@ -99,25 +109,314 @@ public class Segmenter{
         if(!buffer.isDirect()){
             throw new E2sarNativeException("This method only supports direct ByteBuffers");
         }
-        sendEventDirect(nativeSegmenter, buffer, buffer.capacity(), eventNumber, dataId, entropy);
+        sendEventDirect(nativeSegmenter, buffer, 0, buffer.capacity(), eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Send a region of a Direct ByteBuffer immediately overriding event number. The region is read in place, which allows
+     * many events packed into one large off-heap arena to be sent without copying them into right-sized buffers.
+     * To send the remaining bytes of a buffer use sendEventDirect(buffer, buffer.position(), buffer.remaining(), ...)
+     * @param buffer - event buffer which should be a Direct ByteBuffer
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error sending this event to LB
+     */
+    public void sendEventDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkDirectRegion(buffer, offset, length);
+        sendEventDirect(nativeSegmenter, buffer, offset, length, eventNumber, dataId, entropy);
     }
-    private native void sendEventDirect(long nativeSegmenter, ByteBuffer buffer, int capacity, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+    private native void sendEventDirect(long nativeSegmenter, ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
     
+    /**
+     * Send a region of an on-heap byte array immediately overriding event number. Events of up to 64 KiB are sent from the array
+     * pinned in place instead of being copied into a Direct ByteBuffer first, while pinned the JVM may hold off garbage collection
+     * for all threads until this call returns. Larger events take long enough to send that they are copied into a native staging
+     * buffer kept per calling thread instead, so the array is not pinned and the calling thread keeps that buffer's memory.
+     * Intended for producers that already build events in byte[], there is no queued variant since the array cannot stay pinned
+     * @param data - event bytes
+     * @param offset - offset of the event within data
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the array or there is an error sending this event to LB
+     */
+    public void sendEvent(byte[] data, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        if(offset < 0 || length < 0 || offset > data.length - length){
+            throw new E2sarNativeException("Region [" + offset + ", " + offset + " + " + length + ") is outside of array with length " + data.length);
+        }
+        sendEvent(nativeSegmenter, data, offset, length, eventNumber, dataId, entropy);
+    }
+    private native void sendEvent(long nativeSegmenter, byte[] data, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Send immediately one event made up of several Direct ByteBuffers (e.g. a fixed header followed by payload buffers), overriding event number.
+     * The bytes between position() and limit() of each part are gathered in order into a staging buffer owned by the native
+     * sending thread, so no Java side concatenation or per event direct allocation is needed. Positions and limits are not modified.
+     * @param parts - event parts which should all be Direct ByteBuffers
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If any of the parts is not a Direct ByteBuffer or there is an error sending this event to LB
+     */
+    public void sendEventDirect(ByteBuffer[] parts, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkDirectParts(parts);
+        sendEventDirectGather(nativeSegmenter, parts, eventNumber, dataId, entropy);
+    }
+    private native void sendEventDirectGather(long nativeSegmenter, ByteBuffer[] parts, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
     /**
      * Add to send queue in a nonblocking fashion, overriding internal event number
      * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
      * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
      * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
      * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
-     * @throws E2sarNativeException - If there is an error adding this event to the queue
+     * @throws E2sarNativeException - If the send queue is full or there is an error adding this event to the queue
      */
     public void addToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
         if(!buffer.isDirect()){
             throw new E2sarNativeException("This method only supports direct ByteBuffers");
         }
-        addToSendQueueDirect(nativeSegmenter, buffer, buffer.capacity(), eventNumber, dataId, entropy);
-    }   
-    private native void addToSendQueueDirect(long nativeSegmenter, ByteBuffer buffer, int capacity, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+        addToSendQueueDirect(nativeSegmenter, nativeSendContext, buffer, 0, buffer.capacity(), eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Add to send queue in a nonblocking fashion if there is room, overriding internal event number. Unlike addToSendQueueDirect
+     * a full send queue is reported by returning false, so producers can apply backpressure upstream.
+     * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If the buffer is not a Direct ByteBuffer or the native segmenter rejected the event
+     */
+    public boolean tryAddToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        return offerToSendQueueDirect(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy, 0);
+    }
+
+    /**
+     * Add a region of a Direct ByteBuffer to send queue in a nonblocking fashion if there is room, overriding internal event number.
+     * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If the region lies outside the buffer or the native segmenter rejected the event
+     */
+    public boolean tryAddToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        return offerToSendQueueDirect(buffer, offset, length, eventNumber, dataId, entropy, 0);
+    }
+
+    /**
+     * Blocking variant of tryAddToSendQueueDirect() which waits for room in the send queue, overriding internal event number
+     * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - how long to wait for room in the send queue before giving up, 0 does not wait
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs
+     * @throws E2sarNativeException - If the buffer is not a Direct ByteBuffer or the native segmenter rejected the event
+     */
+    public boolean offerToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException{
+        return offerToSendQueueDirect(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy, timeoutMs);
+    }
+
+    /**
+     * Blocking variant of tryAddToSendQueueDirect() for a region of a Direct ByteBuffer, overriding internal event number
+     * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - how long to wait for room in the send queue before giving up, 0 does not wait
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs
+     * @throws E2sarNativeException - If the region lies outside the buffer or the native segmenter rejected the event
+     */
+    public boolean offerToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException{
+        checkDirectRegion(buffer, offset, length);
+        return offerToSendQueueDirect(nativeSegmenter, nativeSendContext, buffer, offset, length, eventNumber, dataId, entropy, timeoutMs);
+    }
+    private native boolean offerToSendQueueDirect(long nativeSegmenter, long nativeSendContext, ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException;
+
+    /**
+     * Add a region of a Direct ByteBuffer to the send queue in a nonblocking fashion, overriding internal event number.
+     * The region is segmented in place, so the bytes must not be modified until the event has been sent.
+     * Several regions of the same buffer may be queued at the same time.
+     * @param buffer - event buffer which should be a Direct ByteBuffer. This will remain as a Global reference in native code and deleted after segmentation
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error adding this event to the queue
+     */
+    public void addToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkDirectRegion(buffer, offset, length);
+        addToSendQueueDirect(nativeSegmenter, nativeSendContext, buffer, offset, length, eventNumber, dataId, entropy);
+    }
+    private native void addToSendQueueDirect(long nativeSegmenter, long nativeSendContext, ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add one event made up of several Direct ByteBuffers to the send queue in a nonblocking fashion, overriding internal event number.
+     * The bytes between position() and limit() of each part are gathered in order into a single native buffer that is released
+     * once the event has been segmented. No references to the parts are kept, so they may be reused as soon as this method returns.
+     * @param parts - event parts which should all be Direct ByteBuffers
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If any of the parts is not a Direct ByteBuffer or there is an error adding this event to the queue
+     */
+    public void addToSendQueueDirect(ByteBuffer[] parts, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkDirectParts(parts);
+        addToSendQueueDirectGather(nativeSegmenter, nativeSendContext, parts, eventNumber, dataId, entropy);
+    }
+    private native void addToSendQueueDirectGather(long nativeSegmenter, long nativeSendContext, ByteBuffer[] parts, long eventNumber, int dataId, int entropy) throws E2sarNativeException;
+
+    /**
+     * Add a batch of events to the send queue in a single native call, overriding internal event numbers.
+     * Events are enqueued in array order and enqueueing stops at the first event the send queue rejects because it is full,
+     * so the returned count is also the index of the first event that was not queued. Any other rejection is thrown, the events
+     * before the rejected one stay queued and will be sent.
+     * @param buffers - event buffers which should all be Direct ByteBuffers. Accepted buffers remain as Global references in native code and are deleted after segmentation
+     * @param eventNumbers - per event override of the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataIds - per event override of the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropies - per event entropy value (0 is default and random will be generated otherwise)
+     * @param count - number of events to take from the start of the arrays, allows the arrays to be reused between batches
+     * @return number of events accepted onto the send queue
+     * @throws E2sarNativeException - If the arrays are shorter than count, any of the buffers is not a Direct ByteBuffer or the native
+     * queue rejected an event for a reason other than being full
+     */
+    public int addToSendQueueDirectBatch(ByteBuffer[] buffers, long[] eventNumbers, int[] dataIds, int[] entropies, int count) throws E2sarNativeException{
+        if(count < 0 || buffers.length < count || eventNumbers.length < count || dataIds.length < count || entropies.length < count){
+            throw new E2sarNativeException("Batch arrays must hold at least " + count + " events");
+        }
+        for(int i = 0; i < count; i++){
+            if(!buffers[i].isDirect()){
+                throw new E2sarNativeException("This method only supports direct ByteBuffers");
+            }
+        }
+        return addToSendQueueDirectBatch(nativeSegmenter, nativeSendContext, buffers, null, null, eventNumbers, dataIds, entropies, count);
+    }
+
+    /**
+     * Add a batch of buffer regions to the send queue in a single native call, overriding internal event numbers.
+     * Each event i is read in place from buffers[i] starting at offsets[i] for lengths[i] bytes, so the same arena
+     * buffer may appear several times in one batch. Enqueueing stops at the first event the send queue rejects because it is full,
+     * any other rejection is thrown with the events before it left queued.
+     * @param buffers - event buffers which should all be Direct ByteBuffers. Accepted buffers remain as Global references in native code and are deleted after segmentation
+     * @param offsets - absolute offset of each event within its buffer
+     * @param lengths - length of each event in bytes
+     * @param eventNumbers - per event override of the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataIds - per event override of the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropies - per event entropy value (0 is default and random will be generated otherwise)
+     * @param count - number of events to take from the start of the arrays, allows the arrays to be reused between batches
+     * @return number of events accepted onto the send queue
+     * @throws E2sarNativeException - If the arrays are shorter than count, any of the buffers is not a Direct ByteBuffer, a region lies outside its buffer
+     * or the native queue rejected an event for a reason other than being full
+     */
+    public int addToSendQueueDirectBatch(ByteBuffer[] buffers, int[] offsets, int[] lengths, long[] eventNumbers, int[] dataIds, int[] entropies, int count) throws E2sarNativeException{
+        if(count < 0 || buffers.length < count || offsets.length < count || lengths.length < count || 
+            eventNumbers.length < count || dataIds.length < count || entropies.length < count){
+            throw new E2sarNativeException("Batch arrays must hold at least " + count + " events");
+        }
+        for(int i = 0; i < count; i++){
+            checkDirectRegion(buffers[i], offsets[i], lengths[i]);
+        }
+        return addToSendQueueDirectBatch(nativeSegmenter, nativeSendContext, buffers, offsets, lengths, eventNumbers, dataIds, entropies, count);
+    }
+
+    /**
+     * Add a batch of events to the send queue in a single native call, see {@link #addToSendQueueDirectBatch(ByteBuffer[], long[], int[], int[], int)}
+     * @param buffers - event buffers which should all be Direct ByteBuffers
+     * @param eventNumbers - per event override of the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataIds - per event override of the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropies - per event entropy value (0 is default and random will be generated otherwise)
+     * @return number of events accepted onto the send queue
+     * @throws E2sarNativeException - If the arrays are of different lengths, any of the buffers is not a Direct ByteBuffer or the native
+     * queue rejected an event for a reason other than being full
+     */
+    public int addToSendQueueDirectBatch(ByteBuffer[] buffers, long[] eventNumbers, int[] dataIds, int[] entropies) throws E2sarNativeException{
+        if(eventNumbers.length != buffers.length || dataIds.length != buffers.length || entropies.length != buffers.length){
+            throw new E2sarNativeException("Batch arrays must all be of the same length");
+        }
+        return addToSendQueueDirectBatch(buffers, eventNumbers, dataIds, entropies, buffers.length);
+    }
+    private native int addToSendQueueDirectBatch(long nativeSegmenter, long nativeSendContext, ByteBuffer[] buffers, int[] offsets, int[] lengths, long[] eventNumbers, int[] dataIds, int[] entropies, int count) throws E2sarNativeException;
+
+    private static void checkDirectParts(ByteBuffer[] parts) throws E2sarNativeException{
+        if(parts.length == 0){
+            throw new E2sarNativeException("An event needs at least one part");
+        }
+        for(ByteBuffer part : parts){
+            if(!part.isDirect()){
+                throw new E2sarNativeException("This method only supports direct ByteBuffers");
+            }
+        }
+    }
+
+    private static void checkDirectRegion(ByteBuffer buffer, int offset, int length) throws E2sarNativeException{
+        if(!buffer.isDirect()){
+            throw new E2sarNativeException("This method only supports direct ByteBuffers");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.capacity() - length){
+            throw new E2sarNativeException("Region [" + offset + ", " + offset + " + " + length + ") is outside of buffer with capacity " + buffer.capacity());
+        }
+    }
+
+    /**
+     * Opt in to getting queued buffers back once the native send thread is done with them. After this call every buffer
+     * accepted by addToSendQueueDirect or addToSendQueueDirectBatch is placed on a lock-free completion ring after it
+     * has been segmented, from which it can be taken with pollCompletedBuffer() or drainCompletedBuffers(ByteBuffer[]) and reused.
+     * A buffer queued as several regions is returned once per region. If the ring is full when a send completes, the buffer 
+     * is released to the garbage collector instead, so the capacity should be at least the number of buffers in circulation.
+     * Gathered events (ByteBuffer[] parts) are copied when queued and are never placed on the ring.
+     * @param capacity - number of completed buffers the ring can hold (1 to 65534)
+     * @throws E2sarNativeException - If completions are already enabled or the capacity is out of range
+     */
+    public void enableSendCompletions(int capacity) throws E2sarNativeException{
+        if(capacity < 1 || capacity > 65534){
+            throw new E2sarNativeException("Completion ring capacity must be between 1 and 65534");
+        }
+        enableSendCompletions(nativeSendContext, capacity);
+    }
+    private native void enableSendCompletions(long nativeSendContext, int capacity) throws E2sarNativeException;
+
+    /**
+     * Take one buffer off the completion ring. Only useful after enableSendCompletions(int)
+     * @return a buffer whose queued event has been sent and which may be reused, or null if there is none
+     */
+    public ByteBuffer pollCompletedBuffer() { return pollCompletedBuffer(nativeSendContext);}
+    private native ByteBuffer pollCompletedBuffer(long nativeSendContext);
+
+    /**
+     * Take as many buffers as are available, up to buffers.length, off the completion ring in a single native call.
+     * Only useful after enableSendCompletions(int)
+     * @param buffers - array to fill from index 0, it can be reused between calls
+     * @return number of buffers placed in the array
+     */
+    public int drainCompletedBuffers(ByteBuffer[] buffers) { return drainCompletedBuffers(nativeSendContext, buffers);}
+    private native int drainCompletedBuffers(long nativeSendContext, ByteBuffer[] buffers);
+
+    /**
+     * Get the maximum number of events that can wait in the send queue, set through SegmenterFlags.sendQueueCapacity
+     * @return send queue capacity
+     */
+    public int getSendQueueCapacity() { return getSendQueueCapacity(nativeSendContext);}
+    private native int getSendQueueCapacity(long nativeSendContext);
+
+    /**
+     * Get the number of queued events that have not been segmented yet. This is a cheap lock-free read
+     * meant to be sampled frequently, e.g. to size producer pools
+     * @return current send queue occupancy
+     */
+    public int getSendQueueOccupancy() { return getSendQueueOccupancy(nativeSendContext);}
+    private native int getSendQueueOccupancy(long nativeSendContext);
 
     /**
      * Get the MTU currently in use by segmenter
@@ -147,8 +446,20 @@ public class Segmenter{
     public SendStats getSendStats() { return getSendStats(nativeSegmenter);}
     private native SendStats getSendStats(long nativeSegmenter);
 
+    /**
+     * Native pointer of the e2sar::Segmenter, used by the foreign function binding on JDK 22+
+     */
+    long getNativeSegmenter() { return nativeSegmenter;}
+
+    /**
+     * Native pointer of the send context, used by the foreign function binding on JDK 22+
+     */
+    long getNativeSendContext() { return nativeSendContext;}
+
     private native void freeNativePointer(long nativeSegmenter);
 
+    private native void freeSendContext(long nativeSendContext);
+
     /**
      * Method to free the native instance. If called multiple time it will be a noop
      */
@@ -156,6 +467,9 @@ public class Segmenter{
         if(nativeSegmenter != 0){
             freeNativePointer(nativeSegmenter);
             nativeSegmenter = 0;
+            // only freed once the send thread has stopped
+            freeSendContext(nativeSendContext);
+            nativeSendContext = 0;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.messages.RecvPortStats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the kernel's per socket UDP counters from /proc/net/udp and /proc/net/udp6, shared by Reassembler and
+ * org.jlab.hpdf.nio.NioReassembler for RecvPortStats. Java has no access to SO_RXQ_OVFL, the drops column of these files is the same counter.
+ * <p>
+ * The files are kept open and re-read from offset 0 into a direct buffer that is parsed in place, so once the buffer has grown to fit
+ * them a poll allocates nothing. Polls from several threads are serialized.
+ */
+public final class UdpSocketStats {
+
+    private static final Path[] PROC_NET_UDP = {Paths.get("/proc/net/udp"), Paths.get("/proc/net/udp6")};
+
+    // "sl local_address rem_address st tx_queue:rx_queue tr:tm->when retrnsmt uid timeout inode ref pointer drops"
+    private static final int LOCAL_ADDRESS_FIELD = 1;
+    private static final int QUEUES_FIELD = 4;
+    private static final int MIN_FIELDS = 13;
+
+    private static final FileChannel[] channels = new FileChannel[PROC_NET_UDP.length];
+    // a file that could not be opened once is not tried again, e.g. udp6 without IPv6
+    private static final boolean[] unavailable = new boolean[PROC_NET_UDP.length];
+    private static ByteBuffer contents = ByteBuffer.allocateDirect(64 * 1024);
+    private static final int[] fieldStart = new int[MIN_FIELDS];
+    private static final int[] fieldEnd = new int[MIN_FIELDS];
+
+    private UdpSocketStats(){}
+
+    /**
+     * Fill stats.socketDrops and stats.rxQueueBytes for stats.ports, summing all sockets bound to the same port.
+     * Both are set to RecvPortStats.NOT_AVAILABLE if neither file can be read
+     * @param stats - snapshot with ports filled
+     */
+    public static synchronized void read(RecvPortStats stats){
+        Arrays.fill(stats.socketDrops, 0);
+        Arrays.fill(stats.rxQueueBytes, 0);
+        boolean found = false;
+        for(int i=0;i<PROC_NET_UDP.length;i++){
+            if(readFile(i)){
+                parse(stats);
+                found = true;
+            }
+        }
+        if(!found){
+            Arrays.fill(stats.socketDrops, RecvPortStats.NOT_AVAILABLE);
+            Arrays.fill(stats.rxQueueBytes, RecvPortStats.NOT_AVAILABLE);
+        }
+    }
+
+    // reads the whole file into contents, doubling it until the file fits. proc files are generated on every read from offset 0
+    private static boolean readFile(int file){
+        if(unavailable[file]){
+            return false;
+        }
+        try{
+            if(channels[file] == null){
+                channels[file] = FileChannel.open(PROC_NET_UDP[file], StandardOpenOption.READ);
+            }
+            FileChannel channel = channels[file];
+            contents.clear();
+            while(channel.read(contents, contents.position()) > 0){
+                if(!contents.hasRemaining()){
+                    ByteBuffer larger = ByteBuffer.allocateDirect(contents.capacity() * 2);
+                    contents.flip();
+                    larger.put(contents);
+                    contents = larger;
+                }
+            }
+            contents.flip();
+            return true;
+        }
+        catch(IOException e){
+            // no such file on this system or no IPv6, try the other one
+            unavailable[file] = true;
+            return false;
+        }
+    }
+
+    private static void parse(RecvPortStats stats){
+        int end = contents.limit();
+        // header line
+        int lineStart = nextLine(0, end);
+        while(lineStart < end){
+            int lineEnd = lineStart;
+            while(lineEnd < end && contents.get(lineEnd) != '\n'){
+                lineEnd++;
+            }
+            parseLine(lineStart, lineEnd, stats);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private static int nextLine(int index, int end){
+        while(index < end && contents.get(index) != '\n'){
+            index++;
+        }
+        return index + 1;
+    }
+
+    // addresses and queues are hex, the port is after the colon of local_address and rx_queue after the colon of the queues.
+    // Only the first MIN_FIELDS fields are kept, drops is the last field of the line
+    private static void parseLine(int start, int end, RecvPortStats stats){
+        int numFields = 0;
+        int lastStart = -1;
+        int lastEnd = -1;
+        int index = start;
+        while(true){
+            while(index < end && contents.get(index) <= ' '){
+                index++;
+            }
+            if(index == end){
+                break;
+            }
+            lastStart = index;
+            while(index < end && contents.get(index) > ' '){
+                index++;
+            }
+            lastEnd = index;
+            if(numFields < MIN_FIELDS){
+                fieldStart[numFields] = lastStart;
+                fieldEnd[numFields] = lastEnd;
+            }
+            numFields++;
+        }
+        if(numFields < MIN_FIELDS){
+            return;
+        }
+        long port = parseNumber(afterColon(LOCAL_ADDRESS_FIELD), fieldEnd[LOCAL_ADDRESS_FIELD], 16);
+        if(port < 0){
+            return;
+        }
+        for(int i=0;i<stats.ports.length;i++){
+            if(stats.ports[i] != port){
+                continue;
+            }
+            long rxQueue = parseNumber(afterColon(QUEUES_FIELD), fieldEnd[QUEUES_FIELD], 16);
+            long drops = parseNumber(lastStart, lastEnd, 10);
+            // a malformed line leaves the counters as they are
+            if(rxQueue >= 0 && drops >= 0){
+                stats.rxQueueBytes[i] += rxQueue;
+                stats.socketDrops[i] += drops;
+            }
+            return;
+        }
+    }
+
+    // start of the part of field after its last colon, the field end if it has none so that parseNumber rejects it
+    private static int afterColon(int field){
+        for(int index = fieldEnd[field] - 1; index >= fieldStart[field]; index--){
+            if(contents.get(index) == ':'){
+                return index + 1;
+            }
+        }
+        return fieldEnd[field];
+    }
+
+    // -1 if [start, end) is empty, not a number in radix or too long to be a counter
+    private static long parseNumber(int start, int end, int radix){
+        if(start >= end || end - start > 16){
+            return -1;
+        }
+        long value = 0;
+        for(int index = start; index < end; index++){
+            int digit = Character.digit(contents.get(index), radix);
+            if(digit < 0){
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value;
+    }
+}
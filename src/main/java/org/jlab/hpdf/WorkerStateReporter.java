@@ -0,0 +1,167 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reports this worker's state to the load balancer from the occupancy of an application queue instead of the native Reassembler's
+ * internal event queue. Every period_ms a dedicated thread samples the FillSource, runs the PidController with the Kp, Ki, Kd, setPoint
+ * and epoch_ms of ReassemblerFlags and calls LbManager.sendState(fill, controlSignal, isReady).
+ * <p>
+ * The thread sleeps until absolute deadlines so the period does not drift with the time sendState takes, a late sample is taken at once
+ * and the following ones go back to the original schedule. Create the Reassembler with useCP = false so its own send state thread does not
+ * report the native queue at the same time, and register the worker with LbManager.registerWorker() before starting the reporter.
+ */
+public class WorkerStateReporter implements AutoCloseable {
+
+    /**
+     * Where the state is sent, LbManager::sendState in a deployment
+     */
+    @FunctionalInterface
+    public interface StateSink {
+        /**
+         * @param fillPercent - [0:1] fill of the application queue
+         * @param controlSignal - PID control signal
+         * @param isReady - whether the worker accepts more data
+         * @throws E2sarNativeException - If the state could not be sent
+         */
+        void sendState(float fillPercent, float controlSignal, boolean isReady) throws E2sarNativeException;
+    }
+
+    private final StateSink sink;
+    private final FillSource fillSource;
+    private final PidController pid;
+    private final long periodNanos;
+    private final Thread thread;
+
+    private volatile boolean ready = true;
+    private volatile boolean stopping;
+    private volatile float lastFill;
+    private volatile float lastControlSignal;
+    private volatile Exception lastError;
+    private final AtomicLong statesSent = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+
+    /**
+     * @param lbManager - LbManager the worker was registered with
+     * @param fillSource - application queue occupancy
+     * @param rFlags - period_ms, epoch_ms, Kp, Ki, Kd and setPoint are used
+     * @throws E2sarNativeException - If period_ms or epoch_ms are not positive
+     */
+    public WorkerStateReporter(LbManager lbManager, FillSource fillSource, ReassemblerFlags rFlags) throws E2sarNativeException{
+        this(lbManager::sendState, fillSource, rFlags);
+    }
+
+    /**
+     * @param sink - receives every state, for sending it somewhere other than an LbManager
+     * @param fillSource - application queue occupancy
+     * @param rFlags - period_ms, epoch_ms, Kp, Ki, Kd and setPoint are used
+     * @throws E2sarNativeException - If period_ms or epoch_ms are not positive
+     */
+    public WorkerStateReporter(StateSink sink, FillSource fillSource, ReassemblerFlags rFlags) throws E2sarNativeException{
+        if(rFlags.period_ms <= 0 || rFlags.epoch_ms <= 0){
+            throw new E2sarNativeException("period_ms and epoch_ms must be positive");
+        }
+        this.sink = sink;
+        this.fillSource = fillSource;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(rFlags.period_ms);
+        int samplesPerEpoch = (int) Math.max(1, rFlags.epoch_ms / rFlags.period_ms);
+        this.pid = new PidController(rFlags.Kp, rFlags.Ki, rFlags.Kd, rFlags.setPoint, samplesPerEpoch);
+        this.thread = new Thread(this::reportLoop, "WorkerStateReporter");
+        thread.setDaemon(true);
+        // the period is short and the load balancer deregisters workers that go quiet, keep it ahead of the application threads
+        thread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Start sending state every period_ms
+     */
+    public void start(){
+        thread.start();
+    }
+
+    private void reportLoop(){
+        long deadline = System.nanoTime();
+        long previous = deadline - periodNanos;
+        while(!stopping){
+            try{
+                long now = System.nanoTime();
+                float fill = Math.max(0.0f, Math.min(1.0f, fillSource.getFill()));
+                float controlSignal = pid.update(fill, (now - previous) / 1e9);
+                previous = now;
+                lastFill = fill;
+                lastControlSignal = controlSignal;
+                sink.sendState(fill, controlSignal, ready);
+                statesSent.incrementAndGet();
+            }
+            catch(E2sarNativeException | RuntimeException e){
+                // the load balancer may be briefly unreachable or an application FillSource or StateSink may fail, a dead reporter
+                // would get the worker deregistered so keep reporting
+                lastError = e;
+                sendErrors.incrementAndGet();
+            }
+
+            deadline += periodNanos;
+            long late = System.nanoTime() - deadline;
+            if(late > periodNanos){
+                // a whole period was missed, do not send a burst to catch up
+                deadline += late / periodNanos * periodNanos;
+            }
+            for(long wait = deadline - System.nanoTime(); wait > 0 && !stopping; wait = deadline - System.nanoTime()){
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    /**
+     * @param ready - reported as isReady from the next period on, true by default
+     */
+    public void setReady(boolean ready){ this.ready = ready;}
+
+    /**
+     * @return fill reported in the last period
+     */
+    public float getLastFill(){ return lastFill;}
+
+    /**
+     * @return control signal reported in the last period
+     */
+    public float getLastControlSignal(){ return lastControlSignal;}
+
+    /**
+     * @return number of states sent successfully
+     */
+    public long getStatesSent(){ return statesSent.get();}
+
+    /**
+     * @return number of periods whose state could not be sampled or sent
+     */
+    public long getSendErrors(){ return sendErrors.get();}
+
+    /**
+     * @return the E2sarNativeException of the last state that could not be sent or the RuntimeException thrown by the FillSource
+     * or StateSink, null if there was none
+     */
+    public Exception getLastError(){ return lastError;}
+
+    /**
+     * Stop sending state and wait for the reporter thread to exit. If called multiple time it will be a noop
+     */
+    @Override
+    public void close(){
+        stopping = true;
+        LockSupport.unpark(thread);
+        if(thread.isAlive()){
+            try{
+                thread.join();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
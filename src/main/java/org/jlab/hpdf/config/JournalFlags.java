@@ -0,0 +1,24 @@
+package org.jlab.hpdf.config;
+
+/**
+ * flags governing EventJournalWriter segment sizes with sane defaults
+ */
+public class JournalFlags {
+    /**
+     * size of the data file of each segment, pre-allocated and mapped whole, at most Integer.MAX_VALUE. An event larger than this
+     * cannot be journaled {256MB}
+     */
+    public int segmentBytes;
+    /**
+     * number of index records of each segment, a new segment is started once either the data file or the index is full {65536}
+     */
+    public int eventsPerSegment;
+
+    /**
+     * Default constructor with sane values
+     */
+    public JournalFlags(){
+        segmentBytes = 256 * 1024 * 1024;
+        eventsPerSegment = 65536;
+    }
+}
@@ -0,0 +1,41 @@
+package org.jlab.hpdf.config;
+
+/**
+ * flags governing ReassemblerPipeline and DataIdRouter behavior with sane defaults
+ */
+public class PipelineFlags {
+    /**
+     * number of events each ring between the feeder and the workers holds, rounded up to a power of two of at least 2. The feeder waits while
+     * the ring it needs is full, so events back up in the reassembler queue {1024}
+     */
+    public int ringCapacity;
+    /**
+     * GLOBAL ordering only - number of event numbers the EventReorderBuffer of each data id spans, rounded up to a power of two.
+     * An event a full window ahead of a missing one of its data id makes the missing one be given up {1024}
+     */
+    public int reorderWindow;
+    /**
+     * GLOBAL ordering only - how long a missing event is waited for before it is given up and reported as lost, checked at least
+     * every pollMs {100}
+     */
+    public long gapTimeoutMs;
+    /**
+     * how long the feeder blocks in recvEvent before checking whether the pipeline was stopped {100}
+     */
+    public long pollMs;
+    /**
+     * how long an idle worker or the feeder waiting on a full ring parks between two attempts, in microseconds {50}
+     */
+    public long idleParkUs;
+
+    /**
+     * Default constructor with sane values
+     */
+    public PipelineFlags(){
+        ringCapacity = 1024;
+        reorderWindow = 1024;
+        gapTimeoutMs = 100;
+        pollMs = 100;
+        idleParkUs = 50;
+    }
+}
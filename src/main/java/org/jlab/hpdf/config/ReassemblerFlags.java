@@ -66,6 +66,29 @@ public class ReassemblerFlags {
      * for example, 4 nodes with a maxFactor of 2 = (512 slots / 4) * 2 = max 256 slots set to 0 to specify no maximum
      */
     public float max_factor;
+    /**
+     * capacity of the smallest size class of the reassembly buffer pool, rounded up to a power of two {4KB}
+     */
+    public int poolMinBufferSize;
+    /**
+     * capacity of the largest size class of the reassembly buffer pool, rounded up to a power of two.
+     * Larger events are allocated exactly and not pooled {16MB}
+     */
+    public int poolMaxBufferSize;
+    /**
+     * maximum number of released event buffers kept per size class of the reassembly buffer pool, 0 disables pooling {64}
+     */
+    public int poolBuffersPerClass;
+    /**
+     * budget for the bytes held by events handed to the application and not yet freed. Once reached no further events are
+     * delivered until some are freed, they back up in the reassembler queue and are counted in enqueueLoss if it overflows. 0 for no budget {0}
+     */
+    public long maxOutstandingBytes;
+    /**
+     * NioReassembler only - largest event length a segment may announce. Segments of longer events are dropped and counted in
+     * dataErrCount, so a single corrupt or hostile datagram cannot make the reassembler allocate a buffer of up to 2GB {64MB}
+     */
+    public int maxEventSize;
 
     /**
      * Default constructor with sane values
@@ -86,5 +109,11 @@ public class ReassemblerFlags {
         rcvSocketBufSize = 1024 * 1024 * 3;
         weight = 1.0f;
         min_factor = 0.5f;
-        max_factor = 2.0f;    }
+        max_factor = 2.0f;
+        poolMinBufferSize = 4 * 1024;
+        poolMaxBufferSize = 16 * 1024 * 1024;
+        poolBuffersPerClass = 64;
+        maxOutstandingBytes = 0;
+        maxEventSize = 64 * 1024 * 1024;
+    }
 }
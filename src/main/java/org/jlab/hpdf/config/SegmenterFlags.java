@@ -17,6 +17,7 @@ package org.jlab.hpdf.config;
  * more, the more randomness the LAG will see in delivering to different FPGA ports. {4}
  * - sndSocketBufSize - socket buffer size for sending set via SO_SNDBUF setsockopt. Note
  * that this requires systemwide max set via sysctl (net.core.wmem_max) to be higher. {3MB}
+ * - sendQueueCapacity - maximum number of events waiting in the send queue, enforced by the Java wrapper {2047}
  */
 public class SegmenterFlags{
     /**
@@ -65,6 +66,11 @@ public class SegmenterFlags{
      * that this requires systemwide max set via sysctl (net.core.wmem_max) to be higher. {3MB}
      */
     public int sndSocketBufSize;
+    /**
+     * maximum number of events waiting in the send queue before addToSendQueueDirect starts rejecting them. This is
+     * enforced by the JNI wrapper and is not passed to the native Segmenter, whose own queue holds 2047 events. {2047}
+     */
+    public int sendQueueCapacity;
 
     /**
      * Default constructor with sane deafults
@@ -81,5 +87,6 @@ public class SegmenterFlags{
         this.mtu = 1500;
         this.numSendSockets = 4;
         this.sndSocketBufSize = 1024 * 1024 * 3;
+        this.sendQueueCapacity = 2047;
     }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package org.jlab.hpdf.journal;
+
+import org.jlab.hpdf.EventSegmenter;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads a journal written by EventJournalWriter back in index order, one segment mapped read only at a time. Events are read-only
+ * slices of the mapped data file, which are direct buffers, so they can be handed to Segmenter.sendEventDirect() and
+ * addToSendQueueDirect() without copying. replay() sends the whole journal through an EventSegmenter at the recorded pace, a multiple
+ * of it or as fast as possible.
+ * <p>
+ * Move through the journal with next() and read the current event with getEvent(), getEventNum(), getDataId() and getTimestampNanos().
+ * Not thread safe.
+ */
+public class EventJournalReader implements AutoCloseable {
+
+    /**
+     * speed for replay() that sends every event as soon as the previous one was sent
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final long QUEUE_FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Path directory;
+    private final String name;
+
+    private int segment = -1;
+    private MappedByteBuffer data;
+    private MappedByteBuffer index;
+    private int record;
+
+    private long eventNum;
+    private int dataId;
+    private long dataOffset;
+    private int length;
+    private long timestampNanos;
+
+    /**
+     * Open a journal, the first segment is mapped by the first call to next()
+     * @param directory - directory of the segment files
+     * @param name - journal name
+     * @throws E2sarNativeException - If the journal has no first segment
+     */
+    public EventJournalReader(Path directory, String name) throws E2sarNativeException{
+        this.directory = directory;
+        this.name = name;
+        if(!segmentExists(0)){
+            throw new E2sarNativeException("No journal " + name + " in " + directory);
+        }
+    }
+
+    private boolean segmentExists(int n){
+        return Files.exists(EventJournalWriter.segmentPath(directory, name, n, EventJournalWriter.DATA_SUFFIX))
+            && Files.exists(EventJournalWriter.segmentPath(directory, name, n, EventJournalWriter.INDEX_SUFFIX));
+    }
+
+    // the mapping stays valid once the channel is closed
+    private static MappedByteBuffer map(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private boolean mapSegment(int n) throws E2sarNativeException{
+        if(!segmentExists(n)){
+            return false;
+        }
+        try{
+            data = map(EventJournalWriter.segmentPath(directory, name, n, EventJournalWriter.DATA_SUFFIX));
+            index = map(EventJournalWriter.segmentPath(directory, name, n, EventJournalWriter.INDEX_SUFFIX));
+            index.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        catch(IOException e){
+            throw new E2sarNativeException("Could not map journal segment " + n + ": " + e.getMessage());
+        }
+        segment = n;
+        record = 0;
+        return true;
+    }
+
+    /**
+     * Move to the next event, skipping index records that were reserved but never written
+     * @return false once the last event of the last segment was read
+     * @throws E2sarNativeException - If a segment could not be mapped or an index record points outside its data file
+     */
+    public boolean next() throws E2sarNativeException{
+        while(true){
+            if(index == null || record >= index.capacity() / EventJournalWriter.INDEX_RECORD_BYTES){
+                if(!mapSegment(segment + 1)){
+                    return false;
+                }
+                continue;
+            }
+            int at = record++ * EventJournalWriter.INDEX_RECORD_BYTES;
+            int storedDataId = index.getInt(at + EventJournalWriter.DATA_ID_OFFSET);
+            if((storedDataId & EventJournalWriter.COMMITTED) == 0){
+                continue;
+            }
+            eventNum = index.getLong(at + EventJournalWriter.EVENT_NUM_OFFSET);
+            dataId = storedDataId & 0xffff;
+            dataOffset = index.getLong(at + EventJournalWriter.DATA_OFFSET_OFFSET);
+            length = index.getInt(at + EventJournalWriter.LENGTH_OFFSET);
+            timestampNanos = index.getLong(at + EventJournalWriter.TIMESTAMP_OFFSET);
+            if(length < 0 || dataOffset < 0 || dataOffset + length > data.capacity()){
+                throw new E2sarNativeException("Journal segment " + segment + " record " + (record - 1) + " lies outside the data file");
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Go back to before the first event
+     */
+    public void rewind(){
+        segment = -1;
+        data = null;
+        index = null;
+    }
+
+    /**
+     * @return read-only direct slice of the mapped data file holding the current event, valid as long as it is referenced
+     */
+    public ByteBuffer getEvent(){ return data.slice((int) dataOffset, length);}
+
+    /**
+     * @return event number of the current event
+     */
+    public long getEventNum(){ return eventNum;}
+
+    /**
+     * @return data id of the current event
+     */
+    public int getDataId(){ return dataId;}
+
+    /**
+     * @return length of the current event in bytes
+     */
+    public int getLength(){ return length;}
+
+    /**
+     * @return time the current event was appended, in nanoseconds since the epoch
+     */
+    public long getTimestampNanos(){ return timestampNanos;}
+
+    /**
+     * Send every event from the current position on through segmenter, keeping the recorded event numbers and data ids. Note that
+     * Segmenter replaces event number 0 and data id 0 with its own. Events are sent from the mapped data file without copying
+     * @param segmenter - opened and started segmenter
+     * @param speed - 1 for the recorded pace, N for N times faster, AS_FAST_AS_POSSIBLE to not wait between events
+     * @param queue - add events to the send queue with addToSendQueueDirect instead of sending them with sendEventDirect, waiting
+     * while the queue is full
+     * @return number of events sent
+     * @throws E2sarNativeException - If speed is negative, a segment could not be mapped or an event could not be sent
+     */
+    public long replay(EventSegmenter segmenter, double speed, boolean queue) throws E2sarNativeException{
+        if(speed < 0 || Double.isNaN(speed)){
+            throw new E2sarNativeException("speed must not be negative, got " + speed);
+        }
+        long sent = 0;
+        long firstTimestamp = 0;
+        long startNanos = 0;
+        while(next()){
+            if(speed != AS_FAST_AS_POSSIBLE){
+                if(sent == 0){
+                    firstTimestamp = timestampNanos;
+                    startNanos = System.nanoTime();
+                }
+                // events appended concurrently can be slightly out of time order, those are sent right away
+                long due = startNanos + (long) ((timestampNanos - firstTimestamp) / speed);
+                for(long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()){
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            if(queue){
+                // the mapped data file stays referenced by the queued region until it is sent
+                while(!segmenter.tryAddToSendQueueDirect(data, (int) dataOffset, length, eventNum, dataId, 0)){
+                    LockSupport.parkNanos(QUEUE_FULL_PARK_NANOS);
+                }
+            }
+            else{
+                segmenter.sendEventDirect(data, (int) dataOffset, length, eventNum, dataId, 0);
+            }
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * Drop the current mapping, it is unmapped once no event slice references it any more. If called multiple time it will be a noop
+     */
+    @Override
+    public void close(){
+        rewind();
+    }
+}
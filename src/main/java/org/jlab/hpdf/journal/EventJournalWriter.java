@@ -0,0 +1,284 @@
+package org.jlab.hpdf.journal;
+
+import org.jlab.hpdf.EventReassembler;
+import org.jlab.hpdf.config.JournalFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ReassembledEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends event payloads to a journal of rolling segments in a directory. Each segment is a pre-sized data file and an index file of
+ * fixed size records, both memory mapped, so appending an event is a single copy from its buffer into the mapped data file, after which
+ * the event can be released. Any number of threads may append concurrently: each append reserves its data offset and index record with
+ * an atomic add and copies without locking, only starting the next segment takes a lock.
+ * <p>
+ * Segment n of journal name is name-n.data and name-n.index with n zero padded to 6 digits. An index record is INDEX_RECORD_BYTES long,
+ * little endian: eventNum (8), data offset (8), append time in nanoseconds since the epoch (8), length (4) and data id (4). The data id
+ * is written last with COMMITTED set, records without it were reserved but never written and are skipped by EventJournalReader.
+ * Records are in reservation order, events appended concurrently may be a few nanoseconds out of time order.
+ */
+public class EventJournalWriter implements AutoCloseable {
+
+    /**
+     * size of an index record in bytes
+     */
+    public static final int INDEX_RECORD_BYTES = 32;
+    /**
+     * set in the data id field of every index record that was completely written
+     */
+    public static final int COMMITTED = 0x80000000;
+
+    static final int EVENT_NUM_OFFSET = 0;
+    static final int DATA_OFFSET_OFFSET = 8;
+    static final int TIMESTAMP_OFFSET = 16;
+    static final int LENGTH_OFFSET = 24;
+    static final int DATA_ID_OFFSET = 28;
+
+    static final String DATA_SUFFIX = ".data";
+    static final String INDEX_SUFFIX = ".index";
+
+    static Path segmentPath(Path directory, String name, int segment, String suffix){
+        return directory.resolve(String.format("%s-%06d%s", name, segment, suffix));
+    }
+
+    /**
+     * A mapped data and index file pair. Appending threads hold a reference count while they copy, so a segment that was replaced
+     * by the next one is only forced and closed once the last copy into it is done
+     */
+    private static final class Segment {
+        final FileChannel dataChannel;
+        final FileChannel indexChannel;
+        final MappedByteBuffer data;
+        final MappedByteBuffer index;
+        final AtomicLong dataPosition = new AtomicLong();
+        final AtomicInteger indexPosition = new AtomicInteger();
+        final AtomicInteger writers = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile boolean retired;
+
+        Segment(Path dataPath, Path indexPath, int segmentBytes, int eventsPerSegment) throws IOException{
+            dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel openedIndex = null;
+            try{
+                openedIndex = FileChannel.open(indexPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+                index = openedIndex.map(FileChannel.MapMode.READ_WRITE, 0, (long) eventsPerSegment * INDEX_RECORD_BYTES);
+                index.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            catch(IOException e){
+                dataChannel.close();
+                if(openedIndex != null){
+                    openedIndex.close();
+                }
+                throw e;
+            }
+            indexChannel = openedIndex;
+        }
+
+        void close() throws IOException{
+            if(closed.compareAndSet(false, true)){
+                data.force();
+                index.force();
+                dataChannel.close();
+                indexChannel.close();
+            }
+        }
+    }
+
+    private final Path directory;
+    private final String name;
+    private final int segmentBytes;
+    private final int eventsPerSegment;
+    private final long startEpochNanos;
+    private final long startNanos;
+
+    private volatile Segment current;
+    private int nextSegment;
+    private boolean closed;
+
+    private final AtomicLong eventsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile IOException closeError;
+
+    /**
+     * Create the first segment of a new journal
+     * @param directory - existing directory the segment files are created in
+     * @param name - journal name, segment files of the same name must not exist yet
+     * @param flags - segment data file size and number of index records
+     * @throws E2sarNativeException - If the flags are not positive or the first segment could not be created
+     */
+    public EventJournalWriter(Path directory, String name, JournalFlags flags) throws E2sarNativeException{
+        if(flags.segmentBytes <= 0 || flags.eventsPerSegment <= 0){
+            throw new E2sarNativeException("segmentBytes and eventsPerSegment must be positive");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = flags.segmentBytes;
+        this.eventsPerSegment = flags.eventsPerSegment;
+        Instant now = Instant.now();
+        this.startEpochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        this.startNanos = System.nanoTime();
+        this.current = openSegment();
+    }
+
+    /**
+     * Create the first segment of a new journal with default JournalFlags
+     * @param directory - existing directory the segment files are created in
+     * @param name - journal name, segment files of the same name must not exist yet
+     * @throws E2sarNativeException - If the first segment could not be created
+     */
+    public EventJournalWriter(Path directory, String name) throws E2sarNativeException{
+        this(directory, name, new JournalFlags());
+    }
+
+    private Segment openSegment() throws E2sarNativeException{
+        int segment = nextSegment++;
+        try{
+            return new Segment(segmentPath(directory, name, segment, DATA_SUFFIX), segmentPath(directory, name, segment, INDEX_SUFFIX),
+                segmentBytes, eventsPerSegment);
+        }
+        catch(IOException e){
+            throw new E2sarNativeException("Could not create journal segment " + segment + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append the bytes between position and limit of buffer, the buffer is not modified and can be released once this returns
+     * @param buffer - event payload
+     * @param eventNum - event number recorded in the index
+     * @param dataId - data id recorded in the index, 0 to 0xffff
+     * @throws E2sarNativeException - If the event is larger than segmentBytes, the journal is closed or the next segment could not be created
+     */
+    public void append(ByteBuffer buffer, long eventNum, int dataId) throws E2sarNativeException{
+        int length = buffer.remaining();
+        if(length > segmentBytes){
+            throw new E2sarNativeException("Event of " + length + " bytes does not fit in a segment of " + segmentBytes + " bytes");
+        }
+        while(true){
+            Segment segment = current;
+            if(segment == null){
+                throw new E2sarNativeException("Journal is closed");
+            }
+            segment.writers.incrementAndGet();
+            try{
+                if(segment.retired){
+                    continue;
+                }
+                long offset = segment.dataPosition.getAndAdd(length);
+                int record = segment.indexPosition.getAndIncrement();
+                if(offset + length <= segmentBytes && record < eventsPerSegment){
+                    segment.data.put((int) offset, buffer, buffer.position(), length);
+                    int at = record * INDEX_RECORD_BYTES;
+                    segment.index.putLong(at + EVENT_NUM_OFFSET, eventNum);
+                    segment.index.putLong(at + DATA_OFFSET_OFFSET, offset);
+                    segment.index.putLong(at + TIMESTAMP_OFFSET, startEpochNanos + System.nanoTime() - startNanos);
+                    segment.index.putInt(at + LENGTH_OFFSET, length);
+                    segment.index.putInt(at + DATA_ID_OFFSET, (dataId & 0xffff) | COMMITTED);
+                    eventsWritten.incrementAndGet();
+                    bytesWritten.addAndGet(length);
+                    return;
+                }
+            }
+            finally{
+                release(segment);
+            }
+            // the reservation ran past the end of the segment, whichever thread gets here first starts the next one
+            roll(segment);
+        }
+    }
+
+    /**
+     * Append the payload of a reassembled event and release it right after the copy
+     * @param reassembler - reassembler the event was received from
+     * @param event - event to append and release
+     * @throws E2sarNativeException - If the event could not be appended, it is released either way
+     */
+    public void appendAndFree(EventReassembler reassembler, ReassembledEvent event) throws E2sarNativeException{
+        try{
+            append(event.byteBuffer, event.eventNum, event.dataId);
+        }
+        finally{
+            reassembler.freeDirectBytebBuffer(event);
+        }
+    }
+
+    private void release(Segment segment){
+        if(segment.writers.decrementAndGet() == 0 && segment.retired){
+            closeSegment(segment);
+        }
+    }
+
+    private synchronized void roll(Segment full) throws E2sarNativeException{
+        if(closed || current != full){
+            return;
+        }
+        current = openSegment();
+        retire(full);
+    }
+
+    private void retire(Segment segment){
+        segment.retired = true;
+        if(segment.writers.get() == 0){
+            closeSegment(segment);
+        }
+    }
+
+    private void closeSegment(Segment segment){
+        try{
+            segment.close();
+        }
+        catch(IOException e){
+            closeError = e;
+        }
+    }
+
+    /**
+     * @return number of events appended
+     */
+    public long getEventsWritten(){ return eventsWritten.get();}
+
+    /**
+     * @return number of payload bytes appended
+     */
+    public long getBytesWritten(){ return bytesWritten.get();}
+
+    /**
+     * @return number of segments created
+     */
+    public synchronized int getSegments(){ return nextSegment;}
+
+    /**
+     * Stop accepting events and force the open segment to disk once the appends in progress are done.
+     * If called multiple time it will be a noop
+     * @throws E2sarNativeException - If a segment could not be written out
+     */
+    @Override
+    public synchronized void close() throws E2sarNativeException{
+        if(closed){
+            return;
+        }
+        closed = true;
+        Segment last = current;
+        current = null;
+        retire(last);
+        // appends that already hold the segment finish before it is closed, wait for them so the journal is complete on return
+        while(!last.closed.get()){
+            Thread.onSpinWait();
+        }
+        if(closeError != null){
+            throw new E2sarNativeException("Could not write journal segment: " + closeError.getMessage());
+        }
+    }
+}
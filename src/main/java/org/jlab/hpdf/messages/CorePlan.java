@@ -0,0 +1,46 @@
+package org.jlab.hpdf.messages;
+
+import java.util.List;
+
+/**
+ * Core assignment proposed by CpuTopology.plan(). Every core is a different physical core, the other hyperthreads of those cores are
+ * left idle so receive and consumer threads do not share execution units
+ */
+public class CorePlan {
+    /**
+     * NUMA node of the NIC the plan is for, -1 if the NIC's node is unknown and the lowest node was used
+     */
+    public int numaNode;
+    /**
+     * cores for the receive threads, pass as cpuCoreList to Reassembler
+     */
+    public List<Integer> receiveCores;
+    /**
+     * cores for the consumer threads, each consumer thread pins itself with E2sarUtil.pinCurrentThread()
+     */
+    public int[] consumerCores;
+    /**
+     * sibling hyperthreads of the receive and consumer cores, nothing should be scheduled on them
+     */
+    public int[] reservedSiblings;
+    /**
+     * true if numaNode did not have enough physical cores and the plan continues on other nodes
+     */
+    public boolean crossesNodes;
+
+    /**
+     * Constructor
+     * @param numaNode - NUMA node of the NIC
+     * @param receiveCores - cores for the receive threads
+     * @param consumerCores - cores for the consumer threads
+     * @param reservedSiblings - hyperthreads left idle
+     * @param crossesNodes - whether cores of other nodes were used
+     */
+    public CorePlan(int numaNode, List<Integer> receiveCores, int[] consumerCores, int[] reservedSiblings, boolean crossesNodes){
+        this.numaNode = numaNode;
+        this.receiveCores = receiveCores;
+        this.consumerCores = consumerCores;
+        this.reservedSiblings = reservedSiblings;
+        this.crossesNodes = crossesNodes;
+    }
+}
@@ -0,0 +1,28 @@
+package org.jlab.hpdf.messages;
+
+/**
+ * Reusable holder filled by recvInto() with the metadata of the event it received, so a receive loop does not allocate per event
+ */
+public class EventMetadata {
+    /**
+     * Event number associated with the Event
+     */
+    public long eventNum;
+    /**
+     * Data ID associated with the Event
+     */
+    public int dataId;
+    /**
+     * Length of the Event in bytes. When the destination buffer was too small this is the size it needs to have remaining
+     */
+    public int length;
+
+    /**
+     * Default Constructor
+     */
+    public EventMetadata(){
+        this.eventNum = 0;
+        this.dataId = 0;
+        this.length = 0;
+    }
+}
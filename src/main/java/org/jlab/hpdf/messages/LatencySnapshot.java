@@ -0,0 +1,70 @@
+package org.jlab.hpdf.messages;
+
+/**
+ * Copy of the non-empty buckets of a LatencyHistogram in ascending order, bucket i holds counts[i] latencies between lowerBoundNanos[i]
+ * and upperBoundNanos[i] inclusive
+ */
+public class LatencySnapshot {
+    /**
+     * number of latencies recorded
+     */
+    public long count;
+    /**
+     * sum of all latencies recorded, in nanoseconds
+     */
+    public long sumNanos;
+    /**
+     * smallest latency of each bucket, in nanoseconds
+     */
+    public long[] lowerBoundNanos;
+    /**
+     * largest latency of each bucket, in nanoseconds
+     */
+    public long[] upperBoundNanos;
+    /**
+     * number of latencies recorded in each bucket
+     */
+    public long[] counts;
+
+    /**
+     * Constructor
+     * @param numBuckets - number of non-empty buckets
+     */
+    public LatencySnapshot(int numBuckets){
+        this.lowerBoundNanos = new long[numBuckets];
+        this.upperBoundNanos = new long[numBuckets];
+        this.counts = new long[numBuckets];
+    }
+
+    /**
+     * @return mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMeanNanos(){ return count == 0 ? 0 : (double) sumNanos / count;}
+
+    /**
+     * @return lower bound of the smallest latency recorded, 0 if nothing was recorded
+     */
+    public long getMinNanos(){ return counts.length == 0 ? 0 : lowerBoundNanos[0];}
+
+    /**
+     * @return upper bound of the largest latency recorded, 0 if nothing was recorded
+     */
+    public long getMaxNanos(){ return counts.length == 0 ? 0 : upperBoundNanos[counts.length - 1];}
+
+    /**
+     * @param percentile - between 0 and 100
+     * @return upper bound of the bucket holding the latency at percentile, so at least percentile percent of the latencies are not
+     * larger. 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile){
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * count);
+        long seen = 0;
+        for(int i=0;i<counts.length;i++){
+            seen += counts[i];
+            if(seen >= Math.max(1, rank)){
+                return upperBoundNanos[i];
+            }
+        }
+        return getMaxNanos();
+    }
+}
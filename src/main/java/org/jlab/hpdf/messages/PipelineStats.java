@@ -0,0 +1,59 @@
+package org.jlab.hpdf.messages;
+
+/**
+ * Snapshot of the stages of a ReassemblerPipeline: the feeder taking events from the reassembler, the reorder window (GLOBAL ordering),
+ * the rings between feeder and workers and the workers. Rates are computed over the time since the previous snapshot
+ */
+public class PipelineStats {
+    /**
+     * number of events taken from the reassembler
+     */
+    public long received;
+    /**
+     * number of events handed to the workers' rings
+     */
+    public long dispatched;
+    /**
+     * number of events freed unhandled because stop() was called while their ring was full
+     */
+    public long dropped;
+    /**
+     * number of events handled by each worker
+     */
+    public long[] handledPerWorker;
+    /**
+     * number of events held back in the reorder windows of all data ids, always 0 unless the ordering is GLOBAL
+     */
+    public int reorderDepth;
+    /**
+     * number of events that arrived after an event with a higher event number was released and were dispatched out of order, GLOBAL only
+     */
+    public long lateEvents;
+    /**
+     * number of missing event numbers given up by the reorder window after the gap timeout, GLOBAL only
+     */
+    public long lostEvents;
+    /**
+     * number of events in each ring, one ring per worker for PER_DATA_ID ordering, a single shared ring otherwise
+     */
+    public int[] ringDepths;
+    /**
+     * events taken from the reassembler per second since the previous snapshot
+     */
+    public double receivedPerSecond;
+    /**
+     * events handled by all workers per second since the previous snapshot
+     */
+    public double handledPerSecond;
+
+    /**
+     * @return number of events handled by all workers
+     */
+    public long getHandled(){
+        long handled = 0;
+        for(long count : handledPerWorker){
+            handled += count;
+        }
+        return handled;
+    }
+}
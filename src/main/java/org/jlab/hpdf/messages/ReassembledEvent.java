@@ -1,11 +1,14 @@
 package org.jlab.hpdf.messages;
 
+import java.lang.ref.Cleaner;
 import java.nio.ByteBuffer;
 
 /**
- * This class is only instantiated in the native JNI wrapper when a ReassembledEvent needs to be passed to Java
+ * This class is instantiated in the native JNI wrapper when a ReassembledEvent needs to be passed to Java, and by NioReassembler.
+ * Closing the event releases its buffer, the same as passing it to freeDirectBytebBuffer(ReassembledEvent). Events that are never
+ * closed are released once their buffer is garbage collected, but that can take arbitrarily long so use try-with-resources.
  */
-public class ReassembledEvent {
+public class ReassembledEvent implements AutoCloseable {
     /**
      * Dynamically allocated datat from JNI
      */
@@ -19,6 +22,8 @@ public class ReassembledEvent {
      */
     public int dataId;
 
+    private Cleaner.Cleanable release;
+
     /**
      * Default Constructor
      * @param byteBuffer - Dynamically allocated datat from JNI
@@ -30,4 +35,22 @@ public class ReassembledEvent {
         this.eventNum = eventNum;
         this.dataId = dataId;
     }
+
+    /**
+     * Set by the reassembler delivering this event to the release of its buffer
+     * @param release - Cleanable that releases byteBuffer at most once
+     */
+    public void attachRelease(Cleaner.Cleanable release){
+        this.release = release;
+    }
+
+    /**
+     * Release the buffer of this event, it must not be used afterwards. It will be a noop if called twice
+     */
+    @Override
+    public void close(){
+        if(release != null){
+            release.clean();
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package org.jlab.hpdf.messages;
+
+/**
+ * Latency histograms of a reassembler since it was created, for tuning eventTimeout_ms and rcvSocketBufSize
+ */
+public class RecvLatencyStats {
+    /**
+     * from the arrival of the first segment of an event to the arrival of the segment completing it. Events that time out are not recorded
+     */
+    public LatencySnapshot assembly;
+    /**
+     * from the completion of an event to the application taking it with getEvent(), recvEvent(), recvEvents() or recvInto(),
+     * or to the call of the handler set with setEventHandler()
+     */
+    public LatencySnapshot queueing;
+
+    /**
+     * Constructor
+     * @param assembly - first segment to completion
+     * @param queueing - completion to dequeue
+     */
+    public RecvLatencyStats(LatencySnapshot assembly, LatencySnapshot queueing){
+        this.assembly = assembly;
+        this.queueing = queueing;
+    }
+}
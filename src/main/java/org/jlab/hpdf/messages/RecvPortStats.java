@@ -0,0 +1,66 @@
+package org.jlab.hpdf.messages;
+
+/**
+ * Per port breakdown of a reassembler's receive side, index i of every array refers to ports[i]. NioReassembler has one receive thread
+ * per port, so it is also the per thread breakdown. The native Reassembler does not expose its per thread counters, only socketDrops and
+ * rxQueueBytes are filled for it, the other counters are NOT_AVAILABLE.
+ * <p>
+ * Pass the same instance to getPortStats(RecvPortStats) on every poll, the arrays are only reallocated when the number of ports changes.
+ */
+public class RecvPortStats {
+    /**
+     * value of a counter the reassembler or the operating system does not provide
+     */
+    public static final long NOT_AVAILABLE = -1;
+
+    /**
+     * System.nanoTime() when the snapshot was taken
+     */
+    public long timestampNanos;
+    /**
+     * UDP port of each entry
+     */
+    public int[] ports = new int[0];
+    /**
+     * number of datagrams received
+     */
+    public long[] packets = new long[0];
+    /**
+     * number of datagram bytes received, headers included
+     */
+    public long[] bytes = new long[0];
+    /**
+     * number of events whose last segment arrived on the port
+     */
+    public long[] events = new long[0];
+    /**
+     * number of events whose first segment arrived on the port and that were dropped after eventTimeout_ms
+     */
+    public long[] timeouts = new long[0];
+    /**
+     * datagrams the kernel dropped because the socket receive buffer was full, summed over all sockets bound to the port.
+     * Read from /proc/net/udp and /proc/net/udp6, NOT_AVAILABLE where they do not exist
+     */
+    public long[] socketDrops = new long[0];
+    /**
+     * bytes waiting in the socket receive buffer, from the same source as socketDrops
+     */
+    public long[] rxQueueBytes = new long[0];
+
+    /**
+     * Make every array hold numPorts entries, reallocating them only if their length differs
+     * @param numPorts - number of ports
+     */
+    public void resize(int numPorts){
+        if(ports.length == numPorts){
+            return;
+        }
+        ports = new int[numPorts];
+        packets = new long[numPorts];
+        bytes = new long[numPorts];
+        events = new long[numPorts];
+        timeouts = new long[numPorts];
+        socketDrops = new long[numPorts];
+        rxQueueBytes = new long[numPorts];
+    }
+}
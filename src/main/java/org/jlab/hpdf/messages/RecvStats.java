@@ -1,7 +1,7 @@
 package org.jlab.hpdf.messages;
 
 /**
- * This class is only instantiated in the native JNI wrapper when a RecvStats for Reassembler needs to be passed to Java
+ * This class is instantiated in the native JNI wrapper when a RecvStats for Reassembler needs to be passed to Java, and by NioReassembler
  */
 public class RecvStats {
     /**
@@ -28,6 +28,27 @@ public class RecvStats {
      * last native E2sar error code
      */
     public int lastE2sarError;
+    /**
+     * number of event buffers served from the reassembly buffer pool, always 0 for the native Reassembler
+     */
+    public long poolHits;
+    /**
+     * number of event buffers that had to be allocated because the pool had none of the right size class, always 0 for the native Reassembler
+     */
+    public long poolMisses;
+    /**
+     * bytes held by event buffers handed to the application and not yet freed
+     */
+    public long outstandingBytes;
+    /**
+     * data ids that lost events were reported for, in ascending order. The native Reassembler counts a lost event once it is taken
+     * from its queue since libe2sar does not count them per data id, NioReassembler counts it when the event times out
+     */
+    public int[] lostDataIds = new int[0];
+    /**
+     * number of lost events of the data id at the same index of lostDataIds
+     */
+    public long[] lostEventsPerDataId = new long[0];
 
     /**
      * Default Constructor
@@ -46,4 +67,34 @@ public class RecvStats {
         this.dataErrCount = dataErrCount;
         this.lastE2sarError = lastE2sarError;
     }
+
+    /**
+     * @param dataId - data id to look up
+     * @return number of lost events counted for dataId
+     */
+    public long getLostEvents(int dataId){
+        for(int i=0;i<lostDataIds.length;i++){
+            if(lostDataIds[i] == dataId){
+                return lostEventsPerDataId[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Constructor including the reassembly buffer pool counters
+     * @param enqueueLoss - number of events received and lost on enqueue
+     * @param eventSuccess - number of events successfully processed
+     * @param lastErrorNo - last error no encountered by reassembler
+     * @param grpcErrCount - GRPC error count
+     * @param dataErrCount - Data error count
+     * @param lastE2sarError - last native E2sar error code
+     * @param poolHits - number of event buffers served from the pool
+     * @param poolMisses - number of event buffers allocated on a pool miss
+     */
+    public RecvStats(long enqueueLoss, long eventSuccess, int lastErrorNo, int grpcErrCount, int dataErrCount, int lastE2sarError, long poolHits, long poolMisses){
+        this(enqueueLoss, eventSuccess, lastErrorNo, grpcErrCount, dataErrCount, lastE2sarError);
+        this.poolHits = poolHits;
+        this.poolMisses = poolMisses;
+    }
 }
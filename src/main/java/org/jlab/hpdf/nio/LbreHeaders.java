@@ -0,0 +1,173 @@
+package org.jlab.hpdf.nio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of the E2SAR headers, as written by e2sar::Segmenter. All multi-byte fields are big-endian.
+ * - LB header (v2, 16 bytes) - 'L','B', version, next protocol, reserved, entropy, event number
+ * - RE header (20 bytes) - version nibble, reserved, dataId, buffer offset, buffer length, event number
+ * - Sync header (28 bytes) - 'L','C', version, reserved, eventSrcId, event number, average event rate in Hz, unix time in ns
+ * 
+ * Every data datagram carries an LB header immediately followed by an RE header and a segment of the event, the load balancer
+ * strips the LB header before delivery. Accessors take the index of their own header and use absolute indexes so buffer positions are not changed.
+ */
+public final class LbreHeaders {
+
+    public static final int LB_HEADER_LENGTH = 16;
+    public static final int RE_HEADER_LENGTH = 20;
+    public static final int LBRE_HEADER_LENGTH = LB_HEADER_LENGTH + RE_HEADER_LENGTH;
+    public static final int SYNC_HEADER_LENGTH = 28;
+
+    public static final int LB_VERSION = 2;
+    public static final int RE_VERSION = 1;
+    public static final int SYNC_VERSION = 2;
+
+    public static final int IPV4_HEADER_LENGTH = 20;
+    public static final int IPV6_HEADER_LENGTH = 40;
+    public static final int UDP_HEADER_LENGTH = 8;
+
+    /**
+     * default UDP port of the load balancer data plane when the URI does not specify one
+     */
+    public static final int DATAPLANE_PORT = 19522;
+
+    private LbreHeaders(){}
+
+    /**
+     * @param mtu - MTU of the path
+     * @param v6 - true if sending over IPv6
+     * @return number of event bytes that fit in one datagram
+     */
+    public static int maxPayloadLength(int mtu, boolean v6){
+        return mtu - (v6 ? IPV6_HEADER_LENGTH : IPV4_HEADER_LENGTH) - UDP_HEADER_LENGTH - LBRE_HEADER_LENGTH;
+    }
+
+    /**
+     * Writes the LB and RE headers of one data datagram at index
+     */
+    public static void putLbre(ByteBuffer buffer, int index, int entropy, long eventNum, int dataId, int bufferOffset, int bufferLength){
+        buffer.put(index, (byte) 'L');
+        buffer.put(index + 1, (byte) 'B');
+        buffer.put(index + 2, (byte) LB_VERSION);
+        buffer.put(index + 3, (byte) RE_VERSION);
+        buffer.putShort(index + 4, (short) 0);
+        buffer.putShort(index + 6, (short) entropy);
+        buffer.putLong(index + 8, eventNum);
+
+        int re = index + LB_HEADER_LENGTH;
+        buffer.put(re, (byte) (RE_VERSION << 4));
+        buffer.put(re + 1, (byte) 0);
+        buffer.putShort(re + 2, (short) dataId);
+        buffer.putInt(re + 4, bufferOffset);
+        buffer.putInt(re + 8, bufferLength);
+        buffer.putLong(re + 12, eventNum);
+    }
+
+    /**
+     * Writes a Sync header at index
+     */
+    public static void putSync(ByteBuffer buffer, int index, long eventSrcId, long eventNum, int avgEventRateHz, long unixTimeNano){
+        buffer.put(index, (byte) 'L');
+        buffer.put(index + 1, (byte) 'C');
+        buffer.put(index + 2, (byte) SYNC_VERSION);
+        buffer.put(index + 3, (byte) 0);
+        buffer.putInt(index + 4, (int) eventSrcId);
+        buffer.putLong(index + 8, eventNum);
+        buffer.putInt(index + 16, avgEventRateHz);
+        buffer.putLong(index + 20, unixTimeNano);
+    }
+
+    /**
+     * @return true if an LB header of a supported version followed by an RE header starts at index
+     */
+    public static boolean isLbre(ByteBuffer buffer, int index){
+        return buffer.limit() - index >= LBRE_HEADER_LENGTH
+            && buffer.get(index) == 'L' && buffer.get(index + 1) == 'B' && buffer.get(index + 2) == LB_VERSION
+            && ((buffer.get(index + LB_HEADER_LENGTH) >> 4) & 0x0f) == RE_VERSION;
+    }
+
+    /**
+     * @return true if a Sync header of a supported version starts at index
+     */
+    public static boolean isSync(ByteBuffer buffer, int index){
+        return buffer.limit() - index >= SYNC_HEADER_LENGTH
+            && buffer.get(index) == 'L' && buffer.get(index + 1) == 'C' && buffer.get(index + 2) == SYNC_VERSION;
+    }
+
+    /**
+     * @return entropy from the LB header at index
+     */
+    public static int getEntropy(ByteBuffer buffer, int index){
+        return Short.toUnsignedInt(buffer.getShort(index + 6));
+    }
+
+    /**
+     * @return event number from the LB header at index
+     */
+    public static long getLbEventNum(ByteBuffer buffer, int index){
+        return buffer.getLong(index + 8);
+    }
+
+    /**
+     * @return true if an RE header of a supported version starts at index
+     */
+    public static boolean isRe(ByteBuffer buffer, int index){
+        return buffer.limit() - index >= RE_HEADER_LENGTH && ((buffer.get(index) >> 4) & 0x0f) == RE_VERSION;
+    }
+
+    /**
+     * @return dataId from the RE header at index
+     */
+    public static int getDataId(ByteBuffer buffer, int index){
+        return Short.toUnsignedInt(buffer.getShort(index + 2));
+    }
+
+    /**
+     * @return offset of the segment within the event from the RE header at index
+     */
+    public static int getBufferOffset(ByteBuffer buffer, int index){
+        return buffer.getInt(index + 4);
+    }
+
+    /**
+     * @return length of the whole event from the RE header at index
+     */
+    public static int getBufferLength(ByteBuffer buffer, int index){
+        return buffer.getInt(index + 8);
+    }
+
+    /**
+     * @return event number from the RE header at index
+     */
+    public static long getReEventNum(ByteBuffer buffer, int index){
+        return buffer.getLong(index + 12);
+    }
+
+    /**
+     * @return eventSrcId from the Sync header at index
+     */
+    public static long getSyncEventSrcId(ByteBuffer buffer, int index){
+        return Integer.toUnsignedLong(buffer.getInt(index + 4));
+    }
+
+    /**
+     * @return event number from the Sync header at index
+     */
+    public static long getSyncEventNum(ByteBuffer buffer, int index){
+        return buffer.getLong(index + 8);
+    }
+
+    /**
+     * @return average event rate in Hz from the Sync header at index
+     */
+    public static int getSyncAvgEventRateHz(ByteBuffer buffer, int index){
+        return buffer.getInt(index + 16);
+    }
+
+    /**
+     * @return unix time in nanoseconds from the Sync header at index
+     */
+    public static long getSyncUnixTimeNano(ByteBuffer buffer, int index){
+        return buffer.getLong(index + 20);
+    }
+}
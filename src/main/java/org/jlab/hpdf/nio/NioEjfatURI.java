@@ -0,0 +1,146 @@
+package org.jlab.hpdf.nio;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+
+/**
+ * Pure Java parser for the data plane part of an EJFAT URI, used by the NIO implementations which must work without libjnie2sar.
+ * Only the sync= and data= query parameters are read, e.g. ejfat://token@192.188.29.6:18020/lb/36?sync=192.188.29.6:19020&amp;data=192.188.29.20
+ * - sync=&lt;address&gt;:&lt;port&gt;
+ * - data=&lt;address&gt;[:&lt;port&gt;], may be given once for IPv4 and once for IPv6 (in brackets). Port defaults to 19522
+ */
+public class NioEjfatURI {
+
+    private InetSocketAddress dataAddrv4;
+    private InetSocketAddress dataAddrv6;
+    private InetSocketAddress syncAddr;
+
+    /**
+     * Default Constructor
+     * @param uri - EJFAT URI string
+     * @throws E2sarNativeException - If the URI is not in the expected format. The same exception type as EjfatURI is used so both can be handled alike
+     */
+    public NioEjfatURI(String uri) throws E2sarNativeException{
+        String query;
+        try{
+            query = new URI(uri).getRawQuery();
+        }
+        catch(URISyntaxException e){
+            throw new E2sarNativeException("Invalid EJFAT URI: " + e.getMessage());
+        }
+        if(query == null){
+            return;
+        }
+        for(String param : query.split("&")){
+            int eq = param.indexOf('=');
+            if(eq < 0){
+                continue;
+            }
+            String key = param.substring(0, eq);
+            String value = param.substring(eq + 1);
+            if(key.equals("sync")){
+                syncAddr = parseAddress(value, -1);
+            }
+            else if(key.equals("data")){
+                InetSocketAddress addr = parseAddress(value, LbreHeaders.DATAPLANE_PORT);
+                if(addr.getAddress() instanceof Inet6Address){
+                    dataAddrv6 = addr;
+                }
+                else{
+                    dataAddrv4 = addr;
+                }
+            }
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String value, int defaultPort) throws E2sarNativeException{
+        String host = value;
+        int port = defaultPort;
+        int portSeparator;
+        if(value.startsWith("[")){
+            int close = value.indexOf(']');
+            if(close < 0){
+                throw new E2sarNativeException("Invalid IPv6 address: " + value);
+            }
+            host = value.substring(1, close);
+            portSeparator = value.indexOf(':', close);
+        }
+        else{
+            portSeparator = value.indexOf(':');
+            if(portSeparator >= 0){
+                host = value.substring(0, portSeparator);
+            }
+        }
+        if(portSeparator >= 0){
+            try{
+                port = Integer.parseInt(value.substring(portSeparator + 1));
+            }
+            catch(NumberFormatException e){
+                throw new E2sarNativeException("Invalid port in address: " + value);
+            }
+        }
+        if(port < 0){
+            throw new E2sarNativeException("Port is required in address: " + value);
+        }
+        try{
+            return new InetSocketAddress(InetAddress.getByName(host), port);
+        }
+        catch(UnknownHostException e){
+            throw new E2sarNativeException("Invalid address: " + value);
+        }
+    }
+
+    /**
+     * @return true if the URI has an IPv4 data address
+     */
+    public boolean hasDataAddrv4(){ return dataAddrv4 != null;}
+
+    /**
+     * @return true if the URI has an IPv6 data address
+     */
+    public boolean hasDataAddrv6(){ return dataAddrv6 != null;}
+
+    /**
+     * @return true if the URI has a sync address
+     */
+    public boolean hasSyncAddr(){ return syncAddr != null;}
+
+    /**
+     * @return IPv4 data address and port
+     * @throws E2sarNativeException - If the URI has no IPv4 data address
+     */
+    public InetSocketAddress getDataAddrv4() throws E2sarNativeException{
+        if(dataAddrv4 == null){
+            throw new E2sarNativeException("Data address (v4) is not set");
+        }
+        return dataAddrv4;
+    }
+
+    /**
+     * @return IPv6 data address and port
+     * @throws E2sarNativeException - If the URI has no IPv6 data address
+     */
+    public InetSocketAddress getDataAddrv6() throws E2sarNativeException{
+        if(dataAddrv6 == null){
+            throw new E2sarNativeException("Data address (v6) is not set");
+        }
+        return dataAddrv6;
+    }
+
+    /**
+     * @return sync address and port
+     * @throws E2sarNativeException - If the URI has no sync address
+     */
+    public InetSocketAddress getSyncAddr() throws E2sarNativeException{
+        if(syncAddr == null){
+            throw new E2sarNativeException("Sync address is not set");
+        }
+        return syncAddr;
+    }
+}
@@ -0,0 +1,800 @@
+package org.jlab.hpdf.nio;
+
+import org.jlab.hpdf.DataIdCounters;
+import org.jlab.hpdf.EventBatchHandler;
+import org.jlab.hpdf.EventBufferTracker;
+import org.jlab.hpdf.EventHandler;
+import org.jlab.hpdf.EventReassembler;
+import org.jlab.hpdf.LatencyHistogram;
+import org.jlab.hpdf.UdpSocketStats;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.EventMetadata;
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvLatencyStats;
+import org.jlab.hpdf.messages.RecvPortStats;
+import org.jlab.hpdf.messages.RecvStats;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pure Java implementation of the Reassembler over NIO DatagramChannels, for receivers without libjnie2sar and for consuming
+ * events directly into JVM managed off-heap memory. It listens on 2^portRange ports starting from startingPort with one receive
+ * thread per port, and reassembles the segments of each (eventNum, dataId) into a Direct ByteBuffer taken from a
+ * ReassemblyBufferPool using the RE header.
+ * Events still incomplete after eventTimeout_ms are dropped and reported through getLostEvent().
+ *
+ * There is no control plane support (registerWorker, sendState), useCP is ignored. Returned events should be closed or handed back with
+ * freeDirectBytebBuffer(ReassembledEvent) so their buffer can be reused. Buffers that are never handed back stop counting as outstanding
+ * once garbage collected but are not reused, since a view of the event could still be in use. maxOutstandingBytes holds back delivery the same way as in Reassembler.
+ * With setEventHandler() the receive thread completing an event hands it to the handler directly instead of queueing it.
+ *
+ * REMEMBER TO CALL FREE() ONCE DONE WITH THIS CLASS TO STOP THE THREADS AND CLOSE THE CHANNELS
+ */
+public class NioReassembler implements EventReassembler {
+
+    /**
+     * size of the queues of reassembled and lost events, matches e2sar::Reassembler
+     */
+    public static final int QUEUE_SIZE = 1000;
+    private static final int MAX_DATAGRAM = 65536;
+    // datagrams a receive thread takes per wake-up before it flushes its batch and sweeps timed out events, so steady traffic
+    // that never empties the socket does not hold them off
+    private static final int MAX_DRAIN = 1024;
+
+    // per port counters, each port's receive thread is the only writer of its own counters. A port's counters are a cache line
+    // apart from the next port's so the receive threads do not invalidate each other's lines
+    private static final int PORT_PACKETS = 0;
+    private static final int PORT_BYTES = 1;
+    private static final int PORT_EVENTS = 2;
+    private static final int PORT_TIMEOUTS = 3;
+    private static final int PORT_STRIDE = 8;
+
+    /**
+     * (eventNum, dataId) key of an event in assembly
+     */
+    private static final class EventKey {
+        long eventNum;
+        int dataId;
+
+        EventKey(long eventNum, int dataId){
+            this.eventNum = eventNum;
+            this.dataId = dataId;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            return o instanceof EventKey && ((EventKey) o).eventNum == eventNum && ((EventKey) o).dataId == dataId;
+        }
+
+        @Override
+        public int hashCode(){
+            return Long.hashCode(eventNum) * 31 + dataId;
+        }
+    }
+
+    private static final int SEGMENT_NEW = 0;
+    private static final int SEGMENT_DUPLICATE = 1;
+    private static final int SEGMENT_INVALID = 2;
+
+    /**
+     * An event in assembly. Senders cut events into segments of one payload size except for the last one, so the segments received
+     * are kept as a bitmap over bufferOffset / stride, with the last segment tracked on its own since it may be shorter. Segments that
+     * do not fit that layout are rejected, so accepted segments never overlap and the event is complete once exactly length bytes arrived
+     */
+    private static final class Assembly {
+        final ByteBuffer buffer;
+        final int length;
+        final long eventNum;
+        final int dataId;
+        int received;
+        final long firstSegmentNanos;
+        long completedNanos;
+        // payload size of the segments before the last one, 0 until one of them arrives
+        int stride;
+        final BitSet segments = new BitSet();
+        boolean lastReceived;
+        int lastOffset;
+
+        Assembly(ByteBuffer buffer, int length, long eventNum, int dataId, long firstSegmentNanos){
+            this.buffer = buffer;
+            this.length = length;
+            this.eventNum = eventNum;
+            this.dataId = dataId;
+            this.firstSegmentNanos = firstSegmentNanos;
+        }
+
+        // records a segment and returns SEGMENT_NEW if its bytes were not received before
+        int mark(int offset, int segmentLength){
+            if(offset + segmentLength == length){
+                if(lastReceived){
+                    return offset == lastOffset ? SEGMENT_DUPLICATE : SEGMENT_INVALID;
+                }
+                if(stride != 0 && (offset % stride != 0 || segmentLength > stride)){
+                    return SEGMENT_INVALID;
+                }
+                lastReceived = true;
+                lastOffset = offset;
+            }
+            else{
+                if(stride == 0){
+                    if(segmentLength == 0 || (lastReceived && (lastOffset % segmentLength != 0 || length - lastOffset > segmentLength))){
+                        return SEGMENT_INVALID;
+                    }
+                    stride = segmentLength;
+                }
+                if(segmentLength != stride || offset % stride != 0){
+                    return SEGMENT_INVALID;
+                }
+                int index = offset / stride;
+                if(segments.get(index)){
+                    return SEGMENT_DUPLICATE;
+                }
+                segments.set(index);
+            }
+            received += segmentLength;
+            return SEGMENT_NEW;
+        }
+    }
+
+    /**
+     * Handler set with setEventHandler(), read by the receive threads for every completed event
+     */
+    private static final class EventDispatch {
+        final EventHandler handler;
+        final EventBatchHandler batchHandler;
+        final int maxBatch;
+
+        EventDispatch(EventHandler handler, EventBatchHandler batchHandler, int maxBatch){
+            this.handler = handler;
+            this.batchHandler = batchHandler;
+            this.maxBatch = maxBatch;
+        }
+    }
+
+    /**
+     * Completed events a receive thread collects for an EventBatchHandler, handed over when full or after each drain of the channel
+     */
+    private static final class EventBatch {
+        final EventDispatch dispatch;
+        final ByteBuffer[] events;
+        final long[] eventNums;
+        final int[] dataIds;
+        final Assembly[] assemblies;
+        int count;
+
+        EventBatch(EventDispatch dispatch){
+            this.dispatch = dispatch;
+            this.events = new ByteBuffer[dispatch.maxBatch];
+            this.eventNums = new long[dispatch.maxBatch];
+            this.dataIds = new int[dispatch.maxBatch];
+            this.assemblies = new Assembly[dispatch.maxBatch];
+        }
+    }
+
+    private final InetAddress ipAddress;
+    private final int startingPort;
+    private final int portRange;
+    private final ReassemblerFlags rFlags;
+
+    private DatagramChannel[] channels;
+    private Thread[] recvThreads;
+    private volatile boolean threadsStop;
+    private volatile EventDispatch eventDispatch;
+
+    // completed events, turned into a ReassembledEvent only when handed to the application
+    private final ArrayBlockingQueue<Assembly> eventQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final ArrayBlockingQueue<LostEvent> lostEventQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final DataIdCounters lostCounters = new DataIdCounters();
+    // events recvInto() took that did not fit in the destination buffer, returned before the queue
+    private final ConcurrentLinkedDeque<Assembly> pendingEvents = new ConcurrentLinkedDeque<>();
+    private final ReassemblyBufferPool bufferPool;
+    private final EventBufferTracker tracker;
+
+    private final AtomicLong enqueueLoss = new AtomicLong();
+    private final AtomicLong eventSuccess = new AtomicLong();
+    private final AtomicInteger dataErrCount = new AtomicInteger();
+    private volatile int lastErrorNo;
+    private final AtomicLongArray portCounters;
+    private final LatencyHistogram assemblyLatency = new LatencyHistogram();
+    private final LatencyHistogram queueingLatency = new LatencyHistogram();
+
+    /**
+     * Create a reassembler listening on the ports needed for numReceiveThreads
+     * @param ipAddress - IP address on which to listen
+     * @param startingPort - starting UDP port on which to listen
+     * @param numReceiveThreads - used to compute the port range when rFlags.portRange is -1, one receive thread is started per port
+     * @param rFlags - ReassemblerFlags, only portRange, withLBHeader, eventTimeout_ms, rcvSocketBufSize, maxOutstandingBytes, maxEventSize
+     * and the pool* flags are used
+     * @throws E2sarNativeException - If the port range is invalid or maxEventSize is not positive
+     */
+    public NioReassembler(InetAddress ipAddress, int startingPort, int numReceiveThreads, ReassemblerFlags rFlags) throws E2sarNativeException{
+        this.ipAddress = ipAddress;
+        this.startingPort = startingPort;
+        this.rFlags = rFlags;
+        this.bufferPool = new ReassemblyBufferPool(rFlags);
+        this.tracker = new EventBufferTracker(rFlags.maxOutstandingBytes);
+        this.portRange = rFlags.portRange != -1 ? rFlags.portRange : portRangeFor(numReceiveThreads);
+        if(portRange < 0 || portRange > 14){
+            throw new E2sarNativeException("portRange must be between 0 and 14, got " + portRange);
+        }
+        if(rFlags.maxEventSize <= 0){
+            throw new E2sarNativeException("maxEventSize must be positive, got " + rFlags.maxEventSize);
+        }
+        this.portCounters = new AtomicLongArray((1 << portRange) * PORT_STRIDE);
+    }
+
+    /**
+     * Create a reassembler with default ReassemblerFlags listening on the ports needed for numReceiveThreads
+     * @param ipAddress - IP address on which to listen
+     * @param startingPort - starting UDP port on which to listen
+     * @param numReceiveThreads - used to compute the port range, one receive thread is started per port
+     * @throws E2sarNativeException - If the port range is invalid
+     */
+    public NioReassembler(InetAddress ipAddress, int startingPort, int numReceiveThreads) throws E2sarNativeException{
+        this(ipAddress, startingPort, numReceiveThreads, new ReassemblerFlags());
+    }
+
+    // smallest portRange for which 2^portRange ports cover numReceiveThreads, as computed by e2sar::Reassembler
+    private static int portRangeFor(int numReceiveThreads){
+        int range = 0;
+        while((1 << range) < numReceiveThreads){
+            range++;
+        }
+        return range;
+    }
+
+    /**
+     * Open the channels and start one receive thread per port - this marks the moment
+     * from which we are listening for incoming packets, assembling
+     * them into event buffers and putting them into the queue.
+     * @throws E2sarNativeException - If there is an error opening or binding the channels
+     */
+    public void openAndStart() throws E2sarNativeException{
+        if(channels != null){
+            throw new E2sarNativeException("Reassembler is already started");
+        }
+        int numPorts = 1 << portRange;
+        channels = new DatagramChannel[numPorts];
+        recvThreads = new Thread[numPorts];
+        try{
+            for(int i=0;i<numPorts;i++){
+                channels[i] = DatagramChannel.open();
+                channels[i].setOption(StandardSocketOptions.SO_RCVBUF, rFlags.rcvSocketBufSize);
+                channels[i].bind(new InetSocketAddress(ipAddress, startingPort + i));
+                channels[i].configureBlocking(false);
+            }
+        }
+        catch(IOException e){
+            closeChannels();
+            throw new E2sarNativeException("Could not open receive sockets: " + e.getMessage());
+        }
+        for(int i=0;i<numPorts;i++){
+            int port = i;
+            recvThreads[i] = new Thread(() -> recvThreadLoop(port), "NioReassembler-recv-" + (startingPort + i));
+            recvThreads[i].setDaemon(true);
+            recvThreads[i].start();
+        }
+    }
+
+    private void recvThreadLoop(int port){
+        DatagramChannel channel = channels[port];
+        int counters = port * PORT_STRIDE;
+        Map<EventKey, Assembly> inProgress = new HashMap<>();
+        EventKey lookup = new EventKey(0, 0);
+        EventBatch batch = null;
+        ByteBuffer datagram = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        int headerOffset = rFlags.withLBHeader ? LbreHeaders.LB_HEADER_LENGTH : 0;
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(rFlags.eventTimeout_ms);
+        long selectMs = Math.max(1, rFlags.eventTimeout_ms / 2);
+
+        try(Selector selector = Selector.open()){
+            channel.register(selector, SelectionKey.OP_READ);
+            long lastSweep = System.nanoTime();
+            while(!threadsStop){
+                selector.select(selectMs);
+                selector.selectedKeys().clear();
+                for(int drained = 0; drained < MAX_DRAIN && channel.receive(datagram.clear()) != null; drained++){
+                    datagram.flip();
+                    addPortCounter(counters + PORT_PACKETS, 1);
+                    addPortCounter(counters + PORT_BYTES, datagram.limit());
+                    Assembly completed = onSegment(datagram, headerOffset, inProgress, lookup);
+                    if(completed != null){
+                        addPortCounter(counters + PORT_EVENTS, 1);
+                        batch = complete(completed, batch);
+                    }
+                }
+                // nothing else has arrived or the drain limit was reached, do not hold back a partial batch
+                flushBatch(batch);
+                long now = System.nanoTime();
+                if(now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(selectMs)){
+                    addPortCounter(counters + PORT_TIMEOUTS, sweepTimedOut(inProgress, now, timeoutNanos));
+                    lastSweep = now;
+                }
+            }
+        }
+        catch(IOException e){
+            // channel closed by free() or a fatal socket error, either way this thread is done
+            if(!threadsStop){
+                lastErrorNo = -1;
+            }
+        }
+        flushBatch(batch);
+        for(Assembly assembly : inProgress.values()){
+            bufferPool.release(assembly.buffer);
+        }
+    }
+
+    // returns the event this segment completed, null otherwise
+    private Assembly onSegment(ByteBuffer datagram, int headerOffset, Map<EventKey, Assembly> inProgress, EventKey lookup){
+        int re = headerOffset;
+        int payload = re + LbreHeaders.RE_HEADER_LENGTH;
+        if(!LbreHeaders.isRe(datagram, re)){
+            dataErrCount.incrementAndGet();
+            return null;
+        }
+        int dataId = LbreHeaders.getDataId(datagram, re);
+        int bufferOffset = LbreHeaders.getBufferOffset(datagram, re);
+        int bufferLength = LbreHeaders.getBufferLength(datagram, re);
+        long eventNum = LbreHeaders.getReEventNum(datagram, re);
+        int segmentLength = datagram.limit() - payload;
+        // the buffer is allocated from the length the first segment announces, bound it before trusting it
+        if(bufferLength < 0 || bufferLength > rFlags.maxEventSize || bufferOffset < 0 || bufferOffset > bufferLength - segmentLength){
+            dataErrCount.incrementAndGet();
+            return null;
+        }
+
+        lookup.eventNum = eventNum;
+        lookup.dataId = dataId;
+        Assembly assembly = inProgress.get(lookup);
+        if(assembly == null){
+            assembly = new Assembly(bufferPool.acquire(bufferLength), bufferLength, eventNum, dataId, System.nanoTime());
+            inProgress.put(new EventKey(eventNum, dataId), assembly);
+        }
+        else if(assembly.length != bufferLength){
+            dataErrCount.incrementAndGet();
+            return null;
+        }
+        int marked = assembly.mark(bufferOffset, segmentLength);
+        if(marked == SEGMENT_DUPLICATE){
+            // a datagram delivered twice, its bytes are already in place
+            return null;
+        }
+        if(marked == SEGMENT_INVALID){
+            dataErrCount.incrementAndGet();
+            return null;
+        }
+        assembly.buffer.put(bufferOffset, datagram, payload, segmentLength);
+
+        if(assembly.received != assembly.length){
+            return null;
+        }
+        inProgress.remove(lookup);
+        assembly.completedNanos = System.nanoTime();
+        assemblyLatency.record(assembly.completedNanos - assembly.firstSegmentNanos);
+        return assembly;
+    }
+
+    // queues a completed event or hands it to the event handler, returns the batch still being collected by this receive thread
+    private EventBatch complete(Assembly assembly, EventBatch batch){
+        EventDispatch dispatch = eventDispatch;
+        if(batch != null && batch.dispatch != dispatch){
+            flushBatch(batch);
+            batch = null;
+        }
+        if(dispatch == null){
+            if(eventQueue.offer(assembly)){
+                eventSuccess.incrementAndGet();
+            }
+            else{
+                bufferPool.release(assembly.buffer);
+                enqueueLoss.incrementAndGet();
+            }
+            return batch;
+        }
+        eventSuccess.incrementAndGet();
+        if(dispatch.handler != null){
+            dequeued(assembly);
+            try{
+                dispatch.handler.onEvent(assembly.buffer.clear().limit(assembly.length), assembly.eventNum, assembly.dataId);
+            }
+            catch(Throwable t){
+                reportHandlerException(t);
+            }
+            bufferPool.release(assembly.buffer);
+            return null;
+        }
+        if(batch == null){
+            batch = new EventBatch(dispatch);
+        }
+        batch.events[batch.count] = assembly.buffer.clear().limit(assembly.length);
+        batch.eventNums[batch.count] = assembly.eventNum;
+        batch.dataIds[batch.count] = assembly.dataId;
+        batch.assemblies[batch.count] = assembly;
+        batch.count++;
+        if(batch.count == dispatch.maxBatch){
+            flushBatch(batch);
+        }
+        return batch;
+    }
+
+    private void flushBatch(EventBatch batch){
+        if(batch == null || batch.count == 0){
+            return;
+        }
+        for(int i=0;i<batch.count;i++){
+            dequeued(batch.assemblies[i]);
+        }
+        try{
+            batch.dispatch.batchHandler.onEvents(batch.events, batch.eventNums, batch.dataIds, batch.count);
+        }
+        catch(Throwable t){
+            reportHandlerException(t);
+        }
+        for(int i=0;i<batch.count;i++){
+            bufferPool.release(batch.assemblies[i].buffer);
+            batch.events[i] = null;
+            batch.assemblies[i] = null;
+        }
+        batch.count = 0;
+    }
+
+    // a handler that throws must not stop the receive thread, report what it threw the way an uncaught one would be and go on
+    private static void reportHandlerException(Throwable t){
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+
+    // single writer, a plain read and an ordered write are enough for readers to see the count
+    private void addPortCounter(int index, long delta){
+        if(delta != 0){
+            portCounters.lazySet(index, portCounters.get(index) + delta);
+        }
+    }
+
+    // returns the number of events dropped
+    private int sweepTimedOut(Map<EventKey, Assembly> inProgress, long now, long timeoutNanos){
+        int dropped = 0;
+        for(Iterator<Map.Entry<EventKey, Assembly>> it = inProgress.entrySet().iterator(); it.hasNext();){
+            Map.Entry<EventKey, Assembly> entry = it.next();
+            if(now - entry.getValue().firstSegmentNanos >= timeoutNanos){
+                it.remove();
+                bufferPool.release(entry.getValue().buffer);
+                LostEvent lost = new LostEvent(entry.getKey().eventNum, entry.getKey().dataId);
+                lostCounters.add(lost.dataId, 1);
+                // keep the most recent losses if nobody is draining them
+                while(!lostEventQueue.offer(lost)){
+                    lostEventQueue.poll();
+                }
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    // hands a completed event to the application, its pooled buffer goes back to the pool once the event is released. Views the
+    // application makes of the event slice keep pooled alive rather than the slice, so when the Cleaner finds the slice unreachable a
+    // view may still be in use and pooled is left to the garbage collector instead of being reused
+    private ReassembledEvent deliver(Assembly assembly){
+        ByteBuffer pooled = assembly.buffer;
+        ByteBuffer event = pooled.clear().limit(assembly.length).slice();
+        return tracker.track(new ReassembledEvent(event, assembly.eventNum, assembly.dataId), () -> bufferPool.release(pooled), () -> {});
+    }
+
+    private Assembly takeAssembly(long waitMs){
+        try{
+            return dequeued(waitMs == 0 ? eventQueue.take() : eventQueue.poll(waitMs, TimeUnit.MILLISECONDS));
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Assembly pollAssembly(){ return dequeued(eventQueue.poll());}
+
+    // the application has taken the event off the queue or the handler is about to see it
+    private Assembly dequeued(Assembly assembly){
+        if(assembly != null){
+            queueingLatency.record(System.nanoTime() - assembly.completedNanos);
+        }
+        return assembly;
+    }
+
+    /**
+     * A non-blocking call to get an assembled event off a reassembled event queue
+     * @return Optional.empty() if there's no event available or maxOutstandingBytes is reached otherwise the ReassembledEvent
+     * Close it or call freeDirectBytebBuffer(ReassembledEvent) to return the buffer to the pool
+     */
+    public Optional<ReassembledEvent> getEvent(){
+        if(!tracker.underBudget()){
+            return Optional.empty();
+        }
+        Assembly assembly = pollAssembly();
+        return assembly == null ? Optional.empty() : Optional.of(deliver(assembly));
+    }
+
+    /**
+     * Blocking variant of getEvent(). While maxOutstandingBytes is reached it first waits for events to be released
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @return Optional.empty() if there's no event available in waitMs or the wait was interrupted otherwise the ReassembledEvent
+     * Close it or call freeDirectBytebBuffer(ReassembledEvent) to return the buffer to the pool
+     */
+    public Optional<ReassembledEvent> recvEvent(long waitMs){
+        long remainingMs = tracker.awaitBudget(waitMs);
+        if(remainingMs < 0){
+            return Optional.empty();
+        }
+        Assembly assembly = takeAssembly(remainingMs);
+        return assembly == null ? Optional.empty() : Optional.of(deliver(assembly));
+    }
+
+    /**
+     * Batch variant of recvEvent(long), blocks at most waitMs for the first event only and takes further events only if already queued.
+     * While maxOutstandingBytes is reached it first waits for events to be released. Event i is returned in eventNums[i], dataIds[i] and buffers[i]
+     * @param eventNums - filled with the event numbers
+     * @param dataIds - filled with the data ids
+     * @param buffers - filled with the event buffers, call freeDirectBytebBuffer(ByteBuffer) on each to return it to the pool
+     * @param maxEvents - maximum number of events to return, capped to the length of the shortest array
+     * @param waitMs - how long to block for the first event before giving up, 0 - forever
+     * @return number of events returned, 0 if there was no event available in waitMs or the wait was interrupted
+     */
+    public int recvEvents(long[] eventNums, int[] dataIds, ByteBuffer[] buffers, int maxEvents, long waitMs){
+        int max = Math.min(maxEvents, Math.min(eventNums.length, Math.min(dataIds.length, buffers.length)));
+        if(max <= 0){
+            return 0;
+        }
+        long remainingMs = tracker.awaitBudget(waitMs);
+        if(remainingMs < 0){
+            return 0;
+        }
+        int count = 0;
+        while(count < max){
+            Assembly assembly = count == 0 ? takeAssembly(remainingMs) : pollAssembly();
+            if(assembly == null){
+                break;
+            }
+            ReassembledEvent event = deliver(assembly);
+            eventNums[count] = event.eventNum;
+            dataIds[count] = event.dataId;
+            buffers[count] = event.byteBuffer;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Copy the next event into a caller owned Direct ByteBuffer at its position, blocking at most waitMs for it. The pooled buffer
+     * of the event is released right away, so maxOutstandingBytes does not apply. On success the position of dst is advanced by the event length.
+     * If the event does not fit in dst.remaining() nothing is copied, metadata.length holds the size needed and the event is returned
+     * again by the next call, so the caller can retry with a larger buffer
+     * @param dst - Direct ByteBuffer receiving the event
+     * @param waitMs - how long to block before giving up, 0 - forever
+     * @param metadata - filled with the event number, data id and length of the event
+     * @return event length, RECV_NO_EVENT if there was no event available in waitMs or the wait was interrupted, or RECV_BUFFER_TOO_SMALL
+     * @throws E2sarNativeException - If dst is not a Direct ByteBuffer
+     */
+    public int recvInto(ByteBuffer dst, long waitMs, EventMetadata metadata) throws E2sarNativeException{
+        if(!dst.isDirect()){
+            throw new E2sarNativeException("This method only supports direct ByteBuffers");
+        }
+        Assembly assembly = pendingEvents.pollFirst();
+        if(assembly == null){
+            assembly = takeAssembly(waitMs);
+            if(assembly == null){
+                return RECV_NO_EVENT;
+            }
+        }
+        metadata.eventNum = assembly.eventNum;
+        metadata.dataId = assembly.dataId;
+        metadata.length = assembly.length;
+        if(assembly.length > dst.remaining()){
+            pendingEvents.offerFirst(assembly);
+            return RECV_BUFFER_TOO_SMALL;
+        }
+        dst.put(assembly.buffer.clear().limit(assembly.length));
+        bufferPool.release(assembly.buffer);
+        return assembly.length;
+    }
+
+    /**
+     * Hand every event completed from now on to handler on the receive thread that completed it instead of queueing it.
+     * The buffer passed to the handler goes back to the pool as soon as it returns, so maxOutstandingBytes does not apply.
+     * Exceptions and errors thrown by handler are reported to the uncaught exception handler of the receive thread and the next event is delivered.
+     * Replaces any handler set before, events already queued stay available to polling
+     * @param handler - called for every event, null to queue events again
+     */
+    public void setEventHandler(EventHandler handler){
+        eventDispatch = handler == null ? null : new EventDispatch(handler, null, 1);
+    }
+
+    /**
+     * Batch variant of setEventHandler(EventHandler). Each receive thread hands over the events it completed once it has maxBatch
+     * of them or after each drain of its channel. The arrays passed to the handler are reused for every batch of a receive thread
+     * @param handler - called for every batch, null to queue events again
+     * @param maxBatch - maximum number of events per call
+     * @throws E2sarNativeException - If maxBatch is not positive
+     */
+    public void setEventHandler(EventBatchHandler handler, int maxBatch) throws E2sarNativeException{
+        if(handler == null){
+            eventDispatch = null;
+            return;
+        }
+        if(maxBatch <= 0){
+            throw new E2sarNativeException("maxBatch must be positive, got " + maxBatch);
+        }
+        eventDispatch = new EventDispatch(null, handler, maxBatch);
+    }
+
+    /**
+     * Get an Instance of RecvStats containing - enqueueLoss, eventSuccess, lastErrno, grpcErrCnt, dataErrCnt, lastE2SARError,
+     * poolHits, poolMisses, outstandingBytes and the lost events per data id. grpcErrCnt and lastE2SARError are always 0,
+     * lastErrno is -1 after a socket error
+     * @return RecvStats instance
+     */
+    public RecvStats getStats(){
+        RecvStats stats = new RecvStats(enqueueLoss.get(), eventSuccess.get(), lastErrorNo, 0, dataErrCount.get(), 0,
+            bufferPool.getHits(), bufferPool.getMisses());
+        stats.outstandingBytes = tracker.getOutstandingBytes();
+        stats.lostDataIds = lostCounters.getDataIds();
+        stats.lostEventsPerDataId = lostCounters.get(stats.lostDataIds);
+        return stats;
+    }
+
+    /**
+     * Get the first segment to completion and completion to dequeue latency histograms since the reassembler was created
+     * @return RecvLatencyStats instance
+     */
+    public RecvLatencyStats getLatencyStats(){ return new RecvLatencyStats(assemblyLatency.snapshot(), queueingLatency.snapshot());}
+
+    /**
+     * Get the per port breakdown, also the per receive thread breakdown since each port has its own thread
+     * @return new RecvPortStats instance
+     */
+    public RecvPortStats getPortStats(){ return getPortStats(new RecvPortStats());}
+
+    /**
+     * Fill a RecvPortStats with the per port breakdown, reusing its arrays
+     * @param stats - instance filled, usually the one from the previous poll
+     * @return stats
+     */
+    public RecvPortStats getPortStats(RecvPortStats stats){
+        int numPorts = 1 << portRange;
+        stats.resize(numPorts);
+        stats.timestampNanos = System.nanoTime();
+        for(int i=0;i<numPorts;i++){
+            int counters = i * PORT_STRIDE;
+            stats.ports[i] = startingPort + i;
+            stats.packets[i] = portCounters.get(counters + PORT_PACKETS);
+            stats.bytes[i] = portCounters.get(counters + PORT_BYTES);
+            stats.events[i] = portCounters.get(counters + PORT_EVENTS);
+            stats.timeouts[i] = portCounters.get(counters + PORT_TIMEOUTS);
+        }
+        UdpSocketStats.read(stats);
+        return stats;
+    }
+
+    /**
+     * Try to pop an event number of a lost event from the queue that stores them
+     * @return Optional.empty() if there's no lost event available otherwise the LostEvent
+     */
+    public Optional<LostEvent> getLostEvent(){ return Optional.ofNullable(lostEventQueue.poll());}
+
+    /**
+     * Batch variant of getLostEvent(), pops lost events until the queue is empty or the arrays are full.
+     * Lost event i is returned in eventNums[i] and dataIds[i]
+     * @param eventNums - filled with the lost event numbers
+     * @param dataIds - filled with the data ids of the lost events
+     * @return number of lost events returned
+     */
+    public int drainLostEvents(long[] eventNums, int[] dataIds){
+        int max = Math.min(eventNums.length, dataIds.length);
+        int count = 0;
+        for(LostEvent lost; count < max && (lost = lostEventQueue.poll()) != null; count++){
+            eventNums[count] = lost.eventNum;
+            dataIds[count] = lost.dataId;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of threads this Reassembler is using, one per port
+     * @return number of receiver threads
+     */
+    public long getNumRecvThreads(){ return 1L << portRange;}
+
+    /**
+     * Get the ports this reassembler is listening on, returned as a List with two items [start port, end port]
+     * @return List[Integer] of size 2 containing {start port, end port}
+     */
+    public List<Integer> getRecvPorts(){
+        List<Integer> ports = new ArrayList<>(2);
+        ports.add(startingPort);
+        ports.add(startingPort + (1 << portRange) - 1);
+        return ports;
+    }
+
+    /**
+     * Get the port range, either specified explicitly as part of ReassemblerFlags or computed from the number of threads requested
+     * @return port range as integer
+     */
+    public int getPortRange(){ return portRange;}
+
+    /**
+     * Returns the buffer of a ReassembledEvent to the pool. It will be a noop if called twice
+     * @param event - ReassembledEvent obtained from getEvent() or recvEvent()
+     */
+    public void freeDirectBytebBuffer(ReassembledEvent event){ freeDirectBytebBuffer(event.byteBuffer);}
+
+    /**
+     * Returns a buffer obtained from recvEvents() to the pool. It will be a noop if called twice
+     * @param buffer - ByteBuffer obtained from recvEvents()
+     */
+    public void freeDirectBytebBuffer(ByteBuffer buffer){ tracker.release(buffer);}
+
+    private void closeChannels(){
+        if(channels == null){
+            return;
+        }
+        for(DatagramChannel channel : channels){
+            if(channel != null){
+                try{
+                    channel.close();
+                }
+                catch(IOException e){
+                    // nothing left to do with this channel
+                }
+            }
+        }
+        channels = null;
+    }
+
+    /**
+     * Stop the receive threads and close the channels. Events not yet taken from the queue are dropped. When called from an event
+     * handler the receive thread running it is not waited for, it stops once the handler returns.
+     * If called multiple time it will be a noop
+     */
+    public void free(){
+        threadsStop = true;
+        if(recvThreads != null){
+            for(Thread thread : recvThreads){
+                if(thread == Thread.currentThread()){
+                    continue;
+                }
+                try{
+                    thread.join();
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            recvThreads = null;
+        }
+        closeChannels();
+        eventQueue.clear();
+        pendingEvents.clear();
+        tracker.releaseAll();
+        bufferPool.clear();
+    }
+}
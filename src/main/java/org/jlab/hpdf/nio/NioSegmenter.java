@@ -0,0 +1,531 @@
+package org.jlab.hpdf.nio;
+
+import org.jlab.hpdf.EventSegmenter;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.SendStats;
+import org.jlab.hpdf.messages.SyncStats;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pure Java implementation of the Segmenter over NIO DatagramChannels, for hosts where libjnie2sar cannot be installed
+ * and for profiling the sending side entirely inside the JVM. It writes the same LB, RE and Sync headers as e2sar::Segmenter
+ * (see LbreHeaders) so its output can be reassembled by the native Reassembler.
+ *
+ * Events are split into datagrams of at most getMaxPayloadLength() bytes, all datagrams of an event are sent from one of
+ * numSendSockets channels picked round robin. When useCP is set a sync thread sends a Sync header to the sync address every
+ * syncPeriodMs, reporting the event number rate averaged over syncPeriods. Unlike Segmenter any ByteBuffer can be sent, not only
+ * Direct ones. Not supported are zeroCopy and the ini file constructor. NIO does not expose errno, so lastErrorNo is -1 after an IO error.
+ *
+ * REMEMBER TO CALL FREE() ONCE DONE WITH THIS CLASS TO STOP THE THREADS AND CLOSE THE CHANNELS
+ */
+public class NioSegmenter implements EventSegmenter {
+
+    /**
+     * An event waiting in the send queue
+     */
+    private static class QueuedEvent {
+        final ByteBuffer buffer;
+        final int offset;
+        final int length;
+        final long eventNumber;
+        final int dataId;
+        final int entropy;
+
+        QueuedEvent(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy){
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.eventNumber = eventNumber;
+            this.dataId = dataId;
+            this.entropy = entropy;
+        }
+    }
+
+    private final int dataId;
+    private final long eventSrcId;
+    private final SegmenterFlags sFlags;
+    private final InetSocketAddress dataAddress;
+    private final InetSocketAddress syncAddress;
+    private final int maxPayloadLength;
+
+    private DatagramChannel[] dataChannels;
+    private DatagramChannel syncChannel;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+    private final ArrayBlockingQueue<QueuedEvent> sendQueue;
+    private Thread sendThread;
+    private Thread syncThread;
+    private volatile boolean threadsStop;
+
+    private final AtomicLong userEventNum = new AtomicLong();
+    private volatile long lastEventNum;
+
+    private final AtomicLong eventDatagramCount = new AtomicLong();
+    private final AtomicLong eventDatagramErrCount = new AtomicLong();
+    private volatile int lastErrorNo;
+    private final AtomicLong syncMsgCount = new AtomicLong();
+    private final AtomicLong syncErrCount = new AtomicLong();
+    private volatile int lastSyncErrorNo;
+
+    // per sending thread LBRE header and staging buffer, sized for the largest MTU any instance uses
+    private static final ThreadLocal<ByteBuffer> LBRE_HEADER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(LbreHeaders.LBRE_HEADER_LENGTH));
+    private static final ThreadLocal<ByteBuffer> STAGING = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(0));
+
+    /**
+     * Constructor to create segmenter with SegmenterFlags
+     * @param dpUri - EJFAT URI string, only the data= and sync= parameters are used
+     * @param dataId - unique identifier of the originating segmentation point (e.g. a DAQ), carried in SAR header
+     * @param eventSrcId - unique identifier of an individual LB packet transmitting host/daq, carried in Sync header
+     * @param sFlags - SegmenterFlags, copied so later changes have no effect
+     * @throws E2sarNativeException - If dpUri is not in expected format or lacks the needed data/sync address
+     */
+    public NioSegmenter(String dpUri, int dataId, long eventSrcId, SegmenterFlags sFlags) throws E2sarNativeException{
+        this(new NioEjfatURI(dpUri), dataId, eventSrcId, sFlags);
+    }
+
+    /**
+     * Constructor to create segmenter with default SegmenterFlags
+     * @param dpUri - EJFAT URI string, only the data= and sync= parameters are used
+     * @param dataId - unique identifier of the originating segmentation point (e.g. a DAQ), carried in SAR header
+     * @param eventSrcId - unique identifier of an individual LB packet transmitting host/daq, carried in Sync header
+     * @throws E2sarNativeException - If dpUri is not in expected format or lacks the needed data/sync address
+     */
+    public NioSegmenter(String dpUri, int dataId, long eventSrcId) throws E2sarNativeException{
+        this(new NioEjfatURI(dpUri), dataId, eventSrcId, new SegmenterFlags());
+    }
+
+    /**
+     * Constructor to create segmenter from an already parsed URI
+     * @param dpUri - parsed EJFAT URI
+     * @param dataId - unique identifier of the originating segmentation point (e.g. a DAQ), carried in SAR header
+     * @param eventSrcId - unique identifier of an individual LB packet transmitting host/daq, carried in Sync header
+     * @param sFlags - SegmenterFlags, copied so later changes have no effect
+     * @throws E2sarNativeException - If dpUri lacks the needed data/sync address or the flags are invalid
+     */
+    public NioSegmenter(NioEjfatURI dpUri, int dataId, long eventSrcId, SegmenterFlags sFlags) throws E2sarNativeException{
+        this.dataId = dataId;
+        this.eventSrcId = eventSrcId;
+        this.sFlags = copyFlags(sFlags);
+        boolean v6 = sFlags.dpV6 ? dpUri.hasDataAddrv6() : !dpUri.hasDataAddrv4();
+        this.dataAddress = v6 ? dpUri.getDataAddrv6() : dpUri.getDataAddrv4();
+        this.syncAddress = sFlags.useCP ? dpUri.getSyncAddr() : null;
+        this.maxPayloadLength = LbreHeaders.maxPayloadLength(sFlags.mtu, v6);
+        if(maxPayloadLength <= 0){
+            throw new E2sarNativeException("MTU " + sFlags.mtu + " is too small to fit IP, UDP and LBRE headers");
+        }
+        if(sFlags.numSendSockets < 1 || sFlags.sendQueueCapacity < 1){
+            throw new E2sarNativeException("numSendSockets and sendQueueCapacity must be positive");
+        }
+        this.sendQueue = new ArrayBlockingQueue<>(sFlags.sendQueueCapacity);
+    }
+
+    private static SegmenterFlags copyFlags(SegmenterFlags sFlags){
+        SegmenterFlags copy = new SegmenterFlags();
+        copy.dpV6 = sFlags.dpV6;
+        copy.zeroCopy = sFlags.zeroCopy;
+        copy.connectedSocket = sFlags.connectedSocket;
+        copy.useCP = sFlags.useCP;
+        copy.zeroRate = sFlags.zeroRate;
+        copy.usecAsEventNum = sFlags.usecAsEventNum;
+        copy.syncPeriodMs = sFlags.syncPeriodMs;
+        copy.syncPeriods = sFlags.syncPeriods;
+        copy.mtu = sFlags.mtu;
+        copy.numSendSockets = sFlags.numSendSockets;
+        copy.sndSocketBufSize = sFlags.sndSocketBufSize;
+        copy.sendQueueCapacity = sFlags.sendQueueCapacity;
+        return copy;
+    }
+
+    /**
+     * Open the data (and sync) channels and start the send (and sync) threads - this marks the moment
+     * from which sync packets start being sent.
+     * @throws E2sarNativeException - If there is an error opening the channels
+     */
+    public void openAndStart() throws E2sarNativeException{
+        if(dataChannels != null){
+            throw new E2sarNativeException("Segmenter is already started");
+        }
+        try{
+            dataChannels = new DatagramChannel[(int) sFlags.numSendSockets];
+            for(int i=0;i<dataChannels.length;i++){
+                dataChannels[i] = DatagramChannel.open();
+                dataChannels[i].setOption(StandardSocketOptions.SO_SNDBUF, sFlags.sndSocketBufSize);
+                if(sFlags.connectedSocket){
+                    dataChannels[i].connect(dataAddress);
+                }
+            }
+            if(syncAddress != null){
+                syncChannel = DatagramChannel.open();
+                syncChannel.connect(syncAddress);
+            }
+        }
+        catch(IOException e){
+            closeChannels();
+            throw new E2sarNativeException("Could not open send sockets: " + e.getMessage());
+        }
+
+        sendThread = new Thread(this::sendThreadLoop, "NioSegmenter-send");
+        sendThread.setDaemon(true);
+        sendThread.start();
+        if(syncChannel != null){
+            syncThread = new Thread(this::syncThreadLoop, "NioSegmenter-sync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+    }
+
+    private static void checkRegion(ByteBuffer buffer, int offset, int length) throws E2sarNativeException{
+        if(offset < 0 || length < 0 || offset > buffer.capacity() - length){
+            throw new E2sarNativeException("Region [" + offset + ", " + offset + " + " + length + ") is outside of buffer with capacity " + buffer.capacity());
+        }
+    }
+
+    private long nextEventNum(long eventNumber){
+        long eventNum;
+        if(eventNumber != 0){
+            eventNum = eventNumber;
+        }
+        else if(sFlags.usecAsEventNum){
+            Instant now = Instant.now();
+            eventNum = now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+        }
+        else{
+            eventNum = userEventNum.getAndIncrement();
+        }
+        lastEventNum = eventNum;
+        return eventNum;
+    }
+
+    /**
+     * Splits one event into LBRE datagrams and sends them all from the same channel
+     */
+    private void sendSegments(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        DatagramChannel[] channels = dataChannels;
+        if(channels == null){
+            throw new E2sarNativeException("Segmenter is not started, call openAndStart() first");
+        }
+        long eventNum = nextEventNum(eventNumber);
+        int sendDataId = dataId == 0 ? this.dataId : dataId;
+        int sendEntropy = entropy == 0 ? ThreadLocalRandom.current().nextInt(1 << 16) : entropy;
+        DatagramChannel channel = channels[Math.floorMod(nextChannel.getAndIncrement(), channels.length)];
+
+        ByteBuffer header = LBRE_HEADER.get();
+        ByteBuffer payload = buffer.duplicate();
+        ByteBuffer[] datagram = {header, payload};
+        int segmentOffset = 0;
+        do{
+            int segmentLength = Math.min(maxPayloadLength, length - segmentOffset);
+            LbreHeaders.putLbre(header, 0, sendEntropy, eventNum, sendDataId, segmentOffset, length);
+            header.clear();
+            payload.limit(offset + segmentOffset + segmentLength).position(offset + segmentOffset);
+            try{
+                if(sFlags.connectedSocket){
+                    channel.write(datagram);
+                }
+                else{
+                    channel.send(stage(header, payload), dataAddress);
+                }
+                eventDatagramCount.incrementAndGet();
+            }
+            catch(IOException e){
+                eventDatagramErrCount.incrementAndGet();
+                lastErrorNo = -1;
+                throw new E2sarNativeException("Error sending event datagram: " + e.getMessage());
+            }
+            segmentOffset += segmentLength;
+        } while(segmentOffset < length);
+    }
+
+    // DatagramChannel.send has no gathering form, so unconnected channels copy header and payload into one buffer
+    private ByteBuffer stage(ByteBuffer header, ByteBuffer payload){
+        ByteBuffer staging = STAGING.get();
+        int needed = header.remaining() + payload.remaining();
+        if(staging.capacity() < needed){
+            staging = ByteBuffer.allocateDirect(Math.max(needed, sFlags.mtu));
+            STAGING.set(staging);
+        }
+        staging.clear();
+        staging.put(header).put(payload).flip();
+        return staging;
+    }
+
+    private void sendThreadLoop(){
+        while(!threadsStop){
+            QueuedEvent event;
+            try{
+                event = sendQueue.poll(100, TimeUnit.MILLISECONDS);
+            }
+            catch(InterruptedException e){
+                continue;
+            }
+            if(event == null){
+                continue;
+            }
+            try{
+                sendSegments(event.buffer, event.offset, event.length, event.eventNumber, event.dataId, event.entropy);
+            }
+            catch(E2sarNativeException e){
+                // already counted in the send stats, keep sending the rest of the queue
+            }
+        }
+    }
+
+    private void syncThreadLoop(){
+        ByteBuffer sync = ByteBuffer.allocateDirect(LbreHeaders.SYNC_HEADER_LENGTH);
+        int periods = Math.max(1, sFlags.syncPeriods);
+        // ring of (event number, time) samples, one per period, the rate is averaged over the whole ring
+        long[] sampleEventNum = new long[periods + 1];
+        long[] sampleNanos = new long[periods + 1];
+        int samples = 0;
+        while(!threadsStop){
+            long now = System.nanoTime();
+            long eventNum = lastEventNum;
+            int slot = samples % sampleEventNum.length;
+            sampleEventNum[slot] = eventNum;
+            sampleNanos[slot] = now;
+            samples++;
+
+            int avgEventRateHz = 0;
+            if(!sFlags.zeroRate && samples > 1){
+                int oldest = samples > sampleEventNum.length ? samples % sampleEventNum.length : 0;
+                long elapsed = now - sampleNanos[oldest];
+                if(elapsed > 0){
+                    avgEventRateHz = (int) ((eventNum - sampleEventNum[oldest]) * 1_000_000_000.0 / elapsed);
+                }
+            }
+
+            Instant wallClock = Instant.now();
+            LbreHeaders.putSync(sync, 0, eventSrcId, eventNum, avgEventRateHz, wallClock.getEpochSecond() * 1_000_000_000L + wallClock.getNano());
+            sync.clear();
+            try{
+                syncChannel.write(sync);
+                syncMsgCount.incrementAndGet();
+            }
+            catch(IOException e){
+                syncErrCount.incrementAndGet();
+                lastSyncErrorNo = -1;
+            }
+
+            // parked rather than sleeping, interrupting a thread in a channel write would close the channel
+            long deadline = now + TimeUnit.MILLISECONDS.toNanos(sFlags.syncPeriodMs);
+            for(long remaining = deadline - System.nanoTime(); remaining > 0 && !threadsStop; remaining = deadline - System.nanoTime()){
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Send immediately overriding event number.
+     * @param buffer - event buffer, heap or Direct. The whole capacity is sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If there is an error sending this event to LB
+     */
+    public void sendEventDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        sendSegments(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Send a region of a buffer immediately overriding event number.
+     * @param buffer - event buffer, heap or Direct
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer or there is an error sending this event to LB
+     */
+    public void sendEventDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkRegion(buffer, offset, length);
+        sendSegments(buffer, offset, length, eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Add to send queue in a nonblocking fashion, overriding internal event number
+     * @param buffer - event buffer, heap or Direct. It must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the send queue is full
+     */
+    public void addToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        addToSendQueueDirect(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Add a region of a buffer to the send queue in a nonblocking fashion, overriding internal event number
+     * @param buffer - event buffer, heap or Direct. The region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer, position and limit of the buffer are ignored
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the region lies outside the buffer or the send queue is full
+     */
+    public void addToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        if(!tryAddToSendQueueDirect(buffer, offset, length, eventNumber, dataId, entropy)){
+            throw new E2sarNativeException("Send queue is full");
+        }
+    }
+
+    /**
+     * Add to send queue without blocking, returning false instead of throwing when the send queue is full
+     * @param buffer - event buffer, heap or Direct. It must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - never for whole buffers, declared to match the region variant
+     */
+    public boolean tryAddToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        return tryAddToSendQueueDirect(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy);
+    }
+
+    /**
+     * Add a region of a buffer to the send queue without blocking, returning false instead of throwing when the send queue is full
+     * @param buffer - event buffer, heap or Direct. The region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If the region lies outside the buffer
+     */
+    public boolean tryAddToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkRegion(buffer, offset, length);
+        return sendQueue.offer(new QueuedEvent(buffer, offset, length, eventNumber, dataId, entropy));
+    }
+
+    /**
+     * Add to send queue, waiting up to timeoutMs for room if the send queue is full
+     * @param buffer - event buffer, heap or Direct. It must not be modified until it has been sent
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - maximum time to wait for room in milliseconds
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs or the wait was interrupted
+     * @throws E2sarNativeException - never for whole buffers, declared to match the region variant
+     */
+    public boolean offerToSendQueueDirect(ByteBuffer buffer, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException{
+        return offerToSendQueueDirect(buffer, 0, buffer.capacity(), eventNumber, dataId, entropy, timeoutMs);
+    }
+
+    /**
+     * Add a region of a buffer to the send queue, waiting up to timeoutMs for room if the send queue is full
+     * @param buffer - event buffer, heap or Direct. The region must not be modified until it has been sent
+     * @param offset - absolute offset of the event within buffer
+     * @param length - length of the event in bytes
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @param timeoutMs - maximum time to wait for room in milliseconds
+     * @return true if the event was queued, false if the send queue stayed full for timeoutMs or the wait was interrupted
+     * @throws E2sarNativeException - If the region lies outside the buffer
+     */
+    public boolean offerToSendQueueDirect(ByteBuffer buffer, int offset, int length, long eventNumber, int dataId, int entropy, long timeoutMs) throws E2sarNativeException{
+        checkRegion(buffer, offset, length);
+        try{
+            return sendQueue.offer(new QueuedEvent(buffer, offset, length, eventNumber, dataId, entropy), timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return maximum number of events that can wait in the send queue
+     */
+    public int getSendQueueCapacity() { return sFlags.sendQueueCapacity;}
+
+    /**
+     * @return number of events currently waiting in the send queue
+     */
+    public int getSendQueueOccupancy() { return sendQueue.size();}
+
+    /**
+     * Get the MTU currently in use by segmenter
+     * @return the MTU as int
+     */
+    public int getMTU() { return sFlags.mtu;}
+
+    /**
+     * get the maximum payload length used by the segmenter
+     * @return maximum number of event bytes per datagram
+     */
+    public long getMaxPayloadLength() { return maxPayloadLength;}
+
+    /**
+     * Get the SyncStats - sync msg cnt, sync err cnt, last errno
+     * @return SyncStats instance
+     */
+    public SyncStats getSyncStats() { return new SyncStats(syncMsgCount.get(), syncErrCount.get(), lastSyncErrorNo);}
+
+    /**
+     * Get the SendStats - event datagrams cnt, event datagrams err cnt, last errno
+     * @return SendStats instance
+     */
+    public SendStats getSendStats() { return new SendStats(eventDatagramCount.get(), eventDatagramErrCount.get(), lastErrorNo);}
+
+    private void closeChannels(){
+        if(dataChannels != null){
+            for(DatagramChannel channel : dataChannels){
+                if(channel != null){
+                    try{
+                        channel.close();
+                    }
+                    catch(IOException e){
+                        // nothing left to do with this channel
+                    }
+                }
+            }
+            dataChannels = null;
+        }
+        if(syncChannel != null){
+            try{
+                syncChannel.close();
+            }
+            catch(IOException e){
+                // nothing left to do with this channel
+            }
+            syncChannel = null;
+        }
+    }
+
+    /**
+     * Stop the threads and close the channels, events still in the send queue are dropped. If called multiple time it will be a noop
+     */
+    public void free(){
+        threadsStop = true;
+        // the send thread notices threadsStop within its 100ms queue poll
+        for(Thread thread : new Thread[]{sendThread, syncThread}){
+            if(thread != null){
+                LockSupport.unpark(thread);
+                try{
+                    thread.join();
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        sendThread = null;
+        syncThread = null;
+        sendQueue.clear();
+        closeChannels();
+    }
+}
@@ -0,0 +1,123 @@
+package org.jlab.hpdf.nio;
+
+import org.jlab.hpdf.config.ReassemblerFlags;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of Direct ByteBuffers for reassembled events, organized in power of two size classes from poolMinBufferSize
+ * to poolMaxBufferSize (see ReassemblerFlags). An acquired buffer has the capacity of the smallest class that fits the event,
+ * so a released buffer can serve any later event of the same class without reallocating and touching fresh pages.
+ * Each class keeps at most poolBuffersPerClass released buffers, events larger than the largest class are allocated
+ * exactly and never pooled. Safe for concurrent acquire and release.
+ */
+public class ReassemblyBufferPool {
+
+    private final int minShift;
+    private final int maxShift;
+    private final int buffersPerClass;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] classes;
+    private final AtomicInteger[] classCounts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a pool sized by ReassemblerFlags
+     * @param rFlags - uses poolMinBufferSize, poolMaxBufferSize and poolBuffersPerClass
+     */
+    public ReassemblyBufferPool(ReassemblerFlags rFlags){
+        this(rFlags.poolMinBufferSize, rFlags.poolMaxBufferSize, rFlags.poolBuffersPerClass);
+    }
+
+    /**
+     * Create a pool
+     * @param minBufferSize - capacity of the smallest size class, rounded up to a power of two
+     * @param maxBufferSize - capacity of the largest size class, rounded up to a power of two
+     * @param buffersPerClass - maximum number of released buffers kept per size class, 0 disables pooling
+     */
+    @SuppressWarnings("unchecked")
+    public ReassemblyBufferPool(int minBufferSize, int maxBufferSize, int buffersPerClass){
+        this.minShift = shiftFor(Math.max(1, minBufferSize));
+        this.maxShift = Math.max(minShift, shiftFor(Math.max(1, maxBufferSize)));
+        this.buffersPerClass = buffersPerClass;
+        int numClasses = maxShift - minShift + 1;
+        this.classes = new ConcurrentLinkedQueue[numClasses];
+        this.classCounts = new AtomicInteger[numClasses];
+        for(int i=0;i<numClasses;i++){
+            classes[i] = new ConcurrentLinkedQueue<>();
+            classCounts[i] = new AtomicInteger();
+        }
+    }
+
+    // smallest shift with 1 << shift >= size, capped so the class size stays a positive int
+    private static int shiftFor(int size){
+        return Math.min(30, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    /**
+     * @param length - event length in bytes
+     * @return a cleared Direct ByteBuffer with capacity of at least length
+     */
+    public ByteBuffer acquire(int length){
+        int shift = Math.max(minShift, shiftFor(Math.max(1, length)));
+        if(shift > maxShift || (1 << shift) < length){
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(length);
+        }
+        int sizeClass = shift - minShift;
+        ByteBuffer buffer = classes[sizeClass].poll();
+        if(buffer != null){
+            classCounts[sizeClass].decrementAndGet();
+            hits.incrementAndGet();
+            return buffer.clear();
+        }
+        misses.incrementAndGet();
+        return ByteBuffer.allocateDirect(1 << shift);
+    }
+
+    /**
+     * Return a buffer obtained from acquire(int). Buffers that do not belong to a size class or whose class is full are dropped
+     * @param buffer - buffer to return, must not be used afterwards
+     */
+    public void release(ByteBuffer buffer){
+        int capacity = buffer.capacity();
+        if(Integer.bitCount(capacity) != 1){
+            return;
+        }
+        int shift = Integer.numberOfTrailingZeros(capacity);
+        if(shift < minShift || shift > maxShift){
+            return;
+        }
+        int sizeClass = shift - minShift;
+        if(classCounts[sizeClass].incrementAndGet() <= buffersPerClass){
+            classes[sizeClass].offer(buffer);
+        }
+        else{
+            classCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    /**
+     * Drop all pooled buffers, counters are kept
+     */
+    public void clear(){
+        for(int i=0;i<classes.length;i++){
+            classes[i].clear();
+            classCounts[i].set(0);
+        }
+    }
+
+    /**
+     * @return number of acquire calls served from the pool
+     */
+    public long getHits(){ return hits.get();}
+
+    /**
+     * @return number of acquire calls that had to allocate
+     */
+    public long getMisses(){ return misses.get();}
+}
@@ -0,0 +1,282 @@
+package org.jlab.hpdf.pipeline;
+
+import org.jlab.hpdf.EventReassembler;
+import org.jlab.hpdf.config.PipelineFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ReassembledEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans the events of a Reassembler or NioReassembler out to one bounded queue per data id, so consumers of different data ids do not
+ * take each other's events or wait on each other. A router thread takes events with recvEvent() and looks the data id up in an open
+ * addressing table of primitive keys, events of data ids without a route go to the default route. When a route is full its event is
+ * dropped and freed instead of waiting, so one slow consumer only loses its own events.
+ * <p>
+ * Routes are added with addRoute() before start(). Each Route is meant to be consumed by a single thread with getEvent() or recvEvent(),
+ * every event taken must be given back with Route.free(). Nothing else may take events from the reassembler while the router runs.
+ * The router does not free the reassembler, close the router before freeing it. Of PipelineFlags the router uses ringCapacity for the
+ * default route, pollMs and idleParkUs.
+ */
+public class DataIdRouter implements AutoCloseable {
+
+    /**
+     * Bounded queue of the events of one data id, or of all data ids without a route for the default route
+     */
+    public static final class Route {
+        private final EventReassembler reassembler;
+        private final int dataId;
+        private final MpmcRing<ReassembledEvent> ring;
+        private final long idleParkNanos;
+        private final AtomicLong routed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private Route(EventReassembler reassembler, int dataId, int capacity, long idleParkNanos){
+            this.reassembler = reassembler;
+            this.dataId = dataId;
+            this.ring = new MpmcRing<>(capacity);
+            this.idleParkNanos = idleParkNanos;
+        }
+
+        // router thread only
+        private void route(ReassembledEvent event){
+            if(ring.offer(event)){
+                routed.incrementAndGet();
+            }
+            else{
+                dropped.incrementAndGet();
+                reassembler.freeDirectBytebBuffer(event);
+            }
+        }
+
+        /**
+         * Take the oldest event of this route without waiting
+         * @return if the route is empty Optional.empty() is returned otherwise the ReassembledEvent
+         */
+        public Optional<ReassembledEvent> getEvent(){
+            return Optional.ofNullable(ring.poll());
+        }
+
+        /**
+         * Take the oldest event of this route, waiting for one up to waitTimeMs
+         * @param waitTimeMs - how long to wait for an event in milliseconds
+         * @return if no event arrived in time Optional.empty() is returned otherwise the ReassembledEvent
+         */
+        public Optional<ReassembledEvent> recvEvent(long waitTimeMs){
+            ReassembledEvent event = ring.poll();
+            if(event != null){
+                return Optional.of(event);
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeMs);
+            while((event = ring.poll()) == null && deadline - System.nanoTime() > 0){
+                LockSupport.parkNanos(idleParkNanos);
+            }
+            return Optional.ofNullable(event);
+        }
+
+        /**
+         * Give an event taken from this route back to the reassembler
+         * @param event - event returned by getEvent() or recvEvent()
+         */
+        public void free(ReassembledEvent event){
+            reassembler.freeDirectBytebBuffer(event);
+        }
+
+        /**
+         * @return data id of this route, -1 for the default route
+         */
+        public int getDataId(){ return dataId;}
+
+        /**
+         * @return number of events waiting in this route, only approximate while the route is consumed
+         */
+        public int getDepth(){ return ring.size();}
+
+        /**
+         * @return number of events this route holds at most
+         */
+        public int getCapacity(){ return ring.capacity();}
+
+        /**
+         * @return number of events put in this route
+         */
+        public long getRouted(){ return routed.get();}
+
+        /**
+         * @return number of events dropped because this route was full
+         */
+        public long getDropped(){ return dropped.get();}
+    }
+
+    private static final int EMPTY = -1;
+
+    private final EventReassembler reassembler;
+    private final PipelineFlags flags;
+    private final long idleParkNanos;
+    private final Route defaultRoute;
+    private final List<Route> routes = new ArrayList<>();
+
+    // built by start(), read by the router thread only
+    private int[] keys;
+    private Route[] values;
+
+    private final Thread router;
+    private volatile boolean started;
+    private volatile boolean stopping;
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * Create a router with only the default route, add routes with addRoute() and call start() to start taking events
+     * @param reassembler - opened and started reassembler to take events from
+     * @param flags - default route capacity and polling intervals
+     * @throws E2sarNativeException - If ringCapacity or pollMs are not positive
+     */
+    public DataIdRouter(EventReassembler reassembler, PipelineFlags flags) throws E2sarNativeException{
+        if(flags.ringCapacity <= 0 || flags.pollMs <= 0){
+            throw new E2sarNativeException("ringCapacity and pollMs must be positive");
+        }
+        this.reassembler = reassembler;
+        this.flags = flags;
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, flags.idleParkUs));
+        this.defaultRoute = new Route(reassembler, -1, flags.ringCapacity, idleParkNanos);
+        this.router = new Thread(this::routerLoop, "DataIdRouter");
+        router.setDaemon(true);
+    }
+
+    /**
+     * Create a router with default PipelineFlags, add routes with addRoute() and call start() to start taking events
+     * @param reassembler - opened and started reassembler to take events from
+     * @throws E2sarNativeException - never with the default flags
+     */
+    public DataIdRouter(EventReassembler reassembler) throws E2sarNativeException{
+        this(reassembler, new PipelineFlags());
+    }
+
+    /**
+     * Add a route for the events of dataId
+     * @param dataId - data id to route, 0 to 0xffff
+     * @param capacity - number of events the route holds before dropping, rounded up to a power of two of at least 2
+     * @return the new Route to consume
+     * @throws E2sarNativeException - If the router was started, dataId already has a route or is out of range or capacity is not positive
+     */
+    public synchronized Route addRoute(int dataId, int capacity) throws E2sarNativeException{
+        if(started){
+            throw new E2sarNativeException("Routes must be added before start()");
+        }
+        if(dataId < 0 || dataId > 0xffff){
+            throw new E2sarNativeException("dataId must be between 0 and 0xffff, got " + dataId);
+        }
+        if(capacity <= 0){
+            throw new E2sarNativeException("capacity must be positive, got " + capacity);
+        }
+        for(Route route : routes){
+            if(route.dataId == dataId){
+                throw new E2sarNativeException("dataId " + dataId + " already has a route");
+            }
+        }
+        Route route = new Route(reassembler, dataId, capacity, idleParkNanos);
+        routes.add(route);
+        return route;
+    }
+
+    /**
+     * @return the route of events whose data id has no route of its own
+     */
+    public Route getDefaultRoute(){ return defaultRoute;}
+
+    /**
+     * @return number of events taken from the reassembler
+     */
+    public long getReceived(){ return received.get();}
+
+    // Fibonacci hashing like DataIdCounters, at most half the slots are used
+    private static int slot(int dataId, int mask){
+        return (dataId * 0x9E3779B9 >>> 16) & mask;
+    }
+
+    /**
+     * Build the lookup table and start the router thread, routes can no longer be added
+     * @throws E2sarNativeException - If the router was already started
+     */
+    public synchronized void start() throws E2sarNativeException{
+        if(started){
+            throw new E2sarNativeException("Router was already started");
+        }
+        int capacity = Integer.highestOneBit(Math.max(1, routes.size()) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new Route[capacity];
+        Arrays.fill(keys, EMPTY);
+        for(Route route : routes){
+            int index = slot(route.dataId, capacity - 1);
+            while(keys[index] != EMPTY){
+                index = (index + 1) & (capacity - 1);
+            }
+            keys[index] = route.dataId;
+            values[index] = route;
+        }
+        started = true;
+        router.start();
+    }
+
+    private Route lookup(int dataId){
+        int mask = keys.length - 1;
+        for(int index = slot(dataId, mask); keys[index] != EMPTY; index = (index + 1) & mask){
+            if(keys[index] == dataId){
+                return values[index];
+            }
+        }
+        return defaultRoute;
+    }
+
+    private void routerLoop(){
+        while(!stopping){
+            Optional<ReassembledEvent> event = reassembler.recvEvent(flags.pollMs);
+            if(event.isEmpty()){
+                continue;
+            }
+            received.incrementAndGet();
+            lookup(event.get().dataId).route(event.get());
+        }
+    }
+
+    /**
+     * Stop taking events from the reassembler, events already routed stay in their routes for the consumers.
+     * If called multiple time it will be a noop
+     */
+    public synchronized void stop(){
+        if(stopping){
+            return;
+        }
+        stopping = true;
+        try{
+            if(router.isAlive()){
+                router.join();
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the router and free the events no consumer took. If called multiple time it will be a noop
+     */
+    @Override
+    public synchronized void close(){
+        stop();
+        for(Route route : routes){
+            for(Optional<ReassembledEvent> event = route.getEvent(); event.isPresent(); event = route.getEvent()){
+                route.free(event.get());
+            }
+        }
+        for(Optional<ReassembledEvent> event = defaultRoute.getEvent(); event.isPresent(); event = defaultRoute.getEvent()){
+            defaultRoute.free(event.get());
+        }
+    }
+}
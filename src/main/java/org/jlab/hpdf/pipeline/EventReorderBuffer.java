@@ -0,0 +1,220 @@
+package org.jlab.hpdf.pipeline;
+
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.ReassembledEvent;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts the events of a multi-threaded reassembler back into event number order. Events are kept in a ring of window slots indexed by
+ * eventNum modulo the window size, so inserting and releasing an event does not allocate. The first event offered starts the sequence,
+ * poll() returns the next event in sequence once it has arrived. If it has not arrived gapTimeoutMs after poll() first found it missing,
+ * the missing event numbers are given up, reported through getLostEvent() and the next buffered event is returned.
+ * <p>
+ * Events are keyed on eventNum only, so streams where several data ids share event numbers need one buffer per data id.
+ * offer(), poll() and flush() must be called from a single thread, the counters and getLostEvent() may be used from any thread.
+ */
+public class EventReorderBuffer {
+
+    /**
+     * returned by offer() when the event was buffered
+     */
+    public static final int OFFER_ACCEPTED = 0;
+    /**
+     * returned by offer() when an event with a higher event number was already released, or the event number is already buffered.
+     * The event is not buffered, the caller decides whether to handle it out of order or drop it
+     */
+    public static final int OFFER_LATE = -1;
+    /**
+     * returned by offer() when the event is a full window ahead of the next event in sequence, which has already arrived. poll() returns
+     * it and offer() can be retried
+     */
+    public static final int OFFER_FULL = -2;
+
+    private static final long NO_GAP = Long.MIN_VALUE;
+
+    private final ReassembledEvent[] slots;
+    private final int mask;
+    private final long gapTimeoutNanos;
+
+    // offer, poll and flush thread only
+    private boolean haveNextEventNum;
+    private long nextEventNum;
+    private long gapSinceNanos = NO_GAP;
+
+    // given up event numbers waiting for getLostEvent(), the oldest are overwritten once full
+    private final long[] lostEventNums;
+    private final int[] lostDataIds;
+    private int lostHead;
+    private int lostSize;
+
+    private volatile int occupancy;
+    private volatile long lateEvents;
+    private volatile long lostEvents;
+
+    /**
+     * @param window - number of events that can be buffered, rounded up to a power of two. Also the number of given up event numbers
+     * kept for getLostEvent()
+     * @param gapTimeoutMs - how long to wait for a missing event before giving it up, 0 - give up as soon as a later event is buffered
+     */
+    public EventReorderBuffer(int window, long gapTimeoutMs){
+        if(window <= 0 || window > (1 << 30)){
+            throw new IllegalArgumentException("window must be between 1 and 2^30, got " + window);
+        }
+        if(gapTimeoutMs < 0){
+            throw new IllegalArgumentException("gapTimeoutMs must not be negative, got " + gapTimeoutMs);
+        }
+        int size = window == 1 ? 1 : Integer.highestOneBit(window - 1) << 1;
+        this.slots = new ReassembledEvent[size];
+        this.mask = size - 1;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMs);
+        this.lostEventNums = new long[size];
+        this.lostDataIds = new int[size];
+    }
+
+    /**
+     * Buffer an event until its turn. If the event is a window ahead of the next event in sequence, missing event numbers at the start
+     * of the window are given up to make room
+     * @param event - event to buffer
+     * @return OFFER_ACCEPTED, OFFER_LATE or OFFER_FULL
+     */
+    public int offer(ReassembledEvent event){
+        if(!haveNextEventNum){
+            nextEventNum = event.eventNum;
+            haveNextEventNum = true;
+        }
+        if(event.eventNum < nextEventNum){
+            lateEvents++;
+            return OFFER_LATE;
+        }
+        while(event.eventNum - nextEventNum > mask){
+            if(slots[(int) nextEventNum & mask] != null){
+                return OFFER_FULL;
+            }
+            skipGap(event.eventNum - mask, event.dataId);
+        }
+        int index = (int) event.eventNum & mask;
+        if(slots[index] != null){
+            lateEvents++;
+            return OFFER_LATE;
+        }
+        slots[index] = event;
+        occupancy++;
+        return OFFER_ACCEPTED;
+    }
+
+    /**
+     * Take the next event in sequence
+     * @return the next event, or null if it has not arrived and the gap timeout has not expired
+     */
+    public ReassembledEvent poll(){
+        if(occupancy == 0){
+            gapSinceNanos = NO_GAP;
+            return null;
+        }
+        if(slots[(int) nextEventNum & mask] == null){
+            long now = System.nanoTime();
+            if(gapSinceNanos == NO_GAP){
+                gapSinceNanos = now;
+            }
+            if(now - gapSinceNanos < gapTimeoutNanos){
+                return null;
+            }
+            skipGap(Long.MAX_VALUE, 0);
+        }
+        return release();
+    }
+
+    /**
+     * Take the next buffered event without waiting for missing ones, they are given up the same as on a gap timeout.
+     * Used to empty the buffer when no more events will be offered
+     * @return the next buffered event, or null if the buffer is empty
+     */
+    public ReassembledEvent flush(){
+        if(occupancy == 0){
+            return null;
+        }
+        skipGap(Long.MAX_VALUE, 0);
+        return release();
+    }
+
+    private ReassembledEvent release(){
+        int index = (int) nextEventNum & mask;
+        ReassembledEvent event = slots[index];
+        slots[index] = null;
+        occupancy--;
+        nextEventNum++;
+        gapSinceNanos = NO_GAP;
+        return event;
+    }
+
+    // gives up missing event numbers from nextEventNum up to the first buffered event or limit, whichever comes first.
+    // A lost event is reported with the data id of the event ending the gap, or dataId if limit is reached first
+    private void skipGap(long limit, int dataId){
+        long end = nextEventNum;
+        while(end < limit && end - nextEventNum <= mask && slots[(int) end & mask] == null){
+            end++;
+        }
+        if(end == nextEventNum){
+            return;
+        }
+        if(end - nextEventNum > mask){
+            // nothing buffered, the window moves past its end
+            end = limit;
+        }
+        ReassembledEvent next = slots[(int) end & mask];
+        recordLost(nextEventNum, end, next != null && end < limit ? next.dataId : dataId);
+        nextEventNum = end;
+    }
+
+    private synchronized void recordLost(long from, long to, int dataId){
+        lostEvents += to - from;
+        // only the newest fit, skip the ones that would be overwritten right away
+        for(long eventNum = Math.max(from, to - lostEventNums.length); eventNum < to; eventNum++){
+            int index = (lostHead + lostSize) % lostEventNums.length;
+            lostEventNums[index] = eventNum;
+            lostDataIds[index] = dataId;
+            if(lostSize < lostEventNums.length){
+                lostSize++;
+            }
+            else{
+                lostHead = (lostHead + 1) % lostEventNums.length;
+            }
+        }
+    }
+
+    /**
+     * Pop the oldest given up event number
+     * @return if there's no lost event available Optional.empty() is returned otherwise the LostEvent
+     */
+    public synchronized Optional<LostEvent> getLostEvent(){
+        if(lostSize == 0){
+            return Optional.empty();
+        }
+        LostEvent lostEvent = new LostEvent(lostEventNums[lostHead], lostDataIds[lostHead]);
+        lostHead = (lostHead + 1) % lostEventNums.length;
+        lostSize--;
+        return Optional.of(lostEvent);
+    }
+
+    /**
+     * @return number of events currently buffered
+     */
+    public int getOccupancy(){ return occupancy;}
+
+    /**
+     * @return number of slots
+     */
+    public int getWindow(){ return mask + 1;}
+
+    /**
+     * @return number of events offer() returned OFFER_LATE for
+     */
+    public long getLateEvents(){ return lateEvents;}
+
+    /**
+     * @return number of event numbers given up, including those no longer available from getLostEvent()
+     */
+    public long getLostEvents(){ return lostEvents;}
+}
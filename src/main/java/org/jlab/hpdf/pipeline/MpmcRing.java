@@ -0,0 +1,103 @@
+package org.jlab.hpdf.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer ring. Each slot carries a sequence number telling producers and consumers
+ * whether it is free or holds an element for the current lap, so offer and poll only contend on a single compare and set of
+ * the tail or head counter and never block. Neither offer nor poll waits, callers choose how to back off when the ring is full or empty.
+ * @param <E> - element type
+ */
+public class MpmcRing<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity - number of slots, rounded up to a power of two of at least 2
+     */
+    public MpmcRing(int capacity){
+        if(capacity <= 0 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, got " + capacity);
+        }
+        // with a single slot the sequence poll() leaves behind equals the one offer() leaves, full and empty would look the same
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for(int i=0;i<size;i++){
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param element - element to add, not null
+     * @return false if the ring is full
+     */
+    public boolean offer(E element){
+        long position = tail.get();
+        while(true){
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if(difference == 0){
+                if(tail.compareAndSet(position, position + 1)){
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if(difference < 0){
+                // the slot still holds the element of the previous lap
+                return false;
+            }
+            else{
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element or null if the ring is empty
+     */
+    public E poll(){
+        long position = head.get();
+        while(true){
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if(difference == 0){
+                if(head.compareAndSet(position, position + 1)){
+                    E element = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            }
+            else if(difference < 0){
+                return null;
+            }
+            else{
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return number of elements in the ring, only approximate while producers or consumers are active
+     */
+    public int size(){
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1L));
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int capacity(){ return mask + 1;}
+}
@@ -0,0 +1,366 @@
+package org.jlab.hpdf.pipeline;
+
+import org.jlab.hpdf.EventHandler;
+import org.jlab.hpdf.EventReassembler;
+import org.jlab.hpdf.config.PipelineFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.PipelineStats;
+import org.jlab.hpdf.messages.ReassembledEvent;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spreads the events of a Reassembler or NioReassembler over a fixed number of worker threads. A feeder thread takes events with
+ * recvEvent() and hands them to the workers through lock-free MpmcRings, each worker calls the EventHandler and frees the event
+ * once it returns. The Ordering decides which events may be handled concurrently:
+ * <ul>
+ * <li>UNORDERED - all workers share one ring, any worker takes the next event</li>
+ * <li>PER_DATA_ID - each worker has its own ring and gets all events of the data ids hashed to it, so events of one data id are
+ * handled one at a time in the order they were reassembled</li>
+ * <li>GLOBAL - events are held back in one EventReorderBuffer per data id and handed to the shared ring in event number order within
+ * their data id, events of different data ids are not ordered against each other. Workers start handling them in that order, with a
+ * single worker they are also handled strictly in order. Missing events are given up after PipelineFlags.gapTimeoutMs and can be
+ * retrieved with getLostEvent(), events arriving after they were given up are handled out of order</li>
+ * </ul>
+ * Nothing else may take events from the reassembler while the pipeline runs. The pipeline does not free the reassembler,
+ * stop the pipeline before freeing it.
+ */
+public class ReassemblerPipeline implements AutoCloseable {
+
+    /**
+     * Which events may be handled concurrently, see ReassemblerPipeline
+     */
+    public enum Ordering {
+        UNORDERED,
+        PER_DATA_ID,
+        GLOBAL
+    }
+
+    private final EventReassembler reassembler;
+    private final EventHandler handler;
+    private final Ordering ordering;
+    private final PipelineFlags flags;
+    private final long idleParkNanos;
+
+    private final MpmcRing<ReassembledEvent>[] rings;
+    private final Thread feeder;
+    private final Thread[] workers;
+    private volatile boolean stopping;
+    private volatile boolean feederDone;
+
+    // GLOBAL ordering, one buffer per data id created when its first event arrives. The open addressing table is used on the feeder
+    // thread only, reorderBuffers lists the same buffers for getStats() and getLostEvent() and is replaced whenever one is added
+    private int[] reorderKeys;
+    private EventReorderBuffer[] reorderTable;
+    private volatile EventReorderBuffer[] reorderBuffers = new EventReorderBuffer[0];
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLongArray handled;
+
+    private long lastStatsNanos;
+    private long lastReceived;
+    private long lastHandled;
+
+    /**
+     * Create a pipeline, call start() to start taking events
+     * @param reassembler - opened and started reassembler to take events from
+     * @param numWorkers - number of worker threads calling handler
+     * @param ordering - which events may be handled concurrently
+     * @param handler - called on a worker thread for every event, the event is freed once it returns
+     * @param flags - ring capacity, reorder window and polling intervals
+     * @throws E2sarNativeException - If numWorkers, ringCapacity, reorderWindow or pollMs are not positive or gapTimeoutMs is negative
+     */
+    @SuppressWarnings("unchecked")
+    public ReassemblerPipeline(EventReassembler reassembler, int numWorkers, Ordering ordering, EventHandler handler, PipelineFlags flags) throws E2sarNativeException{
+        if(numWorkers <= 0){
+            throw new E2sarNativeException("numWorkers must be positive, got " + numWorkers);
+        }
+        if(flags.ringCapacity <= 0 || flags.reorderWindow <= 0 || flags.pollMs <= 0){
+            throw new E2sarNativeException("ringCapacity, reorderWindow and pollMs must be positive");
+        }
+        if(flags.gapTimeoutMs < 0){
+            throw new E2sarNativeException("gapTimeoutMs must not be negative, got " + flags.gapTimeoutMs);
+        }
+        this.reassembler = reassembler;
+        this.handler = handler;
+        this.ordering = ordering;
+        this.flags = flags;
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, flags.idleParkUs));
+
+        int numRings = ordering == Ordering.PER_DATA_ID ? numWorkers : 1;
+        this.rings = new MpmcRing[numRings];
+        for(int i=0;i<numRings;i++){
+            rings[i] = new MpmcRing<>(flags.ringCapacity);
+        }
+        this.handled = new AtomicLongArray(numWorkers);
+        if(ordering == Ordering.GLOBAL){
+            this.reorderKeys = new int[16];
+            this.reorderTable = new EventReorderBuffer[16];
+        }
+
+        this.feeder = new Thread(this::feederLoop, "ReassemblerPipeline-feeder");
+        feeder.setDaemon(true);
+        this.workers = new Thread[numWorkers];
+        for(int i=0;i<numWorkers;i++){
+            int worker = i;
+            MpmcRing<ReassembledEvent> ring = rings[i % numRings];
+            workers[i] = new Thread(() -> workerLoop(worker, ring), "ReassemblerPipeline-worker-" + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Create a pipeline with default PipelineFlags, call start() to start taking events
+     * @param reassembler - opened and started reassembler to take events from
+     * @param numWorkers - number of worker threads calling handler
+     * @param ordering - which events may be handled concurrently
+     * @param handler - called on a worker thread for every event, the event is freed once it returns
+     * @throws E2sarNativeException - If numWorkers is not positive
+     */
+    public ReassemblerPipeline(EventReassembler reassembler, int numWorkers, Ordering ordering, EventHandler handler) throws E2sarNativeException{
+        this(reassembler, numWorkers, ordering, handler, new PipelineFlags());
+    }
+
+    /**
+     * Start the feeder and worker threads
+     */
+    public synchronized void start(){
+        lastStatsNanos = System.nanoTime();
+        for(Thread worker : workers){
+            worker.start();
+        }
+        feeder.start();
+    }
+
+    private void feederLoop(){
+        while(!stopping){
+            Optional<ReassembledEvent> event = reassembler.recvEvent(flags.pollMs);
+            if(event.isEmpty()){
+                // nothing arrived in pollMs, the gap timeout may have expired
+                for(EventReorderBuffer reorderBuffer : reorderBuffers){
+                    releaseInOrder(reorderBuffer);
+                }
+                continue;
+            }
+            received.incrementAndGet();
+            ReassembledEvent e = event.get();
+            switch(ordering){
+                case UNORDERED:
+                    dispatch(rings[0], e);
+                    break;
+                case PER_DATA_ID:
+                    dispatch(rings[Math.floorMod(e.dataId, rings.length)], e);
+                    break;
+                case GLOBAL:
+                    reorder(e);
+                    break;
+            }
+        }
+        for(EventReorderBuffer reorderBuffer : reorderBuffers){
+            for(ReassembledEvent head = reorderBuffer.flush(); head != null; head = reorderBuffer.flush()){
+                dispatch(rings[0], head);
+            }
+        }
+        feederDone = true;
+    }
+
+    private void reorder(ReassembledEvent event){
+        EventReorderBuffer reorderBuffer = reorderBufferOf(event.dataId);
+        int result;
+        while((result = reorderBuffer.offer(event)) == EventReorderBuffer.OFFER_FULL){
+            dispatch(rings[0], reorderBuffer.poll());
+        }
+        if(result == EventReorderBuffer.OFFER_LATE){
+            dispatch(rings[0], event);
+            return;
+        }
+        releaseInOrder(reorderBuffer);
+    }
+
+    // Fibonacci hashing as in DataIdCounters, a slot is taken when its buffer is not null so any int is a valid data id
+    private EventReorderBuffer reorderBufferOf(int dataId){
+        int mask = reorderTable.length - 1;
+        int index = (dataId * 0x9E3779B9 >>> 16) & mask;
+        while(reorderTable[index] != null){
+            if(reorderKeys[index] == dataId){
+                return reorderTable[index];
+            }
+            index = (index + 1) & mask;
+        }
+        EventReorderBuffer reorderBuffer = new EventReorderBuffer(flags.reorderWindow, flags.gapTimeoutMs);
+        reorderKeys[index] = dataId;
+        reorderTable[index] = reorderBuffer;
+        EventReorderBuffer[] buffers = Arrays.copyOf(reorderBuffers, reorderBuffers.length + 1);
+        buffers[buffers.length - 1] = reorderBuffer;
+        reorderBuffers = buffers;
+        if(buffers.length * 2 > reorderTable.length){
+            growReorderTable();
+        }
+        return reorderBuffer;
+    }
+
+    private void growReorderTable(){
+        int[] oldKeys = reorderKeys;
+        EventReorderBuffer[] oldTable = reorderTable;
+        reorderKeys = new int[oldKeys.length * 2];
+        reorderTable = new EventReorderBuffer[oldTable.length * 2];
+        int mask = reorderTable.length - 1;
+        for(int i=0;i<oldTable.length;i++){
+            if(oldTable[i] != null){
+                int index = (oldKeys[i] * 0x9E3779B9 >>> 16) & mask;
+                while(reorderTable[index] != null){
+                    index = (index + 1) & mask;
+                }
+                reorderKeys[index] = oldKeys[i];
+                reorderTable[index] = oldTable[i];
+            }
+        }
+    }
+
+    private void releaseInOrder(EventReorderBuffer reorderBuffer){
+        for(ReassembledEvent head = reorderBuffer.poll(); head != null; head = reorderBuffer.poll()){
+            dispatch(rings[0], head);
+        }
+    }
+
+    // waits for room in the ring, the reassembler queue absorbs events meanwhile. Once stop() was called the feeder must not wait on
+    // workers that may never drain the ring, so the event is freed unhandled
+    private void dispatch(MpmcRing<ReassembledEvent> ring, ReassembledEvent event){
+        while(!ring.offer(event)){
+            if(stopping){
+                reassembler.freeDirectBytebBuffer(event);
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(idleParkNanos);
+        }
+        dispatched.incrementAndGet();
+    }
+
+    private void workerLoop(int worker, MpmcRing<ReassembledEvent> ring){
+        while(true){
+            ReassembledEvent event = ring.poll();
+            if(event == null){
+                if(!feederDone){
+                    LockSupport.parkNanos(idleParkNanos);
+                    continue;
+                }
+                // the feeder has dispatched its last event, finish what is left in the ring
+                event = ring.poll();
+                if(event == null){
+                    return;
+                }
+            }
+            try{
+                handler.onEvent(event.byteBuffer, event.eventNum, event.dataId);
+            }
+            catch(Throwable e){
+                // a handler that throws must not stop the worker and leave its ring undrained, report it the way an uncaught exception
+                // would be and go on
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+            finally{
+                reassembler.freeDirectBytebBuffer(event);
+            }
+            handled.incrementAndGet(worker);
+        }
+    }
+
+    /**
+     * Get a snapshot of the queue depths and counters of every stage, rates are computed over the time since the previous call
+     * @return PipelineStats instance
+     */
+    public synchronized PipelineStats getStats(){
+        PipelineStats stats = new PipelineStats();
+        stats.received = received.get();
+        stats.dispatched = dispatched.get();
+        stats.dropped = dropped.get();
+        stats.handledPerWorker = new long[handled.length()];
+        for(int i=0;i<handled.length();i++){
+            stats.handledPerWorker[i] = handled.get(i);
+        }
+        for(EventReorderBuffer reorderBuffer : reorderBuffers){
+            stats.reorderDepth += reorderBuffer.getOccupancy();
+            stats.lateEvents += reorderBuffer.getLateEvents();
+            stats.lostEvents += reorderBuffer.getLostEvents();
+        }
+        stats.ringDepths = new int[rings.length];
+        for(int i=0;i<rings.length;i++){
+            stats.ringDepths[i] = rings[i].size();
+        }
+
+        long now = System.nanoTime();
+        long handledTotal = stats.getHandled();
+        double seconds = (now - lastStatsNanos) / 1e9;
+        if(seconds > 0){
+            stats.receivedPerSecond = (stats.received - lastReceived) / seconds;
+            stats.handledPerSecond = (handledTotal - lastHandled) / seconds;
+        }
+        lastStatsNanos = now;
+        lastReceived = stats.received;
+        lastHandled = handledTotal;
+        return stats;
+    }
+
+    /**
+     * Pop an event number given up by a reorder window, always empty unless the ordering is GLOBAL. The events of one data id are
+     * returned oldest first, data ids are drained in the order their first event arrived. Events lost by the reassembler itself are
+     * still reported by its own getLostEvent()
+     * @return if there's no lost event available Optional.empty() is returned otherwise the LostEvent
+     */
+    public Optional<LostEvent> getLostEvent(){
+        for(EventReorderBuffer reorderBuffer : reorderBuffers){
+            Optional<LostEvent> lostEvent = reorderBuffer.getLostEvent();
+            if(lostEvent.isPresent()){
+                return lostEvent;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stop taking events from the reassembler and wait for the workers to handle the events already in the rings. Events the feeder
+     * still holds because their ring is full are freed unhandled and counted in PipelineStats.dropped.
+     * If called multiple time it will be a noop
+     */
+    public synchronized void stop(){
+        if(stopping){
+            return;
+        }
+        stopping = true;
+        try{
+            if(feeder.isAlive()){
+                feeder.join();
+            }
+            else{
+                // never started, let the workers exit on an empty ring
+                feederDone = true;
+            }
+            for(Thread worker : workers){
+                if(worker.isAlive()){
+                    worker.join();
+                }
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Same as stop()
+     */
+    @Override
+    public void close(){
+        stop();
+    }
+}
@@ -0,0 +1,104 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Downcall handles for the plain C entry points in e2sarForeign.cpp. These are looked up once from the already loaded jnie2sar library,
+ * so calls through them skip the per call FindClass/GetMethodID lookups of the JNI wrappers.
+ */
+final class ForeignBindings {
+
+    static{
+        System.loadLibrary("jnie2sar");
+    }
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup LOOKUP = SymbolLookup.loaderLookup();
+
+    static final MethodHandle LAST_ERROR = downcall("e2sar_last_error", FunctionDescriptor.of(ADDRESS));
+    static final MethodHandle SEGMENTER_SEND_EVENT = downcall("e2sar_segmenter_send_event",
+        FunctionDescriptor.of(JAVA_INT, JAVA_LONG, ADDRESS, JAVA_LONG, JAVA_LONG, JAVA_SHORT, JAVA_SHORT));
+    static final MethodHandle SEGMENTER_ADD_TO_SEND_QUEUE = downcall("e2sar_segmenter_add_to_send_queue",
+        FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_LONG, JAVA_LONG, JAVA_SHORT, JAVA_SHORT, ADDRESS));
+    static final MethodHandle SEGMENTER_GET_SEND_STATS = downcall("e2sar_segmenter_get_send_stats",
+        FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS));
+    static final MethodHandle SEGMENTER_GET_SYNC_STATS = downcall("e2sar_segmenter_get_sync_stats",
+        FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS));
+    static final MethodHandle REASSEMBLER_GET_EVENT = downcall("e2sar_reassembler_get_event",
+        FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, ADDRESS, ADDRESS, ADDRESS));
+    static final MethodHandle REASSEMBLER_RECV_EVENT = downcall("e2sar_reassembler_recv_event",
+        FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, ADDRESS, ADDRESS, ADDRESS, JAVA_LONG));
+    static final MethodHandle REASSEMBLER_GET_STATS = downcall("e2sar_reassembler_get_stats",
+        FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS));
+    static final MethodHandle FREE_EVENT = downcall("e2sar_free_event", FunctionDescriptor.ofVoid(ADDRESS));
+
+    private static final ThreadLocal<MemorySegment> SCRATCH = ThreadLocal.withInitial(() -> Arena.ofAuto().allocate(64, 8));
+
+    private ForeignBindings(){}
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor){
+        MemorySegment symbol = LOOKUP.find(name).orElseThrow(() -> new UnsatisfiedLinkError("Could not find symbol: " + name));
+        return LINKER.downcallHandle(symbol, descriptor);
+    }
+
+    static Linker linker(){
+        return LINKER;
+    }
+
+    /**
+     * Rethrows anything thrown by MethodHandle.invokeExact, which is declared as Throwable
+     */
+    static RuntimeException rethrow(Throwable t){
+        if(t instanceof RuntimeException e){
+            return e;
+        }
+        if(t instanceof Error e){
+            throw e;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * @return E2sarNativeException carrying the last error raised on this thread by the native library
+     */
+    static E2sarNativeException lastError(){
+        try{
+            MemorySegment message = (MemorySegment) LAST_ERROR.invokeExact();
+            return new E2sarNativeException(message.reinterpret(Long.MAX_VALUE).getString(0));
+        }
+        catch(Throwable t){
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Frees an event allocated by the native reassembler, used as the cleanup action of event segments
+     */
+    static void freeEvent(MemorySegment event){
+        try{
+            FREE_EVENT.invokeExact(event);
+        }
+        catch(Throwable t){
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * @return per thread scratch memory for out parameters (stats, event pointer/number/dataId), at least 64 bytes
+     */
+    static MemorySegment scratch(){
+        return SCRATCH.get();
+    }
+}
@@ -0,0 +1,103 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ForeignEvent;
+import org.jlab.hpdf.messages.RecvStats;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Optional;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Foreign Function and Memory (JDK 22+) binding for the data plane calls of an existing Reassembler. Events are returned as native
+ * MemorySegments attached to a caller supplied Arena, which frees them when it is closed, instead of as tracked DirectByteBuffers.
+ * The Reassembler is created, started and freed as usual, this class only borrows its native pointer.
+ * 
+ * This class is only available when running on JDK 22 or newer from the multi-release jar.
+ */
+public class ForeignReassembler {
+
+    // layout of the per thread scratch memory used for out parameters
+    private static final long EVENT_OFFSET = 0;
+    private static final long EVENT_NUM_OFFSET = 8;
+    private static final long DATA_ID_OFFSET = 16;
+
+    private final Reassembler reassembler;
+
+    /**
+     * Default Constructor
+     * @param reassembler - Reassembler whose native instance is used, it must outlive this object
+     */
+    public ForeignReassembler(Reassembler reassembler){
+        this.reassembler = reassembler;
+    }
+
+    private static Optional<ForeignEvent> toEvent(long length, MemorySegment out, Arena arena){
+        if(length < 0){
+            return Optional.empty();
+        }
+        MemorySegment event = out.get(ADDRESS, EVENT_OFFSET).reinterpret(length, arena, ForeignBindings::freeEvent);
+        return Optional.of(new ForeignEvent(event, out.get(JAVA_LONG, EVENT_NUM_OFFSET), Short.toUnsignedInt(out.get(JAVA_SHORT, DATA_ID_OFFSET))));
+    }
+
+    /**
+     * Get an event from the reassembler EventQueue. Use if you are not using the recvEvent() method
+     * @param arena - Arena the returned segment is attached to, the native event is freed when it is closed
+     * @return Optional of a ForeignEvent, which is empty if the queue is empty
+     */
+    public Optional<ForeignEvent> getEvent(Arena arena){
+        MemorySegment out = ForeignBindings.scratch();
+        long length;
+        try{
+            length = (long) ForeignBindings.REASSEMBLER_GET_EVENT.invokeExact(reassembler.getNativeReassembler(), 
+                out.asSlice(EVENT_OFFSET), out.asSlice(EVENT_NUM_OFFSET), out.asSlice(DATA_ID_OFFSET));
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        return toEvent(length, out, arena);
+    }
+
+    /**
+     * Blocking variant of getEvent() with the same return semantics.
+     * @param arena - Arena the returned segment is attached to, the native event is freed when it is closed
+     * @param waitMs - ms to wait for an event, 0 means wait forever
+     * @return Optional of a ForeignEvent, which is empty if no event arrived in waitMs
+     * @throws E2sarNativeException - If the native reassembler reported an error
+     */
+    public Optional<ForeignEvent> recvEvent(Arena arena, long waitMs) throws E2sarNativeException{
+        MemorySegment out = ForeignBindings.scratch();
+        long length;
+        try{
+            length = (long) ForeignBindings.REASSEMBLER_RECV_EVENT.invokeExact(reassembler.getNativeReassembler(), 
+                out.asSlice(EVENT_OFFSET), out.asSlice(EVENT_NUM_OFFSET), out.asSlice(DATA_ID_OFFSET), waitMs);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        if(length == -2){
+            throw ForeignBindings.lastError();
+        }
+        return toEvent(length, out, arena);
+    }
+
+    /**
+     * Get a RecvStats instance
+     * @return RecvStats
+     */
+    public RecvStats getStats(){
+        MemorySegment stats = ForeignBindings.scratch();
+        try{
+            ForeignBindings.REASSEMBLER_GET_STATS.invokeExact(reassembler.getNativeReassembler(), stats);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        return new RecvStats(stats.getAtIndex(JAVA_LONG, 0), stats.getAtIndex(JAVA_LONG, 1), (int) stats.getAtIndex(JAVA_LONG, 2), 
+            (int) stats.getAtIndex(JAVA_LONG, 3), (int) stats.getAtIndex(JAVA_LONG, 4), (int) stats.getAtIndex(JAVA_LONG, 5));
+    }
+}
@@ -0,0 +1,167 @@
+package org.jlab.hpdf;
+
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.SendStats;
+import org.jlab.hpdf.messages.SyncStats;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Consumer;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Foreign Function and Memory (JDK 22+) binding for the data plane calls of an existing Segmenter. Events are passed as native
+ * MemorySegments and the calls go straight to the C entry points in e2sarForeign.cpp instead of through JNI.
+ * The Segmenter is created, started and freed as usual, this class only borrows its native pointers.
+ * 
+ * This class is only available when running on JDK 22 or newer from the multi-release jar.
+ */
+public class ForeignSegmenter {
+
+    private final Segmenter segmenter;
+    /**
+     *  owns the upcall stub called from the native send thread, null if no completion listener was given
+     */
+    private final Arena upcallArena;
+    private final MemorySegment completionStub;
+    private final Consumer<MemorySegment> onSent;
+
+    /**
+     * Constructor without a completion listener, queued segments must then stay valid until getSendQueueOccupancy() shows they have left the queue
+     * @param segmenter - Segmenter whose native instance is used, it must outlive this object
+     */
+    public ForeignSegmenter(Segmenter segmenter){
+        this.segmenter = segmenter;
+        this.upcallArena = null;
+        this.completionStub = MemorySegment.NULL;
+        this.onSent = null;
+    }
+
+    /**
+     * Constructor with a completion listener for queued events
+     * @param segmenter - Segmenter whose native instance is used, it must outlive this object
+     * @param onSent - called on the native send thread with a zero length segment at the address of each queued event once it has been segmented.
+     * Exceptions thrown by it are dropped
+     */
+    public ForeignSegmenter(Segmenter segmenter, Consumer<MemorySegment> onSent){
+        this.segmenter = segmenter;
+        this.onSent = onSent;
+        this.upcallArena = Arena.ofShared();
+        try{
+            this.completionStub = ForeignBindings.linker().upcallStub(
+                MethodHandles.lookup().findVirtual(ForeignSegmenter.class, "sent", MethodType.methodType(void.class, MemorySegment.class)).bindTo(this),
+                FunctionDescriptor.ofVoid(ADDRESS), upcallArena);
+        }
+        catch(NoSuchMethodException | IllegalAccessException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sent(MemorySegment event){
+        try{
+            onSent.accept(event);
+        }
+        catch(Throwable t){
+            // an exception escaping an upcall would crash the JVM
+        }
+    }
+
+    private static void checkNative(MemorySegment event) throws E2sarNativeException{
+        if(!event.isNative()){
+            throw new E2sarNativeException("This method only supports native MemorySegments");
+        }
+    }
+
+    /**
+     * Send immediately overriding event number.
+     * @param event - event data which should be a native MemorySegment
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @throws E2sarNativeException - If the segment is not native or there is an error sending this event to LB
+     */
+    public void sendEvent(MemorySegment event, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkNative(event);
+        int res;
+        try{
+            res = (int) ForeignBindings.SEGMENTER_SEND_EVENT.invokeExact(segmenter.getNativeSegmenter(), event, event.byteSize(), eventNumber, (short) dataId, (short) entropy);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        if(res != 0){
+            throw ForeignBindings.lastError();
+        }
+    }
+
+    /**
+     * Add to send queue in a nonblocking fashion, overriding internal event number. The segment is read in place by the send thread,
+     * so its Arena must not be closed before it has been segmented
+     * @param event - event data which should be a native MemorySegment
+     * @param eventNumber - override the internal event number (0 is default and will use the internal eventNumber)
+     * @param dataId - override the dataId (0 id default and will use the internal dataId passed in constructor)
+     * @param entropy - optional event entropy value (0 is default and random will be generated otherwise)
+     * @return true if the event was queued, false if the send queue is full
+     * @throws E2sarNativeException - If the segment is not native or there is an error adding this event to the queue
+     */
+    public boolean addToSendQueue(MemorySegment event, long eventNumber, int dataId, int entropy) throws E2sarNativeException{
+        checkNative(event);
+        int res;
+        try{
+            res = (int) ForeignBindings.SEGMENTER_ADD_TO_SEND_QUEUE.invokeExact(segmenter.getNativeSegmenter(), segmenter.getNativeSendContext(), 
+                event, event.byteSize(), eventNumber, (short) dataId, (short) entropy, completionStub);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        if(res < 0){
+            throw ForeignBindings.lastError();
+        }
+        return res == 0;
+    }
+
+    /**
+     * Get the SyncStats - sync msg cnt, sync err cnt, last errno
+     * @return SyncStats instance
+     */
+    public SyncStats getSyncStats(){
+        MemorySegment stats = ForeignBindings.scratch();
+        try{
+            ForeignBindings.SEGMENTER_GET_SYNC_STATS.invokeExact(segmenter.getNativeSegmenter(), stats);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        return new SyncStats(stats.getAtIndex(JAVA_LONG, 0), stats.getAtIndex(JAVA_LONG, 1), (int) stats.getAtIndex(JAVA_LONG, 2));
+    }
+
+    /**
+     * Get the SendStats - event datagrams cnt, event datagrams err cnt, last errno
+     * @return SendStats instance
+     */
+    public SendStats getSendStats(){
+        MemorySegment stats = ForeignBindings.scratch();
+        try{
+            ForeignBindings.SEGMENTER_GET_SEND_STATS.invokeExact(segmenter.getNativeSegmenter(), stats);
+        }
+        catch(Throwable t){
+            throw ForeignBindings.rethrow(t);
+        }
+        return new SendStats(stats.getAtIndex(JAVA_LONG, 0), stats.getAtIndex(JAVA_LONG, 1), (int) stats.getAtIndex(JAVA_LONG, 2));
+    }
+
+    /**
+     * Releases the completion upcall. Call only after Segmenter.free() so the send thread can no longer call it. 
+     * If called multiple time it will be a noop
+     */
+    public void free(){
+        if(upcallArena != null && upcallArena.scope().isAlive()){
+            upcallArena.close();
+        }
+    }
+}
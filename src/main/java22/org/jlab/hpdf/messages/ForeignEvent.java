@@ -0,0 +1,33 @@
+package org.jlab.hpdf.messages;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * This class is only instantiated by ForeignReassembler when a reassembled event is returned through the foreign function binding
+ */
+public class ForeignEvent {
+    /**
+     * Event data allocated by the native reassembler, freed when the Arena passed to getEvent()/recvEvent() is closed
+     */
+    public MemorySegment segment;
+    /**
+     * Event number associated with the Event
+     */
+    public long eventNum;
+    /**
+     * Data ID associated with the Event
+     */
+    public int dataId;
+
+    /**
+     * Default Constructor
+     * @param segment - Event data allocated by the native reassembler
+     * @param eventNum - Event number associated with the Event
+     * @param dataId - Data ID associated with the Event
+     */
+    public ForeignEvent(MemorySegment segment, long eventNum, int dataId){
+        this.segment = segment;
+        this.eventNum = eventNum;
+        this.dataId = dataId;
+    }
+}
@@ -0,0 +1,71 @@
+package org.jlab.hpdf.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.hpdf.EjfatURI;
+import org.jlab.hpdf.Segmenter;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares sending an on-heap byte[] event by pinning it against copying it into a freshly allocated Direct ByteBuffer first.
+ * Events are sent to the loopback address so no load balancer is needed, only libjnie2sar.so on java.library.path
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeapSendBenchmark {
+
+    @Param({"64", "1024", "16384", "262144", "1048576"})
+    int eventSize;
+
+    EjfatURI uri;
+    Segmenter segmenter;
+    byte[] event;
+
+    @Setup(Level.Trial)
+    public void setup() throws E2sarNativeException{
+        uri = new EjfatURI("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        sFlags.zeroRate = true;
+        segmenter = new Segmenter(uri, 0x0505, 0x11223344, sFlags);
+        segmenter.openAndStart();
+        event = new byte[eventSize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        segmenter.free();
+        uri.free();
+    }
+
+    @Benchmark
+    public void pinnedHeapArray() throws E2sarNativeException{
+        segmenter.sendEvent(event, 0, event.length, 0, 0, 0);
+    }
+
+    @Benchmark
+    public void copyToDirect() throws E2sarNativeException{
+        ByteBuffer buffer = ByteBuffer.allocateDirect(event.length);
+        buffer.put(event);
+        segmenter.sendEventDirect(buffer, 0, 0, 0);
+    }
+}
@@ -0,0 +1,82 @@
+package org.jlab.hpdf.bench;
+
+import java.net.InetAddress;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.hpdf.EjfatURI;
+import org.jlab.hpdf.Reassembler;
+import org.jlab.hpdf.Segmenter;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvStats;
+import org.jlab.hpdf.messages.SendStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per call cost of the JNI entry points that build Java objects in native code. Every call used to look up its classes and
+ * member IDs, they are now resolved once in JNI_OnLoad, so comparing runs against libjnie2sar.so built before and after that change
+ * shows what the lookups cost. The reassembler is never sent to, so getEvent measures the empty queue path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JniCallBenchmark {
+
+    EjfatURI uri;
+    Segmenter segmenter;
+    Reassembler reassembler;
+
+    @Setup(Level.Trial)
+    public void setup() throws E2sarNativeException{
+        uri = new EjfatURI("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        sFlags.zeroRate = true;
+        segmenter = new Segmenter(uri, 0x0505, 0x11223344, sFlags);
+        segmenter.openAndStart();
+
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        reassembler = new Reassembler(uri, InetAddress.getLoopbackAddress(), 19782, 1, rFlags);
+        reassembler.openAndStart();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        segmenter.free();
+        reassembler.free();
+        uri.free();
+    }
+
+    @Benchmark
+    public Optional<ReassembledEvent> getEvent(){
+        return reassembler.getEvent();
+    }
+
+    @Benchmark
+    public RecvStats getStats(){
+        return reassembler.getStats();
+    }
+
+    @Benchmark
+    public SendStats getSendStats(){
+        return segmenter.getSendStats();
+    }
+}
@@ -0,0 +1,215 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.config.JournalFlags;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.journal.EventJournalReader;
+import org.jlab.hpdf.journal.EventJournalWriter;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.nio.NioReassembler;
+import org.jlab.hpdf.nio.NioSegmenter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal tests, they only use the file system and loopback
+ */
+public class E2sarJournalTest {
+
+    @TempDir
+    Path directory;
+
+    // event i of thread t is t * 10 + i % 50 + 1 bytes of value (byte) i, it is appended as event t * 1000 + i of data id t
+    private static ByteBuffer event(int thread, int i){
+        ByteBuffer buffer = ByteBuffer.allocateDirect(thread * 10 + i % 50 + 1);
+        while(buffer.hasRemaining()){
+            buffer.put((byte) i);
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void JournalTest1(){
+        System.out.println("JournalTest1: test EventJournalWriter appends from 4 threads into rolling segments");
+        JournalFlags flags = new JournalFlags();
+        flags.segmentBytes = 4096;
+        flags.eventsPerSegment = 64;
+        int perThread = 500;
+
+        try{
+            EventJournalWriter writer = new EventJournalWriter(directory, "run1", flags);
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = new ArrayList<>();
+            for(int t=0;t<4;t++){
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try{
+                        for(int i=0;i<perThread;i++){
+                            ByteBuffer buffer = event(thread, i);
+                            writer.append(buffer, thread * 1000L + i, thread);
+                            // the source buffer is left as it was
+                            assertEquals(0, buffer.position());
+                        }
+                    }
+                    catch(E2sarNativeException | RuntimeException e){
+                        synchronized(errors){
+                            errors.add(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for(Thread thread : threads){
+                thread.join();
+            }
+            writer.close();
+            writer.close();
+            assert(errors.isEmpty());
+            assertEquals(4 * perThread, writer.getEventsWritten());
+            assert(writer.getSegments() > 1);
+
+            // read the index records back directly and check every event once
+            Map<Long, Integer> seen = new HashMap<>();
+            for(int segment=0;segment<writer.getSegments();segment++){
+                ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(String.format("run1-%06d.index", segment)))).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(String.format("run1-%06d.data", segment))));
+                assertEquals(flags.segmentBytes, data.capacity());
+                for(int at=0;at<index.capacity();at+=EventJournalWriter.INDEX_RECORD_BYTES){
+                    int dataId = index.getInt(at + 28);
+                    if((dataId & EventJournalWriter.COMMITTED) == 0){
+                        continue;
+                    }
+                    dataId &= 0xffff;
+                    long eventNum = index.getLong(at);
+                    int offset = (int) index.getLong(at + 8);
+                    int length = index.getInt(at + 24);
+                    int i = (int) (eventNum - dataId * 1000L);
+                    assertEquals(event(dataId, i), data.slice(offset, length));
+                    assert(index.getLong(at + 16) > 0);
+                    seen.merge(eventNum, 1, Integer::sum);
+                }
+            }
+            assertEquals(4 * perThread, seen.size());
+            assert(seen.values().stream().allMatch(n -> n == 1));
+
+            try{
+                writer.append(event(0, 0), 1, 0);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // closed
+            }
+            try{
+                new EventJournalWriter(directory, "run1", flags);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // segment files exist
+            }
+        }
+        catch(E2sarNativeException | IOException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void JournalTest2(){
+        System.out.println("JournalTest2: test EventJournalReader reads back a journal and replays it through NioSegmenter at 2x recorded pace");
+        JournalFlags flags = new JournalFlags();
+        flags.segmentBytes = 256;
+        flags.eventsPerSegment = 4;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+        int events = 10;
+
+        try{
+            // events 60ms apart spread over several segments
+            try(EventJournalWriter writer = new EventJournalWriter(directory, "run2", flags)){
+                for(int i=0;i<events;i++){
+                    writer.append(event(1, i), 1000L + i, 0x0100 + i);
+                    Thread.sleep(60);
+                }
+                assert(writer.getSegments() > 1);
+            }
+
+            try(EventJournalReader reader = new EventJournalReader(directory, "run2")){
+                for(int i=0;i<events;i++){
+                    assert(reader.next());
+                    assertEquals(1000L + i, reader.getEventNum());
+                    assertEquals(0x0100 + i, reader.getDataId());
+                    assert(reader.getEvent().isDirect());
+                    assertEquals(event(1, i), reader.getEvent());
+                }
+                assert(!reader.next());
+
+                NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19852, 1, rFlags);
+                reassembler.openAndStart();
+                NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19852", 0x0505, 0x11223344, sFlags);
+                segmenter.openAndStart();
+
+                reader.rewind();
+                long start = System.nanoTime();
+                assertEquals(events, reader.replay(segmenter, 2.0, false));
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                System.out.println("Replayed " + events + " events in " + elapsedMs + "ms");
+                // recorded over 540ms or more
+                assert(elapsedMs >= 250 && elapsedMs < 2000);
+
+                for(int i=0;i<events;i++){
+                    Optional<ReassembledEvent> event = reassembler.recvEvent(1000);
+                    assert(event.isPresent());
+                    assertEquals(1000L + i, event.get().eventNum);
+                    assertEquals(0x0100 + i, event.get().dataId);
+                    assertEquals(event(1, i), event.get().byteBuffer);
+                    reassembler.freeDirectBytebBuffer(event.get());
+                }
+
+                reader.rewind();
+                start = System.nanoTime();
+                assertEquals(events, reader.replay(segmenter, EventJournalReader.AS_FAST_AS_POSSIBLE, true));
+                assert(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250);
+                for(int i=0;i<events;i++){
+                    Optional<ReassembledEvent> event = reassembler.recvEvent(1000);
+                    assert(event.isPresent());
+                    assertEquals(1000L + i, event.get().eventNum);
+                    reassembler.freeDirectBytebBuffer(event.get());
+                }
+
+                segmenter.free();
+                reassembler.free();
+            }
+
+            try{
+                new EventJournalReader(directory, "missing");
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // no segment files
+            }
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+}
@@ -0,0 +1,783 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.EventReassembler;
+import org.jlab.hpdf.LatencyHistogram;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.EventMetadata;
+import org.jlab.hpdf.messages.LatencySnapshot;
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvLatencyStats;
+import org.jlab.hpdf.messages.RecvPortStats;
+import org.jlab.hpdf.messages.RecvStats;
+import org.jlab.hpdf.nio.LbreHeaders;
+import org.jlab.hpdf.nio.NioReassembler;
+import org.jlab.hpdf.nio.NioSegmenter;
+import org.jlab.hpdf.nio.ReassemblyBufferPool;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// these tests mirror the Reassembler unit tests for the pure Java NioReassembler.
+// They do not need libjnie2sar, NioSegmenter sends to the reassembler over loopback.
+// There is no load balancer to strip the LB header so withLBHeader is set
+public class E2sarNioReassemblerTest {
+
+    @Test
+    void NioReasTest1(){
+        System.out.println("NioReasTest1: test NioReassembler by sending 5 events from NioSegmenter with small MTU over loopback");
+        int dataId = 0x0505;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.mtu = 64 + 40;
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19722, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19722", dataId, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            for(int i=0;i<5;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(bytes), i + 1, 0, 0);
+            }
+
+            for(int i=0;i<5;i++){
+                Optional<ReassembledEvent> event = reassembler.recvEvent(1000);
+                assert(event.isPresent());
+                assertEquals(i + 1, event.get().eventNum);
+                assertEquals(dataId, event.get().dataId);
+                byte[] received = new byte[event.get().byteBuffer.remaining()];
+                event.get().byteBuffer.get(received);
+                assertArrayEquals(bytes, received);
+                reassembler.freeDirectBytebBuffer(event.get());
+            }
+            assert(reassembler.getEvent().isEmpty());
+
+            RecvStats recvStats = reassembler.getStats();
+            System.out.println("Received " + recvStats.eventSuccess + " events");
+            assertEquals(5, recvStats.eventSuccess);
+            assertEquals(0, recvStats.enqueueLoss);
+            assertEquals(0, recvStats.dataErrCount);
+            assertEquals(5, recvStats.poolHits + recvStats.poolMisses);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest2(){
+        System.out.println("NioReasTest2: test NioReassembler reports an event as lost when only its first segment arrives");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.eventTimeout_ms = 100;
+
+        try(DatagramChannel sender = DatagramChannel.open()){
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19732, 1, rFlags);
+            reassembler.openAndStart();
+
+            // RE header only, as delivered by the load balancer, for the first 8 bytes of a 16 byte event
+            ByteBuffer segment = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+            LbreHeaders.putLbre(segment, 0, 0, 77, 0x0505, 0, 16);
+            segment.position(LbreHeaders.LB_HEADER_LENGTH);
+            sender.send(segment, new InetSocketAddress(InetAddress.getLoopbackAddress(), 19732));
+
+            Thread.sleep(500);
+            assert(reassembler.getEvent().isEmpty());
+            Optional<LostEvent> lost = reassembler.getLostEvent();
+            assert(lost.isPresent());
+            assertEquals(77, lost.get().eventNum);
+            assertEquals(0x0505, lost.get().dataId);
+            assert(reassembler.getLostEvent().isEmpty());
+
+            reassembler.free();
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch(InterruptedException e){
+
+        }
+    }
+
+    @Test
+    void NioReasTest3(){
+        System.out.println("NioReasTest3: test NioReassembler port range and receive threads for 3 requested threads");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19742, 3, rFlags);
+            reassembler.openAndStart();
+            assertEquals(2, reassembler.getPortRange());
+            assertEquals(4, reassembler.getNumRecvThreads());
+            List<Integer> ports = reassembler.getRecvPorts();
+            assertEquals(19742, ports.get(0));
+            assertEquals(19745, ports.get(1));
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest4(){
+        System.out.println("NioReasTest4: test ReassemblyBufferPool size classes, per class bound and oversized events");
+        ReassemblyBufferPool pool = new ReassemblyBufferPool(1000, 8192, 1);
+
+        ByteBuffer small = pool.acquire(10);
+        assertEquals(1024, small.capacity());
+        ByteBuffer medium = pool.acquire(3000);
+        assertEquals(4096, medium.capacity());
+        ByteBuffer oversized = pool.acquire(10000);
+        assertEquals(10000, oversized.capacity());
+        assertEquals(0, pool.getHits());
+        assertEquals(3, pool.getMisses());
+
+        pool.release(small);
+        pool.release(medium);
+        pool.release(oversized);
+        // the 1024 class already holds one buffer so this one is dropped
+        pool.release(ByteBuffer.allocateDirect(1024));
+
+        ByteBuffer reused = pool.acquire(1024);
+        assert(reused == small);
+        assertEquals(0, reused.position());
+        assertEquals(1024, reused.limit());
+        assert(pool.acquire(2049) == medium);
+        assertEquals(1024, pool.acquire(1).capacity());
+        assertEquals(2, pool.getHits());
+        assertEquals(4, pool.getMisses());
+    }
+
+    @Test
+    void NioReasTest5(){
+        System.out.println("NioReasTest5: test NioReassembler recvEvents drains queued events in one call and times out when empty");
+        int dataId = 0x0505;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19752, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19752", dataId, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            for(int i=0;i<5;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[]{(byte) i}), i + 1, 0, 0);
+            }
+
+            long[] eventNums = new long[8];
+            int[] dataIds = new int[8];
+            ByteBuffer[] buffers = new ByteBuffer[8];
+            int received = 0;
+            while(received < 5){
+                int count = reassembler.recvEvents(eventNums, dataIds, buffers, 8, 1000);
+                assert(count > 0);
+                for(int i=0;i<count;i++){
+                    assertEquals(received + 1, eventNums[i]);
+                    assertEquals(dataId, dataIds[i]);
+                    assertEquals(received, buffers[i].get(0));
+                    reassembler.freeDirectBytebBuffer(buffers[i]);
+                    received++;
+                }
+            }
+            assertEquals(0, reassembler.recvEvents(eventNums, dataIds, buffers, 8, 50));
+            assertEquals(0, reassembler.recvEvents(eventNums, dataIds, buffers, 0, 50));
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest6(){
+        System.out.println("NioReasTest6: test NioReassembler recvInto copies into a caller buffer and keeps an event that does not fit");
+        int dataId = 0x0505;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19762, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19762", dataId, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            EventMetadata metadata = new EventMetadata();
+            ByteBuffer small = ByteBuffer.allocateDirect(8);
+            ByteBuffer large = ByteBuffer.allocateDirect(64);
+            segmenter.sendEventDirect(ByteBuffer.wrap(new byte[32]), 7, 0, 0);
+
+            assertEquals(EventReassembler.RECV_BUFFER_TOO_SMALL, reassembler.recvInto(small, 1000, metadata));
+            assertEquals(32, metadata.length);
+            assertEquals(7, metadata.eventNum);
+            assertEquals(0, small.position());
+
+            metadata.length = 0;
+            assertEquals(32, reassembler.recvInto(large, 1000, metadata));
+            assertEquals(32, large.position());
+            assertEquals(7, metadata.eventNum);
+            assertEquals(dataId, metadata.dataId);
+            assertEquals(EventReassembler.RECV_NO_EVENT, reassembler.recvInto(large, 50, metadata));
+
+            try{
+                reassembler.recvInto(ByteBuffer.allocate(64), 50, metadata);
+                fail("Heap buffer should be rejected");
+            }
+            catch(E2sarNativeException e){
+
+            }
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest7(){
+        System.out.println("NioReasTest7: test NioReassembler outstanding bytes accounting and maxOutstandingBytes budget");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+        rFlags.maxOutstandingBytes = 150;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19772, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19772", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[100]), i + 1, 0, 0);
+            }
+
+            Optional<ReassembledEvent> first = reassembler.recvEvent(1000);
+            Optional<ReassembledEvent> second = reassembler.recvEvent(1000);
+            assert(first.isPresent() && second.isPresent());
+            assertEquals(200, reassembler.getStats().outstandingBytes);
+
+            // over budget until an event is released
+            assert(reassembler.recvEvent(100).isEmpty());
+            assert(reassembler.getEvent().isEmpty());
+            first.get().close();
+            first.get().close();
+            assertEquals(100, reassembler.getStats().outstandingBytes);
+
+            try(ReassembledEvent third = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(3, third.eventNum);
+                assertEquals(200, reassembler.getStats().outstandingBytes);
+            }
+            reassembler.freeDirectBytebBuffer(second.get());
+            assertEquals(0, reassembler.getStats().outstandingBytes);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest8(){
+        System.out.println("NioReasTest8: test NioReassembler pushes events to EventHandler and EventBatchHandler");
+        int dataId = 0x0505;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19792, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19792", dataId, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            // the buffer is only valid during the call, so the handler copies out what it checks
+            BlockingQueue<long[]> pushed = new ArrayBlockingQueue<>(16);
+            reassembler.setEventHandler((event, eventNum, dataIdentifier) -> pushed.add(new long[]{eventNum, dataIdentifier, event.remaining(), event.get(0)}));
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[]{(byte) i, 0}), i + 1, 0, 0);
+            }
+            for(int i=0;i<3;i++){
+                long[] event = pushed.poll(1, TimeUnit.SECONDS);
+                assertArrayEquals(new long[]{i + 1, dataId, 2, i}, event);
+            }
+            assert(reassembler.getEvent().isEmpty());
+
+            BlockingQueue<Long> batched = new ArrayBlockingQueue<>(16);
+            reassembler.setEventHandler((events, eventNums, dataIds, count) -> {
+                assert(count >= 1 && count <= 2);
+                for(int i=0;i<count;i++){
+                    assertEquals(dataId, dataIds[i]);
+                    batched.add(eventNums[i]);
+                }
+            }, 2);
+            for(int i=0;i<5;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[]{(byte) i}), i + 10, 0, 0);
+            }
+            for(int i=0;i<5;i++){
+                assertEquals(i + 10, batched.poll(1, TimeUnit.SECONDS));
+            }
+            // pushed events are counted before the handler is called
+            assertEquals(8, reassembler.getStats().eventSuccess);
+
+            // back to polling
+            reassembler.setEventHandler(null);
+            segmenter.sendEventDirect(ByteBuffer.wrap(new byte[]{1}), 20, 0, 0);
+            try(ReassembledEvent event = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(20, event.eventNum);
+            }
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    // RE header only, as delivered by the load balancer, for the first 8 bytes of a 16 byte event of each {eventNum, dataId}
+    private static void sendFirstSegments(DatagramChannel sender, int port, long[][] events) throws IOException{
+        for(long[] event : events){
+            ByteBuffer segment = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+            LbreHeaders.putLbre(segment, 0, 0, event[0], (int) event[1], 0, 16);
+            segment.position(LbreHeaders.LB_HEADER_LENGTH);
+            sender.send(segment, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+    }
+
+    @Test
+    void NioReasTest9(){
+        System.out.println("NioReasTest9: test NioReassembler drains lost events in bulk, range compressed and counted per data id");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.eventTimeout_ms = 100;
+
+        try(DatagramChannel sender = DatagramChannel.open()){
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19822, 1, rFlags);
+            reassembler.openAndStart();
+
+            // only the first segment of each event, 30 to 34 and 40 of data id 1, 30 and 31 of data id 2
+            sendFirstSegments(sender, 19822, new long[][]{{30, 1}, {31, 1}, {32, 1}, {33, 1}, {34, 1}, {40, 1}, {30, 2}, {31, 2}});
+            Thread.sleep(500);
+
+            RecvStats stats = reassembler.getStats();
+            assertArrayEquals(new int[]{1, 2}, stats.lostDataIds);
+            assertEquals(6, stats.getLostEvents(1));
+            assertEquals(2, stats.getLostEvents(2));
+
+            // timed out events are queued in no particular order, the runs come out the same whatever the order
+            long[] runStarts = new long[8];
+            long[] runEnds = new long[8];
+            int[] runDataIds = new int[8];
+            int runs = reassembler.drainLostEventRanges(runStarts, runEnds, runDataIds);
+            assertEquals(3, runs);
+            List<String> runList = new ArrayList<>();
+            for(int i=0;i<runs;i++){
+                runList.add(runDataIds[i] + ":" + runStarts[i] + "-" + runEnds[i]);
+            }
+            Collections.sort(runList);
+            assertEquals(List.of("1:30-34", "1:40-40", "2:30-31"), runList);
+            assert(reassembler.getLostEvent().isEmpty());
+
+            sendFirstSegments(sender, 19822, new long[][]{{50, 3}, {51, 3}, {52, 3}});
+            Thread.sleep(500);
+            long[] eventNums = new long[2];
+            int[] dataIds = new int[2];
+            assertEquals(2, reassembler.drainLostEvents(eventNums, dataIds));
+            assertArrayEquals(new int[]{3, 3}, dataIds);
+            assertEquals(1, reassembler.drainLostEvents(eventNums, dataIds));
+            assertEquals(0, reassembler.drainLostEvents(eventNums, dataIds));
+            assertEquals(3, reassembler.getStats().getLostEvents(3));
+
+            reassembler.free();
+        }
+        catch(E2sarNativeException | IOException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest10(){
+        System.out.println("NioReasTest10: test NioReassembler per port packet, byte, event and timeout counters");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.mtu = 64 + 40;
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+        rFlags.eventTimeout_ms = 100;
+        rFlags.portRange = 1;
+
+        try(DatagramChannel sender = DatagramChannel.open()){
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19832, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19832", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            // 100 bytes do not fit in a single datagram with this MTU
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[100]), i + 1, 0, 0);
+            }
+            for(int i=0;i<3;i++){
+                reassembler.recvEvent(1000).orElseThrow().close();
+            }
+            // LB and RE header and the first 8 bytes of a 16 byte event to the second port
+            ByteBuffer segment = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+            LbreHeaders.putLbre(segment, 0, 0, 77, 0x0505, 0, 16);
+            sender.send(segment, new InetSocketAddress(InetAddress.getLoopbackAddress(), 19833));
+            Thread.sleep(500);
+
+            RecvPortStats stats = reassembler.getPortStats();
+            assertArrayEquals(new int[]{19832, 19833}, stats.ports);
+            assert(stats.packets[0] > 3 && stats.packets[0] % 3 == 0);
+            assertEquals(3, stats.events[0]);
+            assertEquals(0, stats.timeouts[0]);
+            assertEquals(1, stats.packets[1]);
+            assertEquals(LbreHeaders.LBRE_HEADER_LENGTH + 8, stats.bytes[1]);
+            assertEquals(0, stats.events[1]);
+            assertEquals(1, stats.timeouts[1]);
+            assert(stats.bytes[0] > 300);
+            // nothing was dropped by the kernel, or /proc/net/udp is not there
+            assert(stats.socketDrops[0] == 0 || stats.socketDrops[0] == RecvPortStats.NOT_AVAILABLE);
+
+            // polling again refills the same arrays
+            long[] packets = stats.packets;
+            assert(reassembler.getPortStats(stats) == stats);
+            assert(stats.packets == packets);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException | IOException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest11(){
+        System.out.println("NioReasTest11: test LatencyHistogram buckets and NioReassembler assembly and queueing latencies");
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(7);
+        histogram.record(1000);
+        histogram.record(1_000_000);
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.count);
+        assertEquals(3, snapshot.counts.length);
+        assertEquals(7, snapshot.getMinNanos());
+        for(int i=0;i<snapshot.counts.length;i++){
+            // 32 sub-buckets per power of two keep every bucket within about 3%
+            assert(snapshot.upperBoundNanos[i] - snapshot.lowerBoundNanos[i] <= snapshot.lowerBoundNanos[i] / 32);
+        }
+        assert(snapshot.lowerBoundNanos[1] <= 1000 && snapshot.upperBoundNanos[1] >= 1000);
+        assertEquals(snapshot.upperBoundNanos[1], snapshot.getPercentileNanos(50));
+        assert(snapshot.getMaxNanos() >= 1_000_000);
+        assertEquals((7 + 1000 + 1_000_000) / 3.0, snapshot.getMeanNanos());
+
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19842, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19842", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[64]), i + 1, 0, 0);
+            }
+            // every event sits in the queue for at least 100ms once all three are queued
+            long deadline = System.currentTimeMillis() + 5000;
+            while(reassembler.getStats().eventSuccess < 3 && System.currentTimeMillis() < deadline){
+                Thread.sleep(1);
+            }
+            Thread.sleep(100);
+            for(int i=0;i<3;i++){
+                reassembler.recvEvent(1000).orElseThrow().close();
+            }
+
+            RecvLatencyStats latency = reassembler.getLatencyStats();
+            assertEquals(3, latency.assembly.count);
+            // single segment events complete with their first segment, they only sit in the queue
+            assert(latency.assembly.getMaxNanos() < TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(3, latency.queueing.count);
+            assert(latency.queueing.getPercentileNanos(0) >= TimeUnit.MILLISECONDS.toNanos(100));
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    // the event and its slice are unreachable once this returns, only the view is left
+    private static ByteBuffer receiveView(NioReassembler reassembler){
+        ReassembledEvent event = reassembler.recvEvent(1000).orElseThrow();
+        return event.byteBuffer.asReadOnlyBuffer();
+    }
+
+    @Test
+    void NioReasTest12(){
+        System.out.println("NioReasTest12: test NioReassembler does not reuse the buffer of a collected event while a view of it is in use");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19882, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19882", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            byte[] first = new byte[100];
+            Arrays.fill(first, (byte) 'A');
+            segmenter.sendEventDirect(ByteBuffer.wrap(first), 1, 0, 0);
+            ByteBuffer view = receiveView(reassembler);
+            assertEquals(100, reassembler.getStats().outstandingBytes);
+
+            // the Cleaner gives up the event once its slice is collected
+            long deadline = System.currentTimeMillis() + 5000;
+            while(reassembler.getStats().outstandingBytes != 0 && System.currentTimeMillis() < deadline){
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertEquals(0, reassembler.getStats().outstandingBytes);
+
+            // an event of the same size class must not land in the memory the view still reads
+            byte[] second = new byte[100];
+            Arrays.fill(second, (byte) 'B');
+            segmenter.sendEventDirect(ByteBuffer.wrap(second), 2, 0, 0);
+            try(ReassembledEvent event = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(2, event.eventNum);
+                assertEquals(ByteBuffer.wrap(second), event.byteBuffer);
+            }
+            assertEquals(ByteBuffer.wrap(first), view);
+
+            // explicitly released buffers are still reused
+            long hits = reassembler.getStats().poolHits;
+            segmenter.sendEventDirect(ByteBuffer.wrap(second), 3, 0, 0);
+            reassembler.recvEvent(1000).orElseThrow().close();
+            assertEquals(hits + 1, reassembler.getStats().poolHits);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    // RE header only, bytes [offset, offset + length) of event
+    private static void sendSegment(DatagramChannel sender, int port, long eventNum, byte[] event, int offset, int length) throws IOException{
+        ByteBuffer segment = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + length);
+        LbreHeaders.putLbre(segment, 0, 0, eventNum, 1, offset, event.length);
+        segment.put(LbreHeaders.LBRE_HEADER_LENGTH, event, offset, length);
+        segment.position(LbreHeaders.LB_HEADER_LENGTH);
+        sender.send(segment, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    @Test
+    void NioReasTest13(){
+        System.out.println("NioReasTest13: test NioReassembler ignores duplicated segments and rejects segments overlapping others");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        byte[] event = new byte[20];
+        for(int i=0;i<event.length;i++){
+            event[i] = (byte) (i + 1);
+        }
+
+        try(DatagramChannel sender = DatagramChannel.open()){
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19892, 1, rFlags);
+            reassembler.openAndStart();
+
+            // segments of 8 bytes and a last one of 4, the first two arrive twice and must not stand in for the last
+            sendSegment(sender, 19892, 50, event, 0, 8);
+            sendSegment(sender, 19892, 50, event, 0, 8);
+            sendSegment(sender, 19892, 50, event, 8, 8);
+            sendSegment(sender, 19892, 50, event, 8, 8);
+            assert(reassembler.recvEvent(200).isEmpty());
+            sendSegment(sender, 19892, 50, event, 16, 4);
+            try(ReassembledEvent received = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(50, received.eventNum);
+                assertEquals(ByteBuffer.wrap(event), received.byteBuffer);
+            }
+
+            // the last segment first and twice, then a segment overlapping the first one
+            sendSegment(sender, 19892, 51, event, 16, 4);
+            sendSegment(sender, 19892, 51, event, 16, 4);
+            sendSegment(sender, 19892, 51, event, 0, 8);
+            sendSegment(sender, 19892, 51, event, 4, 8);
+            assert(reassembler.recvEvent(200).isEmpty());
+            assertEquals(1, reassembler.getStats().dataErrCount);
+            sendSegment(sender, 19892, 51, event, 8, 8);
+            try(ReassembledEvent received = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(51, received.eventNum);
+                assertEquals(ByteBuffer.wrap(event), received.byteBuffer);
+            }
+
+            reassembler.free();
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest14(){
+        System.out.println("NioReasTest14: test NioReassembler keeps delivering after a handler error and can be freed from a handler");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19972, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:19972", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            // event 1 throws an Error, event 3 frees the reassembler from its own receive thread
+            BlockingQueue<Long> handled = new ArrayBlockingQueue<>(16);
+            BlockingQueue<Thread> freedOn = new ArrayBlockingQueue<>(1);
+            reassembler.setEventHandler((event, eventNum, dataId) -> {
+                handled.add(eventNum);
+                if(eventNum == 1){
+                    throw new AssertionError("handler failure on event 1");
+                }
+                if(eventNum == 3){
+                    reassembler.free();
+                    freedOn.add(Thread.currentThread());
+                }
+            });
+            for(int i=1;i<=3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[]{(byte) i}), i, 0, 0);
+            }
+            for(int i=1;i<=3;i++){
+                assertEquals(i, handled.poll(1, TimeUnit.SECONDS));
+            }
+            Thread recvThread = freedOn.poll(5, TimeUnit.SECONDS);
+            if(recvThread == null){
+                fail("free() called from the handler did not return");
+            }
+            recvThread.join(5000);
+            assert(!recvThread.isAlive());
+
+            segmenter.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioReasTest15(){
+        System.out.println("NioReasTest15: test NioReassembler drops segments announcing an event longer than maxEventSize");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.maxEventSize = 1024;
+
+        try(DatagramChannel sender = DatagramChannel.open()){
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19992, 1, rFlags);
+            reassembler.openAndStart();
+            InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), 19992);
+
+            // claims a 1GB event, no buffer may be allocated for it
+            ByteBuffer oversized = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+            LbreHeaders.putLbre(oversized, 0, 0, 1, 0x0505, 0, 1 << 30);
+            oversized.position(LbreHeaders.LB_HEADER_LENGTH);
+            sender.send(oversized, target);
+
+            // a whole 8 byte event within the bound
+            ByteBuffer event = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+            LbreHeaders.putLbre(event, 0, 0, 2, 0x0505, 0, 8);
+            event.position(LbreHeaders.LB_HEADER_LENGTH);
+            sender.send(event, target);
+
+            try(ReassembledEvent received = reassembler.recvEvent(1000).orElseThrow()){
+                assertEquals(2, received.eventNum);
+            }
+            RecvStats stats = reassembler.getStats();
+            assertEquals(1, stats.dataErrCount);
+            assertEquals(1, stats.eventSuccess);
+
+            reassembler.free();
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+
+        try{
+            rFlags.maxEventSize = 0;
+            new NioReassembler(InetAddress.getLoopbackAddress(), 19992, 1, rFlags);
+            fail();
+        }
+        catch(E2sarNativeException e){
+            // expected
+        }
+    }
+}
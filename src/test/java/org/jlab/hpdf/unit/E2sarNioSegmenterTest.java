@@ -0,0 +1,165 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.SendStats;
+import org.jlab.hpdf.messages.SyncStats;
+import org.jlab.hpdf.nio.LbreHeaders;
+import org.jlab.hpdf.nio.NioSegmenter;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// these tests mirror the Segmenter unit tests for the pure Java NioSegmenter.
+// They do not need libjnie2sar, data and sync packets are captured on loopback
+public class E2sarNioSegmenterTest {
+
+    static DatagramSocket openReceiver() throws IOException{
+        DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setSoTimeout(2000);
+        return socket;
+    }
+
+    static String loopbackUri(DatagramSocket data, DatagramSocket sync){
+        return "ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:" + sync.getLocalPort() + "&data=127.0.0.1:" + data.getLocalPort();
+    }
+
+    @Test
+    void NioSegTest1(){
+        System.out.println("NioSegTest1: test NioSegmenter by sending 5 events via event queue with small MTU so 10 frames are sent");
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.mtu = 64 + 40;
+        sFlags.useCP = false;
+
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+
+        try(DatagramSocket data = openReceiver(); DatagramSocket sync = openReceiver()){
+            NioSegmenter segmenter = new NioSegmenter(loopbackUri(data, sync), dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+            assertEquals(40, segmenter.getMaxPayloadLength());
+
+            for(int i=0;i<5;i++){
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes);
+                buffer.flip();
+                segmenter.addToSendQueueDirect(buffer, i + 1, 0, 0);
+            }
+
+            byte[][] reassembled = new byte[5][bytes.length];
+            for(int i=0;i<10;i++){
+                DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+                data.receive(packet);
+                ByteBuffer datagram = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+                assert(LbreHeaders.isLbre(datagram, 0));
+                int re = LbreHeaders.LB_HEADER_LENGTH;
+                assertEquals(dataId, LbreHeaders.getDataId(datagram, re));
+                assertEquals(bytes.length, LbreHeaders.getBufferLength(datagram, re));
+                long eventNum = LbreHeaders.getReEventNum(datagram, re);
+                assertEquals(eventNum, LbreHeaders.getLbEventNum(datagram, 0));
+                int offset = LbreHeaders.getBufferOffset(datagram, re);
+                System.arraycopy(packet.getData(), LbreHeaders.LBRE_HEADER_LENGTH, reassembled[(int) eventNum - 1], offset, packet.getLength() - LbreHeaders.LBRE_HEADER_LENGTH);
+            }
+            for(int i=0;i<5;i++){
+                assertArrayEquals(bytes, reassembled[i]);
+            }
+
+            SendStats sendStats = segmenter.getSendStats();
+            System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+            assertEquals(10, sendStats.eventDatagramCount);
+            assertEquals(0, sendStats.eventDatagramErrCount);
+            segmenter.free();
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioSegTest2(){
+        System.out.println("NioSegTest2: test NioSegmenter sync thread by capturing sync frames sent every 100ms");
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.syncPeriodMs = 100;
+        sFlags.syncPeriods = 5;
+
+        try(DatagramSocket data = openReceiver(); DatagramSocket sync = openReceiver()){
+            NioSegmenter segmenter = new NioSegmenter(loopbackUri(data, sync), 0x0505, eventSrcId, sFlags);
+            segmenter.openAndStart();
+            segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), 42, 0, 0);
+
+            for(int i=0;i<3;i++){
+                DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+                sync.receive(packet);
+                assertEquals(LbreHeaders.SYNC_HEADER_LENGTH, packet.getLength());
+                ByteBuffer datagram = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+                assert(LbreHeaders.isSync(datagram, 0));
+                assertEquals(eventSrcId, LbreHeaders.getSyncEventSrcId(datagram, 0));
+                assert(LbreHeaders.getSyncUnixTimeNano(datagram, 0) > 0);
+            }
+
+            // stop the sync thread first so the count includes the last captured frame
+            segmenter.free();
+            SyncStats syncStats = segmenter.getSyncStats();
+            System.out.println("Sent " + syncStats.syncMsgCount + " sync frames");
+            assert(syncStats.syncMsgCount >= 3);
+            assertEquals(0, syncStats.syncErrCount);
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void NioSegTest3(){
+        System.out.println("NioSegTest3: test NioSegmenter bounded send queue and region sends");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        sFlags.sendQueueCapacity = 1;
+
+        try(DatagramSocket data = openReceiver(); DatagramSocket sync = openReceiver()){
+            NioSegmenter segmenter = new NioSegmenter(loopbackUri(data, sync), 0x0505, 0x11223344, sFlags);
+            assertEquals(1, segmenter.getSendQueueCapacity());
+            ByteBuffer arena = ByteBuffer.allocate(64);
+
+            // not started yet so the first event stays queued
+            assert(segmenter.tryAddToSendQueueDirect(arena, 0, 16, 0, 0, 0));
+            assert(!segmenter.tryAddToSendQueueDirect(arena, 16, 16, 0, 0, 0));
+            assert(!segmenter.offerToSendQueueDirect(arena, 100, 0, 0, 0));
+            assertEquals(1, segmenter.getSendQueueOccupancy());
+
+            segmenter.openAndStart();
+            assert(segmenter.offerToSendQueueDirect(arena, 16, 16, 0, 0, 0, 1000));
+            for(int i=0;i<2;i++){
+                DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+                data.receive(packet);
+                assertEquals(LbreHeaders.LBRE_HEADER_LENGTH + 16, packet.getLength());
+            }
+
+            try{
+                segmenter.sendEventDirect(arena, 60, 16, 0, 0, 0);
+                fail("Region outside of the buffer should be rejected");
+            }
+            catch(E2sarNativeException e){
+
+            }
+            segmenter.free();
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+}
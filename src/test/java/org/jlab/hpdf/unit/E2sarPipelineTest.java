@@ -0,0 +1,492 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.config.PipelineFlags;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.LostEvent;
+import org.jlab.hpdf.messages.PipelineStats;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.nio.NioReassembler;
+import org.jlab.hpdf.nio.NioSegmenter;
+import org.jlab.hpdf.pipeline.DataIdRouter;
+import org.jlab.hpdf.pipeline.EventReorderBuffer;
+import org.jlab.hpdf.pipeline.MpmcRing;
+import org.jlab.hpdf.pipeline.ReassemblerPipeline;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline tests, all events go over the loopback interface through NioSegmenter and NioReassembler
+ */
+public class E2sarPipelineTest {
+
+    private static final String URI = "ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1:";
+
+    @Test
+    void PipelineTest1(){
+        System.out.println("PipelineTest1: test MpmcRing capacity, FIFO order and concurrent producers and consumers");
+        MpmcRing<Integer> small = new MpmcRing<>(3);
+        assertEquals(4, small.capacity());
+        for(int i=0;i<4;i++){
+            assert(small.offer(i));
+        }
+        assert(!small.offer(4));
+        assertEquals(4, small.size());
+        for(int i=0;i<4;i++){
+            assertEquals(i, small.poll());
+        }
+        assertEquals(null, small.poll());
+
+        // a single slot is rounded up to 2 so a full ring is told apart from an empty one
+        MpmcRing<String> single = new MpmcRing<>(1);
+        assertEquals(2, single.capacity());
+        assert(single.offer("A"));
+        assert(single.offer("B"));
+        assert(!single.offer("C"));
+        assertEquals("A", single.poll());
+        assertEquals("B", single.poll());
+        assertEquals(null, single.poll());
+        assert(single.offer("D"));
+        assertEquals("D", single.poll());
+
+        MpmcRing<Long> ring = new MpmcRing<>(64);
+        int perProducer = 5000;
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for(int p=0;p<4;p++){
+            threads.add(new Thread(() -> {
+                for(long i=1;i<=perProducer;i++){
+                    while(!ring.offer(i)){
+                        Thread.yield();
+                    }
+                }
+            }));
+            threads.add(new Thread(() -> {
+                while(count.get() < 4L * perProducer){
+                    Long value = ring.poll();
+                    if(value != null){
+                        sum.addAndGet(value);
+                        count.incrementAndGet();
+                    }
+                    else{
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        try{
+            for(Thread thread : threads){
+                thread.join();
+            }
+        }
+        catch(InterruptedException e){
+            fail();
+        }
+        assertEquals(4L * perProducer, count.get());
+        assertEquals(4L * perProducer * (perProducer + 1) / 2, sum.get());
+    }
+
+    @Test
+    void PipelineTest2(){
+        System.out.println("PipelineTest2: test ReassemblerPipeline UNORDERED and PER_DATA_ID hand every event to a worker once");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19802, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter(URI + "19802", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            ConcurrentHashMap<Long, Integer> seen = new ConcurrentHashMap<>();
+            ReassemblerPipeline unordered = new ReassemblerPipeline(reassembler, 4, ReassemblerPipeline.Ordering.UNORDERED,
+                (event, eventNum, dataId) -> seen.merge(eventNum, 1, Integer::sum));
+            unordered.start();
+            for(int i=0;i<50;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), i + 1, 0, 0);
+            }
+            waitForHandled(unordered, 50);
+            unordered.stop();
+            assertEquals(50, seen.size());
+            assert(seen.values().stream().allMatch(n -> n == 1));
+            PipelineStats stats = unordered.getStats();
+            assertEquals(50, stats.received);
+            assertEquals(50, stats.dispatched);
+            assertEquals(1, stats.ringDepths.length);
+            assertEquals(0, stats.ringDepths[0]);
+
+            // events of one data id are handled one at a time in the order they were sent
+            ConcurrentHashMap<Integer, List<Long>> perDataId = new ConcurrentHashMap<>();
+            ReassemblerPipeline perDataIdPipeline = new ReassemblerPipeline(reassembler, 3, ReassemblerPipeline.Ordering.PER_DATA_ID,
+                (event, eventNum, dataId) -> perDataId.computeIfAbsent(dataId, k -> Collections.synchronizedList(new ArrayList<>())).add(eventNum));
+            perDataIdPipeline.start();
+            for(int i=0;i<60;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), i + 100, 1 + i % 3, 0);
+            }
+            waitForHandled(perDataIdPipeline, 60);
+            perDataIdPipeline.stop();
+            assertEquals(3, perDataId.size());
+            for(int dataId=1;dataId<=3;dataId++){
+                List<Long> eventNums = perDataId.get(dataId);
+                assertEquals(20, eventNums.size());
+                for(int i=1;i<eventNums.size();i++){
+                    assertEquals(eventNums.get(i - 1) + 3, eventNums.get(i));
+                }
+            }
+            assertEquals(3, perDataIdPipeline.getStats().ringDepths.length);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void PipelineTest3(){
+        System.out.println("PipelineTest3: test ReassemblerPipeline GLOBAL ordering reorders within the window and counts late events");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19812, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter(URI + "19812", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+            ReassemblerPipeline pipeline = new ReassemblerPipeline(reassembler, 1, ReassemblerPipeline.Ordering.GLOBAL,
+                (event, eventNum, dataId) -> handled.add(eventNum));
+            pipeline.start();
+
+            // 11 starts the sequence, 13 and 14 wait for 12, 10 arrives after 11 was released
+            long[] sent = {11, 13, 14, 12, 10, 15};
+            for(long eventNum : sent){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), eventNum, 0, 0);
+            }
+            waitForHandled(pipeline, sent.length);
+            pipeline.stop();
+
+            assertEquals(List.of(11L, 12L, 13L, 14L, 10L, 15L), handled);
+            PipelineStats stats = pipeline.getStats();
+            assertEquals(1, stats.lateEvents);
+            assertEquals(0, stats.reorderDepth);
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void PipelineTest4(){
+        System.out.println("PipelineTest4: test EventReorderBuffer orders events, gives up gaps after the timeout and makes room when a window ahead");
+        EventReorderBuffer buffer = new EventReorderBuffer(6, 50);
+        assertEquals(8, buffer.getWindow());
+
+        // 20 starts the sequence, 22 and 23 wait for 21
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 20, 1)));
+        assertEquals(20, buffer.poll().eventNum);
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 23, 1)));
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 22, 1)));
+        assertEquals(null, buffer.poll());
+        assertEquals(2, buffer.getOccupancy());
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 21, 1)));
+        assertEquals(21, buffer.poll().eventNum);
+        assertEquals(22, buffer.poll().eventNum);
+        assertEquals(23, buffer.poll().eventNum);
+        assertEquals(null, buffer.poll());
+
+        // late and duplicate events are not buffered
+        assertEquals(EventReorderBuffer.OFFER_LATE, buffer.offer(new ReassembledEvent(null, 19, 1)));
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 26, 2)));
+        assertEquals(EventReorderBuffer.OFFER_LATE, buffer.offer(new ReassembledEvent(null, 26, 2)));
+        assertEquals(2, buffer.getLateEvents());
+
+        // 24 and 25 are given up once the gap timeout expires
+        assertEquals(null, buffer.poll());
+        try{
+            Thread.sleep(80);
+        }
+        catch(InterruptedException e){
+            fail();
+        }
+        assertEquals(26, buffer.poll().eventNum);
+        assertEquals(2, buffer.getLostEvents());
+        Optional<LostEvent> lost = buffer.getLostEvent();
+        assertEquals(24, lost.get().eventNum);
+        assertEquals(2, lost.get().dataId);
+        assertEquals(25, buffer.getLostEvent().get().eventNum);
+        assert(buffer.getLostEvent().isEmpty());
+
+        // 27 has arrived, so 35 has to wait for it to be polled, 28 is given up to make room for 36
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 27, 3)));
+        assertEquals(EventReorderBuffer.OFFER_FULL, buffer.offer(new ReassembledEvent(null, 35, 3)));
+        assertEquals(27, buffer.poll().eventNum);
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 35, 3)));
+        assertEquals(EventReorderBuffer.OFFER_ACCEPTED, buffer.offer(new ReassembledEvent(null, 36, 3)));
+        assertEquals(3, buffer.getLostEvents());
+        assertEquals(28, buffer.getLostEvent().get().eventNum);
+
+        // flush gives up the rest of the gap without waiting
+        assertEquals(35, buffer.flush().eventNum);
+        assertEquals(36, buffer.flush().eventNum);
+        assertEquals(null, buffer.flush());
+        assertEquals(9, buffer.getLostEvents());
+        assertEquals(0, buffer.getOccupancy());
+    }
+
+    @Test
+    void PipelineTest5(){
+        System.out.println("PipelineTest5: test DataIdRouter routes by data id, drops on a full route and sends unknown data ids to the default route");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19862, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter(URI + "19862", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            DataIdRouter router = new DataIdRouter(reassembler);
+            DataIdRouter.Route fast = router.addRoute(1, 16);
+            DataIdRouter.Route slow = router.addRoute(2, 2);
+            DataIdRouter.Route tiny = router.addRoute(3, 1);
+            assertEquals(2, tiny.getCapacity());
+            try{
+                router.addRoute(1, 16);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // duplicate
+            }
+            router.start();
+
+            // nobody consumes data id 2, its route fills after 2 events and drops the other 4
+            for(int i=0;i<6;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), 100 + i, 2, 0);
+            }
+            // the single event route holds 2 events, the third is dropped and the first two are kept intact
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), 400 + i, 3, 0);
+            }
+            for(int i=0;i<4;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), 200 + i, 1, 0);
+            }
+            for(int i=0;i<3;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), 300 + i, 7, 0);
+            }
+
+            for(int i=0;i<4;i++){
+                Optional<ReassembledEvent> event = fast.recvEvent(1000);
+                assert(event.isPresent());
+                assertEquals(200 + i, event.get().eventNum);
+                assertEquals(1, event.get().dataId);
+                fast.free(event.get());
+            }
+            DataIdRouter.Route unknown = router.getDefaultRoute();
+            for(int i=0;i<3;i++){
+                Optional<ReassembledEvent> event = unknown.recvEvent(1000);
+                assert(event.isPresent());
+                assertEquals(7, event.get().dataId);
+                unknown.free(event.get());
+            }
+            assert(fast.getEvent().isEmpty());
+
+            for(int i=0;i<2;i++){
+                Optional<ReassembledEvent> event = tiny.recvEvent(1000);
+                assert(event.isPresent());
+                assertEquals(400 + i, event.get().eventNum);
+                tiny.free(event.get());
+            }
+            assert(tiny.recvEvent(10).isEmpty());
+            assertEquals(2, tiny.getRouted());
+            assertEquals(1, tiny.getDropped());
+
+            assertEquals(16, router.getReceived());
+            assertEquals(4, fast.getRouted());
+            assertEquals(0, fast.getDropped());
+            assertEquals(2, slow.getRouted());
+            assertEquals(4, slow.getDropped());
+            assertEquals(2, slow.getDepth());
+            assertEquals(3, unknown.getRouted());
+            assertEquals(-1, unknown.getDataId());
+            try{
+                router.addRoute(3, 16);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // already started
+            }
+
+            // the events left in the slow route go back to the reassembler
+            router.close();
+            assertEquals(0, slow.getDepth());
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void PipelineTest6(){
+        System.out.println("PipelineTest6: test ReassemblerPipeline workers survive a handler Error and stop() does not wait on a full ring");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+        PipelineFlags pFlags = new PipelineFlags();
+        pFlags.ringCapacity = 2;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19872, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter(URI + "19872", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            // event 1 throws an Error, the worker of its data id goes on with the next events
+            List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+            ReassemblerPipeline pipeline = new ReassemblerPipeline(reassembler, 2, ReassemblerPipeline.Ordering.PER_DATA_ID,
+                (event, eventNum, dataId) -> {
+                    if(eventNum == 1){
+                        throw new AssertionError("handler failure on purpose");
+                    }
+                    handled.add(eventNum);
+                }, pFlags);
+            pipeline.start();
+            for(long eventNum=1;eventNum<=4;eventNum++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), eventNum, 0x0100, 0);
+            }
+            waitForHandled(pipeline, 4);
+            assertEquals(List.of(2L, 3L, 4L), handled);
+            pipeline.stop();
+
+            // a handler blocked until the end fills the 2 slot ring, stop() frees what the feeder still holds instead of hanging
+            CountDownLatch release = new CountDownLatch(1);
+            ReassemblerPipeline blocked = new ReassemblerPipeline(reassembler, 1, ReassemblerPipeline.Ordering.UNORDERED,
+                (event, eventNum, dataId) -> {
+                    try{
+                        release.await();
+                    }
+                    catch(InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                }, pFlags);
+            blocked.start();
+            for(long eventNum=10;eventNum<14;eventNum++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), eventNum, 0x0100, 0);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while(blocked.getStats().received < 4 && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            Thread stopper = new Thread(blocked::stop);
+            stopper.start();
+            Thread.sleep(100);
+            release.countDown();
+            stopper.join(5000);
+            assert(!stopper.isAlive());
+            PipelineStats stats = blocked.getStats();
+            assertEquals(1, stats.dropped);
+            assertEquals(3, stats.getHandled());
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void PipelineTest7(){
+        System.out.println("PipelineTest7: test ReassemblerPipeline GLOBAL ordering orders data ids sharing event numbers separately");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        rFlags.withLBHeader = true;
+
+        try{
+            NioReassembler reassembler = new NioReassembler(InetAddress.getLoopbackAddress(), 19982, 1, rFlags);
+            reassembler.openAndStart();
+            NioSegmenter segmenter = new NioSegmenter(URI + "19982", 0x0505, 0x11223344, sFlags);
+            segmenter.openAndStart();
+
+            ConcurrentHashMap<Integer, List<Long>> perDataId = new ConcurrentHashMap<>();
+            ReassemblerPipeline pipeline = new ReassemblerPipeline(reassembler, 1, ReassemblerPipeline.Ordering.GLOBAL,
+                (event, eventNum, dataId) -> perDataId.computeIfAbsent(dataId, k -> Collections.synchronizedList(new ArrayList<>())).add(eventNum));
+            pipeline.start();
+
+            // both data ids carry event numbers 1 to 4, 3 of data id 2 arrives after 4
+            long[] eventNums = {1, 1, 2, 2, 3, 4, 4, 3};
+            int[] dataIds = {1, 2, 1, 2, 1, 1, 2, 2};
+            for(int i=0;i<eventNums.length;i++){
+                segmenter.sendEventDirect(ByteBuffer.wrap(new byte[16]), eventNums[i], dataIds[i], 0);
+            }
+            waitForHandled(pipeline, eventNums.length);
+            pipeline.stop();
+
+            assertEquals(List.of(1L, 2L, 3L, 4L), perDataId.get(1));
+            assertEquals(List.of(1L, 2L, 3L, 4L), perDataId.get(2));
+            PipelineStats stats = pipeline.getStats();
+            assertEquals(0, stats.lateEvents);
+            assertEquals(0, stats.lostEvents);
+            assertEquals(0, stats.reorderDepth);
+            assert(pipeline.getLostEvent().isEmpty());
+
+            segmenter.free();
+            reassembler.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    private static void waitForHandled(ReassemblerPipeline pipeline, long expected){
+        long deadline = System.currentTimeMillis() + 5000;
+        while(pipeline.getStats().getHandled() < expected && System.currentTimeMillis() < deadline){
+            try{
+                Thread.sleep(10);
+            }
+            catch(InterruptedException e){
+                fail();
+            }
+        }
+    }
+}
@@ -1,11 +1,22 @@
 package org.jlab.hpdf.unit;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jlab.hpdf.EjfatURI;
 import org.jlab.hpdf.Segmenter;
@@ -14,7 +25,9 @@ import org.jlab.hpdf.config.ReassemblerFlags;
 import org.jlab.hpdf.config.SegmenterFlags;
 import org.jlab.hpdf.exceptions.E2sarNativeException;
 import org.jlab.hpdf.messages.SendStats;
+import org.jlab.hpdf.nio.LbreHeaders;
 import org.junit.jupiter.api.Test;
+import org.jlab.hpdf.messages.EventMetadata;
 import org.jlab.hpdf.messages.LostEvent;
 import org.jlab.hpdf.messages.ReassembledEvent;
 import org.jlab.hpdf.messages.RecvStats;
@@ -421,4 +434,342 @@ public class E2sarReassemblerTest {
         
         reasUri.free();
     }
+
+    private static final String LOOPBACK_URI = "ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.0.1:12345&data=127.0.0.1";
+    private static final String EVENT_STRING = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND OVER THE LOOPBACK.";
+
+    // reassembler with no control plane, the LB header will be attached since there is no LB
+    private static ReassemblerFlags loopbackFlags(){
+        ReassemblerFlags rflags = new ReassemblerFlags();
+        rflags.useCP = false;
+        rflags.withLBHeader = true;
+        return rflags;
+    }
+
+    private static Segmenter openSegmenter(EjfatURI segUri) throws E2sarNativeException{
+        SegmenterFlags sflags = new SegmenterFlags();
+        sflags.useCP = false;
+        Segmenter seg = new Segmenter(segUri, 0x0505, 0x11223344, sflags);
+        seg.openAndStart();
+        return seg;
+    }
+
+    private static void sendString(Segmenter seg, long eventNum) throws E2sarNativeException{
+        byte[] bytes = EVENT_STRING.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        seg.sendEventDirect(buffer, eventNum, 0, 0);
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void ReasTest4(){
+        System.out.println("DPReasTest4: test events are pushed to the handler on a daemon dispatch thread that detaches once the handler is removed");
+        try{
+            EjfatURI segUri = new EjfatURI(LOOPBACK_URI + ":19922");
+            EjfatURI reasUri = new EjfatURI(LOOPBACK_URI);
+            Segmenter seg = openSegmenter(segUri);
+            Reassembler reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19922, 1, loopbackFlags());
+            reas.openAndStart();
+
+            // the handler throwing on event 2 must not stop the delivery of event 3
+            CountDownLatch delivered = new CountDownLatch(3);
+            List<String> events = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<Thread> dispatchThread = new AtomicReference<>();
+            reas.setEventHandler((event, eventNum, dataId) -> {
+                dispatchThread.set(Thread.currentThread());
+                events.add(eventNum + ":" + dataId + ":" + readString(event));
+                delivered.countDown();
+                if(eventNum == 2){
+                    throw new IllegalStateException("handler failure on event 2");
+                }
+            });
+            for(int i=1;i<=3;i++){
+                sendString(seg, i);
+            }
+            if(!delivered.await(5, TimeUnit.SECONDS)){
+                fail("Handler was not called for every event");
+            }
+            assertEquals(List.of("1:1285:" + EVENT_STRING, "2:1285:" + EVENT_STRING, "3:1285:" + EVENT_STRING), events);
+            Thread thread = dispatchThread.get();
+            System.out.println("Events were dispatched on thread " + thread.getName());
+            assert(thread.isDaemon());
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            // removing the handler stops the native thread and detaches it from the JVM, events are polled again
+            reas.setEventHandler(null);
+            thread.join(5000);
+            assert(!thread.isAlive());
+            sendString(seg, 4);
+            Optional<ReassembledEvent> polled = reas.recvEvent(1000);
+            assert(polled.isPresent());
+            assertEquals(4, polled.get().eventNum);
+            polled.get().close();
+            assertEquals(3, events.size());
+
+            CountDownLatch batches = new CountDownLatch(2);
+            List<Long> batchEventNums = Collections.synchronizedList(new ArrayList<>());
+            reas.setEventHandler((buffers, eventNums, dataIds, count) -> {
+                for(int i=0;i<count;i++){
+                    assertEquals(EVENT_STRING, readString(buffers[i]));
+                    batchEventNums.add(eventNums[i]);
+                    batches.countDown();
+                }
+            }, 4);
+            sendString(seg, 5);
+            sendString(seg, 6);
+            if(!batches.await(5, TimeUnit.SECONDS)){
+                fail("Batch handler was not called for every event");
+            }
+            assertEquals(List.of(5L, 6L), batchEventNums);
+
+            try{
+                reas.setEventHandler((buffers, eventNums, dataIds, count) -> {}, 0);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // batches must hold at least one event
+            }
+
+            // free() stops the batch dispatch thread
+            seg.free();
+            reas.free();
+            segUri.free();
+            reasUri.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void ReasTest5(){
+        System.out.println("DPReasTest5: test recvEvents takes queued events in one call and tracks every buffer until it is freed");
+        try{
+            EjfatURI segUri = new EjfatURI(LOOPBACK_URI + ":19932");
+            EjfatURI reasUri = new EjfatURI(LOOPBACK_URI);
+            Segmenter seg = openSegmenter(segUri);
+            Reassembler reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19932, 1, loopbackFlags());
+            reas.openAndStart();
+
+            for(int i=1;i<=5;i++){
+                sendString(seg, i);
+            }
+            long[] eventNums = new long[8];
+            int[] dataIds = new int[8];
+            ByteBuffer[] buffers = new ByteBuffer[8];
+            List<ByteBuffer> received = new ArrayList<>();
+            for(int tries=0;received.size() < 5 && tries < 10;tries++){
+                int count = reas.recvEvents(eventNums, dataIds, buffers, 8, 1000);
+                for(int i=0;i<count;i++){
+                    assertEquals(received.size() + 1, eventNums[i]);
+                    assertEquals(0x0505, dataIds[i]);
+                    assertEquals(EVENT_STRING, readString(buffers[i].duplicate()));
+                    received.add(buffers[i]);
+                }
+            }
+            assertEquals(5, received.size());
+            assertEquals(5 * EVENT_STRING.length(), reas.getStats().outstandingBytes);
+            assertEquals(0, reas.recvEvents(eventNums, dataIds, buffers, 0, 100));
+            assertEquals(0, reas.recvEvents(eventNums, dataIds, buffers, 8, 100));
+
+            for(ByteBuffer buffer : received){
+                reas.freeDirectBytebBuffer(buffer);
+            }
+            assertEquals(0, reas.getStats().outstandingBytes);
+            // freeing twice is a noop
+            reas.freeDirectBytebBuffer(received.get(0));
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            // the number of events returned is capped by the shortest array
+            for(int i=6;i<=8;i++){
+                sendString(seg, i);
+            }
+            Thread.sleep(200);
+            int count = reas.recvEvents(eventNums, new int[2], buffers, 8, 1000);
+            assert(count >= 1 && count <= 2);
+            for(int i=0;i<count;i++){
+                reas.freeDirectBytebBuffer(buffers[i]);
+            }
+
+            // free() releases the events not taken
+            seg.free();
+            reas.free();
+            segUri.free();
+            reasUri.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void ReasTest6(){
+        System.out.println("DPReasTest6: test recvInto copies into the caller's buffer and keeps events that do not fit for the next call");
+        try{
+            EjfatURI segUri = new EjfatURI(LOOPBACK_URI + ":19942");
+            EjfatURI reasUri = new EjfatURI(LOOPBACK_URI);
+            Segmenter seg = openSegmenter(segUri);
+            Reassembler reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19942, 1, loopbackFlags());
+            reas.openAndStart();
+
+            EventMetadata metadata = new EventMetadata();
+            ByteBuffer small = ByteBuffer.allocateDirect(16);
+            sendString(seg, 1);
+            assertEquals(Reassembler.RECV_BUFFER_TOO_SMALL, reas.recvInto(small, 1000, metadata));
+            assertEquals(EVENT_STRING.length(), metadata.length);
+            assertEquals(1, metadata.eventNum);
+            assertEquals(0, small.position());
+            // the pending event is returned again
+            assertEquals(Reassembler.RECV_BUFFER_TOO_SMALL, reas.recvInto(small, 1000, metadata));
+            assertEquals(1, metadata.eventNum);
+
+            ByteBuffer dst = ByteBuffer.allocateDirect(256);
+            dst.position(8);
+            assertEquals(EVENT_STRING.length(), reas.recvInto(dst, 1000, metadata));
+            assertEquals(1, metadata.eventNum);
+            assertEquals(0x0505, metadata.dataId);
+            assertEquals(8 + EVENT_STRING.length(), dst.position());
+            assertEquals(EVENT_STRING, readString(dst.duplicate().flip().position(8)));
+
+            // events that fit are copied straight from the native event
+            sendString(seg, 2);
+            assertEquals(EVENT_STRING.length(), reas.recvInto(dst, 1000, metadata));
+            assertEquals(2, metadata.eventNum);
+            assertEquals(8 + 2 * EVENT_STRING.length(), dst.position());
+            assertEquals(Reassembler.RECV_NO_EVENT, reas.recvInto(dst, 100, metadata));
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            try{
+                reas.recvInto(ByteBuffer.allocate(256), 100, metadata);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // only direct buffers
+            }
+
+            // free() releases an event still pending
+            sendString(seg, 3);
+            assertEquals(Reassembler.RECV_BUFFER_TOO_SMALL, reas.recvInto(small, 1000, metadata));
+            seg.free();
+            reas.free();
+            segUri.free();
+            reasUri.free();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    // the event is unreachable once this returns, its native buffer is only freed once it is collected
+    private static void receiveAndDrop(Reassembler reas){
+        Optional<ReassembledEvent> event = reas.recvEvent(1000);
+        assert(event.isPresent());
+    }
+
+    @Test
+    void ReasTest7(){
+        System.out.println("DPReasTest7: test native event buffers are freed on close or once collected and maxOutstandingBytes holds back delivery");
+        ReassemblerFlags rflags = loopbackFlags();
+        rflags.maxOutstandingBytes = 1;
+        try{
+            EjfatURI segUri = new EjfatURI(LOOPBACK_URI + ":19952");
+            EjfatURI reasUri = new EjfatURI(LOOPBACK_URI);
+            Segmenter seg = openSegmenter(segUri);
+            Reassembler reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19952, 1, rflags);
+            reas.openAndStart();
+
+            sendString(seg, 1);
+            sendString(seg, 2);
+            ReassembledEvent first = reas.recvEvent(1000).orElseThrow();
+            assertEquals(EVENT_STRING.length(), reas.getStats().outstandingBytes);
+            Thread.sleep(200);
+            // event 2 is queued but held back until the first one is freed
+            assert(reas.getEvent().isEmpty());
+            first.close();
+            first.close();
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            receiveAndDrop(reas);
+            assertEquals(EVENT_STRING.length(), reas.getStats().outstandingBytes);
+            long deadline = System.currentTimeMillis() + 10000;
+            while(reas.getStats().outstandingBytes != 0 && System.currentTimeMillis() < deadline){
+                System.gc();
+                Thread.sleep(50);
+            }
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            sendString(seg, 3);
+            try(ReassembledEvent third = reas.recvEvent(1000).orElseThrow()){
+                assertEquals(3, third.eventNum);
+                assertEquals(EVENT_STRING, readString(third.byteBuffer));
+            }
+            assertEquals(0, reas.getStats().outstandingBytes);
+
+            seg.free();
+            reas.free();
+            segUri.free();
+            reasUri.free();
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void ReasTest8(){
+        System.out.println("DPReasTest8: test drainLostEvents returns the timed out events and counts them per data id");
+        ReassemblerFlags rflags = loopbackFlags();
+        rflags.eventTimeout_ms = 100;
+        try(DatagramChannel sender = DatagramChannel.open()){
+            EjfatURI reasUri = new EjfatURI(LOOPBACK_URI);
+            Reassembler reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19962, 1, rflags);
+            reas.openAndStart();
+
+            // LB and RE headers with the first 8 bytes of a 16 byte event, the rest never arrives
+            for(long eventNum=7;eventNum<=9;eventNum++){
+                ByteBuffer segment = ByteBuffer.allocate(LbreHeaders.LBRE_HEADER_LENGTH + 8);
+                LbreHeaders.putLbre(segment, 0, 0, eventNum, 0x0606, 0, 16);
+                sender.send(segment, new InetSocketAddress(InetAddress.getLoopbackAddress(), 19962));
+            }
+
+            long[] eventNums = new long[2];
+            int[] dataIds = new int[2];
+            List<Long> lost = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + 5000;
+            while(lost.size() < 3 && System.currentTimeMillis() < deadline){
+                int count = reas.drainLostEvents(eventNums, dataIds);
+                for(int i=0;i<count;i++){
+                    assertEquals(0x0606, dataIds[i]);
+                    lost.add(eventNums[i]);
+                }
+                Thread.sleep(50);
+            }
+            Collections.sort(lost);
+            assertEquals(List.of(7L, 8L, 9L), lost);
+            assertEquals(0, reas.drainLostEvents(eventNums, dataIds));
+            assertEquals(0, reas.drainLostEvents(new long[0], new int[0]));
+
+            RecvStats recvStats = reas.getStats();
+            assertArrayEquals(new int[]{0x0606}, recvStats.lostDataIds);
+            assertEquals(3, recvStats.getLostEvents(0x0606));
+
+            reas.free();
+            reasUri.free();
+        }
+        catch(E2sarNativeException | IOException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
 }
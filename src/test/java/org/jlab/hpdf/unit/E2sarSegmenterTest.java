@@ -7,6 +7,7 @@ import org.jlab.hpdf.exceptions.E2sarNativeException;
 import org.jlab.hpdf.messages.SendStats;
 import org.jlab.hpdf.messages.SyncStats;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.nio.ByteBuffer;
@@ -239,4 +240,387 @@ public class E2sarSegmenterTest {
         segmenter.free();
         uri.free();
     }
+
+    @Test
+    void SegTest4(){
+        System.out.println("DPSegTest4: test segmenter (and sync thread) by sending 5 events in one batch via event queue with small MTU so 10 frames are sent");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+            System.out.println("Running data test for 10 seconds against sync" + uri.getSyncAddr().toString() + " and data " + uri.getDataAddrv4().toString());
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.syncPeriodMs = 1000; // in ms
+        sFlags.syncPeriods = 5; // number of sync periods to use for sync
+        sFlags.mtu = 64 + 40;
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        System.out.println("The event data is string '" + eventString + "' of length " + eventString.length());
+
+        SendStats sendStats = segmenter.getSendStats();
+        if(sendStats.eventDatagramErrCount != 0){
+            System.out.println("Error encountered after opening send socket: " + sendStats.lastErrorNo);
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[5];
+        long[] eventNumbers = new long[5];
+        int[] dataIds = new int[5];
+        int[] entropies = new int[5];
+        for(int i=0;i<5;i++){
+            byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+            buffers[i] = ByteBuffer.allocateDirect(bytes.length);
+            buffers[i].put(bytes);
+            buffers[i].flip();
+        }
+
+        try{
+            int accepted = segmenter.addToSendQueueDirectBatch(buffers, eventNumbers, dataIds, entropies);
+            System.out.println("Queued " + accepted + " events in one batch");
+            assertEquals(5, accepted);
+            Thread.sleep(10000);
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch (InterruptedException e){
+
+        }
+        SyncStats syncStats = segmenter.getSyncStats();
+        sendStats = segmenter.getSendStats();
+
+        if(syncStats.syncErrCount != 0){
+            System.out.println("Error encountered sending sync frames:" + syncStats.lastErrorNo);
+        }
+        System.out.println("Sent " + syncStats.syncMsgCount + " sync frames");
+        System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+
+        assert(syncStats.syncMsgCount >= 10);
+        assert(syncStats.syncErrCount == 0);
+        assert(sendStats.eventDatagramCount == 10);
+        assert(sendStats.eventDatagramErrCount == 0);
+
+        segmenter.free();
+        uri.free();
+    }
+
+    @Test
+    void SegTest5(){
+        System.out.println("DPSegTest5: test segmenter by queueing 5 events that are regions of one direct arena buffer with small MTU so 10 frames are sent");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.syncPeriodMs = 1000; // in ms
+        sFlags.syncPeriods = 5; // number of sync periods to use for sync
+        sFlags.mtu = 64 + 40;
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+
+        // pack all 5 events back to back into one arena and send them in place
+        ByteBuffer arena = ByteBuffer.allocateDirect(bytes.length * 5);
+        for(int i=0;i<5;i++){
+            arena.put(bytes);
+        }
+
+        try{
+            for(int i=0;i<5;i++){
+                segmenter.addToSendQueueDirect(arena, i * bytes.length, bytes.length, 0, 0, 0);
+            }
+            Thread.sleep(10000);
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch (InterruptedException e){
+
+        }
+
+        try{
+            segmenter.addToSendQueueDirect(arena, 5 * bytes.length, 1, 0, 0, 0);
+            fail("Region outside of the arena should be rejected");
+        }
+        catch(E2sarNativeException e){
+            System.out.println("Out of bounds region rejected: " + e.getMessage());
+        }
+
+        SendStats sendStats = segmenter.getSendStats();
+        System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+
+        assert(sendStats.eventDatagramCount == 10);
+        assert(sendStats.eventDatagramErrCount == 0);
+
+        segmenter.free();
+        uri.free();
+    }
+
+    @Test
+    void SegTest6(){
+        System.out.println("DPSegTest6: test segmenter by sending 5 events gathered from a header and a payload buffer via sendEvent() with small MTU so 10 frames are sent");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.syncPeriodMs = 1000; // in ms
+        sFlags.syncPeriods = 5; // number of sync periods to use for sync
+        sFlags.mtu = 64 + 40;
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        String headerString = "THIS IS A VERY LONG EVENT ";
+        String payloadString = "MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        System.out.println("The event data is string '" + headerString + payloadString + "' of length " + (headerString.length() + payloadString.length()));
+
+        ByteBuffer header = ByteBuffer.allocateDirect(headerString.length());
+        header.put(headerString.getBytes(StandardCharsets.UTF_8));
+        header.flip();
+        ByteBuffer payload = ByteBuffer.allocateDirect(payloadString.length());
+        payload.put(payloadString.getBytes(StandardCharsets.UTF_8));
+        payload.flip();
+        ByteBuffer[] parts = {header, payload};
+
+        try{
+            for(int i=0;i<5;i++){
+                segmenter.sendEventDirect(parts, 0, 0, 0);
+                Thread.sleep(2000);
+            }
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch (InterruptedException e){
+
+        }
+        SendStats sendStats = segmenter.getSendStats();
+        System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+
+        assert(sendStats.eventDatagramCount == 10);
+        assert(sendStats.eventDatagramErrCount == 0);
+
+        segmenter.free();
+        uri.free();
+    }
+
+    @Test
+    void SegTest7(){
+        System.out.println("DPSegTest7: test segmenter send completions by queueing 5 events and polling all 5 buffers back once sent");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.enableSendCompletions(16);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+
+        try{
+            for(int i=0;i<5;i++){
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes);
+                buffer.flip();
+                segmenter.addToSendQueueDirect(buffer, 0, 0, 0);
+            }
+            Thread.sleep(2000);
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch (InterruptedException e){
+
+        }
+
+        ByteBuffer[] completed = new ByteBuffer[16];
+        int numCompleted = segmenter.drainCompletedBuffers(completed);
+        System.out.println("Got " + numCompleted + " buffers back from the send thread");
+        assertEquals(5, numCompleted);
+        assert(segmenter.pollCompletedBuffer() == null);
+        for(int i=0;i<numCompleted;i++){
+            assertEquals(bytes.length, completed[i].capacity());
+        }
+
+        segmenter.free();
+        uri.free();
+    }
+
+    @Test
+    void SegTest8(){
+        System.out.println("DPSegTest8: test segmenter bounded send queue by offering 5 events to a queue of capacity 1");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.sendQueueCapacity = 1;
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        assertEquals(1, segmenter.getSendQueueCapacity());
+
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+
+        try{
+            for(int i=0;i<5;i++){
+                // each offer waits for the previous event to leave the queue
+                assert(segmenter.offerToSendQueueDirect(buffer, i, 0, 0, 1000));
+            }
+            Thread.sleep(1000);
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch (InterruptedException e){
+
+        }
+        assertEquals(0, segmenter.getSendQueueOccupancy());
+
+        segmenter.free();
+        uri.free();
+    }
+
+    @Test
+    void SegTest9(){
+        System.out.println("DPSegTest9: test segmenter by sending 5 events from a heap byte array via sendEvent()");
+        EjfatURI uri = null;
+        try{
+            uri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.254.1:12345&data=10.250.100.123");
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        int dataId = 0x0505;
+        long eventSrcId = 0x11223344;
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.mtu = 64 + 40;
+
+        Segmenter segmenter = null;
+        
+        try{
+            segmenter = new Segmenter(uri, dataId, eventSrcId, sFlags);
+            segmenter.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail("Could not open send sockets");
+        }
+        // event sits in the middle of a larger array to exercise the offset
+        String eventString = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND EVERY 2 SECONDS.";
+        byte[] bytes = eventString.getBytes(StandardCharsets.UTF_8);
+        byte[] array = new byte[bytes.length + 32];
+        System.arraycopy(bytes, 0, array, 16, bytes.length);
+
+        try{
+            for(int i=0;i<5;i++){
+                segmenter.sendEvent(array, 16, bytes.length, 0, 0, 0);
+            }
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+
+        SendStats sendStats = segmenter.getSendStats();
+        System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+        assertEquals(10, sendStats.eventDatagramCount);
+        assertEquals(0, sendStats.eventDatagramErrCount);
+
+        try{
+            segmenter.sendEvent(array, 40, array.length, 0, 0, 0);
+            fail("Region outside of the array should be rejected");
+        }
+        catch(E2sarNativeException e){
+
+        }
+
+        segmenter.free();
+        uri.free();
+    }
 }
@@ -0,0 +1,126 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.CpuTopology;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.CorePlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * CpuTopology tests read a sysfs tree written to a temporary directory, so they do not depend on the host
+ */
+public class E2sarTopologyTest {
+
+    @TempDir
+    Path sysfs;
+
+    private void write(String path, String content) throws IOException{
+        Path file = sysfs.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content + "\n");
+    }
+
+    // 2 sockets of 4 cores with 2 hyperthreads each, cpu i and i + 8 share a core, ens1f0 is attached to node 1
+    private void writeDualSocket() throws IOException{
+        write("devices/system/node/node0/cpulist", "0-3,8-11");
+        write("devices/system/node/node1/cpulist", "4-7,12-15");
+        for(int cpu=0;cpu<16;cpu++){
+            write("devices/system/cpu/cpu" + cpu + "/topology/thread_siblings_list", (cpu % 8) + "," + (cpu % 8 + 8));
+        }
+        write("class/net/ens1f0/device/numa_node", "1");
+        write("class/net/docker0/device/numa_node", "-1");
+    }
+
+    @Test
+    void TopologyTest1(){
+        System.out.println("TopologyTest1: test CpuTopology reads nodes, siblings and NIC nodes from sysfs");
+        try{
+            writeDualSocket();
+            CpuTopology topology = CpuTopology.read(sysfs);
+            assertArrayEquals(new int[]{0, 1}, topology.getNodes());
+            assertArrayEquals(new int[]{4, 5, 6, 7, 12, 13, 14, 15}, topology.getCpus(1));
+            assertEquals(0, topology.getCpus(2).length);
+            assertArrayEquals(new int[]{5, 13}, topology.getSiblings(13));
+            assertEquals(1, topology.getNicNode("ens1f0"));
+            assertEquals(-1, topology.getNicNode("docker0"));
+            assertEquals(-1, topology.getNicNode("lo"));
+
+            // without NUMA the online cpus are node 0
+            Path flat = sysfs.resolve("flat");
+            Files.createDirectories(flat.resolve("devices/system/cpu"));
+            Files.writeString(flat.resolve("devices/system/cpu/online"), "0-5\n");
+            CpuTopology single = CpuTopology.read(flat);
+            assertArrayEquals(new int[]{0}, single.getNodes());
+            assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, single.getCpus(0));
+            assertArrayEquals(new int[]{3}, single.getSiblings(3));
+
+            try{
+                CpuTopology.read(sysfs.resolve("missing"));
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // nothing to read
+            }
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    void TopologyTest2(){
+        System.out.println("TopologyTest2: test CpuTopology.plan stays on the NIC node, reserves siblings and crosses nodes only when short of cores");
+        try{
+            writeDualSocket();
+            CpuTopology topology = CpuTopology.read(sysfs);
+
+            CorePlan plan = topology.plan("ens1f0", 2, 2);
+            System.out.println("Planned receive cores " + plan.receiveCores);
+            assertEquals(1, plan.numaNode);
+            assertEquals(List.of(4, 5), plan.receiveCores);
+            assertArrayEquals(new int[]{6, 7}, plan.consumerCores);
+            assertArrayEquals(new int[]{12, 13, 14, 15}, plan.reservedSiblings);
+            assert(!plan.crossesNodes);
+
+            plan = topology.plan("ens1f0", 3, 2);
+            assertEquals(List.of(4, 5, 6), plan.receiveCores);
+            assertArrayEquals(new int[]{7, 0}, plan.consumerCores);
+            assertArrayEquals(new int[]{8, 12, 13, 14, 15}, plan.reservedSiblings);
+            assert(plan.crossesNodes);
+
+            // unknown node falls back to the lowest node
+            plan = topology.plan("docker0", 1, 0);
+            assertEquals(-1, plan.numaNode);
+            assertEquals(List.of(0), plan.receiveCores);
+            assertEquals(0, plan.consumerCores.length);
+
+            try{
+                topology.plan("ens1f0", 6, 3);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // 8 physical cores
+            }
+            try{
+                topology.plan("ens1f0", 0, 1);
+                fail();
+            }
+            catch(E2sarNativeException e){
+                // no receive threads
+            }
+        }
+        catch(E2sarNativeException | IOException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.jlab.hpdf.unit;
+
+import org.jlab.hpdf.FillSource;
+import org.jlab.hpdf.PidController;
+import org.jlab.hpdf.WorkerStateReporter;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// WorkerStateReporter is tested against a StateSink instead of an LbManager so these tests do not need libjnie2sar or a load balancer
+public class E2sarWorkerStateReporterTest {
+
+    @Test
+    void WorkerStateTest1(){
+        System.out.println("WorkerStateTest1: test PidController proportional, epoch limited integral and derivative terms");
+        PidController proportional = new PidController(2.0f, 0.0f, 0.0f, 0.5f, 10);
+        assertEquals(1.0f, proportional.update(0.0f, 0.1), 1e-6);
+        assertEquals(-1.0f, proportional.update(1.0f, 0.1), 1e-6);
+
+        // the integral only covers the last 2 samples
+        PidController integral = new PidController(0.0f, 1.0f, 0.0f, 0.5f, 2);
+        assertEquals(0.05f, integral.update(0.0f, 0.1), 1e-6);
+        assertEquals(0.10f, integral.update(0.0f, 0.1), 1e-6);
+        assertEquals(0.10f, integral.update(0.0f, 0.1), 1e-6);
+        assertEquals(0.05f, integral.update(0.5f, 0.1), 1e-6);
+
+        PidController derivative = new PidController(0.0f, 0.0f, 1.0f, 0.5f, 10);
+        assertEquals(0.0f, derivative.update(0.5f, 0.1), 1e-6);
+        assertEquals(-2.0f, derivative.update(0.7f, 0.1), 1e-5);
+    }
+
+    @Test
+    void WorkerStateTest2(){
+        System.out.println("WorkerStateTest2: test WorkerStateReporter sends the application queue fill every period");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.period_ms = 20;
+        rFlags.Kp = 1.0f;
+        rFlags.setPoint = 0.0f;
+
+        BlockingQueue<Integer> analysisQueue = new ArrayBlockingQueue<>(4);
+        analysisQueue.add(1);
+        analysisQueue.add(2);
+        assertEquals(0.5f, FillSource.of(analysisQueue).getFill());
+
+        BlockingQueue<float[]> sent = new ArrayBlockingQueue<>(1000);
+        try(WorkerStateReporter reporter = new WorkerStateReporter((fill, control, ready) -> sent.add(new float[]{fill, control, ready ? 1 : 0}),
+                FillSource.of(analysisQueue), rFlags)){
+            reporter.start();
+            float[] state = sent.poll(1, TimeUnit.SECONDS);
+            assertEquals(0.5f, state[0]);
+            assertEquals(-0.5f, state[1]);
+            assertEquals(1.0f, state[2]);
+
+            reporter.setReady(false);
+            analysisQueue.clear();
+            long deadline = System.currentTimeMillis() + 1000;
+            do{
+                state = sent.poll(1, TimeUnit.SECONDS);
+            }
+            while(state[2] != 0.0f && System.currentTimeMillis() < deadline);
+            state = sent.poll(1, TimeUnit.SECONDS);
+            assertEquals(0.0f, state[0]);
+            assertEquals(0.0f, state[2]);
+
+            // about one state per period
+            long before = reporter.getStatesSent();
+            Thread.sleep(200);
+            long perPeriod = reporter.getStatesSent() - before;
+            assert(perPeriod >= 5 && perPeriod <= 15);
+            assertEquals(0, reporter.getSendErrors());
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+
+        try{
+            rFlags.period_ms = 0;
+            new WorkerStateReporter((fill, control, ready) -> {}, () -> 0.0f, rFlags);
+            fail();
+        }
+        catch(E2sarNativeException e){
+            // expected
+        }
+    }
+
+    @Test
+    void WorkerStateTest3(){
+        System.out.println("WorkerStateTest3: test WorkerStateReporter keeps reporting after the FillSource or StateSink throw a RuntimeException");
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.period_ms = 10;
+
+        AtomicInteger samples = new AtomicInteger();
+        BlockingQueue<Float> sent = new ArrayBlockingQueue<>(1000);
+        FillSource failingSource = () -> {
+            if(samples.incrementAndGet() == 1){
+                throw new IllegalStateException("queue gone on purpose");
+            }
+            return 0.25f;
+        };
+        WorkerStateReporter.StateSink failingSink = (fill, control, ready) -> {
+            if(samples.get() == 2){
+                throw new UnsupportedOperationException("sink failure on purpose");
+            }
+            sent.add(fill);
+        };
+        try(WorkerStateReporter reporter = new WorkerStateReporter(failingSink, failingSource, rFlags)){
+            reporter.start();
+            Float fill = sent.poll(1, TimeUnit.SECONDS);
+            if(fill == null){
+                fail("No state was sent after the failures");
+            }
+            assertEquals(0.25f, fill);
+            assertEquals(2, reporter.getSendErrors());
+            assert(reporter.getLastError() instanceof UnsupportedOperationException);
+        }
+        catch(E2sarNativeException | InterruptedException e){
+            e.printStackTrace();
+            fail();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.jlab.hpdf.bench;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.hpdf.EjfatURI;
+import org.jlab.hpdf.ForeignReassembler;
+import org.jlab.hpdf.ForeignSegmenter;
+import org.jlab.hpdf.Reassembler;
+import org.jlab.hpdf.Segmenter;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ForeignEvent;
+import org.jlab.hpdf.messages.ReassembledEvent;
+import org.jlab.hpdf.messages.RecvStats;
+import org.jlab.hpdf.messages.SendStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per call overhead of the JNI wrappers against the foreign function binding for the data plane entry points.
+ * The reassembler is never sent to, so getEvent measures the empty queue path. Events are sent to the loopback address.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+public class DowncallBenchmark {
+
+    EjfatURI uri;
+    Segmenter segmenter;
+    ForeignSegmenter foreignSegmenter;
+    Reassembler reassembler;
+    ForeignReassembler foreignReassembler;
+    Arena arena;
+    ByteBuffer directEvent;
+    MemorySegment segmentEvent;
+
+    @Setup(Level.Trial)
+    public void setup() throws E2sarNativeException, UnknownHostException{
+        uri = new EjfatURI("ejfat://useless@127.0.0.1:9876/lb/1?sync=127.0.0.1:12345&data=127.0.0.1");
+        SegmenterFlags sFlags = new SegmenterFlags();
+        sFlags.useCP = false;
+        sFlags.zeroRate = true;
+        segmenter = new Segmenter(uri, 0x0505, 0x11223344, sFlags);
+        segmenter.openAndStart();
+        foreignSegmenter = new ForeignSegmenter(segmenter);
+
+        ReassemblerFlags rFlags = new ReassemblerFlags();
+        rFlags.useCP = false;
+        reassembler = new Reassembler(uri, InetAddress.getLoopbackAddress(), 19522, 1, rFlags);
+        reassembler.openAndStart();
+        foreignReassembler = new ForeignReassembler(reassembler);
+
+        arena = Arena.ofConfined();
+        directEvent = ByteBuffer.allocateDirect(64);
+        segmentEvent = arena.allocate(64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        segmenter.free();
+        foreignSegmenter.free();
+        reassembler.free();
+        arena.close();
+        uri.free();
+    }
+
+    @Benchmark
+    public SendStats jniGetSendStats(){
+        return segmenter.getSendStats();
+    }
+
+    @Benchmark
+    public SendStats foreignGetSendStats(){
+        return foreignSegmenter.getSendStats();
+    }
+
+    @Benchmark
+    public void jniSendEvent() throws E2sarNativeException{
+        segmenter.sendEventDirect(directEvent, 0, 0, 0);
+    }
+
+    @Benchmark
+    public void foreignSendEvent() throws E2sarNativeException{
+        foreignSegmenter.sendEvent(segmentEvent, 0, 0, 0);
+    }
+
+    @Benchmark
+    public Optional<ReassembledEvent> jniGetEvent(){
+        return reassembler.getEvent();
+    }
+
+    @Benchmark
+    public Optional<ForeignEvent> foreignGetEvent(){
+        return foreignReassembler.getEvent(arena);
+    }
+
+    @Benchmark
+    public RecvStats jniGetStats(){
+        return reassembler.getStats();
+    }
+
+    @Benchmark
+    public RecvStats foreignGetStats(){
+        return foreignReassembler.getStats();
+    }
+}
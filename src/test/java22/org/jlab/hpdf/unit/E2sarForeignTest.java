@@ -0,0 +1,223 @@
+package org.jlab.hpdf.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.hpdf.EjfatURI;
+import org.jlab.hpdf.ForeignReassembler;
+import org.jlab.hpdf.ForeignSegmenter;
+import org.jlab.hpdf.Reassembler;
+import org.jlab.hpdf.Segmenter;
+import org.jlab.hpdf.config.ReassemblerFlags;
+import org.jlab.hpdf.config.SegmenterFlags;
+import org.jlab.hpdf.exceptions.E2sarNativeException;
+import org.jlab.hpdf.messages.ForeignEvent;
+import org.jlab.hpdf.messages.RecvStats;
+import org.jlab.hpdf.messages.SendStats;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ForeignSegmenter and ForeignReassembler tests send through the foreign function binding to a reassembler on the loopback address
+ * with no control plane, like E2sarReassemblerTest. Only compiled and run by the java22 profile
+ */
+public class E2sarForeignTest {
+
+    static{
+        System.loadLibrary("jnie2sar");
+    }
+
+    private static final String EVENT_STRING = "THIS IS A VERY LONG EVENT MESSAGE WE WANT TO SEND THROUGH THE FOREIGN BINDING.";
+
+    private static MemorySegment allocateEvent(Arena arena){
+        byte[] bytes = EVENT_STRING.getBytes(StandardCharsets.UTF_8);
+        MemorySegment event = arena.allocate(bytes.length);
+        MemorySegment.copy(bytes, 0, event, ValueLayout.JAVA_BYTE, 0, bytes.length);
+        return event;
+    }
+
+    private static String eventString(ForeignEvent event){
+        return new String(event.segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void ForeignTest1(){
+        System.out.println("ForeignTest1: test sendEvent and recvEvent through the foreign binding and release of received events with their Arena");
+
+        EjfatURI segUri = null;
+        EjfatURI reasUri = null;
+        Segmenter seg = null;
+        Reassembler reas = null;
+        try{
+            segUri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.0.1:12345&data=127.0.0.1:19902");
+            reasUri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.0.1:12345&data=127.0.0.1");
+
+            SegmenterFlags sflags = new SegmenterFlags();
+            sflags.useCP = false; // turn off CP
+            seg = new Segmenter(segUri, 0x0505, 0x11223344, sflags);
+
+            ReassemblerFlags rflags = new ReassemblerFlags();
+            rflags.useCP = false; // turn off CP
+            rflags.withLBHeader = true; // LB header will be attached since there is no LB
+            reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19902, 1, rflags);
+
+            seg.openAndStart();
+            reas.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        ForeignSegmenter foreignSeg = new ForeignSegmenter(seg);
+        ForeignReassembler foreignReas = new ForeignReassembler(reas);
+
+        List<ForeignEvent> received = new ArrayList<>();
+        try(Arena arena = Arena.ofConfined()){
+            MemorySegment event = allocateEvent(arena);
+            for(int i=1;i<=3;i++){
+                foreignSeg.sendEvent(event, i, 0, 0);
+            }
+            SendStats sendStats = foreignSeg.getSendStats();
+            System.out.println("Sent " + sendStats.eventDatagramCount + " data frames");
+            assertEquals(3, sendStats.eventDatagramCount);
+            assertEquals(0, sendStats.eventDatagramErrCount);
+
+            for(int i=1;i<=3;i++){
+                Optional<ForeignEvent> foreignEvent = foreignReas.recvEvent(arena, 1000);
+                if(foreignEvent.isEmpty()){
+                    fail("Event " + i + " was not received");
+                }
+                ForeignEvent reassembledEvent = foreignEvent.get();
+                System.out.println("Received message: " + eventString(reassembledEvent) + " with event number " + reassembledEvent.eventNum
+                    + " and data id " + reassembledEvent.dataId);
+                assertEquals(EVENT_STRING, eventString(reassembledEvent));
+                assertEquals(i, reassembledEvent.eventNum);
+                assertEquals(0x0505, reassembledEvent.dataId);
+                assert(reassembledEvent.segment.scope().isAlive());
+                received.add(reassembledEvent);
+            }
+            Optional<ForeignEvent> extra = foreignReas.getEvent(arena);
+            assert(extra.isEmpty());
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+
+        // closing the Arena freed the native events
+        for(ForeignEvent event : received){
+            assert(!event.segment.scope().isAlive());
+            assertThrows(IllegalStateException.class, () -> event.segment.get(ValueLayout.JAVA_BYTE, 0));
+        }
+
+        RecvStats recvStats = foreignReas.getStats();
+        assertEquals(3, recvStats.eventSuccess);
+        assertEquals(0, recvStats.enqueueLoss);
+        assertEquals(0, recvStats.lastE2sarError);
+
+        seg.free();
+        foreignSeg.free();
+        reas.free();
+        segUri.free();
+        reasUri.free();
+    }
+
+    @Test
+    void ForeignTest2(){
+        System.out.println("ForeignTest2: test addToSendQueue through the foreign binding calls the completion listener for every queued event");
+
+        EjfatURI segUri = null;
+        EjfatURI reasUri = null;
+        Segmenter seg = null;
+        Reassembler reas = null;
+        try{
+            segUri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.0.1:12345&data=127.0.0.1:19912");
+            reasUri = new EjfatURI("ejfat://useless@192.168.100.1:9876/lb/1?sync=192.168.0.1:12345&data=127.0.0.1");
+
+            SegmenterFlags sflags = new SegmenterFlags();
+            sflags.useCP = false; // turn off CP
+            seg = new Segmenter(segUri, 0x0505, 0x11223344, sflags);
+
+            ReassemblerFlags rflags = new ReassemblerFlags();
+            rflags.useCP = false; // turn off CP
+            rflags.withLBHeader = true; // LB header will be attached since there is no LB
+            reas = new Reassembler(reasUri, InetAddress.getLoopbackAddress(), 19912, 1, rflags);
+
+            seg.openAndStart();
+            reas.openAndStart();
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        CountDownLatch sent = new CountDownLatch(3);
+        List<Long> sentAddresses = new ArrayList<>();
+        ForeignSegmenter foreignSeg = new ForeignSegmenter(seg, event -> {
+            synchronized(sentAddresses){
+                sentAddresses.add(event.address());
+            }
+            sent.countDown();
+        });
+        ForeignReassembler foreignReas = new ForeignReassembler(reas);
+
+        // the send thread reads queued events in place, the Arena is only closed once all of them were reported sent
+        try(Arena arena = Arena.ofShared()){
+            List<Long> queuedAddresses = new ArrayList<>();
+            for(int i=1;i<=3;i++){
+                MemorySegment event = allocateEvent(arena);
+                queuedAddresses.add(event.address());
+                if(!foreignSeg.addToSendQueue(event, i, 0, 0)){
+                    fail("Send queue full");
+                }
+            }
+            if(!sent.await(5, TimeUnit.SECONDS)){
+                fail("Completion listener was not called for every queued event");
+            }
+            synchronized(sentAddresses){
+                assert(sentAddresses.containsAll(queuedAddresses));
+            }
+
+            for(int i=1;i<=3;i++){
+                Optional<ForeignEvent> foreignEvent = foreignReas.recvEvent(arena, 1000);
+                if(foreignEvent.isEmpty()){
+                    fail("Event " + i + " was not received");
+                }
+                assertEquals(EVENT_STRING, eventString(foreignEvent.get()));
+                assertEquals(i, foreignEvent.get().eventNum);
+            }
+        }
+        catch(E2sarNativeException e){
+            e.printStackTrace();
+            fail();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            fail();
+        }
+
+        try{
+            foreignSeg.addToSendQueue(MemorySegment.ofArray(new byte[8]), 0, 0, 0);
+            fail();
+        }
+        catch(E2sarNativeException e){
+            // heap segments are rejected
+        }
+
+        seg.free();
+        foreignSeg.free();
+        reas.free();
+        segUri.free();
+        reasUri.free();
+    }
+}